@@ -323,6 +323,11 @@ public class TinyMediaManager {
             u.sendPlayerSearchRequest();
             u.startWebServer();
           }
+          if (!GraphicsEnvironment.isHeadless()) {
+            // watch the data sources for new/changed files
+            MovieModuleManager.getInstance().startDatasourceWatcher();
+            TvShowModuleManager.getInstance().startDatasourceWatcher();
+          }
 
           // do upgrade tasks after database loading
           if (newVersion) {
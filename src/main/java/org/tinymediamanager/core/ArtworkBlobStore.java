@@ -0,0 +1,296 @@
+/*
+ * Copyright 2012 - 2018 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tinymediamanager.Globals;
+import org.tinymediamanager.scraper.http.Url;
+
+/**
+ * The class ArtworkBlobStore. Every artwork url is downloaded only once into a local store (named by the hash of the content); all
+ * artwork files for this url (the different naming variants) are copied from this local copy.<br>
+ * The local copies are reference counted: every fetch() has to be followed by a release() once the files have been written; the local copy
+ * is deleted when it is not used any more (so a later scrape of the same url downloads the artwork again)
+ * 
+ * @author Manuel Laggner
+ */
+public class ArtworkBlobStore {
+  private static final Logger           LOGGER          = LoggerFactory.getLogger(ArtworkBlobStore.class);
+  private static final Path             BLOB_DIR        = Paths.get("cache", "artwork");
+  private static final ArtworkBlobStore INSTANCE        = new ArtworkBlobStore();
+  private static final int              BUFFER_SIZE     = 64 * 1024;
+
+  private final Map<String, Path>       blobs           = new HashMap<>();
+  private final Map<Path, Integer>      references      = new HashMap<>();
+  private final Map<String, Object>     downloads       = new HashMap<>();
+  private final Map<String, Semaphore>  hostLimits      = new HashMap<>();
+  private final AtomicLong              downloadedBytes = new AtomicLong(0);
+
+  private ArtworkBlobStore() {
+  }
+
+  public static ArtworkBlobStore getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * get the local copy of the given url; if the url has not been downloaded yet, it will be downloaded now. Concurrent requests for the same
+   * url wait for the running download. The local copy has to be released via {@link #release(Path)} after it has been used
+   * 
+   * @param url
+   *          the url of the artwork
+   * @return the path to the local copy
+   * @throws Exception
+   *           if the artwork could not be downloaded
+   */
+  public Path fetch(String url) throws Exception {
+    Object lock;
+    synchronized (this) {
+      Path blob = getBlob(url);
+      if (blob != null) {
+        retain(blob);
+        return blob;
+      }
+      lock = downloads.get(url);
+      if (lock == null) {
+        lock = new Object();
+        downloads.put(url, lock);
+      }
+    }
+
+    synchronized (lock) {
+      try {
+        // another thread may have downloaded it in the meantime
+        synchronized (this) {
+          Path blob = getBlob(url);
+          if (blob != null) {
+            retain(blob);
+            return blob;
+          }
+        }
+
+        return download(url);
+      }
+      finally {
+        synchronized (this) {
+          downloads.remove(url);
+        }
+      }
+    }
+  }
+
+  /**
+   * release the local copy of an artwork (returned by {@link #fetch(String)}); it is deleted if no one else uses it
+   * 
+   * @param blob
+   *          the local copy
+   */
+  public synchronized void release(Path blob) {
+    Integer count = references.get(blob);
+    if (count != null && count > 1) {
+      references.put(blob, count - 1);
+      return;
+    }
+
+    references.remove(blob);
+    blobs.values().removeAll(Collections.singleton(blob));
+    try {
+      Files.deleteIfExists(blob);
+    }
+    catch (IOException e) {
+      LOGGER.debug("could not delete " + blob + ": " + e.getMessage());
+    }
+  }
+
+  private void retain(Path blob) {
+    Integer count = references.get(blob);
+    references.put(blob, count == null ? 1 : count + 1);
+  }
+
+  private Path getBlob(String url) {
+    Path blob = blobs.get(url);
+    if (blob != null && Files.exists(blob)) {
+      LOGGER.trace("artwork already downloaded: " + url);
+      return blob;
+    }
+    return null;
+  }
+
+  private Path download(String url) throws Exception {
+    Semaphore hostLimit = getHostLimit(url);
+    if (hostLimit != null) {
+      hostLimit.acquire();
+    }
+
+    try {
+      return downloadToBlob(url);
+    }
+    finally {
+      if (hostLimit != null) {
+        hostLimit.release();
+      }
+    }
+  }
+
+  /**
+   * get the semaphore which limits the parallel downloads from the host of the given url
+   * 
+   * @param url
+   *          the url to get the limit for
+   * @return the semaphore or null if the url has no remote host
+   */
+  private Semaphore getHostLimit(String url) {
+    String host;
+    try {
+      host = new URI(url).getHost();
+    }
+    catch (URISyntaxException e) {
+      host = null;
+    }
+    if (StringUtils.isBlank(host)) {
+      return null;
+    }
+
+    synchronized (hostLimits) {
+      Semaphore semaphore = hostLimits.get(host);
+      if (semaphore == null) {
+        semaphore = new Semaphore(Math.max(1, Globals.settings.getImageDownloadsPerHost()), true);
+        hostLimits.put(host, semaphore);
+      }
+      return semaphore;
+    }
+  }
+
+  private Path downloadToBlob(String url) throws Exception {
+    Files.createDirectories(BLOB_DIR);
+    Path tempFile = Files.createTempFile(BLOB_DIR, "download", ".part");
+
+    try {
+      Url url1 = new Url(url);
+      InputStream is = url1.getInputStream();
+      if (is == null || url1.isFault()) {
+        // 404 et all
+        IOUtils.closeQuietly(is);
+        throw new FileNotFoundException("Error accessing url: " + url1.getStatusLine());
+      }
+
+      // stream the content directly into the temp file; durability is ensured once per media entity after all artwork has been written
+      MessageDigest digest = MessageDigest.getInstance("SHA-1");
+      long size;
+      try (DigestInputStream dis = new DigestInputStream(is, digest); OutputStream os = Files.newOutputStream(tempFile)) {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        size = 0;
+        while ((read = dis.read(buffer)) != -1) {
+          if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedException();
+          }
+          os.write(buffer, 0, read);
+          size += read;
+          downloadedBytes.addAndGet(read);
+        }
+      }
+
+      // check if the file has been downloaded
+      if (size == 0) {
+        throw new Exception("0byte file downloaded: " + url);
+      }
+
+      // the same content may have been downloaded from another url (and must not be released in the meantime)
+      Path blob = BLOB_DIR.resolve(new String(Hex.encodeHex(digest.digest())));
+      synchronized (this) {
+        if (!Files.exists(blob)) {
+          try {
+            Files.move(tempFile, blob, StandardCopyOption.ATOMIC_MOVE);
+          }
+          catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile, blob, StandardCopyOption.REPLACE_EXISTING);
+          }
+        }
+        blobs.put(url, blob);
+        retain(blob);
+      }
+      return blob;
+    }
+    finally {
+      Files.deleteIfExists(tempFile);
+    }
+  }
+
+  /**
+   * get the amount of bytes which have been downloaded since the start of tmm
+   * 
+   * @return the downloaded bytes
+   */
+  public long getDownloadedBytes() {
+    return downloadedBytes.get();
+  }
+
+  /**
+   * create the given file from the local copy of the artwork. The file is always copied: hard links would make all variants (and the local
+   * copy) share one inode, so editing/replacing one of them would change all others too
+   * 
+   * @param blob
+   *          the local copy of the artwork
+   * @param destination
+   *          the file to create
+   * @throws IOException
+   *           if the file could not be created
+   */
+  public static void materialize(Path blob, Path destination) throws IOException {
+    DatasourceWatcher.registerOwnWrite(destination);
+    Files.copy(blob, destination, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /**
+   * remove all local copies (and leftovers of a crashed session)
+   */
+  public synchronized void clear() {
+    blobs.clear();
+    references.clear();
+    if (Files.exists(BLOB_DIR)) {
+      try {
+        Utils.deleteDirectoryRecursive(BLOB_DIR);
+      }
+      catch (Exception e) {
+        LOGGER.warn("could not clean artwork store: " + e.getMessage());
+      }
+    }
+  }
+}
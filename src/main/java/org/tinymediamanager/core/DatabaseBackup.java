@@ -0,0 +1,246 @@
+/*
+ * Copyright 2012 - 2018 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.codec.binary.Hex;
+import org.h2.mvstore.FileStore;
+import org.h2.mvstore.MVStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tinymediamanager.core.threading.TmmThreadPool.TmmThreadFactory;
+
+/**
+ * The class DatabaseBackup. Creates a zipped backup of a store as an online backup: the store is opened as usual and its file is read
+ * (through the store itself, so the file lock does not matter) in a background thread while the reuse of space is disabled - so the chunks
+ * of the read version cannot be overwritten in the meantime. If the content did not change since the last backup, no new backup will be
+ * written
+ * 
+ * @author Manuel Laggner
+ */
+public class DatabaseBackup implements Runnable {
+  private static final Logger LOGGER        = LoggerFactory.getLogger(DatabaseBackup.class);
+  private static final Path   BACKUP_FOLDER = Paths.get("backup");
+  private static final String HASH_PREFIX   = "sha1:";
+  private static final int    CHUNK_SIZE    = 1024 * 1024;
+
+  private final Path          dbFile;
+  private final int           keep;
+  private final String        date;
+  private MVStore             mvStore;
+  private Thread              thread;
+  private volatile boolean    cancel        = false;
+
+  /**
+   * create a backup for the given store; this has to be called before the store is opened (the backup is named after the last modification
+   * of the store file)
+   * 
+   * @param dbFile
+   *          the file of the store
+   * @param keep
+   *          keep last X backups
+   */
+  public DatabaseBackup(Path dbFile, int keep) {
+    this.dbFile = dbFile;
+    this.keep = keep;
+
+    String lastModified = null;
+    try {
+      if (Files.exists(dbFile)) {
+        lastModified = new SimpleDateFormat("yyyy-MM-dd").format(new Date(Files.getLastModifiedTime(dbFile).toMillis()));
+      }
+    }
+    catch (IOException e) {
+      LOGGER.debug("could not read the modification time of " + dbFile + ": " + e.getMessage());
+    }
+    this.date = lastModified;
+  }
+
+  /**
+   * start the backup of the opened store in the background
+   * 
+   * @param mvStore
+   *          the opened store of the file
+   */
+  public synchronized void start(MVStore mvStore) {
+    // a new store has nothing to back up
+    if (thread == null && date != null) {
+      this.mvStore = mvStore;
+      thread = new TmmThreadFactory("db-backup").newThread(this);
+      thread.setPriority(Thread.MIN_PRIORITY);
+      thread.start();
+    }
+  }
+
+  /**
+   * cancel a running backup and wait until it has been finished; this has to be called before the store is closed
+   */
+  public void cancel() {
+    cancel = true;
+    Thread t;
+    synchronized (this) {
+      t = thread;
+    }
+    if (t != null) {
+      try {
+        t.join();
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  @Override
+  public void run() {
+    long start = System.currentTimeMillis();
+    Path backup = BACKUP_FOLDER.resolve(dbFile.getFileName() + "." + date + ".zip");
+    Path tempFile = backup.resolveSibling(backup.getFileName() + ".part");
+    try {
+      Files.createDirectories(BACKUP_FOLDER);
+      deleteStaleParts();
+
+      String lastHash = getLastBackupHash();
+      String hash = writeZip(tempFile);
+      if (hash == null) {
+        // cancelled
+        return;
+      }
+
+      if (hash.equals(lastHash)) {
+        LOGGER.debug("no changes since the last backup of " + dbFile.getFileName() + " - skipping");
+        return;
+      }
+
+      Files.move(tempFile, backup, StandardCopyOption.REPLACE_EXISTING);
+      Utils.deleteOldBackupFile(dbFile, keep);
+
+      LOGGER.info("backup of " + dbFile.getFileName() + " created in " + (System.currentTimeMillis() - start) + " ms");
+    }
+    catch (Exception e) {
+      LOGGER.error("Could not backup file " + dbFile + ": " + e.getMessage());
+    }
+    finally {
+      try {
+        Files.deleteIfExists(tempFile);
+      }
+      catch (IOException e) {
+        LOGGER.debug("could not delete " + tempFile + ": " + e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * remove temporary files of this store which have been left by a crashed session
+   */
+  private void deleteStaleParts() {
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(BACKUP_FOLDER, dbFile.getFileName() + "*.part")) {
+      for (Path path : stream) {
+        LOGGER.debug("removing stale backup file " + path);
+        Files.deleteIfExists(path);
+      }
+    }
+    catch (IOException e) {
+      LOGGER.debug("could not clean the backup folder: " + e.getMessage());
+    }
+  }
+
+  /**
+   * zip the current content of the store file (the same layout as {@link Utils#createBackupFile(Path)}); the content hash is stored as the
+   * zip comment
+   * 
+   * @param destination
+   *          the zip file to write
+   * @return the hash of the content or null if the backup has been cancelled
+   */
+  private String writeZip(Path destination) throws Exception {
+    MessageDigest digest = MessageDigest.getInstance("SHA-1");
+    FileStore fileStore = mvStore.getFileStore();
+
+    // the chunks of the current version must not be overwritten while reading the file
+    mvStore.setReuseSpace(false);
+    try (OutputStream os = Files.newOutputStream(destination); ZipOutputStream zos = new ZipOutputStream(os)) {
+      zos.putNextEntry(new ZipEntry(dbFile.getFileName().toString()));
+      long size = fileStore.size();
+      for (long pos = 0; pos < size; pos += CHUNK_SIZE) {
+        if (cancel) {
+          return null;
+        }
+        int length = (int) Math.min(CHUNK_SIZE, size - pos);
+        ByteBuffer buffer = fileStore.readFully(pos, length);
+        digest.update(buffer.array(), buffer.arrayOffset(), length);
+        zos.write(buffer.array(), buffer.arrayOffset(), length);
+      }
+      zos.closeEntry();
+
+      String hash = new String(Hex.encodeHex(digest.digest()));
+      zos.setComment(HASH_PREFIX + hash);
+      return hash;
+    }
+    finally {
+      mvStore.setReuseSpace(true);
+    }
+  }
+
+  /**
+   * get the content hash of the newest backup of this store
+   * 
+   * @return the hash or an empty string if there is no (hashed) backup
+   */
+  private String getLastBackupHash() {
+    Path last = null;
+    String prefix = dbFile.getFileName().toString() + ".";
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(BACKUP_FOLDER, prefix + "*.zip")) {
+      for (Path path : stream) {
+        if (last == null || path.getFileName().toString().compareTo(last.getFileName().toString()) > 0) {
+          last = path;
+        }
+      }
+    }
+    catch (IOException e) {
+      return "";
+    }
+
+    if (last == null) {
+      return "";
+    }
+
+    try (ZipFile zipFile = new ZipFile(last.toFile())) {
+      String comment = zipFile.getComment();
+      if (comment != null && comment.startsWith(HASH_PREFIX)) {
+        return comment.substring(HASH_PREFIX.length());
+      }
+    }
+    catch (IOException e) {
+      LOGGER.debug("could not read backup " + last + ": " + e.getMessage());
+    }
+    return "";
+  }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2012 - 2018 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core;
+
+import java.io.IOException;
+import java.util.Map.Entry;
+import java.util.TimeZone;
+import java.util.UUID;
+
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * The enum DatabaseFormat. The format how the entities are stored in the MVStore maps: either as JSON strings (deflate compressed store) or
+ * as binary Smile encoded JSON (LZF compressed store). Every format uses its own maps, so the format of a database can be detected (and
+ * converted) by its map names
+ * 
+ * @author Manuel Laggner
+ */
+public enum DatabaseFormat {
+  JSON(""),
+  SMILE(".smile");
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(DatabaseFormat.class);
+
+  private final String        mapSuffix;
+
+  DatabaseFormat(String mapSuffix) {
+    this.mapSuffix = mapSuffix;
+  }
+
+  /**
+   * get the name of the map holding the entities in this format
+   * 
+   * @param name
+   *          the base name of the map (e.g. movies)
+   * @return the name of the map in this format
+   */
+  public String getMapName(String name) {
+    return name + mapSuffix;
+  }
+
+  /**
+   * set the compression of the store for this format
+   * 
+   * @param builder
+   *          the store builder
+   * @return the store builder
+   */
+  public MVStore.Builder configure(MVStore.Builder builder) {
+    if (this == SMILE) {
+      // the binary encoding is already compact; LZF is much faster than deflate
+      return builder.compress();
+    }
+    return builder.compressHigh();
+  }
+
+  /**
+   * create the object mapper to (de)serialize the entities in this format
+   * 
+   * @return the configured object mapper
+   */
+  public ObjectMapper createObjectMapper() {
+    ObjectMapper objectMapper = this == SMILE ? new ObjectMapper(new SmileFactory()) : new ObjectMapper();
+    objectMapper.configure(MapperFeature.AUTO_DETECT_GETTERS, false);
+    objectMapper.configure(MapperFeature.AUTO_DETECT_IS_GETTERS, false);
+    objectMapper.configure(MapperFeature.AUTO_DETECT_SETTERS, false);
+    objectMapper.configure(MapperFeature.AUTO_DETECT_FIELDS, false);
+    objectMapper.setTimeZone(TimeZone.getDefault());
+    objectMapper.setSerializationInclusion(Include.NON_DEFAULT);
+    objectMapper.setSerializerProvider(new CustomNullStringSerializerProvider());
+    objectMapper.getSerializerProvider().setNullKeySerializer(new NullKeySerializer());
+    return objectMapper;
+  }
+
+  /**
+   * encode the given entity for storing it in the map
+   * 
+   * @param writer
+   *          the writer (of an object mapper of this format)
+   * @param entity
+   *          the entity to encode
+   * @return the encoded entity (a String for JSON, a byte[] for SMILE)
+   * @throws IOException
+   *           any exception occurred while encoding
+   */
+  public Object encode(ObjectWriter writer, Object entity) throws IOException {
+    if (this == SMILE) {
+      return writer.writeValueAsBytes(entity);
+    }
+    return writer.writeValueAsString(entity);
+  }
+
+  /**
+   * decode the stored value (in any format) with the given reader
+   * 
+   * @param reader
+   *          the reader (of an object mapper of the format of the value)
+   * @param value
+   *          the stored value
+   * @return the decoded entity
+   * @throws IOException
+   *           any exception occurred while decoding
+   */
+  public static <T> T decode(ObjectReader reader, Object value) throws IOException {
+    if (value instanceof byte[]) {
+      return reader.readValue((byte[]) value);
+    }
+    return reader.readValue((String) value);
+  }
+
+  /**
+   * calculate the 64 bit content hash (FNV-1a) of the given stored value
+   * 
+   * @param value
+   *          the stored value (String or byte[])
+   * @return the hash of the content
+   */
+  public static long contentHash(Object value) {
+    long hash = 0xcbf29ce484222325L;
+    if (value instanceof byte[]) {
+      for (byte b : (byte[]) value) {
+        hash ^= b & 0xff;
+        hash *= 0x100000001b3L;
+      }
+    }
+    else {
+      String content = String.valueOf(value);
+      for (int i = 0; i < content.length(); i++) {
+        char c = content.charAt(i);
+        hash ^= c & 0xff;
+        hash *= 0x100000001b3L;
+        hash ^= c >>> 8;
+        hash *= 0x100000001b3L;
+      }
+    }
+    return hash;
+  }
+
+  /**
+   * convert the given maps of the store into the target format (if they are stored in another format)
+   * 
+   * @param mvStore
+   *          the opened store
+   * @param target
+   *          the target format
+   * @param mapNames
+   *          the base names of the maps to convert
+   * @return true if any map has been converted
+   */
+  public static boolean convert(MVStore mvStore, DatabaseFormat target, String... mapNames) {
+    boolean converted = false;
+    ObjectMapper targetMapper = target.createObjectMapper();
+
+    for (String name : mapNames) {
+      for (DatabaseFormat source : values()) {
+        if (source == target || !mvStore.getMapNames().contains(source.getMapName(name))) {
+          continue;
+        }
+
+        long start = System.currentTimeMillis();
+        ObjectMapper sourceMapper = source.createObjectMapper();
+        MVMap<UUID, Object> sourceMap = mvStore.openMap(source.getMapName(name));
+        MVMap<UUID, Object> targetMap = mvStore.openMap(target.getMapName(name));
+
+        // convert the JSON tree, so no entity classes are needed
+        int count = 0;
+        for (Entry<UUID, Object> entry : sourceMap.entrySet()) {
+          try {
+            JsonNode node = decode(sourceMapper.readerFor(JsonNode.class), entry.getValue());
+            targetMap.put(entry.getKey(), target.encode(targetMapper.writer(), node));
+            count++;
+          }
+          catch (Exception e) {
+            LOGGER.warn("dropping corrupt entry " + entry.getKey() + " of " + name + ": " + e.getMessage());
+          }
+        }
+
+        mvStore.removeMap(sourceMap);
+        mvStore.commit();
+        converted = true;
+        LOGGER.info("converted " + count + " entries of " + name + " from " + source + " to " + target + " in "
+            + (System.currentTimeMillis() - start) + " ms");
+      }
+    }
+
+    return converted;
+  }
+}
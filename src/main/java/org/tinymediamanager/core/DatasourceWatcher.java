@@ -0,0 +1,573 @@
+/*
+ * Copyright 2012 - 2018 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core;
+
+import static java.nio.file.FileVisitResult.CONTINUE;
+import static java.nio.file.FileVisitResult.SKIP_SUBTREE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tinymediamanager.core.threading.TmmThreadPool.TmmThreadFactory;
+
+/**
+ * The class DatasourceWatcher. Watches the data sources of a module for changes (via the {@link WatchService} or via polling for network
+ * mounts) and passes the changed folders - debounced and coalesced - to the module for an update
+ *
+ * @author Manuel Laggner
+ */
+public abstract class DatasourceWatcher {
+  private static final Logger          LOGGER              = LoggerFactory.getLogger(DatasourceWatcher.class);
+
+  // time without any event before a folder is passed for update (downloads may write for a longer time)
+  private static final long            QUIET_PERIOD        = 5000;
+  // poll interval for data sources which cannot be watched
+  private static final long            POLL_INTERVAL       = 60000;
+  // file systems where the WatchService does not report changes made by other machines
+  private static final List<String>    NETWORK_FILESYSTEMS = Arrays.asList("nfs", "nfs4", "cifs", "smb", "smbfs", "smb2", "afpfs", "fuse.sshfs",
+      "davfs", "webdav", "9p");
+  // time in which events for files written by tmm itself (NFO, artwork, renames) are ignored
+  private static final long            OWN_WRITE_WINDOW    = 10000;
+  // the files written by tmm itself and the folders containing them (for polling) with the time of the write
+  private static final Map<Path, Long> OWN_WRITES          = new ConcurrentHashMap<>();
+  private static final Map<Path, Long> OWN_FOLDER_WRITES   = new ConcurrentHashMap<>();
+
+  private final String                 name;
+  // immutable; replaced on start (read by the watch and poll threads without locking)
+  private volatile List<Path>          datasources         = Collections.emptyList();
+  private final Map<WatchKey, Path>    watchKeys           = new ConcurrentHashMap<>();
+  private final Map<Path, Long>        pendingFolders      = new HashMap<>();
+  private final Map<Path, Path>        pendingDatasources  = new HashMap<>();
+
+  private volatile WatchService        watchService;
+  private ScheduledExecutorService     scheduler;
+  private Thread                       watchThread;
+  private volatile boolean             running             = false;
+
+  protected DatasourceWatcher(String name) {
+    this.name = name;
+  }
+
+  /**
+   * get all data sources which should be watched
+   *
+   * @return a list of all data sources
+   */
+  protected abstract List<String> getDataSources();
+
+  /**
+   * resolve the folder which has to be updated for the given changed path (e.g. the movie or TV show folder)
+   *
+   * @param datasource
+   *          the data source containing the changed path
+   * @param changedPath
+   *          the changed file/folder
+   * @return the folder to update or null if nothing needs to be updated
+   */
+  protected abstract Path resolveFolder(Path datasource, Path changedPath);
+
+  /**
+   * update the given folders
+   *
+   * @param datasource
+   *          the data source containing the folders
+   * @param folders
+   *          the changed folders (no folder is a child of another folder in this list)
+   */
+  protected abstract void updateFolders(Path datasource, List<Path> folders);
+
+  /**
+   * start watching all data sources
+   */
+  public synchronized void start() {
+    if (running) {
+      return;
+    }
+    running = true;
+
+    List<Path> paths = new ArrayList<>();
+    for (String ds : getDataSources()) {
+      paths.add(Paths.get(ds).toAbsolutePath());
+    }
+    datasources = Collections.unmodifiableList(paths);
+
+    try {
+      watchService = FileSystems.getDefault().newWatchService();
+    }
+    catch (IOException | UnsupportedOperationException e) {
+      LOGGER.warn("could not create watch service - falling back to polling: " + e.getMessage());
+      watchService = null;
+    }
+
+    scheduler = Executors.newSingleThreadScheduledExecutor(new TmmThreadFactory(name + "-watcher"));
+
+    // registering all folders may take a while - do not block the caller
+    for (final Path datasource : datasources) {
+      scheduler.execute(new Runnable() {
+        @Override
+        public void run() {
+          watchDatasource(datasource);
+        }
+      });
+    }
+
+    scheduler.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        flushPendingFolders();
+      }
+    }, 1, 1, TimeUnit.SECONDS);
+
+    if (watchService != null) {
+      final WatchService service = watchService;
+      watchThread = new TmmThreadFactory(name + "-watchservice").newThread(new Runnable() {
+        @Override
+        public void run() {
+          processEvents(service);
+        }
+      });
+      watchThread.start();
+    }
+  }
+
+  /**
+   * stop watching all data sources
+   */
+  public synchronized void stop() {
+    if (!running) {
+      return;
+    }
+    running = false;
+
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+      scheduler = null;
+    }
+    if (watchService != null) {
+      try {
+        watchService.close();
+      }
+      catch (IOException e) {
+        LOGGER.debug("could not close watch service: " + e.getMessage());
+      }
+      watchService = null;
+    }
+    if (watchThread != null) {
+      watchThread.interrupt();
+      watchThread = null;
+    }
+    watchKeys.clear();
+    synchronized (pendingFolders) {
+      pendingFolders.clear();
+      pendingDatasources.clear();
+    }
+  }
+
+  public boolean isRunning() {
+    return running;
+  }
+
+  /**
+   * restart watching (e.g. after data sources have been added/removed)
+   */
+  public synchronized void restart() {
+    if (running) {
+      stop();
+      start();
+    }
+  }
+
+  /**
+   * register files which are written/moved/deleted by tmm itself; changes of these files within a short time do not trigger an update
+   *
+   * @param paths
+   *          the written files/folders
+   */
+  public static void registerOwnWrite(Path... paths) {
+    long now = System.currentTimeMillis();
+    for (Path path : paths) {
+      if (path == null) {
+        continue;
+      }
+      Path absolute = path.toAbsolutePath();
+      OWN_WRITES.put(absolute, now);
+      if (absolute.getParent() != null) {
+        OWN_FOLDER_WRITES.put(absolute.getParent(), now);
+      }
+    }
+  }
+
+  private static boolean isOwnWrite(Map<Path, Long> writes, Path path, long time) {
+    Long writeTime = writes.get(path);
+    return writeTime != null && Math.abs(time - writeTime) <= OWN_WRITE_WINDOW;
+  }
+
+  private static void expireOwnWrites(long now) {
+    for (Iterator<Long> it = OWN_WRITES.values().iterator(); it.hasNext();) {
+      if (now - it.next() > OWN_WRITE_WINDOW) {
+        it.remove();
+      }
+    }
+    // folders are checked by the polling with the modification time of the folder
+    for (Iterator<Long> it = OWN_FOLDER_WRITES.values().iterator(); it.hasNext();) {
+      if (now - it.next() > POLL_INTERVAL + OWN_WRITE_WINDOW) {
+        it.remove();
+      }
+    }
+  }
+
+  private void watchDatasource(Path datasource) {
+    if (!Files.isDirectory(datasource)) {
+      LOGGER.warn("datasource '" + datasource + "' not available - not watching it");
+      return;
+    }
+
+    if (watchService != null && !isNetworkFilesystem(datasource)) {
+      if (registerRecursive(datasource)) {
+        LOGGER.info("watching datasource '" + datasource + "' for changes");
+        return;
+      }
+      // remove all registered keys of this data source and use polling instead
+      for (Iterator<Map.Entry<WatchKey, Path>> it = watchKeys.entrySet().iterator(); it.hasNext();) {
+        Map.Entry<WatchKey, Path> entry = it.next();
+        if (entry.getValue().startsWith(datasource)) {
+          entry.getKey().cancel();
+          it.remove();
+        }
+      }
+    }
+
+    LOGGER.info("polling datasource '" + datasource + "' for changes every " + (POLL_INTERVAL / 1000) + " s");
+    final Path polledDatasource = datasource;
+    final Map<Path, Long> knownDirs = new HashMap<>();
+    collectDirectories(datasource, knownDirs);
+    scheduler.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        poll(polledDatasource, knownDirs);
+      }
+    }, POLL_INTERVAL, POLL_INTERVAL, TimeUnit.MILLISECONDS);
+  }
+
+  private boolean isNetworkFilesystem(Path datasource) {
+    // UNC paths on windows
+    if (datasource.toString().startsWith("\\\\")) {
+      return true;
+    }
+    try {
+      String type = Files.getFileStore(datasource).type().toLowerCase(Locale.ROOT);
+      return NETWORK_FILESYSTEMS.contains(type);
+    }
+    catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * register the given folder and all sub folders at the watch service
+   *
+   * @param root
+   *          the root folder
+   * @return true if all folders could be registered
+   */
+  private boolean registerRecursive(Path root) {
+    final WatchService service = watchService;
+    if (service == null) {
+      return false;
+    }
+
+    try {
+      Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+          if (isIgnored(dir)) {
+            return SKIP_SUBTREE;
+          }
+          WatchKey key = dir.register(service, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+          watchKeys.put(key, dir);
+          return CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException exc) {
+          return CONTINUE;
+        }
+      });
+    }
+    catch (IOException | ClosedWatchServiceException e) {
+      // e.g. the inotify limit has been reached
+      LOGGER.warn("could not watch folder '" + root + "': " + e.getMessage());
+      return false;
+    }
+    return true;
+  }
+
+  private void processEvents(WatchService service) {
+    while (running) {
+      WatchKey key;
+      try {
+        key = service.poll(1, TimeUnit.SECONDS);
+      }
+      catch (InterruptedException | ClosedWatchServiceException e) {
+        break;
+      }
+      if (key == null) {
+        continue;
+      }
+
+      Path dir = watchKeys.get(key);
+      if (dir != null) {
+        for (WatchEvent<?> event : key.pollEvents()) {
+          if (event.kind() == OVERFLOW) {
+            // events got lost - check the whole folder
+            LOGGER.debug("watch service overflow in '" + dir + "'");
+            pathChanged(dir);
+            continue;
+          }
+
+          Path changed = dir.resolve((Path) event.context());
+          if (event.kind() == ENTRY_CREATE && Files.isDirectory(changed, LinkOption.NOFOLLOW_LINKS) && !registerRecursive(changed)) {
+            LOGGER.warn("changes in '" + changed + "' will not be detected");
+          }
+          pathChanged(changed);
+        }
+      }
+
+      if (!key.reset()) {
+        // folder has been deleted
+        watchKeys.remove(key);
+      }
+    }
+  }
+
+  private void poll(Path datasource, Map<Path, Long> knownDirs) {
+    if (!Files.isDirectory(datasource)) {
+      // mount is offline - do not remove anything
+      return;
+    }
+
+    for (Path dir : new ArrayList<>(knownDirs.keySet())) {
+      Long oldLastModified = knownDirs.get(dir);
+      if (oldLastModified == null) {
+        // already removed with its parent
+        continue;
+      }
+
+      long lastModified;
+      try {
+        lastModified = Files.getLastModifiedTime(dir).toMillis();
+      }
+      catch (IOException e) {
+        // folder vanished
+        removeDirectories(dir, knownDirs);
+        pathChanged(dir);
+        continue;
+      }
+
+      if (lastModified != oldLastModified) {
+        knownDirs.put(dir, lastModified);
+
+        // look for new sub folders
+        boolean containsFiles = false;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+          for (Path child : stream) {
+            if (Files.isDirectory(child)) {
+              if (!knownDirs.containsKey(child) && !isIgnored(child)) {
+                collectDirectories(child, knownDirs);
+                pathChanged(child);
+              }
+            }
+            else {
+              containsFiles = true;
+            }
+          }
+        }
+        catch (IOException e) {
+          LOGGER.debug("could not list folder '" + dir + "': " + e.getMessage());
+        }
+
+        // files inside this folder have been added/removed (and not by tmm itself)
+        if (containsFiles && !isOwnWrite(OWN_FOLDER_WRITES, dir, lastModified)) {
+          pathChanged(dir);
+        }
+      }
+    }
+  }
+
+  private void collectDirectories(Path root, final Map<Path, Long> knownDirs) {
+    try {
+      Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+          if (isIgnored(dir)) {
+            return SKIP_SUBTREE;
+          }
+          knownDirs.put(dir, attrs.lastModifiedTime().toMillis());
+          return CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException exc) {
+          return CONTINUE;
+        }
+      });
+    }
+    catch (IOException e) {
+      LOGGER.warn("could not read folder '" + root + "': " + e.getMessage());
+    }
+  }
+
+  private void removeDirectories(Path root, Map<Path, Long> knownDirs) {
+    for (Iterator<Path> it = knownDirs.keySet().iterator(); it.hasNext();) {
+      if (it.next().startsWith(root)) {
+        it.remove();
+      }
+    }
+  }
+
+  private boolean isIgnored(Path dir) {
+    // hidden folders and our own trash folder
+    Path filename = dir.getFileName();
+    return filename != null && (filename.toString().startsWith(".") || Constants.BACKUP_FOLDER.equals(filename.toString()));
+  }
+
+  private void pathChanged(Path path) {
+    // temporary files (our own downloads and partial downloads of browsers) and files written by tmm itself
+    if (path.getFileName() != null && path.getFileName().toString().endsWith(".part")) {
+      return;
+    }
+    if (isOwnWrite(OWN_WRITES, path, System.currentTimeMillis())) {
+      LOGGER.trace("ignoring own change of '" + path + "'");
+      return;
+    }
+
+    for (Path datasource : datasources) {
+      if (!path.startsWith(datasource)) {
+        continue;
+      }
+
+      // ignore changes in our trash or in hidden folders
+      for (Path part : datasource.relativize(path)) {
+        if (part.toString().startsWith(".")) {
+          return;
+        }
+      }
+
+      Path folder = resolveFolder(datasource, path);
+      if (folder != null) {
+        synchronized (pendingFolders) {
+          pendingFolders.put(folder, System.currentTimeMillis());
+          pendingDatasources.put(folder, datasource);
+        }
+      }
+      return;
+    }
+  }
+
+  private void flushPendingFolders() {
+    Map<Path, List<Path>> foldersPerDatasource = new HashMap<>();
+    long now = System.currentTimeMillis();
+    expireOwnWrites(now);
+
+    synchronized (pendingFolders) {
+      for (Iterator<Map.Entry<Path, Long>> it = pendingFolders.entrySet().iterator(); it.hasNext();) {
+        Map.Entry<Path, Long> entry = it.next();
+        if (now - entry.getValue() < QUIET_PERIOD) {
+          // still changing
+          continue;
+        }
+        Path datasource = pendingDatasources.remove(entry.getKey());
+        List<Path> folders = foldersPerDatasource.get(datasource);
+        if (folders == null) {
+          folders = new ArrayList<>();
+          foldersPerDatasource.put(datasource, folders);
+        }
+        folders.add(entry.getKey());
+        it.remove();
+      }
+    }
+
+    for (Map.Entry<Path, List<Path>> entry : foldersPerDatasource.entrySet()) {
+      List<Path> folders = coalesce(entry.getKey(), entry.getValue());
+      LOGGER.info("detected changes in " + folders.size() + " folder(s) of '" + entry.getKey() + "'");
+      try {
+        updateFolders(entry.getKey(), folders);
+      }
+      catch (Exception e) {
+        LOGGER.error("could not update changed folders: " + e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * remove all folders whose parent is also in the list (the data source root itself does not cover its sub folders)
+   */
+  private List<Path> coalesce(Path datasource, List<Path> folders) {
+    // parents are shorter than their children
+    Collections.sort(folders, new Comparator<Path>() {
+      @Override
+      public int compare(Path o1, Path o2) {
+        return o1.getNameCount() - o2.getNameCount();
+      }
+    });
+
+    List<Path> result = new ArrayList<>();
+    for (Path folder : folders) {
+      boolean covered = false;
+      for (Path parent : result) {
+        if (!parent.equals(datasource) && folder.startsWith(parent)) {
+          covered = true;
+          break;
+        }
+      }
+      if (!covered) {
+        result.add(folder);
+      }
+    }
+    return result;
+  }
+}
@@ -0,0 +1,392 @@
+/*
+ * Copyright 2012 - 2018 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The class DirectorySnapshot. Holds the last known state (modification time, sub directories, file sizes and modification times) of all
+ * directories inside a data source. The snapshot is persisted in an own small MVStore next to the module database and is used by the update
+ * data source tasks to skip unchanged sub trees.
+ *
+ * @author Manuel Laggner
+ */
+public class DirectorySnapshot {
+  private static final Logger               LOGGER        = LoggerFactory.getLogger(DirectorySnapshot.class);
+  private static final String               CONFIGURATION = "configuration";
+
+  private final Path                        storeFile;
+  private final String                      datasource;
+  private final String                      configuration;
+  private final MediaEntityLookup           lookup;
+
+  private final Map<String, DirectoryState> oldStates;
+  private final Map<String, DirectoryState> newStates     = new HashMap<>();
+
+  private DirectorySnapshot(Path storeFile, String datasource, String configuration, MediaEntityLookup lookup,
+      Map<String, DirectoryState> oldStates) {
+    this.storeFile = storeFile;
+    this.datasource = datasource;
+    this.configuration = configuration;
+    this.lookup = lookup;
+    this.oldStates = oldStates;
+  }
+
+  /**
+   * load the last snapshot of the given data source. If there is no snapshot or the configuration (skip folders, file types, ...) has changed
+   * since the last run, an empty snapshot is returned which results in a full scan
+   *
+   * @param storeFile
+   *          the file where the snapshots are stored
+   * @param datasource
+   *          the data source to load the snapshot for
+   * @param configuration
+   *          a string describing the scanner configuration
+   * @param lookup
+   *          the lookup to check whether a media entity is still known for a directory
+   * @return the snapshot (never null)
+   */
+  public static DirectorySnapshot load(Path storeFile, String datasource, String configuration, MediaEntityLookup lookup) {
+    Map<String, DirectoryState> states = new HashMap<>();
+
+    if (Files.exists(storeFile)) {
+      MVStore mvStore = null;
+      try {
+        mvStore = openStore(storeFile);
+        MVMap<String, String> configurationMap = mvStore.openMap(CONFIGURATION);
+        if (StringUtils.equals(configuration, configurationMap.get(datasource))) {
+          MVMap<String, DirectoryState> stateMap = mvStore.openMap(datasource);
+          states.putAll(stateMap);
+        }
+        else {
+          LOGGER.debug("no valid directory snapshot for '" + datasource + "' found");
+        }
+      }
+      catch (Exception e) {
+        LOGGER.warn("could not load directory snapshot for '" + datasource + "': " + e.getMessage());
+        states.clear();
+      }
+      finally {
+        closeStore(mvStore);
+      }
+    }
+
+    return new DirectorySnapshot(storeFile, datasource, configuration, lookup, states);
+  }
+
+  /**
+   * delete all snapshots in the given store file
+   *
+   * @param storeFile
+   *          the file where the snapshots are stored
+   */
+  public static void delete(Path storeFile) {
+    if (Files.exists(storeFile)) {
+      Utils.deleteFileSafely(storeFile);
+    }
+  }
+
+  /**
+   * is there any data from the last run?
+   *
+   * @return true if the snapshot contains data from the last run
+   */
+  public boolean isEmpty() {
+    return oldStates.isEmpty();
+  }
+
+  /**
+   * checks whether the given directory and all its sub directories are unchanged since the last snapshot. Only the directories which are
+   * known from the last snapshot will be checked; adding/removing files or directories changes the modification time of the parent, files
+   * which are changed in place (growing downloads, edited NFO/artwork files) are detected by their recorded size and modification time
+   *
+   * @param dir
+   *          the directory to check
+   * @param lastModified
+   *          the actual modification time of the directory
+   * @return true if the whole subtree is unchanged
+   */
+  public boolean isSubtreeUnchanged(Path dir, long lastModified) {
+    return isSubtreeUnchanged(dir, lastModified, false);
+  }
+
+  private boolean isSubtreeUnchanged(Path dir, long lastModified, boolean owned) {
+    DirectoryState state = oldStates.get(dir.toString());
+    if (state == null || state.lastModified != lastModified) {
+      return false;
+    }
+    if (state.ignored) {
+      return true;
+    }
+
+    // files changed in place do not change the modification time of the directory
+    if (!areFilesUnchanged(dir, state)) {
+      return false;
+    }
+
+    // the media entity for this directory has been removed from the database in the meantime
+    if (state.hasMediaEntity && !lookup.containsMediaEntity(dir)) {
+      return false;
+    }
+
+    // video files which belong to a media entity in an upper level (disc folders, stacked folders) - the upper level has to be parsed
+    owned = owned || state.hasMediaEntity;
+    if (state.containsVideo && !owned) {
+      return false;
+    }
+
+    for (String subDirectory : state.subDirectories) {
+      Path sub = dir.resolve(subDirectory);
+      long subLastModified;
+      try {
+        subLastModified = Files.getLastModifiedTime(sub).toMillis();
+      }
+      catch (IOException e) {
+        // directory vanished
+        return false;
+      }
+      if (!isSubtreeUnchanged(sub, subLastModified, owned)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean areFilesUnchanged(Path dir, DirectoryState state) {
+    if (state.files == null) {
+      // snapshot from an older version without file states
+      return false;
+    }
+
+    for (Map.Entry<String, FileState> entry : state.files.entrySet()) {
+      try {
+        BasicFileAttributes attributes = Files.readAttributes(dir.resolve(entry.getKey()), BasicFileAttributes.class);
+        if (attributes.size() != entry.getValue().size || attributes.lastModifiedTime().toMillis() != entry.getValue().lastModified) {
+          return false;
+        }
+      }
+      catch (IOException e) {
+        // file vanished
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * take over the state of the whole (unchanged) subtree into the new snapshot
+   *
+   * @param dir
+   *          the root of the subtree
+   * @param videoFolders
+   *          a collection where all known video folders inside the subtree will be added
+   * @return the amount of directories which have been taken over
+   */
+  public int carryOverSubtree(Path dir, Collection<Path> videoFolders) {
+    DirectoryState state = oldStates.get(dir.toString());
+    if (state == null) {
+      return 0;
+    }
+
+    registerInParent(dir);
+    newStates.put(dir.toString(), state);
+    if (state.containsVideo) {
+      videoFolders.add(dir);
+    }
+
+    int count = 1;
+    for (String subDirectory : state.subDirectories) {
+      count += carryOverSubtree(dir.resolve(subDirectory), videoFolders);
+    }
+    return count;
+  }
+
+  /**
+   * get the sum of all file sizes inside the given subtree (from the last snapshot)
+   *
+   * @param dir
+   *          the root of the subtree
+   * @return the size in bytes
+   */
+  public long getSubtreeSize(Path dir) {
+    DirectoryState state = oldStates.get(dir.toString());
+    if (state == null) {
+      return 0;
+    }
+
+    long size = state.size;
+    for (String subDirectory : state.subDirectories) {
+      size += getSubtreeSize(dir.resolve(subDirectory));
+    }
+    return size;
+  }
+
+  /**
+   * record a directory which has been visited in this run
+   *
+   * @param dir
+   *          the directory
+   * @param lastModified
+   *          the modification time of the directory
+   * @param ignored
+   *          the directory has been ignored by the scanner
+   */
+  public void recordDirectory(Path dir, long lastModified, boolean ignored) {
+    registerInParent(dir);
+
+    DirectoryState state = new DirectoryState();
+    state.lastModified = lastModified;
+    state.ignored = ignored;
+    newStates.put(dir.toString(), state);
+  }
+
+  /**
+   * record a file which has been visited in this run
+   *
+   * @param file
+   *          the file
+   * @param size
+   *          the size of the file
+   * @param lastModified
+   *          the modification time of the file
+   */
+  public void recordFile(Path file, long size, long lastModified) {
+    DirectoryState state = newStates.get(file.getParent().toString());
+    if (state != null) {
+      state.size += size;
+      state.files.put(file.getFileName().toString(), new FileState(size, lastModified));
+    }
+  }
+
+  /**
+   * mark the given directory as directory containing video files
+   *
+   * @param dir
+   *          the directory
+   */
+  public void recordVideoFolder(Path dir) {
+    DirectoryState state = newStates.get(dir.toString());
+    if (state != null) {
+      state.containsVideo = true;
+    }
+  }
+
+  private void registerInParent(Path dir) {
+    Path parent = dir.getParent();
+    if (parent == null || dir.getFileName() == null) {
+      return;
+    }
+    DirectoryState parentState = newStates.get(parent.toString());
+    if (parentState != null && !parentState.subDirectories.contains(dir.getFileName().toString())) {
+      parentState.subDirectories.add(dir.getFileName().toString());
+    }
+  }
+
+  /**
+   * persist the snapshot of this run (replaces the last snapshot of this data source)
+   */
+  public void save() {
+    // the media entities are known now - store where they are
+    for (Map.Entry<String, DirectoryState> entry : newStates.entrySet()) {
+      DirectoryState state = entry.getValue();
+      if (!state.ignored) {
+        state.hasMediaEntity = lookup.containsMediaEntity(Paths.get(entry.getKey()));
+      }
+    }
+
+    MVStore mvStore = null;
+    try {
+      mvStore = openStore(storeFile);
+      MVMap<String, DirectoryState> stateMap = mvStore.openMap(datasource);
+      stateMap.clear();
+      stateMap.putAll(newStates);
+      MVMap<String, String> configurationMap = mvStore.openMap(CONFIGURATION);
+      configurationMap.put(datasource, configuration);
+      mvStore.commit();
+    }
+    catch (Exception e) {
+      LOGGER.warn("could not save directory snapshot for '" + datasource + "': " + e.getMessage());
+    }
+    finally {
+      closeStore(mvStore);
+    }
+  }
+
+  private static MVStore openStore(Path storeFile) {
+    return new MVStore.Builder().fileName(storeFile.toString()).compress().open();
+  }
+
+  private static void closeStore(MVStore mvStore) {
+    if (mvStore != null && !mvStore.isClosed()) {
+      mvStore.close();
+    }
+  }
+
+  /**
+   * the interface MediaEntityLookup is used to check whether there is a media entity for a given directory
+   *
+   * @author Manuel Laggner
+   */
+  public interface MediaEntityLookup {
+    boolean containsMediaEntity(Path dir);
+  }
+
+  /**
+   * the state of a single directory
+   */
+  private static class DirectoryState implements Serializable {
+    private static final long      serialVersionUID = 4827161634926531077L;
+
+    private long                   lastModified     = 0;
+    private long                   size             = 0;
+    private boolean                ignored          = false;
+    private boolean                containsVideo    = false;
+    private boolean                hasMediaEntity   = false;
+    private List<String>           subDirectories   = new ArrayList<>(0);
+    private Map<String, FileState> files            = new HashMap<>();
+  }
+
+  /**
+   * the state of a single file
+   */
+  private static class FileState implements Serializable {
+    private static final long serialVersionUID = -2719470382938118650L;
+
+    private final long        size;
+    private final long        lastModified;
+
+    private FileState(long size, long lastModified) {
+      this.size = size;
+      this.lastModified = lastModified;
+    }
+  }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2012 - 2018 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.commons.lang3.StringUtils;
+import org.jdesktop.observablecollections.ObservableCollections;
+
+/**
+ * The class FacetRegistry. Keeps track of all distinct values of a facet (e.g. tags, codecs or certifications) which are used by the media
+ * entities. Every entity (owner) contributes its values to the registry and every value is reference counted, so a value vanishes from the
+ * registry if the last entity using it has been removed or changed.<br>
+ * Changes of the registry can be collected in a bulk operation, so that the observable list is changed only once at the end of the bulk
+ * operation
+ * 
+ * @author Manuel Laggner
+ */
+public class FacetRegistry<T> {
+  private final String              name;
+  private final List<T>             values;
+  private final Map<T, int[]>       counts  = new HashMap<>();
+  private final Map<Object, Set<T>> owners  = new IdentityHashMap<>();
+
+  private int                       bulkDepth;
+  private final Set<T>              added   = new LinkedHashSet<>();
+  private final Set<T>              removed = new HashSet<>();
+
+  /**
+   * create a new facet registry
+   * 
+   * @param name
+   *          the name of the facet (used as property name for the change events)
+   */
+  public FacetRegistry(String name) {
+    this.name = name;
+    this.values = ObservableCollections.observableList(new CopyOnWriteArrayList<T>());
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * get all values which are currently used
+   * 
+   * @return an observable list of all used values
+   */
+  public List<T> getValues() {
+    return values;
+  }
+
+  /**
+   * get the amount of owners using the given value
+   * 
+   * @param value
+   *          the value
+   * @return the amount of owners using this value
+   */
+  public synchronized int getCount(T value) {
+    int[] count = counts.get(value);
+    return count != null ? count[0] : 0;
+  }
+
+  /**
+   * set the values of the given owner; all values of the owner which are not in the given collection are released
+   * 
+   * @param owner
+   *          the owner of the values (e.g. the movie)
+   * @param newValues
+   *          all values of the owner (null and blank values are ignored)
+   * @return true if the list of used values has been changed (always false during a bulk operation)
+   */
+  public synchronized boolean set(Object owner, Collection<T> newValues) {
+    Set<T> valuesOfOwner = new HashSet<>();
+    if (newValues != null) {
+      for (T value : newValues) {
+        if (isValid(value)) {
+          valuesOfOwner.add(value);
+        }
+      }
+    }
+
+    Set<T> oldValues = valuesOfOwner.isEmpty() ? owners.remove(owner) : owners.put(owner, valuesOfOwner);
+    if (oldValues != null) {
+      for (T value : oldValues) {
+        if (!valuesOfOwner.contains(value)) {
+          release(value);
+        }
+      }
+    }
+    for (T value : valuesOfOwner) {
+      if (oldValues == null || !oldValues.contains(value)) {
+        acquire(value);
+      }
+    }
+
+    return flush();
+  }
+
+  /**
+   * set the value of the given owner
+   * 
+   * @param owner
+   *          the owner of the value (e.g. the movie)
+   * @param newValue
+   *          the value of the owner (null and blank values are ignored)
+   * @return true if the list of used values has been changed (always false during a bulk operation)
+   */
+  public synchronized boolean set(Object owner, T newValue) {
+    List<T> newValues = new ArrayList<>(1);
+    newValues.add(newValue);
+    return set(owner, newValues);
+  }
+
+  /**
+   * release all values of the given owner
+   * 
+   * @param owner
+   *          the owner of the values (e.g. the movie)
+   * @return true if the list of used values has been changed (always false during a bulk operation)
+   */
+  public synchronized boolean remove(Object owner) {
+    Set<T> oldValues = owners.remove(owner);
+    if (oldValues != null) {
+      for (T value : oldValues) {
+        release(value);
+      }
+    }
+    return flush();
+  }
+
+  /**
+   * start a bulk operation: the observable list is not changed until the (outermost) bulk operation has been finished
+   */
+  public synchronized void beginBulk() {
+    bulkDepth++;
+  }
+
+  /**
+   * finish a bulk operation
+   * 
+   * @return true if the list of used values has been changed while in bulk mode
+   */
+  public synchronized boolean endBulk() {
+    if (bulkDepth > 0) {
+      bulkDepth--;
+    }
+    return flush();
+  }
+
+  private void acquire(T value) {
+    int[] count = counts.get(value);
+    if (count == null) {
+      counts.put(value, new int[] { 1 });
+      if (!removed.remove(value)) {
+        added.add(value);
+      }
+    }
+    else {
+      count[0]++;
+    }
+  }
+
+  private void release(T value) {
+    int[] count = counts.get(value);
+    if (count == null) {
+      return;
+    }
+    if (--count[0] == 0) {
+      counts.remove(value);
+      if (!added.remove(value)) {
+        removed.add(value);
+      }
+    }
+  }
+
+  /**
+   * apply all pending changes to the observable list (if not in a bulk operation)
+   */
+  private boolean flush() {
+    if (bulkDepth > 0 || (added.isEmpty() && removed.isEmpty())) {
+      return false;
+    }
+
+    if (!removed.isEmpty()) {
+      values.removeAll(removed);
+      removed.clear();
+    }
+    if (!added.isEmpty()) {
+      values.addAll(added);
+      added.clear();
+    }
+    return true;
+  }
+
+  private boolean isValid(T value) {
+    if (value == null) {
+      return false;
+    }
+    if (value instanceof CharSequence) {
+      return StringUtils.isNotBlank((CharSequence) value);
+    }
+    return true;
+  }
+}
@@ -15,6 +15,7 @@
  */
 package org.tinymediamanager.core;
 
+import java.awt.Dimension;
 import java.awt.Image;
 import java.awt.Point;
 import java.awt.Toolkit;
@@ -26,18 +27,23 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
 import javax.imageio.ImageWriteParam;
 import javax.imageio.ImageWriter;
 import javax.imageio.plugins.jpeg.JPEGImageWriteParam;
 import javax.imageio.stream.FileImageOutputStream;
+import javax.imageio.stream.ImageInputStream;
 import javax.imageio.stream.ImageOutputStream;
 
 import org.apache.commons.codec.binary.Hex;
@@ -66,6 +72,11 @@ public class ImageCache {
     SMOOTH
   }
 
+  public enum EvictionPolicy {
+    LRU,
+    LFU
+  }
+
   /**
    * Gets the cache dir. If it is not on the disk - it will also create it
    * 
@@ -255,120 +266,241 @@ public class ImageCache {
   /**
    * Cache image.
    * 
-   * @param mf
-   *          the media file
+   * @param originalFile
+   *          the original file
    * @return the file the cached file
    * @throws Exception
    */
   public static Path cacheImage(Path originalFile) throws Exception {
-    MediaFile mf = new MediaFile(originalFile);
-    Path cachedFile = ImageCache.getCacheDir().resolve(getMD5(originalFile.toString()) + "." + Utils.getExtension(originalFile));
-    if (!Files.exists(cachedFile)) {
-      // check if the original file exists && size > 0
-      if (!Files.exists(originalFile)) {
-        throw new FileNotFoundException("unable to cache file: " + originalFile + "; file does not exist");
+    Path cachedFile = getCacheFile(originalFile);
+    if (!isCacheUpToDate(originalFile, cachedFile)) {
+      BufferedImage originalImage = decodeImage(originalFile);
+      BufferedImage scaledImage = scaleForCache(originalFile, originalImage);
+      originalImage = null;
+      encodeImage(originalFile, scaledImage, cachedFile);
+    }
+
+    return cachedFile;
+  }
+
+  /**
+   * get the file in the image cache for the given original file
+   * 
+   * @param originalFile
+   *          the original file
+   * @return the path of the cached file (which may not exist yet)
+   */
+  public static Path getCacheFile(Path originalFile) {
+    return ImageCache.getCacheDir().resolve(getMD5(originalFile.toString()) + "." + Utils.getExtension(originalFile));
+  }
+
+  /**
+   * checks whether the cached file exists and is not older than the original file
+   * 
+   * @param originalFile
+   *          the original file
+   * @param cachedFile
+   *          the cached file
+   * @return true if there is no need to cache the original file again
+   */
+  public static boolean isCacheUpToDate(Path originalFile, Path cachedFile) {
+    try {
+      long cached = Files.getLastModifiedTime(cachedFile).toMillis();
+      try {
+        return cached >= Files.getLastModifiedTime(originalFile).toMillis();
       }
-      if (Files.size(originalFile) == 0) {
-        throw new EmptyFileException(originalFile);
+      catch (IOException e) {
+        // original not accessible (offline data source) - take the cached one
+        return true;
       }
+    }
+    catch (IOException e) {
+      // not cached yet
+      return false;
+    }
+  }
 
-      // recreate cache dir if needed
-      // rescale & cache
-      BufferedImage originalImage = null;
+  /**
+   * first stage of caching: decode the original file
+   * 
+   * @param originalFile
+   *          the original file
+   * @return the decoded image
+   * @throws Exception
+   *           if the file does not exist, is empty or cannot be decoded
+   */
+  public static BufferedImage decodeImage(Path originalFile) throws Exception {
+    // check if the original file exists && size > 0
+    if (!Files.exists(originalFile)) {
+      throw new FileNotFoundException("unable to cache file: " + originalFile + "; file does not exist");
+    }
+    if (Files.size(originalFile) == 0) {
+      throw new EmptyFileException(originalFile);
+    }
+
+    try {
+      return createImage(originalFile);
+    }
+    catch (Exception e) {
+      throw new Exception("cannot create image - file seems not to be valid? " + originalFile);
+    }
+  }
+
+  /**
+   * read the dimensions of the image from its header (without decoding the image)
+   * 
+   * @param originalFile
+   *          the original file
+   * @return the dimensions of the image or null if they could not be read
+   */
+  public static Dimension readImageSize(Path originalFile) {
+    try (ImageInputStream input = ImageIO.createImageInputStream(originalFile.toFile())) {
+      if (input == null) {
+        return null;
+      }
+      Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+      if (!readers.hasNext()) {
+        return null;
+      }
+      ImageReader reader = readers.next();
       try {
-        originalImage = createImage(originalFile);
+        reader.setInput(input, true, true);
+        return new Dimension(reader.getWidth(0), reader.getHeight(0));
       }
-      catch (Exception e) {
-        throw new Exception("cannot create image - file seems not to be valid? " + originalFile);
+      finally {
+        reader.dispose();
       }
+    }
+    catch (Exception e) {
+      LOGGER.trace("could not read the image size of " + originalFile + ": " + e.getMessage());
+      return null;
+    }
+  }
 
-      // calculate width based on MF type
-      int desiredWidth = originalImage.getWidth(); // initialize with fallback
-      switch (mf.getType()) {
-        case FANART:
-          if (originalImage.getWidth() > 1000) {
-            desiredWidth = 1000;
-          }
-          break;
-
-        case POSTER:
-          if (originalImage.getHeight() > 500) {
-            desiredWidth = 350;
-          }
-          break;
-
-        case EXTRAFANART:
-        case THUMB:
-        case BANNER:
-        case GRAPHIC:
-          desiredWidth = 300;
-          break;
-
-        default:
-          break;
-      }
+  /**
+   * second stage of caching: scale the decoded image to the size needed for the cache
+   * 
+   * @param originalFile
+   *          the original file (needed to get the artwork type)
+   * @param originalImage
+   *          the decoded image
+   * @return the scaled image
+   */
+  public static BufferedImage scaleForCache(Path originalFile, BufferedImage originalImage) {
+    MediaFile mf = new MediaFile(originalFile);
 
-      // special handling for movieset-fanart or movieset-poster
-      if (mf.getFilename().startsWith("movieset-fanart") || mf.getFilename().startsWith("movieset-poster")) {
+    // calculate width based on MF type
+    int desiredWidth = originalImage.getWidth(); // initialize with fallback
+    switch (mf.getType()) {
+      case FANART:
         if (originalImage.getWidth() > 1000) {
           desiredWidth = 1000;
         }
-      }
+        break;
+
+      case POSTER:
+        if (originalImage.getHeight() > 500) {
+          desiredWidth = 350;
+        }
+        break;
 
-      Point size = calculateSize(desiredWidth, (int) (originalImage.getHeight() / 1.5), originalImage.getWidth(), originalImage.getHeight(), true);
-      BufferedImage scaledImage = null;
+      case EXTRAFANART:
+      case THUMB:
+      case BANNER:
+      case GRAPHIC:
+        desiredWidth = 300;
+        break;
 
-      if (Globals.settings.getImageCacheType() == CacheType.FAST) {
-        // scale fast
-        scaledImage = Scalr.resize(originalImage, Scalr.Method.BALANCED, Scalr.Mode.FIT_EXACT, size.x, size.y);
-      }
-      else {
-        // scale with good quality
-        scaledImage = Scalr.resize(originalImage, Scalr.Method.QUALITY, Scalr.Mode.FIT_EXACT, size.x, size.y);
+      default:
+        break;
+    }
+
+    // special handling for movieset-fanart or movieset-poster
+    if (mf.getFilename().startsWith("movieset-fanart") || mf.getFilename().startsWith("movieset-poster")) {
+      if (originalImage.getWidth() > 1000) {
+        desiredWidth = 1000;
       }
-      originalImage = null;
+    }
 
-      ImageWriter imgWrtr = null;
-      ImageWriteParam imgWrtrPrm = null;
+    Point size = calculateSize(desiredWidth, (int) (originalImage.getHeight() / 1.5), originalImage.getWidth(), originalImage.getHeight(), true);
 
-      // here we have two different ways to create our thumb
-      // a) a scaled down jpg/png (without transparency) which we have to modify since OpenJDK cannot call native jpg encoders
-      // b) a scaled down png (with transparency) which we can store without any more modifying as png
-      if (hasTransparentPixels(scaledImage)) {
-        // transparent image -> png
-        imgWrtr = ImageIO.getImageWritersByFormatName("png").next();
-        imgWrtrPrm = imgWrtr.getDefaultWriteParam();
+    if (Globals.settings.getImageCacheType() == CacheType.FAST) {
+      // scale fast
+      return Scalr.resize(originalImage, Scalr.Method.BALANCED, Scalr.Mode.FIT_EXACT, size.x, size.y);
+    }
+    // scale with good quality
+    return Scalr.resize(originalImage, Scalr.Method.QUALITY, Scalr.Mode.FIT_EXACT, size.x, size.y);
+  }
 
-      }
-      else {
-        // non transparent image -> jpg
-        // convert to rgb
-        BufferedImage rgb = new BufferedImage(scaledImage.getWidth(), scaledImage.getHeight(), BufferedImage.TYPE_INT_RGB);
-        ColorConvertOp xformOp = new ColorConvertOp(null);
-        xformOp.filter(scaledImage, rgb);
-        imgWrtr = ImageIO.getImageWritersByFormatName("jpg").next();
-        imgWrtrPrm = imgWrtr.getDefaultWriteParam();
-        imgWrtrPrm.setCompressionMode(JPEGImageWriteParam.MODE_EXPLICIT);
-        imgWrtrPrm.setCompressionQuality(0.80f);
-
-        scaledImage = rgb;
-      }
+  /**
+   * last stage of caching: encode the scaled image and write it into the cache
+   * 
+   * @param originalFile
+   *          the original file
+   * @param scaledImage
+   *          the scaled image
+   * @param cachedFile
+   *          the destination in the cache
+   * @throws Exception
+   *           if the cached file could not be written
+   */
+  public static void encodeImage(Path originalFile, BufferedImage scaledImage, Path cachedFile) throws Exception {
+    ImageWriter imgWrtr = null;
+    ImageWriteParam imgWrtrPrm = null;
+
+    // here we have two different ways to create our thumb
+    // a) a scaled down jpg/png (without transparency) which we have to modify since OpenJDK cannot call native jpg encoders
+    // b) a scaled down png (with transparency) which we can store without any more modifying as png
+    if (hasTransparentPixels(scaledImage)) {
+      // transparent image -> png
+      imgWrtr = ImageIO.getImageWritersByFormatName("png").next();
+      imgWrtrPrm = imgWrtr.getDefaultWriteParam();
+
+    }
+    else {
+      // non transparent image -> jpg
+      // convert to rgb
+      BufferedImage rgb = new BufferedImage(scaledImage.getWidth(), scaledImage.getHeight(), BufferedImage.TYPE_INT_RGB);
+      ColorConvertOp xformOp = new ColorConvertOp(null);
+      xformOp.filter(scaledImage, rgb);
+      imgWrtr = ImageIO.getImageWritersByFormatName("jpg").next();
+      imgWrtrPrm = imgWrtr.getDefaultWriteParam();
+      imgWrtrPrm.setCompressionMode(JPEGImageWriteParam.MODE_EXPLICIT);
+      imgWrtrPrm.setCompressionQuality(0.80f);
+
+      scaledImage = rgb;
+    }
 
-      FileImageOutputStream output = new FileImageOutputStream(cachedFile.toFile());
+    // write to a temporary file first; several images may be cached in parallel and readers should never see half written files
+    Path tempFile = cachedFile.resolveSibling(cachedFile.getFileName() + ".part");
+    FileImageOutputStream output = new FileImageOutputStream(tempFile.toFile());
+    boolean written = false;
+    try {
       imgWrtr.setOutput(output);
       IIOImage image = new IIOImage(scaledImage, null, null);
       imgWrtr.write(null, image, imgWrtrPrm);
-      imgWrtr.dispose();
       output.flush();
+      written = true;
+    }
+    finally {
+      imgWrtr.dispose();
       output.close();
-      scaledImage = null;
-
-      if (!Files.exists(cachedFile)) {
-        throw new Exception("unable to cache file: " + originalFile);
+      if (!written) {
+        Files.deleteIfExists(tempFile);
       }
     }
 
-    return cachedFile;
+    try {
+      Files.move(tempFile, cachedFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    catch (AtomicMoveNotSupportedException e) {
+      Files.move(tempFile, cachedFile, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    if (!Files.exists(cachedFile)) {
+      throw new Exception("unable to cache file: " + originalFile);
+    }
+    ImageCacheIndex.getInstance().recordStore(cachedFile);
   }
 
   private static boolean hasTransparentPixels(BufferedImage image) {
@@ -393,6 +525,7 @@ public class ImageCache {
     Path cachedFile = getCacheDir().resolve(ImageCache.getMD5(path.toAbsolutePath().toString()) + "." + Utils.getExtension(path));
     if (Files.exists(cachedFile)) {
       Utils.deleteFileSafely(cachedFile);
+      ImageCacheIndex.getInstance().recordRemoval(cachedFile);
     }
   }
 
@@ -416,6 +549,7 @@ public class ImageCache {
     Path cachedFile = ImageCache.getCacheDir().resolve(getMD5(url) + "." + ext);
     if (Files.exists(cachedFile)) {
       LOGGER.trace("found cached url :) " + url);
+      ImageCacheIndex.getInstance().recordHit(cachedFile);
       return cachedFile;
     }
 
@@ -424,11 +558,13 @@ public class ImageCache {
       return null;
     }
 
+    ImageCacheIndex.getInstance().recordMiss();
     try {
       Url u = new Url(url);
       boolean ok = u.download(cachedFile);
       if (ok) {
         LOGGER.trace("cached url successfully :) " + url);
+        ImageCacheIndex.getInstance().recordStore(cachedFile);
         return cachedFile;
       }
     }
@@ -457,6 +593,7 @@ public class ImageCache {
     Path cachedFile = ImageCache.getCacheDir().resolve(getMD5(path.toString()) + "." + Utils.getExtension(path));
     if (Files.exists(cachedFile)) {
       LOGGER.trace("found cached file :) " + path);
+      ImageCacheIndex.getInstance().recordHit(cachedFile);
       return cachedFile;
     }
 
@@ -474,6 +611,7 @@ public class ImageCache {
       return null;
     }
 
+    ImageCacheIndex.getInstance().recordMiss();
     try {
       Path p = ImageCache.cacheImage(path);
       LOGGER.trace("cached file successfully :) " + p);
@@ -525,10 +663,7 @@ public class ImageCache {
     List<MediaFile> mediaFiles = new ArrayList<>(entity.getMediaFiles());
     for (MediaFile mediaFile : mediaFiles) {
       if (mediaFile.isGraphic()) {
-        Path file = ImageCache.getCachedFile(mediaFile.getFileAsPath());
-        if (file != null) {
-          Utils.deleteFileSafely(file);
-        }
+        invalidateCachedImage(mediaFile.getFileAsPath());
       }
     }
   }
@@ -0,0 +1,393 @@
+/*
+ * Copyright 2012 - 2018 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tinymediamanager.Globals;
+import org.tinymediamanager.core.ImageCache.EvictionPolicy;
+
+/**
+ * The class ImageCacheIndex. Keeps track of all files in the image cache (size, last access, access count) to keep the cache below the
+ * configured size. If the cache grows too large, the least recently (LRU) or least frequently (LFU) used files are removed. Additionally
+ * the hits/misses and the transferred bytes are counted
+ * 
+ * @author Manuel Laggner
+ */
+public class ImageCacheIndex {
+  private static final Logger              LOGGER        = LoggerFactory.getLogger(ImageCacheIndex.class);
+  // evict down to 90% of the maximum size to not evict on every newly cached file
+  private static final double              LOW_WATERMARK = 0.9;
+  private static final ImageCacheIndex     INSTANCE      = new ImageCacheIndex();
+
+  private volatile Map<String, CacheEntry> entries       = null;
+  private volatile long                    totalBytes    = 0;
+  private volatile boolean                 initializing  = false;
+
+  private final AtomicLong                 hits          = new AtomicLong(0);
+  private final AtomicLong                 misses        = new AtomicLong(0);
+  private final AtomicLong                 bytesServed   = new AtomicLong(0);
+  private final AtomicLong                 bytesWritten  = new AtomicLong(0);
+  private final AtomicLong                 evictedFiles  = new AtomicLong(0);
+  private final AtomicLong                 evictedBytes  = new AtomicLong(0);
+
+  private ImageCacheIndex() {
+  }
+
+  public static ImageCacheIndex getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * build the index from the files in the cache folder (the modification date is the best guess for the last access). The folder is scanned
+   * without holding the lock of the index, so the recording methods (which are called from the UI) are never blocked by the scan
+   */
+  private void initialize() {
+    if (entries != null) {
+      return;
+    }
+    Map<String, CacheEntry> files = new HashMap<>();
+    long bytes = 0;
+
+    Path cacheDir = ImageCache.getCacheDir();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(cacheDir)) {
+      for (Path file : stream) {
+        BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        if (attrs.isRegularFile()) {
+          CacheEntry entry = new CacheEntry(attrs.size(), attrs.lastModifiedTime().toMillis());
+          files.put(file.getFileName().toString(), entry);
+          bytes += entry.size;
+        }
+      }
+    }
+    catch (IOException e) {
+      LOGGER.warn("could not read image cache folder: " + e.getMessage());
+    }
+
+    synchronized (this) {
+      if (entries == null) {
+        totalBytes = bytes;
+        entries = files;
+        LOGGER.debug("image cache contains " + entries.size() + " files (" + FileUtils.byteCountToDisplaySize(totalBytes) + ")");
+      }
+      initializing = false;
+    }
+  }
+
+  /**
+   * checks whether the index is available; if not, building the index is started in a background thread (if not already running)
+   * 
+   * @return true if the index is available
+   */
+  private synchronized boolean isInitialized() {
+    if (entries != null) {
+      return true;
+    }
+    if (initializing) {
+      return false;
+    }
+    initializing = true;
+    Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        initialize();
+      }
+    }, "imagecache-index");
+    thread.setDaemon(true);
+    thread.start();
+    return false;
+  }
+
+  /**
+   * a cached file has been served
+   * 
+   * @param cachedFile
+   *          the file in the cache
+   */
+  public synchronized void recordHit(Path cachedFile) {
+    hits.incrementAndGet();
+    if (!isInitialized()) {
+      // the file will be picked up by the scan
+      return;
+    }
+    CacheEntry entry = entries.get(cachedFile.getFileName().toString());
+    if (entry == null) {
+      // created by someone else (e.g. artwork of movie sets)
+      entry = createEntry(cachedFile);
+    }
+    if (entry != null) {
+      entry.lastAccess = System.currentTimeMillis();
+      entry.accessCount++;
+      bytesServed.addAndGet(entry.size);
+    }
+  }
+
+  /**
+   * the requested file was not in the cache
+   */
+  public void recordMiss() {
+    misses.incrementAndGet();
+  }
+
+  /**
+   * a file has been written into the cache. If the cache exceeds its maximum size, the eviction will be started
+   * 
+   * @param cachedFile
+   *          the file in the cache
+   */
+  public synchronized void recordStore(Path cachedFile) {
+    if (!isInitialized()) {
+      // the file will be picked up by the scan
+      return;
+    }
+    removeEntry(cachedFile.getFileName().toString());
+    CacheEntry entry = createEntry(cachedFile);
+    if (entry != null) {
+      bytesWritten.addAndGet(entry.size);
+    }
+    evict();
+  }
+
+  /**
+   * a file has been removed from the cache
+   * 
+   * @param cachedFile
+   *          the file in the cache
+   */
+  public synchronized void recordRemoval(Path cachedFile) {
+    if (entries != null) {
+      removeEntry(cachedFile.getFileName().toString());
+    }
+  }
+
+  /**
+   * the whole cache has been cleared
+   */
+  public synchronized void reset() {
+    entries = null;
+    totalBytes = 0;
+  }
+
+  private CacheEntry createEntry(Path cachedFile) {
+    try {
+      CacheEntry entry = new CacheEntry(Files.size(cachedFile), System.currentTimeMillis());
+      entries.put(cachedFile.getFileName().toString(), entry);
+      totalBytes += entry.size;
+      return entry;
+    }
+    catch (IOException e) {
+      return null;
+    }
+  }
+
+  private void removeEntry(String filename) {
+    CacheEntry entry = entries.remove(filename);
+    if (entry != null) {
+      totalBytes -= entry.size;
+    }
+  }
+
+  /**
+   * remove files until the cache is below its maximum size again
+   */
+  private void evict() {
+    long maxBytes = Globals.settings.getImageCacheSize() * 1024L * 1024L;
+    if (maxBytes <= 0 || totalBytes <= maxBytes) {
+      return;
+    }
+
+    List<Map.Entry<String, CacheEntry>> candidates = new ArrayList<>(entries.entrySet());
+    if (Globals.settings.getImageCacheEviction() == EvictionPolicy.LFU) {
+      Collections.sort(candidates, new Comparator<Map.Entry<String, CacheEntry>>() {
+        @Override
+        public int compare(Map.Entry<String, CacheEntry> o1, Map.Entry<String, CacheEntry> o2) {
+          int result = Long.compare(o1.getValue().accessCount, o2.getValue().accessCount);
+          if (result == 0) {
+            result = Long.compare(o1.getValue().lastAccess, o2.getValue().lastAccess);
+          }
+          return result;
+        }
+      });
+    }
+    else {
+      Collections.sort(candidates, new Comparator<Map.Entry<String, CacheEntry>>() {
+        @Override
+        public int compare(Map.Entry<String, CacheEntry> o1, Map.Entry<String, CacheEntry> o2) {
+          return Long.compare(o1.getValue().lastAccess, o2.getValue().lastAccess);
+        }
+      });
+    }
+
+    long target = (long) (maxBytes * LOW_WATERMARK);
+    int count = 0;
+    long bytes = 0;
+    List<String> toRemove = new ArrayList<>();
+    for (Map.Entry<String, CacheEntry> candidate : candidates) {
+      if (totalBytes - bytes <= target) {
+        break;
+      }
+      toRemove.add(candidate.getKey());
+      bytes += candidate.getValue().size;
+    }
+
+    Path cacheDir = ImageCache.getCacheDir();
+    for (String filename : toRemove) {
+      try {
+        Files.deleteIfExists(cacheDir.resolve(filename));
+        removeEntry(filename);
+        count++;
+      }
+      catch (IOException e) {
+        LOGGER.debug("could not remove " + filename + " from the image cache: " + e.getMessage());
+      }
+    }
+
+    evictedFiles.addAndGet(count);
+    evictedBytes.addAndGet(bytes);
+    LOGGER.info("image cache exceeded " + FileUtils.byteCountToDisplaySize(maxBytes) + " - removed " + count + " files ("
+        + FileUtils.byteCountToDisplaySize(bytes) + ", " + Globals.settings.getImageCacheEviction() + ")");
+  }
+
+  /**
+   * remove all files from the cache which do not belong to the given original images or artwork urls (any more)
+   * 
+   * @param originalFiles
+   *          all original images which should be kept in the cache
+   * @param artworkUrls
+   *          all artwork urls (or paths of images which are cached on demand like actor thumbs) which should be kept in the cache
+   * @return the amount of removed files
+   */
+  public int sweepOrphans(Collection<Path> originalFiles, Collection<String> artworkUrls) {
+    // called from a background task - we can wait for the scan here
+    initialize();
+    return removeOrphans(originalFiles, artworkUrls);
+  }
+
+  private synchronized int removeOrphans(Collection<Path> originalFiles, Collection<String> artworkUrls) {
+    if (entries == null) {
+      // reset in the meantime
+      return 0;
+    }
+
+    // the files in the cache are named by the MD5 hash of their source (+ extension)
+    Set<String> valid = new HashSet<>();
+    for (Path originalFile : originalFiles) {
+      valid.add(ImageCache.getMD5(originalFile.toAbsolutePath().toString()));
+    }
+    for (String artworkUrl : artworkUrls) {
+      valid.add(ImageCache.getMD5(artworkUrl));
+    }
+
+    Path cacheDir = ImageCache.getCacheDir();
+    int count = 0;
+    long bytes = 0;
+    for (String filename : new ArrayList<>(entries.keySet())) {
+      if (valid.contains(StringUtils.substringBefore(filename, "."))) {
+        continue;
+      }
+      try {
+        long size = entries.get(filename).size;
+        Files.deleteIfExists(cacheDir.resolve(filename));
+        removeEntry(filename);
+        count++;
+        bytes += size;
+      }
+      catch (IOException e) {
+        LOGGER.debug("could not remove " + filename + " from the image cache: " + e.getMessage());
+      }
+    }
+
+    LOGGER.info("removed " + count + " orphaned files from the image cache (" + FileUtils.byteCountToDisplaySize(bytes) + ")");
+    return count;
+  }
+
+  /**
+   * get the actual size of the cache. Does not block: if the index is not built yet, the scan of the cache folder is started in the
+   * background
+   * 
+   * @return the size in bytes or -1 if the index is not available yet
+   */
+  public synchronized long getSize() {
+    if (!isInitialized()) {
+      return -1;
+    }
+    return totalBytes;
+  }
+
+  /**
+   * get the hit rate of this session
+   * 
+   * @return the hit rate in percent
+   */
+  public int getHitRate() {
+    long requests = hits.get() + misses.get();
+    return requests > 0 ? (int) (hits.get() * 100 / requests) : 0;
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  public long getBytesServed() {
+    return bytesServed.get();
+  }
+
+  public long getBytesWritten() {
+    return bytesWritten.get();
+  }
+
+  /**
+   * write the statistics of this session to the log
+   */
+  public void logStatistics() {
+    LOGGER.info("image cache statistics: " + hits.get() + " hits (" + FileUtils.byteCountToDisplaySize(bytesServed.get()) + "), " + misses.get()
+        + " misses, " + FileUtils.byteCountToDisplaySize(bytesWritten.get()) + " written, " + evictedFiles.get() + " files evicted ("
+        + FileUtils.byteCountToDisplaySize(evictedBytes.get()) + "), actual size " + FileUtils.byteCountToDisplaySize(totalBytes));
+  }
+
+  private static class CacheEntry {
+    private final long size;
+    private long       lastAccess;
+    private long       accessCount = 0;
+
+    private CacheEntry(long size, long lastAccess) {
+      this.size = size;
+      this.lastAccess = lastAccess;
+    }
+  }
+}
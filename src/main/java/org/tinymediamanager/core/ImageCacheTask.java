@@ -15,29 +15,59 @@
  */
 package org.tinymediamanager.core;
 
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Locale;
 import java.util.ResourceBundle;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tinymediamanager.core.threading.TmmTask;
+import org.tinymediamanager.core.threading.TmmThreadPool;
 import org.tinymediamanager.ui.UTF8Control;
 
 /**
- * The Class ImageCacheTask. Cache a bunch of images in a separate task
+ * The Class ImageCacheTask. Cache a bunch of images in a separate task. The images are processed in a pipeline with separate stages for
+ * decoding, scaling and encoding; the stages are connected by bounded queues and the amount of decoded (full size) images in memory is
+ * limited by a memory budget
  * 
  * @author Manuel Laggner
  */
 public class ImageCacheTask extends TmmTask {
   private static final Logger         LOGGER       = LoggerFactory.getLogger(ImageCacheTask.class);
   private static final ResourceBundle BUNDLE       = ResourceBundle.getBundle("messages", new UTF8Control()); //$NON-NLS-1$
+  private static final int            QUEUE_SIZE   = 4;
+  // assumed size of an image whose dimensions cannot be read from the header (a decoded 1920x1080 image)
+  private static final int            DEFAULT_KB   = 1920 * 1080 * 4 / 1024;
 
   private List<Path>                  filesToCache = new ArrayList<>();
+  private Collection<String>          artworkUrls  = null;
+
+  private final AtomicBoolean         aborted      = new AtomicBoolean(false);
+  private final AtomicInteger         cached       = new AtomicInteger(0);
+  private final AtomicInteger         skipped      = new AtomicInteger(0);
+  private final AtomicInteger         failed       = new AtomicInteger(0);
+  private Semaphore                   memoryBudget;
+  private int                         budgetKb;
+  private CountDownLatch              finished;
+  private ExecutorService             decoder;
+  private ExecutorService             scaler;
+  private ExecutorService             encoder;
 
   public ImageCacheTask(String pathToFile) {
     super(BUNDLE.getString("tmm.rebuildimagecache"), 1, TaskType.BACKGROUND_TASK);
@@ -60,27 +90,245 @@ public class ImageCacheTask extends TmmTask {
     filesToCache.addAll(files);
   }
 
+  /**
+   * cache the given files and remove all other files (which do not belong to the given files or artwork urls) from the image cache
+   * 
+   * @param files
+   *          all images to be cached
+   * @param artworkUrls
+   *          all artwork urls (or paths of images which are cached on demand like actor thumbs) which are cached
+   */
+  public ImageCacheTask(List<Path> files, Collection<String> artworkUrls) {
+    this(files);
+    this.artworkUrls = new ArrayList<>(artworkUrls);
+  }
+
   @Override
   protected void doInBackground() {
-    int i = 0;
-    for (Path fileToCache : filesToCache) {
+    if (artworkUrls != null) {
+      ImageCacheIndex.getInstance().sweepOrphans(filesToCache, artworkUrls);
+    }
+
+    if (filesToCache.isEmpty()) {
+      return;
+    }
+
+    long start = System.currentTimeMillis();
+
+    // a single image does not need the whole pipeline
+    if (filesToCache.size() == 1) {
+      Path fileToCache = filesToCache.get(0);
+      publishState(1);
       try {
+        if (ImageCache.isCacheUpToDate(fileToCache, ImageCache.getCacheFile(fileToCache))) {
+          skipped.incrementAndGet();
+        }
+        else {
+          ImageCache.cacheImage(fileToCache);
+          cached.incrementAndGet();
+        }
+      }
+      catch (Exception e) {
+        logFailure(fileToCache, e);
+      }
+      return;
+    }
+
+    startPipeline();
+    try {
+      for (final Path fileToCache : filesToCache) {
         if (cancel) {
-          return;
+          aborted.set(true);
+          break;
         }
+        // a full decoder queue lets this thread decode the image itself
+        decoder.execute(new Runnable() {
+          @Override
+          public void run() {
+            decode(fileToCache);
+          }
+        });
+      }
 
-        publishState(++i);
-        ImageCache.cacheImage(fileToCache);
+      // wait for the pipeline and report the progress
+      int done = 0;
+      while (done < filesToCache.size()) {
+        if (cancel) {
+          aborted.set(true);
+          break;
+        }
+        try {
+          finished.await(1, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e) {
+          aborted.set(true);
+          Thread.currentThread().interrupt();
+          break;
+        }
+        done = (int) (filesToCache.size() - finished.getCount());
+        publishState(getThroughput(done, start), done);
       }
-      catch (EmptyFileException e) {
-        LOGGER.warn("failed to cache file (file is empty): " + fileToCache);
+    }
+    finally {
+      stopPipeline();
+    }
+
+    long duration = System.currentTimeMillis() - start;
+    LOGGER.info("image cache: " + cached.get() + " images cached, " + skipped.get() + " up to date, " + failed.get() + " failed in " + duration
+        + " ms (" + getThroughput(cached.get() + skipped.get() + failed.get(), start) + ")" + (aborted.get() ? " - cancelled" : ""));
+  }
+
+  private void startPipeline() {
+    int cores = Runtime.getRuntime().availableProcessors();
+
+    // a quarter of the heap may be occupied by decoded images waiting for being scaled
+    budgetKb = (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 4 / 1024);
+    memoryBudget = new Semaphore(budgetKb);
+    finished = new CountDownLatch(filesToCache.size());
+
+    // decoding and encoding are mostly I/O bound, scaling is CPU bound; a full queue lets the previous stage do the work itself
+    decoder = createStage(Math.max(1, cores / 2), "imagecache-decode");
+    scaler = createStage(cores, "imagecache-scale");
+    encoder = createStage(Math.max(1, cores / 2), "imagecache-encode");
+  }
+
+  private ExecutorService createStage(int threads, String name) {
+    return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(threads * QUEUE_SIZE),
+        new TmmThreadPool.TmmThreadFactory(name), new ThreadPoolExecutor.CallerRunsPolicy());
+  }
+
+  private void stopPipeline() {
+    if (aborted.get()) {
+      decoder.shutdownNow();
+      scaler.shutdownNow();
+      encoder.shutdownNow();
+    }
+    else {
+      decoder.shutdown();
+      scaler.shutdown();
+      encoder.shutdown();
+    }
+  }
+
+  /**
+   * stage 1: decode the original image (if not already cached)
+   */
+  private void decode(final Path fileToCache) {
+    if (aborted.get()) {
+      finished.countDown();
+      return;
+    }
+
+    final Path cachedFile = ImageCache.getCacheFile(fileToCache);
+    if (ImageCache.isCacheUpToDate(fileToCache, cachedFile)) {
+      skipped.incrementAndGet();
+      finished.countDown();
+      return;
+    }
+
+    // occupy the memory of the decoded image until it has been scaled; the size is taken from the image header BEFORE decoding, so the
+    // budget really limits the decoded images in memory. Huge images take the whole budget
+    final int permits = getPermits(fileToCache);
+    try {
+      memoryBudget.acquire(permits);
+    }
+    catch (InterruptedException e) {
+      finished.countDown();
+      Thread.currentThread().interrupt();
+      return;
+    }
+
+    final BufferedImage originalImage;
+    try {
+      originalImage = ImageCache.decodeImage(fileToCache);
+    }
+    catch (Exception e) {
+      memoryBudget.release(permits);
+      logFailure(fileToCache, e);
+      finished.countDown();
+      return;
+    }
+
+    // a full scaler queue lets this thread scale the image itself
+    scaler.execute(new Runnable() {
+      @Override
+      public void run() {
+        scale(fileToCache, cachedFile, originalImage, permits);
       }
-      catch (FileNotFoundException e) {
-        LOGGER.warn("failed to cache file (file not found): " + fileToCache);
+    });
+  }
+
+  private int getPermits(Path fileToCache) {
+    Dimension size = ImageCache.readImageSize(fileToCache);
+    if (size == null) {
+      return Math.min(budgetKb, DEFAULT_KB);
+    }
+    return (int) Math.max(1, Math.min(budgetKb, (long) size.width * size.height * 4 / 1024));
+  }
+
+  /**
+   * stage 2: scale the decoded image
+   */
+  private void scale(final Path fileToCache, final Path cachedFile, BufferedImage originalImage, int permits) {
+    final BufferedImage scaledImage;
+    try {
+      if (aborted.get()) {
+        finished.countDown();
+        return;
       }
-      catch (Exception e) {
-        LOGGER.warn("failed to cache file: " + fileToCache, e);
+      scaledImage = ImageCache.scaleForCache(fileToCache, originalImage);
+    }
+    catch (Exception e) {
+      logFailure(fileToCache, e);
+      finished.countDown();
+      return;
+    }
+    finally {
+      memoryBudget.release(permits);
+    }
+
+    encoder.execute(new Runnable() {
+      @Override
+      public void run() {
+        encode(fileToCache, cachedFile, scaledImage);
       }
+    });
+  }
+
+  /**
+   * stage 3: encode the scaled image and write it to the cache
+   */
+  private void encode(Path fileToCache, Path cachedFile, BufferedImage scaledImage) {
+    try {
+      if (!aborted.get()) {
+        ImageCache.encodeImage(fileToCache, scaledImage, cachedFile);
+        cached.incrementAndGet();
+      }
+    }
+    catch (Exception e) {
+      logFailure(fileToCache, e);
     }
+    finally {
+      finished.countDown();
+    }
+  }
+
+  private void logFailure(Path fileToCache, Exception e) {
+    failed.incrementAndGet();
+    if (e instanceof EmptyFileException) {
+      LOGGER.warn("failed to cache file (file is empty): " + fileToCache);
+    }
+    else if (e instanceof FileNotFoundException) {
+      LOGGER.warn("failed to cache file (file not found): " + fileToCache);
+    }
+    else {
+      LOGGER.warn("failed to cache file: " + fileToCache, e);
+    }
+  }
+
+  private String getThroughput(int done, long start) {
+    long duration = System.currentTimeMillis() - start;
+    double imagesPerSecond = duration > 0 ? done * 1000d / duration : 0;
+    return done + "/" + filesToCache.size() + " (" + String.format(Locale.getDefault(), "%.1f", imagesPerSecond) + " images/s)";
   }
 }
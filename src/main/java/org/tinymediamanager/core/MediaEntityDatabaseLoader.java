@@ -0,0 +1,217 @@
+/*
+ * Copyright 2012 - 2018 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.h2.mvstore.MVMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tinymediamanager.core.entities.MediaEntity;
+import org.tinymediamanager.core.threading.TmmThreadPool.TmmThreadFactory;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+
+/**
+ * The class MediaEntityDatabaseLoader. Used to load all entities of a MVMap at startup: the entries are streamed in key order from the store and
+ * decoded in parallel (in batches) across all available cores. The decoded entities are returned in key order, so the caller can add them in one
+ * batch to its list
+ * 
+ * @author Manuel Laggner
+ */
+public class MediaEntityDatabaseLoader<T extends MediaEntity> {
+  private static final Logger       LOGGER     = LoggerFactory.getLogger(MediaEntityDatabaseLoader.class);
+  private static final int          BATCH_SIZE = 250;
+
+  private final MVMap<UUID, Object> map;
+  private final ObjectReader        objectReader;
+  private final String              entityName;
+  private final Set<UUID>           corruptEntries;
+  private final Map<UUID, Long>     contentHashes;
+
+  private long                      loadingTime;
+
+  /**
+   * create a new loader for the given map
+   * 
+   * @param map
+   *          the map containing the encoded entities
+   * @param objectReader
+   *          the object reader for the entity type (Jackson object readers are thread safe)
+   * @param entityName
+   *          the name of the entity (just for logging)
+   */
+  public MediaEntityDatabaseLoader(MVMap<UUID, Object> map, ObjectReader objectReader, String entityName) {
+    this.map = map;
+    this.objectReader = objectReader;
+    this.entityName = entityName;
+    this.corruptEntries = Collections.synchronizedSet(new LinkedHashSet<UUID>());
+    this.contentHashes = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * load and decode all entities from the map. Corrupt entries are dropped from the map
+   * 
+   * @return a list of all decoded entities (in key order)
+   * @throws IllegalStateException
+   *           if a batch could not be decoded at all (rather than continuing with a partial library)
+   */
+  public List<T> load() {
+    long start = System.currentTimeMillis();
+    int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads, new TmmThreadFactory("database-loader"));
+    List<List<Entry<UUID, Object>>> batches = new ArrayList<>();
+    List<Future<List<T>>> futures = new ArrayList<>();
+    List<T> entities = new ArrayList<>(map.size());
+
+    try {
+      // stream the entries in key order and hand over batches to the workers
+      List<Entry<UUID, Object>> batch = new ArrayList<>(BATCH_SIZE);
+      for (Entry<UUID, Object> entry : map.entrySet()) {
+        batch.add(entry);
+        if (batch.size() == BATCH_SIZE) {
+          batches.add(batch);
+          futures.add(executor.submit(new DecodeBatchTask(batch)));
+          batch = new ArrayList<>(BATCH_SIZE);
+        }
+      }
+      if (!batch.isEmpty()) {
+        batches.add(batch);
+        futures.add(executor.submit(new DecodeBatchTask(batch)));
+      }
+
+      // collect the results in the submission order; failed batches are decoded again in this thread, so no entity gets lost
+      boolean interrupted = false;
+      for (int i = 0; i < futures.size(); i++) {
+        List<T> decoded = null;
+        if (!interrupted) {
+          try {
+            decoded = futures.get(i).get();
+          }
+          catch (ExecutionException e) {
+            LOGGER.warn("problem decoding " + entityName + " batch in parallel - retrying sequentially: " + e.getMessage());
+          }
+          catch (InterruptedException e) {
+            LOGGER.warn("interrupted while loading " + entityName + "s from database - continuing sequentially");
+            interrupted = true;
+          }
+        }
+        if (decoded == null) {
+          decoded = decodeSequentially(batches.get(i));
+        }
+        entities.addAll(decoded);
+      }
+
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    finally {
+      executor.shutdownNow();
+    }
+
+    // remove corrupt entries from the database
+    for (UUID uuid : corruptEntries) {
+      map.remove(uuid);
+    }
+
+    loadingTime = System.currentTimeMillis() - start;
+    LOGGER.debug("decoded " + entities.size() + " " + entityName + "s in " + loadingTime + " ms using " + threads + " threads");
+
+    return entities;
+  }
+
+  private List<T> decodeSequentially(List<Entry<UUID, Object>> batch) {
+    try {
+      return new DecodeBatchTask(batch).call();
+    }
+    catch (Exception e) {
+      // never continue with a partial library
+      throw new IllegalStateException("could not decode " + entityName + "s from database", e);
+    }
+  }
+
+  /**
+   * get the time (in ms) the last call of load() needed
+   * 
+   * @return the loading time in ms
+   */
+  public long getLoadingTime() {
+    return loadingTime;
+  }
+
+  /**
+   * get the amount of corrupt (and dropped) entries of the last call of load()
+   * 
+   * @return the amount of corrupt entries
+   */
+  public int getCorruptEntryCount() {
+    return corruptEntries.size();
+  }
+
+  /**
+   * get the content hashes of all decoded entities of the last call of load()
+   * 
+   * @return the content hashes per dbId
+   */
+  public Map<UUID, Long> getContentHashes() {
+    return contentHashes;
+  }
+
+  /**
+   * a callable to decode a batch of stored entities
+   */
+  private class DecodeBatchTask implements Callable<List<T>> {
+    private final List<Entry<UUID, Object>> entries;
+
+    DecodeBatchTask(List<Entry<UUID, Object>> entries) {
+      this.entries = entries;
+    }
+
+    @Override
+    public List<T> call() throws Exception {
+      List<T> decoded = new ArrayList<>(entries.size());
+      for (Entry<UUID, Object> entry : entries) {
+        try {
+          T entity = DatabaseFormat.decode(objectReader, entry.getValue());
+          entity.setDbId(entry.getKey());
+          decoded.add(entity);
+          contentHashes.put(entry.getKey(), DatabaseFormat.contentHash(entry.getValue()));
+        }
+        catch (Exception e) {
+          LOGGER.warn("problem decoding " + entityName + ": " + e.getMessage());
+          LOGGER.info("dropping corrupt " + entityName);
+          corruptEntries.add(entry.getKey());
+        }
+      }
+      return decoded;
+    }
+  }
+}
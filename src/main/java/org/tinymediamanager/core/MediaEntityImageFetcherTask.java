@@ -16,21 +16,27 @@
 package org.tinymediamanager.core;
 
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.InputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.io.FilenameUtils;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tinymediamanager.core.Message.MessageLevel;
 import org.tinymediamanager.core.entities.MediaEntity;
 import org.tinymediamanager.scraper.entities.MediaArtwork.MediaArtworkType;
-import org.tinymediamanager.scraper.http.Url;
 
 /**
  * The Class MediaEntityImageFetcherTask.
@@ -38,13 +44,16 @@ import org.tinymediamanager.scraper.http.Url;
  * @author Manuel Laggner
  */
 public class MediaEntityImageFetcherTask implements Runnable {
-  private final static Logger LOGGER = LoggerFactory.getLogger(MediaEntityImageFetcherTask.class);
+  private final static Logger                         LOGGER  = LoggerFactory.getLogger(MediaEntityImageFetcherTask.class);
+  private final static Map<MediaEntity, ArtworkBatch> BATCHES = new HashMap<>();
 
-  private MediaEntity         entity;
-  private String              url;
-  private MediaArtworkType    type;
-  private String              filename;
-  private boolean             firstImage;
+  private MediaEntity                                 entity;
+  private String                                      url;
+  private MediaArtworkType                            type;
+  private String                                      filename;
+  private boolean                                     firstImage;
+  private boolean                                     batchFinished;
+  private Path                                        blob;
 
   public MediaEntityImageFetcherTask(MediaEntity entity, String url, MediaArtworkType type, String filename, boolean firstImage) {
     this.entity = entity;
@@ -52,11 +61,21 @@ public class MediaEntityImageFetcherTask implements Runnable {
     this.type = type;
     this.filename = filename;
     this.firstImage = firstImage;
+
+    synchronized (BATCHES) {
+      ArtworkBatch batch = BATCHES.get(entity);
+      if (batch == null) {
+        batch = new ArtworkBatch();
+        BATCHES.put(entity, batch);
+      }
+      batch.pending++;
+    }
   }
 
   @Override
   public void run() {
     long timestamp = System.currentTimeMillis(); // multi episode same file
+    Path writtenFile = null;
     try {
       if (StringUtils.isBlank(filename)) {
         return;
@@ -107,26 +126,9 @@ public class MediaEntityImageFetcherTask implements Runnable {
 
         // fetch and store images
         if (!sameFile) {
-          Url url1 = new Url(url);
-          FileOutputStream outputStream = new FileOutputStream(tempFile.toFile());
-          InputStream is = url1.getInputStream();
-          if (is == null) {
-            // 404 et all
-            IOUtils.closeQuietly(outputStream);
-            throw new FileNotFoundException("Error accessing url: " + url1.getStatusLine());
-          }
-          IOUtils.copy(is, outputStream);
-          outputStream.flush();
-          try {
-            outputStream.getFD().sync(); // wait until file has been completely written
-            // give it a few milliseconds
-            Thread.sleep(150);
-          }
-          catch (Exception e) {
-            // empty here -> just not let the thread crash
-          }
-          IOUtils.closeQuietly(outputStream);
-          IOUtils.closeQuietly(is);
+          // the url is downloaded only once for all naming variants
+          blob = ArtworkBlobStore.getInstance().fetch(url);
+          ArtworkBlobStore.materialize(blob, tempFile);
 
           // check if the file has been downloaded
           if (!Files.exists(tempFile) || Files.size(tempFile) == 0) {
@@ -139,13 +141,20 @@ public class MediaEntityImageFetcherTask implements Runnable {
             Utils.deleteFileSafely(oldFile);
           }
 
-          // delete new destination if existing
-          Utils.deleteFileSafely(destFile);
-
-          // move the temp file to the expected filename
-          if (!Utils.moveFileSafe(tempFile, destFile)) {
-            throw new Exception("renaming temp file failed: " + filename);
+          // replace the destination with the temp file in one step
+          try {
+            DatasourceWatcher.registerOwnWrite(destFile);
+            Files.move(tempFile, destFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
           }
+          catch (IOException e) {
+            // no atomic move possible or the destination is locked (e.g. by an image viewer) - retry the safe way
+            LOGGER.debug("could not replace " + destFile + " in one step: " + e.getMessage());
+            Utils.deleteFileSafely(destFile);
+            if (!Utils.moveFileSafe(tempFile, destFile)) {
+              throw new Exception("renaming temp file failed: " + filename);
+            }
+          }
+          writtenFile = destFile;
         }
 
         // has tmm been shut down?
@@ -226,5 +235,107 @@ public class MediaEntityImageFetcherTask implements Runnable {
     catch (Exception e) {
       LOGGER.error("crashed thread: ", e);
     }
+    finally {
+      finishBatch(writtenFile);
+    }
+  }
+
+  /**
+   * the task has been removed from the queue without being executed; release it from the batch of this entity (this syncs the files
+   * written by the other tasks of the batch, if this was the last pending task)
+   */
+  public void cancel() {
+    finishBatch(null);
+  }
+
+  /**
+   * register the written file at the batch of this entity; if this was the last pending artwork of the entity, all written files are
+   * synced to the disk at once and the local copies of the artwork (shared by the naming variants) are released
+   * 
+   * @param writtenFile
+   *          the written file or null if nothing has been written
+   */
+  private void finishBatch(Path writtenFile) {
+    List<Path> filesToSync = null;
+    List<Path> blobsToRelease = null;
+    synchronized (BATCHES) {
+      // every task is counted only once (run() and cancel())
+      if (batchFinished) {
+        return;
+      }
+      batchFinished = true;
+      ArtworkBatch batch = BATCHES.get(entity);
+      if (batch == null) {
+        releaseBlob(blob);
+        return;
+      }
+      if (writtenFile != null) {
+        batch.files.add(writtenFile);
+      }
+      if (blob != null) {
+        batch.blobs.add(blob);
+      }
+      batch.pending--;
+      if (batch.pending <= 0) {
+        BATCHES.remove(entity);
+        filesToSync = batch.files;
+        blobsToRelease = batch.blobs;
+      }
+    }
+
+    if (filesToSync != null && !filesToSync.isEmpty()) {
+      sync(filesToSync);
+    }
+    if (blobsToRelease != null) {
+      for (Path path : blobsToRelease) {
+        releaseBlob(path);
+      }
+    }
+  }
+
+  private static void releaseBlob(Path blob) {
+    if (blob != null) {
+      ArtworkBlobStore.getInstance().release(blob);
+    }
+  }
+
+  /**
+   * flush the given files and their folders to the disk
+   * 
+   * @param files
+   *          the files to sync
+   */
+  private static void sync(List<Path> files) {
+    Set<Path> folders = new HashSet<>();
+    for (Path file : files) {
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+        channel.force(true);
+      }
+      catch (IOException e) {
+        LOGGER.debug("could not sync " + file + ": " + e.getMessage());
+      }
+      if (file.getParent() != null) {
+        folders.add(file.getParent());
+      }
+    }
+
+    // persist the renames too; not all platforms support opening a folder (e.g. windows)
+    for (Path folder : folders) {
+      try (FileChannel channel = FileChannel.open(folder, StandardOpenOption.READ)) {
+        channel.force(true);
+      }
+      catch (IOException e) {
+        LOGGER.trace("could not sync folder " + folder + ": " + e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * the artwork files of one media entity which are in work
+   */
+  private static class ArtworkBatch {
+    private int              pending = 0;
+    private final List<Path> files   = new ArrayList<>();
+    private final List<Path> blobs   = new ArrayList<>();
   }
 }
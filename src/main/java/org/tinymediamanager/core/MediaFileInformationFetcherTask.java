@@ -42,6 +42,7 @@ public class MediaFileInformationFetcherTask implements Callable<Object> {
   private MediaEntity         mediaEntity;
   private long                uniqueId;
   private boolean             forceUpdate = false;
+  private boolean             bypassCache = false;
 
   /**
    * Instantiates a new media file information fetcher task.
@@ -54,10 +55,27 @@ public class MediaFileInformationFetcherTask implements Callable<Object> {
    *          force an update
    */
   public MediaFileInformationFetcherTask(MediaFile mediaFile, MediaEntity mediaEntity, boolean forceUpdate) {
+    this(mediaFile, mediaEntity, forceUpdate, false);
+  }
+
+  /**
+   * Instantiates a new media file information fetcher task.
+   * 
+   * @param mediaFile
+   *          the media files
+   * @param mediaEntity
+   *          the media entity
+   * @param forceUpdate
+   *          force an update
+   * @param bypassCache
+   *          do not take the media information from the MediaInfo cache (explicit reload)
+   */
+  public MediaFileInformationFetcherTask(MediaFile mediaFile, MediaEntity mediaEntity, boolean forceUpdate, boolean bypassCache) {
     this.mediaFiles = new ArrayList<MediaFile>();
     this.mediaFiles.add(mediaFile);
     this.mediaEntity = mediaEntity;
     this.forceUpdate = forceUpdate;
+    this.bypassCache = bypassCache;
     this.uniqueId = TmmTaskManager.getInstance().GLOB_THRD_CNT.incrementAndGet();
   }
 
@@ -92,7 +110,7 @@ public class MediaFileInformationFetcherTask implements Callable<Object> {
       Thread.currentThread().setName(name);
 
       for (MediaFile mediaFile : mediaFiles) {
-        mediaFile.gatherMediaInformation(forceUpdate);
+        mediaFile.gatherMediaInformation(forceUpdate, bypassCache);
         if (mediaEntity != null && mediaEntity instanceof Movie && mediaFile.hasSubtitles()) {
           Movie movie = (Movie) mediaEntity;
           movie.setSubtitles(true);
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2012 - 2018 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core;
+
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tinymediamanager.thirdparty.MediaInfo.StreamKind;
+
+/**
+ * The class MediaInfoCache. A persistent cache for MediaInfo snapshots (stored in an own MVStore). The entries are keyed by the absolute path
+ * of the file and are only valid as long as the size and the last modification date of the file do not change
+ * 
+ * @author Manuel Laggner
+ */
+public class MediaInfoCache {
+  private static final Logger       LOGGER         = LoggerFactory.getLogger(MediaInfoCache.class);
+  private static final String       MEDIA_INFO_DB  = "mediainfo.db";
+  private static final String       MEDIA_INFO_MAP = "mediainfo";
+  private static MediaInfoCache     instance;
+
+  private MVStore                   mvStore;
+  private MVMap<String, CacheEntry> cacheMap;
+  private boolean                   disabled       = false;
+
+  private MediaInfoCache() {
+  }
+
+  public static synchronized MediaInfoCache getInstance() {
+    if (instance == null) {
+      instance = new MediaInfoCache();
+    }
+    return instance;
+  }
+
+  private synchronized MVMap<String, CacheEntry> getCacheMap() {
+    if (cacheMap == null && !disabled) {
+      try {
+        mvStore = new MVStore.Builder().fileName(getCacheFile().toString()).compress()
+            .backgroundExceptionHandler(new Thread.UncaughtExceptionHandler() {
+              @Override
+              public void uncaughtException(Thread t, Throwable e) {
+                LOGGER.error("Error in the background thread of the MediaInfo cache", e);
+              }
+            }).autoCommitBufferSize(1024).open();
+        mvStore.setAutoCommitDelay(2000); // 2 sec
+        cacheMap = mvStore.openMap(MEDIA_INFO_MAP);
+      }
+      catch (Exception e) {
+        // do not try again in this session
+        LOGGER.warn("could not open MediaInfo cache: " + e.getMessage());
+        disabled = true;
+      }
+    }
+    return cacheMap;
+  }
+
+  private Path getCacheFile() {
+    return Paths.get(Settings.getInstance().getSettingsFolder(), MEDIA_INFO_DB);
+  }
+
+  /**
+   * get the cached MediaInfo snapshot for the given file
+   * 
+   * @param file
+   *          the file
+   * @param size
+   *          the actual size of the file
+   * @param lastModified
+   *          the actual last modification date of the file
+   * @return the snapshot or null if there is no valid snapshot for this file
+   */
+  public Map<StreamKind, List<Map<String, String>>> get(Path file, long size, long lastModified) {
+    MVMap<String, CacheEntry> map = getCacheMap();
+    if (map == null || size <= 0) {
+      return null;
+    }
+
+    try {
+      CacheEntry entry = map.get(file.toAbsolutePath().toString());
+      if (entry != null && entry.size == size && entry.lastModified == lastModified) {
+        return copy(entry.snapshot);
+      }
+    }
+    catch (Exception e) {
+      // may happen if the class structure of the entries changed
+      LOGGER.debug("could not read MediaInfo cache entry for " + file + ": " + e.getMessage());
+      remove(file);
+    }
+    return null;
+  }
+
+  /**
+   * put the MediaInfo snapshot of the given file into the cache
+   * 
+   * @param file
+   *          the file
+   * @param size
+   *          the size of the file
+   * @param lastModified
+   *          the last modification date of the file
+   * @param snapshot
+   *          the MediaInfo snapshot
+   */
+  public void put(Path file, long size, long lastModified, Map<StreamKind, List<Map<String, String>>> snapshot) {
+    MVMap<String, CacheEntry> map = getCacheMap();
+    if (map == null || size <= 0 || snapshot == null) {
+      return;
+    }
+
+    CacheEntry entry = new CacheEntry();
+    entry.size = size;
+    entry.lastModified = lastModified;
+    entry.snapshot = copy(snapshot);
+    try {
+      map.put(file.toAbsolutePath().toString(), entry);
+    }
+    catch (Exception e) {
+      LOGGER.debug("could not write MediaInfo cache entry for " + file + ": " + e.getMessage());
+    }
+  }
+
+  /**
+   * remove the entry of the given file
+   * 
+   * @param file
+   *          the file
+   */
+  public void remove(Path file) {
+    MVMap<String, CacheEntry> map = getCacheMap();
+    if (map != null) {
+      map.remove(file.toAbsolutePath().toString());
+    }
+  }
+
+  /**
+   * remove the entries of all files inside the given folder which do not exist any more
+   * 
+   * @param folder
+   *          the folder (e.g. the data source)
+   * @param knownFiles
+   *          files which are known to exist (no need to check them)
+   * @return the amount of removed entries
+   */
+  public int evictMissing(Path folder, Set<Path> knownFiles) {
+    MVMap<String, CacheEntry> map = getCacheMap();
+    if (map == null) {
+      return 0;
+    }
+
+    Path absoluteFolder = folder.toAbsolutePath();
+    List<String> toRemove = new ArrayList<>();
+    for (String key : map.keySet()) {
+      Path file = Paths.get(key);
+      // compare whole path elements - /movies must not match /movies2
+      if (!file.startsWith(absoluteFolder)) {
+        continue;
+      }
+      if (!knownFiles.contains(file) && !Files.exists(file)) {
+        toRemove.add(key);
+      }
+    }
+    for (String key : toRemove) {
+      map.remove(key);
+    }
+    if (!toRemove.isEmpty()) {
+      LOGGER.debug("removed " + toRemove.size() + " orphaned entries from the MediaInfo cache");
+    }
+    return toRemove.size();
+  }
+
+  /**
+   * close the cache (persists all pending changes)
+   */
+  public synchronized void close() {
+    if (mvStore != null && !mvStore.isClosed()) {
+      try {
+        mvStore.compactMoveChunks();
+        mvStore.close();
+      }
+      catch (Exception e) {
+        LOGGER.warn("could not close MediaInfo cache: " + e.getMessage());
+      }
+    }
+    mvStore = null;
+    cacheMap = null;
+  }
+
+  /**
+   * remove the whole cache
+   */
+  public synchronized void clear() {
+    close();
+    Utils.deleteFileSafely(getCacheFile());
+  }
+
+  /**
+   * deep copy of the snapshot; the snapshots are mutable and must not be shared between the cache and the media files
+   */
+  private static EnumMap<StreamKind, List<Map<String, String>>> copy(Map<StreamKind, List<Map<String, String>>> snapshot) {
+    EnumMap<StreamKind, List<Map<String, String>>> copy = new EnumMap<>(StreamKind.class);
+    for (Map.Entry<StreamKind, List<Map<String, String>>> entry : snapshot.entrySet()) {
+      List<Map<String, String>> streams = new ArrayList<>(entry.getValue().size());
+      for (Map<String, String> stream : entry.getValue()) {
+        streams.add(new LinkedHashMap<>(stream));
+      }
+      copy.put(entry.getKey(), streams);
+    }
+    return copy;
+  }
+
+  private static class CacheEntry implements Serializable {
+    private static final long                              serialVersionUID = -3093745113525719478L;
+
+    private long                                           size             = 0;
+    private long                                           lastModified     = 0;
+    private EnumMap<StreamKind, List<Map<String, String>>> snapshot;
+  }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright 2012 - 2018 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core;
+
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tinymediamanager.Globals;
+import org.tinymediamanager.core.entities.MediaEntity;
+import org.tinymediamanager.core.entities.MediaFile;
+import org.tinymediamanager.thirdparty.MediaInfo;
+
+/**
+ * The class MediaInfoStage. Collects all media files which need a MediaInfo extraction and creates the tasks for the MediaInfo worker pool.
+ * The files are grouped per device (file store of the data source) and sorted by path inside every device. Every task takes the next file of
+ * a device which has less than {@link #MAX_WORKERS_PER_DEVICE} active workers, so the workers are spread over the devices and a single
+ * (spinning) disk is never hit by all workers at once
+ * 
+ * @author Manuel Laggner
+ */
+public class MediaInfoStage {
+  private static final Logger                     LOGGER                 = LoggerFactory.getLogger(MediaInfoStage.class);
+  // concurrent reads on one device - more workers only make a spinning disk seek
+  static final int                                MAX_WORKERS_PER_DEVICE = 2;
+
+  private final Map<String, List<StageEntry>>     filesPerDevice         = new LinkedHashMap<>();
+  private final Map<String, String>               devices                = new HashMap<>();
+  private final Map<String, Iterator<StageEntry>> remainingFiles         = new LinkedHashMap<>();
+  private final Map<String, Integer>              activeWorkers          = new HashMap<>();
+  private final Set<MediaInfo>                    mediaInfos             = Collections.newSetFromMap(new IdentityHashMap<MediaInfo, Boolean>());
+  private final Set<MediaInfo>                    busyMediaInfos         = Collections.newSetFromMap(new IdentityHashMap<MediaInfo, Boolean>());
+  private int                                     fileCount              = 0;
+  private long                                    start                  = 0;
+  private boolean                                 closed                 = false;
+
+  /**
+   * add a media file to this stage
+   * 
+   * @param mediaFile
+   *          the media file to get the MediaInfo for
+   * @param mediaEntity
+   *          the media entity owning this media file
+   * @param datasource
+   *          the data source containing the media file
+   */
+  public void addMediaFile(MediaFile mediaFile, MediaEntity mediaEntity, String datasource) {
+    String device = getDevice(datasource);
+    List<StageEntry> files = filesPerDevice.get(device);
+    if (files == null) {
+      files = new ArrayList<>();
+      filesPerDevice.put(device, files);
+    }
+    files.add(new StageEntry(mediaFile, mediaEntity));
+    fileCount++;
+  }
+
+  /**
+   * get the amount of media files in this stage
+   * 
+   * @return the amount of media files
+   */
+  public int getFileCount() {
+    return fileCount;
+  }
+
+  /**
+   * get the amount of workers which should be used to process this stage; more workers than the devices can take would only wait
+   * 
+   * @return the amount of workers (at least 1)
+   */
+  public int getWorkerCount() {
+    int deviceLimit = Math.max(1, filesPerDevice.size()) * MAX_WORKERS_PER_DEVICE;
+    return Math.max(1, Math.min(Math.min(Globals.settings.getMediaInfoThreads(), deviceLimit), fileCount));
+  }
+
+  /**
+   * create the tasks for all media files; every task processes the next file of a device with a free worker slot
+   * 
+   * @return a list of all tasks
+   */
+  public List<Callable<Object>> createTasks() {
+    for (Map.Entry<String, List<StageEntry>> entry : filesPerDevice.entrySet()) {
+      List<StageEntry> files = entry.getValue();
+      // sequential access on every device
+      Collections.sort(files, new Comparator<StageEntry>() {
+        @Override
+        public int compare(StageEntry o1, StageEntry o2) {
+          return o1.mediaFile.getFileAsPath().compareTo(o2.mediaFile.getFileAsPath());
+        }
+      });
+      remainingFiles.put(entry.getKey(), files.iterator());
+      activeWorkers.put(entry.getKey(), 0);
+      LOGGER.debug("MediaInfo: " + files.size() + " files on device " + entry.getKey());
+    }
+
+    List<Callable<Object>> tasks = new ArrayList<>(fileCount);
+    for (int i = 0; i < fileCount; i++) {
+      tasks.add(new StageTask());
+    }
+
+    start = System.currentTimeMillis();
+    return tasks;
+  }
+
+  /**
+   * release all native MediaInfo handles which have been used by the workers of this stage
+   */
+  public synchronized void close() {
+    closed = true;
+    for (MediaInfo mediaInfo : mediaInfos) {
+      // handles of workers which are still running (after a cancel) are released when they finish
+      if (!busyMediaInfos.contains(mediaInfo)) {
+        disposeQuietly(mediaInfo);
+      }
+    }
+    mediaInfos.clear();
+  }
+
+  private synchronized Object[] acquireNext() throws InterruptedException {
+    while (true) {
+      boolean remaining = false;
+      // take the device with the least active workers first
+      String bestDevice = null;
+      for (Map.Entry<String, Iterator<StageEntry>> entry : remainingFiles.entrySet()) {
+        if (!entry.getValue().hasNext()) {
+          continue;
+        }
+        remaining = true;
+        int active = activeWorkers.get(entry.getKey());
+        if (active < MAX_WORKERS_PER_DEVICE && (bestDevice == null || active < activeWorkers.get(bestDevice))) {
+          bestDevice = entry.getKey();
+        }
+      }
+      if (!remaining) {
+        return null;
+      }
+      if (bestDevice != null) {
+        activeWorkers.put(bestDevice, activeWorkers.get(bestDevice) + 1);
+        return new Object[] { bestDevice, remainingFiles.get(bestDevice).next() };
+      }
+      // all devices with remaining files are busy
+      wait();
+    }
+  }
+
+  private synchronized void release(String device, MediaInfo mediaInfo) {
+    activeWorkers.put(device, activeWorkers.get(device) - 1);
+    busyMediaInfos.remove(mediaInfo);
+    if (closed) {
+      disposeQuietly(mediaInfo);
+    }
+    else {
+      mediaInfos.add(mediaInfo);
+    }
+    notifyAll();
+  }
+
+  private synchronized void markBusy(MediaInfo mediaInfo) {
+    busyMediaInfos.add(mediaInfo);
+  }
+
+  private static void disposeQuietly(MediaInfo mediaInfo) {
+    if (mediaInfo.isLoaded()) {
+      mediaInfo.dispose();
+    }
+  }
+
+  /**
+   * get a progress description containing the throughput
+   * 
+   * @param filesDone
+   *          the amount of processed files
+   * @return the description
+   */
+  public String getProgressDescription(int filesDone) {
+    return filesDone + "/" + fileCount + " (" + String.format(Locale.getDefault(), "%.1f", getFilesPerSecond(filesDone)) + " files/s)";
+  }
+
+  /**
+   * get the throughput of this stage
+   * 
+   * @param filesDone
+   *          the amount of processed files
+   * @return files per second
+   */
+  public double getFilesPerSecond(int filesDone) {
+    long duration = System.currentTimeMillis() - start;
+    if (start == 0 || duration <= 0) {
+      return 0;
+    }
+    return filesDone * 1000d / duration;
+  }
+
+  private String getDevice(String datasource) {
+    String device = devices.get(datasource);
+    if (device == null) {
+      try {
+        FileStore fileStore = Files.getFileStore(Paths.get(datasource));
+        device = fileStore.name() + " (" + fileStore.type() + ")";
+      }
+      catch (IOException | RuntimeException e) {
+        // no file store available - use the data source as device
+        device = datasource;
+      }
+      devices.put(datasource, device);
+    }
+    return device;
+  }
+
+  /**
+   * a task processing the next file of a device with a free worker slot
+   */
+  private class StageTask implements Callable<Object> {
+    @Override
+    public Object call() throws Exception {
+      Object[] next = acquireNext();
+      if (next == null) {
+        return "";
+      }
+
+      String device = (String) next[0];
+      StageEntry entry = (StageEntry) next[1];
+      MediaInfo mediaInfo = MediaInfo.getThreadInstance();
+      markBusy(mediaInfo);
+      try {
+        return new MediaFileInformationFetcherTask(entry.mediaFile, entry.mediaEntity, false).call();
+      }
+      finally {
+        release(device, mediaInfo);
+      }
+    }
+  }
+
+  private static class StageEntry {
+    private final MediaFile   mediaFile;
+    private final MediaEntity mediaEntity;
+
+    private StageEntry(MediaFile mediaFile, MediaEntity mediaEntity) {
+      this.mediaFile = mediaFile;
+      this.mediaEntity = mediaEntity;
+    }
+  }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2012 - 2018 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * The class NGramIndex. A case insensitive substring index over the texts of numbered slots (e.g. the cast of a movie). Every slot is
+ * registered in the posting lists of all trigrams of its (lowercase) texts; a search only has to verify the slots of the rarest trigram of
+ * the search term.<br>
+ * Posting lists are append-only: outdated entries are filtered out by the verification and removed by a rebuild if there are too many of
+ * them
+ * 
+ * @author Manuel Laggner
+ */
+public class NGramIndex {
+  private static final int               N         = 3;
+  private static final char              SEPARATOR = '\n';
+
+  private final Map<String, PostingList> postings  = new HashMap<>();
+  private final List<String>             texts     = new ArrayList<>();
+  private int                            entries;
+  private int                            staleEntries;
+
+  /**
+   * set the texts of the given slot (replaces all former texts of this slot)
+   * 
+   * @param slot
+   *          the slot
+   * @param values
+   *          all texts of the slot (null/empty values are ignored)
+   */
+  public synchronized void set(int slot, Collection<String> values) {
+    StringBuilder sb = new StringBuilder();
+    for (String value : values) {
+      if (StringUtils.isNotEmpty(value)) {
+        sb.append(value.toLowerCase(Locale.ROOT)).append(SEPARATOR);
+      }
+    }
+    String text = sb.toString();
+
+    while (texts.size() <= slot) {
+      texts.add(null);
+    }
+    String oldText = texts.set(slot, text);
+    if (text.equals(oldText)) {
+      return;
+    }
+    if (oldText != null) {
+      staleEntries += grams(oldText).size();
+    }
+    for (String gram : grams(text)) {
+      addPosting(gram, slot);
+    }
+    compactIfNeeded();
+  }
+
+  /**
+   * remove all texts of the given slot
+   * 
+   * @param slot
+   *          the slot
+   */
+  public synchronized void remove(int slot) {
+    if (slot >= texts.size()) {
+      return;
+    }
+    String oldText = texts.set(slot, null);
+    if (oldText != null) {
+      staleEntries += grams(oldText).size();
+      compactIfNeeded();
+    }
+  }
+
+  /**
+   * search all slots containing the given term (case insensitive) in one of their texts
+   * 
+   * @param term
+   *          the term to search for
+   * @return the matching slots
+   */
+  public synchronized BitSet search(String term) {
+    BitSet result = new BitSet();
+    if (StringUtils.isEmpty(term)) {
+      return result;
+    }
+    String search = term.toLowerCase(Locale.ROOT);
+
+    if (search.length() < N) {
+      // too short for the index: scan all texts
+      for (int slot = 0; slot < texts.size(); slot++) {
+        String text = texts.get(slot);
+        if (text != null && text.contains(search)) {
+          result.set(slot);
+        }
+      }
+      return result;
+    }
+
+    // take the shortest posting list of all trigrams of the search term
+    PostingList candidates = null;
+    for (String gram : grams(search)) {
+      PostingList posting = postings.get(gram);
+      if (posting == null) {
+        return result;
+      }
+      if (candidates == null || posting.size < candidates.size) {
+        candidates = posting;
+      }
+    }
+
+    // verify the candidates (this also filters outdated entries)
+    for (int i = 0; i < candidates.size; i++) {
+      int slot = candidates.slots[i];
+      if (result.get(slot)) {
+        continue;
+      }
+      String text = texts.get(slot);
+      if (text != null && text.contains(search)) {
+        result.set(slot);
+      }
+    }
+    return result;
+  }
+
+  private void addPosting(String gram, int slot) {
+    PostingList posting = postings.get(gram);
+    if (posting == null) {
+      posting = new PostingList();
+      postings.put(gram, posting);
+    }
+    posting.add(slot);
+    entries++;
+  }
+
+  /**
+   * rebuild the posting lists if more than half of the entries are outdated
+   */
+  private void compactIfNeeded() {
+    if (staleEntries < 1024 || staleEntries * 2 < entries) {
+      return;
+    }
+
+    postings.clear();
+    entries = 0;
+    staleEntries = 0;
+    for (int slot = 0; slot < texts.size(); slot++) {
+      String text = texts.get(slot);
+      if (text != null) {
+        for (String gram : grams(text)) {
+          addPosting(gram, slot);
+        }
+      }
+    }
+  }
+
+  /**
+   * get all distinct trigrams of the text (trigrams spanning two texts are skipped)
+   */
+  private static Set<String> grams(String text) {
+    Set<String> grams = new HashSet<>();
+    for (int i = 0; i + N <= text.length(); i++) {
+      String gram = text.substring(i, i + N);
+      if (gram.indexOf(SEPARATOR) < 0) {
+        grams.add(gram);
+      }
+    }
+    return grams;
+  }
+
+  /**
+   * a growable list of slots
+   */
+  private static class PostingList {
+    private int[] slots = new int[2];
+    private int   size;
+
+    void add(int slot) {
+      if (size == slots.length) {
+        slots = Arrays.copyOf(slots, size * 2);
+      }
+      slots[size++] = slot;
+    }
+  }
+}
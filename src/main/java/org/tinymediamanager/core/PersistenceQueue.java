@@ -0,0 +1,248 @@
+/*
+ * Copyright 2012 - 2018 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tinymediamanager.core.entities.MediaEntity;
+import org.tinymediamanager.core.threading.TmmThreadPool.TmmThreadFactory;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * The class PersistenceQueue. A write behind queue for the entities of a module: changed entities are collected per dbId (an entity which
+ * changes several times before the next flush is queued only once) and serialized and written to the database in a background thread in
+ * batches, one batch per auto commit interval of the MVStore. So the calling thread (often the EDT) never pays for the serialization. To
+ * detect unchanged entities, the hash of the stored content of every entity is held in memory
+ * 
+ * @author Manuel Laggner
+ */
+public class PersistenceQueue {
+  private static final Logger                 LOGGER        = LoggerFactory.getLogger(PersistenceQueue.class);
+
+  private final MVStore                       mvStore;
+  private final DatabaseFormat                format;
+  private final ScheduledExecutorService      executor;
+  private final Map<String, PendingOperation> pending       = new LinkedHashMap<>();
+  private final Map<UUID, Long>               contentHashes = new ConcurrentHashMap<>();
+
+  /**
+   * create a new queue for the given store
+   * 
+   * @param name
+   *          the name of the queue (used for the thread name)
+   * @param mvStore
+   *          the store to write to
+   * @param format
+   *          the format of the stored entities
+   */
+  public PersistenceQueue(String name, MVStore mvStore, DatabaseFormat format) {
+    this.mvStore = mvStore;
+    this.format = format;
+    this.executor = Executors.newSingleThreadScheduledExecutor(new TmmThreadFactory("persist-" + name));
+
+    long delay = Math.max(100, mvStore.getAutoCommitDelay());
+    executor.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          flush();
+        }
+        catch (Exception e) {
+          LOGGER.error("could not write to the database: " + e.getMessage());
+        }
+      }
+    }, delay, delay, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * queue the given entity to be written into the given map; it is serialized in the background thread with the next flush
+   * 
+   * @param map
+   *          the map to write the entity to
+   * @param writer
+   *          the writer for this entity (of an object mapper of the database format)
+   * @param entity
+   *          the entity to persist
+   */
+  public void persist(MVMap<UUID, Object> map, ObjectWriter writer, MediaEntity entity) {
+    enqueue(new PendingOperation(map, entity.getDbId(), writer, entity));
+  }
+
+  /**
+   * queue the removal of the entity with the given id from the given map
+   * 
+   * @param map
+   *          the map to remove the entity from
+   * @param dbId
+   *          the id of the entity
+   */
+  public void remove(MVMap<UUID, Object> map, UUID dbId) {
+    enqueue(new PendingOperation(map, dbId, null, null));
+  }
+
+  /**
+   * set the hashes of the stored content (e.g. after loading the entities from the database), so unchanged entities are not written again
+   * 
+   * @param hashes
+   *          the content hashes per dbId
+   */
+  public void addContentHashes(Map<UUID, Long> hashes) {
+    contentHashes.putAll(hashes);
+  }
+
+  private void enqueue(PendingOperation operation) {
+    synchronized (pending) {
+      // an entity which is already queued keeps its position; only the operation is replaced (e.g. a removal after a change)
+      pending.put(operation.getKey(), operation);
+    }
+  }
+
+  /**
+   * get the amount of entities waiting to be written
+   * 
+   * @return the amount of pending writes
+   */
+  public int getPendingCount() {
+    synchronized (pending) {
+      return pending.size();
+    }
+  }
+
+  /**
+   * write all pending entities to the database and commit them
+   */
+  public synchronized void flush() {
+    Map<String, PendingOperation> batch;
+    synchronized (pending) {
+      if (pending.isEmpty()) {
+        return;
+      }
+      batch = new LinkedHashMap<>(pending);
+      pending.clear();
+    }
+
+    long start = System.currentTimeMillis();
+    int written = 0;
+    int failed = 0;
+    for (PendingOperation operation : batch.values()) {
+      try {
+        if (write(operation)) {
+          written++;
+        }
+      }
+      catch (Exception e) {
+        // never drop a write - try it again with the next batch
+        LOGGER.warn("could not persist " + operation.getKey() + " - retrying: " + e.getMessage());
+        requeue(operation);
+        failed++;
+      }
+    }
+
+    if (written > 0) {
+      mvStore.commit();
+    }
+    LOGGER.trace("persisted " + written + "/" + batch.size() + " entities in " + (System.currentTimeMillis() - start) + " ms"
+        + (failed > 0 ? " (" + failed + " failed)" : ""));
+  }
+
+  /**
+   * execute the given operation (serialize the current state of the entity); the stored content is not read from the database, only the
+   * hash of the last written content is compared
+   * 
+   * @return true if the database has been changed
+   */
+  private boolean write(PendingOperation operation) throws Exception {
+    if (operation.entity == null) {
+      contentHashes.remove(operation.dbId);
+      return operation.map.remove(operation.dbId) != null;
+    }
+
+    Object value = format.encode(operation.writer, operation.entity);
+    long newHash = DatabaseFormat.contentHash(value);
+    Long oldHash = contentHashes.get(operation.dbId);
+    if (oldHash != null && oldHash == newHash) {
+      return false;
+    }
+
+    operation.map.put(operation.dbId, value);
+    contentHashes.put(operation.dbId, newHash);
+    return true;
+  }
+
+  private void requeue(PendingOperation operation) {
+    synchronized (pending) {
+      // a newer change of this entity is already queued
+      if (!pending.containsKey(operation.getKey())) {
+        pending.put(operation.getKey(), operation);
+      }
+    }
+  }
+
+  /**
+   * stop the background thread and write all pending entities
+   */
+  public void shutdown() {
+    executor.shutdown();
+    try {
+      executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    int count = getPendingCount();
+    if (count > 0) {
+      LOGGER.info("writing " + count + " pending entities to the database");
+      flush();
+    }
+    count = getPendingCount();
+    if (count > 0) {
+      LOGGER.error("could not write " + count + " pending entities to the database");
+    }
+  }
+
+  /**
+   * a pending write or removal (no entity) of one entity
+   */
+  private static class PendingOperation {
+    private final MVMap<UUID, Object> map;
+    private final UUID                dbId;
+    private final ObjectWriter        writer;
+    private final MediaEntity         entity;
+
+    private PendingOperation(MVMap<UUID, Object> map, UUID dbId, ObjectWriter writer, MediaEntity entity) {
+      this.map = map;
+      this.dbId = dbId;
+      this.writer = writer;
+      this.entity = entity;
+    }
+
+    private String getKey() {
+      return map.getName() + ":" + dbId;
+    }
+  }
+}
@@ -0,0 +1,333 @@
+/*
+ * Copyright 2012 - 2018 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.SystemUtils;
+
+/**
+ * The class RenamerTemplate. A renamer pattern (like "$T ($Y)") compiled into a sequence of literals and tokens, so it can be evaluated
+ * without parsing the pattern again. Compiled templates are cached; the value of every token is only resolved once per evaluation
+ * 
+ * @author Manuel Laggner
+ */
+public class RenamerTemplate {
+  private static final int                          MAX_CACHED_TEMPLATES = 64;
+  private static final Map<String, RenamerTemplate> CACHE                = new TemplateCache();
+
+  // precompiled patterns for the cleanup of the destination
+  private static final Pattern                      EMPTY_PARENTHESES    = Pattern.compile("\\([ ]?\\)");
+  private static final Pattern                      EMPTY_BRACKETS       = Pattern.compile("\\[[ ]?\\]");
+  private static final Pattern                      EMPTY_BRACES         = Pattern.compile("\\{[ ]?\\}");
+  private static final Pattern                      SPACES_BEFORE_SEP    = Pattern.compile(SystemUtils.IS_OS_WINDOWS ? "\\s+\\\\" : "\\s+/");
+  private static final Pattern                      SPACES_AFTER_SEP     = Pattern.compile(SystemUtils.IS_OS_WINDOWS ? "\\\\\\s+" : "/\\s+");
+  private static final Pattern                      MULTIPLE_SEPS        = Pattern.compile(SystemUtils.IS_OS_WINDOWS ? "\\\\{2,}" : "/{2,}");
+  private static final Pattern                      LEADING_SEP          = Pattern.compile(SystemUtils.IS_OS_WINDOWS ? "^\\\\" : "^/");
+  private static final String                       SEP_REPLACEMENT      = SystemUtils.IS_OS_WINDOWS ? "\\\\" : "/";
+  private static final Pattern                      MULTIPLE_SPACES      = Pattern.compile(" +");
+  private static final Pattern                      TRAILING_DOTS        = Pattern.compile("[ \\.]+$");
+
+  private final String                              template;
+  private final List<Part>                          parts;
+
+  /**
+   * Resolves the values of the tokens for one entity
+   */
+  public interface TokenResolver {
+    /**
+     * get the value for the given token
+     * 
+     * @param token
+     *          the token ($ and an upper case character)
+     * @return the value (already cleaned from invalid characters) or an empty string
+     */
+    String getValue(String token);
+
+    /**
+     * clean the destination after all tokens have been replaced
+     * 
+     * @param destination
+     *          the destination with all tokens replaced
+     * @return the cleaned destination
+     */
+    String cleanup(String destination);
+  }
+
+  private RenamerTemplate(String template, boolean optionalGroups) {
+    this.template = template;
+    this.parts = Collections.unmodifiableList(parse(template, optionalGroups));
+  }
+
+  /**
+   * get the compiled template for the given pattern (from the cache if it has been compiled before)
+   * 
+   * @param template
+   *          the renamer pattern
+   * @param optionalGroups
+   *          support optional groups, eg "{ Year $Y }" which are left out completely if the first token in it is empty
+   * @return the compiled template
+   */
+  public static RenamerTemplate compile(String template, boolean optionalGroups) {
+    String key = (optionalGroups ? "1" : "0") + template;
+    synchronized (CACHE) {
+      RenamerTemplate compiled = CACHE.get(key);
+      if (compiled == null) {
+        compiled = new RenamerTemplate(template, optionalGroups);
+        CACHE.put(key, compiled);
+      }
+      return compiled;
+    }
+  }
+
+  /**
+   * compile the given pattern without caching it (for patterns which are only used once)
+   * 
+   * @param template
+   *          the renamer pattern
+   * @return the compiled template
+   */
+  public static RenamerTemplate parse(String template) {
+    return new RenamerTemplate(template, false);
+  }
+
+  public String getTemplate() {
+    return template;
+  }
+
+  /**
+   * replace all tokens and clean the result
+   * 
+   * @param resolver
+   *          the resolver for the token values
+   * @return the cleaned destination
+   */
+  public String evaluate(TokenResolver resolver) {
+    return resolver.cleanup(replaceTokens(resolver));
+  }
+
+  /**
+   * replace all tokens without cleaning the result
+   * 
+   * @param resolver
+   *          the resolver for the token values
+   * @return the destination
+   */
+  public String replaceTokens(TokenResolver resolver) {
+    StringBuilder sb = new StringBuilder(template.length() + 32);
+    Map<String, String> values = new HashMap<>();
+    for (Part part : parts) {
+      part.append(sb, resolver, values);
+    }
+    return sb.toString();
+  }
+
+  private static String getValue(String token, TokenResolver resolver, Map<String, String> values) {
+    String value = values.get(token);
+    if (value == null) {
+      value = resolver.getValue(token);
+      if (value == null) {
+        value = "";
+      }
+      values.put(token, value);
+    }
+    return value;
+  }
+
+  private static List<Part> parse(String template, boolean optionalGroups) {
+    List<Part> parts = new ArrayList<>();
+    StringBuilder literal = new StringBuilder();
+    int i = 0;
+    while (i < template.length()) {
+      char c = template.charAt(i);
+      int end;
+      if (c == '$' && i + 1 < template.length() && isTokenCharacter(template.charAt(i + 1))) {
+        addLiteral(parts, literal);
+        parts.add(new TokenPart(getToken(template.charAt(i + 1))));
+        i += 2;
+      }
+      else if (optionalGroups && c == '{' && (end = template.indexOf('}', i + 1)) > 0) {
+        addLiteral(parts, literal);
+        String content = template.substring(i + 1, end);
+        int dollar = content.indexOf('$');
+        if (dollar >= 0 && dollar + 1 < content.length()) {
+          // the first token decides whether the group is used at all
+          parts.add(new OptionalGroupPart(getToken(content.charAt(dollar + 1)), parse(content, false)));
+        }
+        i = end + 1;
+      }
+      else {
+        literal.append(c);
+        i++;
+      }
+    }
+    addLiteral(parts, literal);
+    return parts;
+  }
+
+  private static void addLiteral(List<Part> parts, StringBuilder literal) {
+    if (literal.length() > 0) {
+      parts.add(new LiteralPart(literal.toString()));
+      literal.setLength(0);
+    }
+  }
+
+  private static boolean isTokenCharacter(char c) {
+    // same as [\w#] - # is for rating
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_' || c == '#';
+  }
+
+  private static String getToken(char c) {
+    return ("$" + c).toUpperCase(Locale.ROOT);
+  }
+
+  /**
+   * remove empty brackets like "()", "[ ]" or "{}"
+   * 
+   * @param destination
+   *          the destination to clean
+   * @return the cleaned destination
+   */
+  public static String removeEmptyBrackets(String destination) {
+    String result = EMPTY_PARENTHESES.matcher(destination).replaceAll("");
+    result = EMPTY_BRACKETS.matcher(result).replaceAll("");
+    return EMPTY_BRACES.matcher(result).replaceAll("");
+  }
+
+  /**
+   * strip out multiple and leading directory separators
+   * 
+   * @param destination
+   *          the destination to clean
+   * @param trimWhitespace
+   *          also remove whitespaces around directory separators
+   * @return the cleaned destination
+   */
+  public static String cleanDirectorySeparators(String destination, boolean trimWhitespace) {
+    String result = destination;
+    if (trimWhitespace) {
+      result = SPACES_BEFORE_SEP.matcher(result).replaceAll(SEP_REPLACEMENT);
+      result = SPACES_AFTER_SEP.matcher(result).replaceAll(SEP_REPLACEMENT);
+    }
+    result = MULTIPLE_SEPS.matcher(result).replaceAll(SEP_REPLACEMENT);
+    return LEADING_SEP.matcher(result).replaceAll("");
+  }
+
+  /**
+   * replace multiple spaces with a single one
+   * 
+   * @param destination
+   *          the destination to clean
+   * @return the cleaned and trimmed destination
+   */
+  public static String collapseSpaces(String destination) {
+    return MULTIPLE_SPACES.matcher(destination).replaceAll(" ").trim();
+  }
+
+  /**
+   * remove trailing dots and spaces
+   * 
+   * @param destination
+   *          the destination to clean
+   * @return the cleaned destination
+   */
+  public static String removeTrailingDots(String destination) {
+    return TRAILING_DOTS.matcher(destination).replaceAll("");
+  }
+
+  /**
+   * a LRU cache for the compiled templates
+   */
+  private static class TemplateCache extends LinkedHashMap<String, RenamerTemplate> {
+    private static final long serialVersionUID = 1L;
+
+    private TemplateCache() {
+      super(16, 0.75f, true);
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, RenamerTemplate> eldest) {
+      return size() > MAX_CACHED_TEMPLATES;
+    }
+  }
+
+  /*
+   * the parts of a compiled template
+   */
+  private interface Part {
+    void append(StringBuilder sb, TokenResolver resolver, Map<String, String> values);
+  }
+
+  private static class LiteralPart implements Part {
+    private final String text;
+
+    private LiteralPart(String text) {
+      this.text = text;
+    }
+
+    @Override
+    public void append(StringBuilder sb, TokenResolver resolver, Map<String, String> values) {
+      sb.append(text);
+    }
+  }
+
+  private static class TokenPart implements Part {
+    private final String token;
+
+    private TokenPart(String token) {
+      this.token = token;
+    }
+
+    @Override
+    public void append(StringBuilder sb, TokenResolver resolver, Map<String, String> values) {
+      sb.append(getValue(token, resolver, values));
+    }
+  }
+
+  private static class OptionalGroupPart implements Part {
+    private final String     token;
+    private final List<Part> parts;
+
+    private OptionalGroupPart(String token, List<Part> parts) {
+      this.token = token;
+      this.parts = parts;
+    }
+
+    @Override
+    public void append(StringBuilder sb, TokenResolver resolver, Map<String, String> values) {
+      // the value of the deciding token is cleaned like a destination on its own
+      String value = resolver.cleanup(getValue(token, resolver, values));
+      if (value.isEmpty()) {
+        return;
+      }
+      for (Part part : parts) {
+        if (part instanceof TokenPart && token.equals(((TokenPart) part).token)) {
+          sb.append(value);
+        }
+        else {
+          part.append(sb, resolver, values);
+        }
+      }
+    }
+  }
+}
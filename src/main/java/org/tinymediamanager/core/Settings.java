@@ -52,6 +52,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tinymediamanager.ReleaseInfo;
 import org.tinymediamanager.core.ImageCache.CacheType;
+import org.tinymediamanager.core.ImageCache.EvictionPolicy;
 import org.tinymediamanager.core.Message.MessageLevel;
 import org.tinymediamanager.core.movie.MovieFanartNaming;
 import org.tinymediamanager.core.movie.MovieNfoNaming;
@@ -96,11 +97,17 @@ public class Settings extends AbstractModelObject {
   private final static String         PROXY_PASSWORD              = "proxyPassword";
   private final static String         IMAGE_CACHE                 = "imageCache";
   private final static String         IMAGE_CACHE_TYPE            = "imageCacheType";
+  private final static String         IMAGE_CACHE_SIZE            = "imageCacheSize";
+  private final static String         IMAGE_CACHE_EVICTION        = "imageCacheEviction";
+  private final static String         IMAGE_DOWNLOADS_PER_HOST    = "imageDownloadsPerHost";
+  private final static String         DATABASE_FORMAT             = "databaseFormat";
   private final static String         LANGUAGE                    = "language";
   private final static String         WOL_DEVICES                 = "wolDevices";
 
   private final static String         UPNP_SHARE_LIBRARY          = "upnpShareLibrary";
   private final static String         UPNP_PLAY_ON_REMOTE         = "upnpRemotePlay";
+  private final static String         UPNP_MAX_STREAMS            = "upnpMaxStreams";
+  private final static String         MEDIA_INFO_THREADS          = "mediaInfoThreads";
 
   @XmlElementWrapper(name = TITLE_PREFIX)
   @XmlElement(name = PREFIX)
@@ -138,6 +145,10 @@ public class Settings extends AbstractModelObject {
 
   private boolean                     imageCache                  = true;
   private CacheType                   imageCacheType              = CacheType.SMOOTH;
+  private int                         imageCacheSize              = 2048;
+  private EvictionPolicy              imageCacheEviction          = EvictionPolicy.LRU;
+  private int                         imageDownloadsPerHost       = 2;
+  private DatabaseFormat              databaseFormat              = DatabaseFormat.JSON;
   private boolean                     dirty                       = false;
   private MovieSettings               movieSettings               = null;
   private TvShowSettings              tvShowSettings              = null;
@@ -159,6 +170,9 @@ public class Settings extends AbstractModelObject {
 
   private boolean                     upnpShareLibrary            = false;
   private boolean                     upnpRemotePlay              = false;
+  private int                         upnpMaxStreams              = 4;
+
+  private int                         mediaInfoThreads            = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
 
   /**
    * Instantiates a new settings.
@@ -991,6 +1005,90 @@ public class Settings extends AbstractModelObject {
     firePropertyChange(IMAGE_CACHE_TYPE, oldValue, newValue);
   }
 
+  /**
+   * Gets the maximum size of the image cache.
+   * 
+   * @return the maximum size in MB (0 = unlimited)
+   */
+  public int getImageCacheSize() {
+    return imageCacheSize;
+  }
+
+  /**
+   * Sets the maximum size of the image cache.
+   * 
+   * @param newValue
+   *          the maximum size in MB (0 = unlimited)
+   */
+  public void setImageCacheSize(int newValue) {
+    int oldValue = this.imageCacheSize;
+    this.imageCacheSize = newValue;
+    firePropertyChange(IMAGE_CACHE_SIZE, oldValue, newValue);
+  }
+
+  /**
+   * Gets the policy which cached images are removed first if the image cache exceeds its size.
+   * 
+   * @return the eviction policy
+   */
+  public EvictionPolicy getImageCacheEviction() {
+    return imageCacheEviction;
+  }
+
+  /**
+   * Sets the policy which cached images are removed first if the image cache exceeds its size.
+   * 
+   * @param newValue
+   *          the eviction policy
+   */
+  public void setImageCacheEviction(EvictionPolicy newValue) {
+    EvictionPolicy oldValue = this.imageCacheEviction;
+    this.imageCacheEviction = newValue;
+    firePropertyChange(IMAGE_CACHE_EVICTION, oldValue, newValue);
+  }
+
+  /**
+   * Gets the maximum amount of parallel artwork downloads from the same host.
+   * 
+   * @return the maximum amount of parallel downloads per host
+   */
+  public int getImageDownloadsPerHost() {
+    return imageDownloadsPerHost;
+  }
+
+  /**
+   * Sets the maximum amount of parallel artwork downloads from the same host.
+   * 
+   * @param newValue
+   *          the maximum amount of parallel downloads per host
+   */
+  public void setImageDownloadsPerHost(int newValue) {
+    int oldValue = this.imageDownloadsPerHost;
+    this.imageDownloadsPerHost = newValue;
+    firePropertyChange(IMAGE_DOWNLOADS_PER_HOST, oldValue, newValue);
+  }
+
+  /**
+   * Gets the format in which the entities are stored in the database.
+   * 
+   * @return the database format
+   */
+  public DatabaseFormat getDatabaseFormat() {
+    return databaseFormat;
+  }
+
+  /**
+   * Sets the format in which the entities are stored in the database; the database will be converted at the next start.
+   * 
+   * @param newValue
+   *          the database format
+   */
+  public void setDatabaseFormat(DatabaseFormat newValue) {
+    DatabaseFormat oldValue = this.databaseFormat;
+    this.databaseFormat = newValue;
+    firePropertyChange(DATABASE_FORMAT, oldValue, newValue);
+  }
+
   /**
    * is our library shared via UPNP?
    * 
@@ -1031,6 +1129,48 @@ public class Settings extends AbstractModelObject {
     firePropertyChange(UPNP_PLAY_ON_REMOTE, old, upnpRemotePlay);
   }
 
+  /**
+   * the maximum amount of files which are streamed at the same time via UPNP
+   * 
+   * @return the maximum amount of concurrent streams
+   */
+  public int getUpnpMaxStreams() {
+    return upnpMaxStreams;
+  }
+
+  /**
+   * the maximum amount of files which are streamed at the same time via UPNP
+   * 
+   * @param newValue
+   *          the maximum amount of concurrent streams
+   */
+  public void setUpnpMaxStreams(int newValue) {
+    int oldValue = this.upnpMaxStreams;
+    this.upnpMaxStreams = newValue;
+    firePropertyChange(UPNP_MAX_STREAMS, oldValue, newValue);
+  }
+
+  /**
+   * the amount of parallel workers for the MediaInfo extraction
+   * 
+   * @return the amount of workers (at least 1)
+   */
+  public int getMediaInfoThreads() {
+    return Math.max(1, mediaInfoThreads);
+  }
+
+  /**
+   * set the amount of parallel workers for the MediaInfo extraction
+   * 
+   * @param newValue
+   *          the amount of workers
+   */
+  public void setMediaInfoThreads(int newValue) {
+    int oldValue = this.mediaInfoThreads;
+    this.mediaInfoThreads = newValue;
+    firePropertyChange(MEDIA_INFO_THREADS, oldValue, newValue);
+  }
+
   /**
    * get Localge.getLanguage() 2 char from settings
    * 
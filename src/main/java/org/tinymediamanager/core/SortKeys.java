@@ -0,0 +1,58 @@
+/*
+ * Copyright 2012 - 2018 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.text.Normalizer;
+import java.text.RuleBasedCollator;
+import java.util.Locale;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * The class SortKeys. Creates the collation keys which are used to sort entities by their (sortable) titles. Comparing two collation keys is a
+ * plain byte comparison, so the keys should be created once per entity and be cached until the title changes
+ * 
+ * @author Manuel Laggner
+ */
+public class SortKeys {
+  private static final Collator COLLATOR = createCollator();
+
+  private static Collator createCollator() {
+    RuleBasedCollator defaultCollator = (RuleBasedCollator) Collator.getInstance();
+    try {
+      // default collator ignores whitespaces
+      // using hack from http://stackoverflow.com/questions/16567287/java-collation-ignores-space
+      return new RuleBasedCollator(defaultCollator.getRules().replace("<'_'", "<' '<'_'"));
+    }
+    catch (Exception e) {
+      return defaultCollator;
+    }
+  }
+
+  /**
+   * create the collation key for the given text (case insensitive)
+   * 
+   * @param text
+   *          the text to create the key for (null is treated as an empty text)
+   * @return the collation key
+   */
+  public static CollationKey create(String text) {
+    String normalized = Normalizer.normalize(StringUtils.defaultString(text).toLowerCase(Locale.ROOT), Normalizer.Form.NFD);
+    return COLLATOR.getCollationKey(normalized);
+  }
+}
@@ -67,7 +67,8 @@ public class TmmModuleManager {
    * start up tmm - do initialization code here
    */
   public void startUp() {
-
+    // remove the artwork downloads of a crashed session
+    ArtworkBlobStore.getInstance().clear();
   }
 
   /**
@@ -84,6 +85,9 @@ public class TmmModuleManager {
         }
       }
     }
+    MediaInfoCache.getInstance().close();
+    ImageCacheIndex.getInstance().logStatistics();
+    ArtworkBlobStore.getInstance().clear();
   }
 
   /**
@@ -101,5 +105,6 @@ public class TmmModuleManager {
         LOGGER.error("problem shutting down " + module.getModuleTitle() + ": " + e.getMessage());
       }
     }
+    MediaInfoCache.getInstance().clear();
   }
 }
@@ -531,6 +531,7 @@ public class Utils {
    *           if an IO error occurs moving the file
    */
   public static boolean moveDirectorySafe(Path srcDir, Path destDir) throws IOException {
+    DatasourceWatcher.registerOwnWrite(srcDir, destDir);
     // rip-off from
     // http://svn.apache.org/repos/asf/commons/proper/io/trunk/src/main/java/org/apache/commons/io/FileUtils.java
     if (srcDir == null) {
@@ -631,6 +632,7 @@ public class Utils {
    *           if an IO error occurs moving the file
    */
   public static boolean moveFileSafe(final Path srcFile, final Path destFile) throws IOException {
+    DatasourceWatcher.registerOwnWrite(srcFile, destFile);
     if (srcFile == null) {
       throw new NullPointerException("Source must not be null");
     }
@@ -742,6 +744,7 @@ public class Utils {
    *           if an IO error occurs moving the file
    */
   public static boolean copyFileSafe(final Path srcFile, final Path destFile, boolean overwrite) throws IOException {
+    DatasourceWatcher.registerOwnWrite(destFile);
     if (srcFile == null) {
       throw new NullPointerException("Source must not be null");
     }
@@ -817,6 +820,7 @@ public class Utils {
    * @return true/false if successful
    */
   public static boolean deleteFileWithBackup(Path file, String datasource) {
+    DatasourceWatcher.registerOwnWrite(file);
     Path ds = Paths.get(datasource);
 
     if (!file.startsWith(ds)) { // safety
@@ -854,6 +858,7 @@ public class Utils {
    * @return true/false if successful
    */
   public static boolean deleteFileSafely(Path file) {
+    DatasourceWatcher.registerOwnWrite(file);
     file = file.toAbsolutePath();
     if (Files.isDirectory(file)) {
       LOGGER.warn("Will not delete file '" + file + "': file is a directory!");
@@ -881,6 +886,7 @@ public class Utils {
    * @return true/false if successful
    */
   public static boolean deleteDirectorySafely(Path folder, String datasource) {
+    DatasourceWatcher.registerOwnWrite(folder);
     folder = folder.toAbsolutePath();
     Path ds = Paths.get(datasource);
 
@@ -1367,6 +1373,7 @@ public class Utils {
    */
   public static void writeStringToFile(Path file, String text) throws IOException {
     byte[] buf = text.getBytes(StandardCharsets.UTF_8);
+    DatasourceWatcher.registerOwnWrite(file);
     Files.write(file, buf);
   }
 
@@ -105,6 +105,7 @@ public abstract class MediaEntity extends AbstractModelObject {
   protected boolean                    newlyAdded        = false;
   protected boolean                    duplicate         = false;
   protected ReadWriteLock              readWriteLock     = new ReentrantReadWriteLock();
+  private volatile MediaFileIndex      mediaFileIndex    = null;
 
   public MediaEntity() {
   }
@@ -157,6 +158,35 @@ public abstract class MediaEntity extends AbstractModelObject {
     else {
       Collections.sort(mediaFiles);
     }
+    updateMediaFileIndex();
+  }
+
+  /**
+   * rebuild the index of the media files; has to be called after every change of the media files (while holding the write lock)
+   */
+  private void updateMediaFileIndex() {
+    mediaFileIndex = new MediaFileIndex(mediaFiles);
+  }
+
+  /**
+   * get the index of the media files. The index is immutable, so it can be used without holding the lock
+   * 
+   * @return the index of the media files
+   */
+  private MediaFileIndex getMediaFileIndex() {
+    MediaFileIndex index = mediaFileIndex;
+    if (index == null) {
+      // not built yet (e.g. freshly loaded from the database)
+      readWriteLock.readLock().lock();
+      try {
+        index = new MediaFileIndex(mediaFiles);
+        mediaFileIndex = index;
+      }
+      finally {
+        readWriteLock.readLock().unlock();
+      }
+    }
+    return index;
   }
 
   /**
@@ -504,6 +534,7 @@ public abstract class MediaEntity extends AbstractModelObject {
         MediaFile oldMf = mediaFiles.get(i);
         if (oldMf.getType() != mediaFile.getType()) {
           mediaFiles.remove(i);
+          updateMediaFileIndex();
         }
       }
     }
@@ -579,41 +610,20 @@ public abstract class MediaEntity extends AbstractModelObject {
   }
 
   public List<MediaFile> getMediaFiles() {
-    List<MediaFile> mf = new ArrayList<>();
-    readWriteLock.readLock().lock();
-    try {
-      mf.addAll(mediaFiles);
-    }
-    finally {
-      readWriteLock.readLock().unlock();
-    }
-    return mf;
+    return new ArrayList<>(getMediaFileIndex().getAll());
   }
 
   /**
    * gets all MediaFiles from specific type<br>
-   * <b>Can be one or multiple types!</b>
+   * <b>Can be one or multiple types!</b><br>
+   * The returned list is an unmodifiable snapshot; copy it if you need to change it
    * 
    * @param types
    *          1-N types
    * @return list of MF (may be empty, but never null)
    */
   public List<MediaFile> getMediaFiles(MediaFileType... types) {
-    List<MediaFile> mf = new ArrayList<>();
-    readWriteLock.readLock().lock();
-    for (MediaFile mediaFile : mediaFiles) {
-      boolean match = false;
-      for (MediaFileType type : types) {
-        if (mediaFile.getType().equals(type)) {
-          match = true;
-        }
-      }
-      if (match) {
-        mf.add(mediaFile);
-      }
-    }
-    readWriteLock.readLock().unlock();
-    return mf;
+    return getMediaFileIndex().get(types);
   }
 
   /**
@@ -625,17 +635,11 @@ public abstract class MediaEntity extends AbstractModelObject {
   public MediaFile getBiggestMediaFile(MediaFileType... types) {
     MediaFile mf = null;
 
-    readWriteLock.readLock().lock();
-    for (MediaFile mediaFile : mediaFiles) {
-      for (MediaFileType type : types) {
-        if (mediaFile.getType().equals(type)) {
-          if (mf == null || mediaFile.getFilesize() >= mf.getFilesize()) {
-            mf = mediaFile;
-          }
-        }
+    for (MediaFile mediaFile : getMediaFileIndex().get(types)) {
+      if (mf == null || mediaFile.getFilesize() >= mf.getFilesize()) {
+        mf = mediaFile;
       }
     }
-    readWriteLock.readLock().unlock();
     return mf;
   }
 
@@ -648,18 +652,12 @@ public abstract class MediaEntity extends AbstractModelObject {
    */
   public MediaFile getNewestMediaFilesOfType(MediaFileType... types) {
     MediaFile mf = null;
-    readWriteLock.readLock().lock();
-    for (MediaFile mediaFile : mediaFiles) {
-      for (MediaFileType type : types) {
-        if (mediaFile.getType().equals(type)) {
-          if (mf == null || mediaFile.getFiledate() >= mf.getFiledate()) {
-            // get the latter one
-            mf = new MediaFile(mediaFile);
-          }
-        }
+    for (MediaFile mediaFile : getMediaFileIndex().get(types)) {
+      if (mf == null || mediaFile.getFiledate() >= mf.getFiledate()) {
+        // get the latter one
+        mf = new MediaFile(mediaFile);
       }
     }
-    readWriteLock.readLock().unlock();
     return mf;
   }
 
@@ -673,19 +671,11 @@ public abstract class MediaEntity extends AbstractModelObject {
    */
   public List<MediaFile> getMediaFilesExceptType(MediaFileType... types) {
     List<MediaFile> mf = new ArrayList<>();
-    readWriteLock.readLock().lock();
-    for (MediaFile mediaFile : mediaFiles) {
-      boolean match = false;
-      for (MediaFileType type : types) {
-        if (mediaFile.getType().equals(type)) {
-          match = true;
-        }
-      }
-      if (!match) {
+    for (MediaFile mediaFile : getMediaFileIndex().getAll()) {
+      if (!MediaFileIndex.matches(mediaFile, types)) {
         mf.add(mediaFile);
       }
     }
-    readWriteLock.readLock().unlock();
     return mf;
   }
 
@@ -695,6 +685,7 @@ public abstract class MediaEntity extends AbstractModelObject {
     for (int i = mediaFiles.size() - 1; i >= 0; i--) {
       mediaFiles.remove(i);
     }
+    updateMediaFileIndex();
     readWriteLock.writeLock().unlock();
     for (MediaFile mediaFile : changedMediafiles) {
       fireRemoveEventForMediaFile(mediaFile);
@@ -704,7 +695,9 @@ public abstract class MediaEntity extends AbstractModelObject {
   public void removeFromMediaFiles(MediaFile mediaFile) {
     readWriteLock.writeLock().lock();
     try {
-      mediaFiles.remove(mediaFile);
+      if (mediaFiles.remove(mediaFile)) {
+        updateMediaFileIndex();
+      }
     }
     finally {
       readWriteLock.writeLock().unlock();
@@ -725,6 +718,7 @@ public abstract class MediaEntity extends AbstractModelObject {
         changedMediafiles.add(mediaFile);
       }
     }
+    updateMediaFileIndex();
     readWriteLock.writeLock().unlock();
     for (MediaFile mediaFile : changedMediafiles) {
       fireRemoveEventForMediaFile(mediaFile);
@@ -742,6 +736,7 @@ public abstract class MediaEntity extends AbstractModelObject {
         changedMediafiles.add(mediaFile);
       }
     }
+    updateMediaFileIndex();
     readWriteLock.writeLock().unlock();
     for (MediaFile mediaFile : changedMediafiles) {
       fireRemoveEventForMediaFile(mediaFile);
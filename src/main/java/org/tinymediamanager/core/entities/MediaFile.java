@@ -47,6 +47,7 @@ import org.slf4j.LoggerFactory;
 import org.tinymediamanager.Globals;
 import org.tinymediamanager.core.AbstractModelObject;
 import org.tinymediamanager.core.MediaFileType;
+import org.tinymediamanager.core.MediaInfoCache;
 import org.tinymediamanager.core.Utils;
 import org.tinymediamanager.scraper.util.LanguageUtils;
 import org.tinymediamanager.scraper.util.StrgUtils;
@@ -775,11 +776,11 @@ public class MediaFile extends AbstractModelObject implements Comparable<MediaFi
   }
 
   /**
-   * instantiates and gets new mediainfo object.
+   * gets the mediainfo object of the current thread (reuses the native handle) and takes a snapshot.
    */
   private void getMediaInfoSnapshot() {
     if (mediaInfo == null) {
-      mediaInfo = new MediaInfo();
+      mediaInfo = MediaInfo.getThreadInstance();
     }
 
     if (miSnapshot == null) {
@@ -1620,6 +1621,19 @@ public class MediaFile extends AbstractModelObject implements Comparable<MediaFi
    *          forces the execution, will not stop on already imported files
    */
   public void gatherMediaInformation(boolean force) {
+    gatherMediaInformation(force, false);
+  }
+
+  /**
+   * Gathers the media information via the native mediainfo lib.
+   * 
+   * @param force
+   *          forces the execution, will not stop on already imported files
+   * @param bypassCache
+   *          always read the media information from the file (and refresh the cached snapshot) - for an explicit reload of the media
+   *          information
+   */
+  public void gatherMediaInformation(boolean force, boolean bypassCache) {
     // check for supported filetype
     if (!isValidMediainfoFormat()) {
       // okay, we have no valid MI file, be sure it will not be triggered any more
@@ -1640,10 +1654,12 @@ public class MediaFile extends AbstractModelObject implements Comparable<MediaFi
     }
 
     // file size and last modified
+    boolean attributesRead = false;
     try {
       BasicFileAttributes attrs = Files.readAttributes(getFileAsPath(), BasicFileAttributes.class);
       filedate = attrs.lastModifiedTime().toMillis();
       setFilesize(attrs.size());
+      attributesRead = true;
     }
     catch (IOException e) {
       if (miSnapshot == null) { // maybe we set it already (from ISO) so only display message when empty
@@ -1675,6 +1691,19 @@ public class MediaFile extends AbstractModelObject implements Comparable<MediaFi
     if (isISO) {
       discFilesSizes = getMediaInfoSnapshotFromISO();
     }
+    else if (attributesRead) {
+      // unchanged files can be served from the cache without touching the media
+      miSnapshot = bypassCache ? null : MediaInfoCache.getInstance().get(getFileAsPath(), filesize, filedate);
+      if (miSnapshot == null) {
+        getMediaInfoSnapshot();
+        if (miSnapshot != null) {
+          MediaInfoCache.getInstance().put(getFileAsPath(), filesize, filedate, miSnapshot);
+        }
+      }
+      else {
+        LOGGER.trace("got MI from cache");
+      }
+    }
     else {
       getMediaInfoSnapshot();
     }
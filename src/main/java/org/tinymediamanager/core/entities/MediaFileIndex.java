@@ -0,0 +1,120 @@
+/*
+ * Copyright 2012 - 2018 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core.entities;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import org.tinymediamanager.core.MediaFileType;
+
+/**
+ * The class MediaFileIndex. An immutable snapshot of the media files of a media entity, indexed by their type. A new index is built on every
+ * change of the media files (copy-on-write), so readers can access the (unmodifiable) lists without locking and allocation
+ * 
+ * @author Manuel Laggner
+ */
+class MediaFileIndex {
+  private final List<MediaFile>                     all;
+  private final Map<MediaFileType, List<MediaFile>> byType;
+
+  MediaFileIndex(List<MediaFile> mediaFiles) {
+    all = Collections.unmodifiableList(new ArrayList<>(mediaFiles));
+
+    Map<MediaFileType, List<MediaFile>> lists = new EnumMap<>(MediaFileType.class);
+    for (MediaFile mediaFile : all) {
+      if (mediaFile.getType() == null) {
+        continue;
+      }
+      List<MediaFile> list = lists.get(mediaFile.getType());
+      if (list == null) {
+        list = new ArrayList<>(1);
+        lists.put(mediaFile.getType(), list);
+      }
+      list.add(mediaFile);
+    }
+
+    byType = new EnumMap<>(MediaFileType.class);
+    for (Map.Entry<MediaFileType, List<MediaFile>> entry : lists.entrySet()) {
+      byType.put(entry.getKey(), Collections.unmodifiableList(entry.getValue()));
+    }
+  }
+
+  /**
+   * get all media files (in the order of the media entity)
+   * 
+   * @return an unmodifiable list of all media files
+   */
+  List<MediaFile> getAll() {
+    return all;
+  }
+
+  /**
+   * get all media files of the given type
+   * 
+   * @param type
+   *          the type to get the media files for
+   * @return an unmodifiable list of the media files (may be empty, but never null)
+   */
+  List<MediaFile> get(MediaFileType type) {
+    List<MediaFile> list = byType.get(type);
+    if (list == null) {
+      return Collections.emptyList();
+    }
+    return list;
+  }
+
+  /**
+   * get all media files of the given types (in the order of the media entity)
+   * 
+   * @param types
+   *          1-N types
+   * @return an unmodifiable list of the media files (may be empty, but never null)
+   */
+  List<MediaFile> get(MediaFileType... types) {
+    if (types.length == 1) {
+      return get(types[0]);
+    }
+
+    List<MediaFile> mediaFiles = new ArrayList<>();
+    for (MediaFile mediaFile : all) {
+      if (matches(mediaFile, types)) {
+        mediaFiles.add(mediaFile);
+      }
+    }
+    return Collections.unmodifiableList(mediaFiles);
+  }
+
+  /**
+   * check if the type of the media file is one of the given types
+   * 
+   * @param mediaFile
+   *          the media file to check
+   * @param types
+   *          1-N types
+   * @return true/false
+   */
+  static boolean matches(MediaFile mediaFile, MediaFileType... types) {
+    for (MediaFileType type : types) {
+      if (mediaFile.getType() == type) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2012 - 2018 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core.movie;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.tinymediamanager.core.DatasourceWatcher;
+import org.tinymediamanager.core.movie.tasks.MovieUpdateDatasourceTask2;
+import org.tinymediamanager.core.threading.TmmTaskManager;
+
+/**
+ * The class MovieDatasourceWatcher. Watches the movie data sources and updates changed movie folders
+ * 
+ * @author Manuel Laggner
+ */
+public class MovieDatasourceWatcher extends DatasourceWatcher {
+
+  public MovieDatasourceWatcher() {
+    super("movie");
+  }
+
+  @Override
+  protected List<String> getDataSources() {
+    return MovieModuleManager.MOVIE_SETTINGS.getMovieDataSource();
+  }
+
+  @Override
+  protected Path resolveFolder(Path datasource, Path changedPath) {
+    // files in the datasource root (multi movie dir)
+    if (changedPath.equals(datasource)) {
+      return datasource;
+    }
+
+    // the changed file/folder belongs to an existing movie
+    for (Path dir = changedPath; dir != null && !dir.equals(datasource); dir = dir.getParent()) {
+      if (!MovieList.getInstance().getMoviesByPath(dir).isEmpty()) {
+        return dir;
+      }
+    }
+
+    // a new folder or a new file in a folder without movie
+    if (Files.isDirectory(changedPath)) {
+      return changedPath;
+    }
+    return changedPath.getParent();
+  }
+
+  @Override
+  protected void updateFolders(Path datasource, List<Path> folders) {
+    TmmTaskManager.getInstance().addMainTask(new MovieUpdateDatasourceTask2(datasource.toString(), folders));
+  }
+}
@@ -0,0 +1,388 @@
+/*
+ * Copyright 2012 - 2018 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core.movie;
+
+import static org.tinymediamanager.core.Constants.ACTORS;
+import static org.tinymediamanager.core.Constants.CERTIFICATION;
+import static org.tinymediamanager.core.Constants.DIRECTOR;
+import static org.tinymediamanager.core.Constants.GENRE;
+import static org.tinymediamanager.core.Constants.MEDIA_FILES;
+import static org.tinymediamanager.core.Constants.MEDIA_INFORMATION;
+import static org.tinymediamanager.core.Constants.MOVIESET;
+import static org.tinymediamanager.core.Constants.ORIGINAL_TITLE;
+import static org.tinymediamanager.core.Constants.PRODUCERS;
+import static org.tinymediamanager.core.Constants.TAG;
+import static org.tinymediamanager.core.Constants.TITLE;
+import static org.tinymediamanager.core.Constants.WATCHED;
+import static org.tinymediamanager.core.Constants.WRITER;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang3.StringUtils;
+import org.tinymediamanager.core.NGramIndex;
+import org.tinymediamanager.core.entities.MediaFile;
+import org.tinymediamanager.core.movie.entities.Movie;
+import org.tinymediamanager.core.movie.entities.MovieActor;
+import org.tinymediamanager.core.movie.entities.MovieProducer;
+import org.tinymediamanager.scraper.entities.Certification;
+import org.tinymediamanager.scraper.entities.MediaGenres;
+
+/**
+ * The class MovieFilterIndex. Keeps a bitset per filter facet (genre, certification, tag, watched, movie set, video format/codec, duplicates
+ * and offline) and n-gram indices of the cast and the titles of all movies, so that the filters of the movie list can be evaluated as bitset
+ * intersections.<br>
+ * Every movie gets a stable slot (the bit in the bitsets); slots of removed movies are reused. Changed movies are only marked as dirty and
+ * re-indexed with the next filter request
+ * 
+ * @author Manuel Laggner
+ */
+public class MovieFilterIndex {
+  private static final String[]            HD_FORMATS     = { MediaFile.VIDEO_FORMAT_720P, MediaFile.VIDEO_FORMAT_1080P,
+      MediaFile.VIDEO_FORMAT_4K, MediaFile.VIDEO_FORMAT_8K };
+  // the properties of a movie which influence the index
+  private static final Set<String>         INDEXED        = new HashSet<>(Arrays.asList(GENRE, CERTIFICATION, TAG, MEDIA_FILES,
+      MEDIA_INFORMATION, WATCHED, MOVIESET, DIRECTOR, WRITER, ACTORS, PRODUCERS, TITLE, ORIGINAL_TITLE, "offline"));
+
+  private final Map<Movie, Integer>        slots          = new IdentityHashMap<>();
+  private final List<IndexKeys>            indexedKeys    = new ArrayList<>();
+  private final BitSet                     usedSlots      = new BitSet();
+  private final Set<Movie>                 dirtyMovies    = Collections.newSetFromMap(new IdentityHashMap<Movie, Boolean>());
+  private volatile int                     version;
+
+  private final Map<MediaGenres, BitSet>   genres         = new HashMap<>();
+  private final Map<Certification, BitSet> certifications = new HashMap<>();
+  private final Map<String, BitSet>        tags           = new HashMap<>();
+  private final Map<String, BitSet>        videoFormats   = new HashMap<>();
+  private final Map<String, BitSet>        videoCodecs    = new HashMap<>();
+  private final BitSet                     untagged       = new BitSet();
+  private final BitSet                     watched        = new BitSet();
+  private final BitSet                     inMovieSet     = new BitSet();
+  private final BitSet                     duplicates     = new BitSet();
+  private final BitSet                     offline        = new BitSet();
+  private final NGramIndex                 cast           = new NGramIndex();
+  private final NGramIndex                 titles         = new NGramIndex();
+
+  /**
+   * add the movie to the index
+   * 
+   * @param movie
+   *          the movie to add
+   */
+  synchronized void addMovie(Movie movie) {
+    if (slots.containsKey(movie)) {
+      return;
+    }
+    int slot = usedSlots.nextClearBit(0);
+    usedSlots.set(slot);
+    slots.put(movie, slot);
+    while (indexedKeys.size() <= slot) {
+      indexedKeys.add(null);
+    }
+    index(movie, slot);
+    version++;
+  }
+
+  /**
+   * remove the movie from the index
+   * 
+   * @param movie
+   *          the movie to remove
+   */
+  synchronized void removeMovie(Movie movie) {
+    Integer slot = slots.remove(movie);
+    if (slot == null) {
+      return;
+    }
+    dirtyMovies.remove(movie);
+    unindex(slot);
+    usedSlots.clear(slot);
+    version++;
+  }
+
+  /**
+   * mark the movie as changed if the given property is indexed; it will be re-indexed with the next filter request
+   * 
+   * @param movie
+   *          the changed movie
+   * @param property
+   *          the name of the changed property
+   */
+  synchronized void markDirty(Movie movie, String property) {
+    if (INDEXED.contains(property) && slots.containsKey(movie) && dirtyMovies.add(movie)) {
+      version++;
+    }
+  }
+
+  /**
+   * mark all movies as changed (e.g. after a property without change events has been changed)
+   */
+  synchronized void markAllDirty() {
+    dirtyMovies.addAll(slots.keySet());
+    version++;
+  }
+
+  /**
+   * get the version of the index; it is increased on every change, so results of filter() can be cached until the version changes
+   * 
+   * @return the version of the index
+   */
+  public int getVersion() {
+    return version;
+  }
+
+  /**
+   * get the slot of the given movie (the bit in the results of filter())
+   * 
+   * @param movie
+   *          the movie
+   * @return the slot or -1 if the movie is not indexed
+   */
+  public synchronized int getSlot(Movie movie) {
+    Integer slot = slots.get(movie);
+    return slot != null ? slot : -1;
+  }
+
+  /**
+   * get all movies matching the indexed filters of the given search options. All other options have to be checked by the caller
+   * 
+   * @param searchOptions
+   *          the search options
+   * @return the slots of all matching movies
+   */
+  public synchronized BitSet filter(Map<MovieSearchOptions, Object> searchOptions) {
+    reindexDirtyMovies();
+    BitSet result = (BitSet) usedSlots.clone();
+
+    if (searchOptions.containsKey(MovieSearchOptions.DUPLICATES)) {
+      result.and(duplicates);
+    }
+
+    if (searchOptions.containsKey(MovieSearchOptions.WATCHED)) {
+      restrict(result, watched, (Boolean) searchOptions.get(MovieSearchOptions.WATCHED));
+    }
+
+    if (searchOptions.containsKey(MovieSearchOptions.GENRE)) {
+      result.and(get(genres, (MediaGenres) searchOptions.get(MovieSearchOptions.GENRE)));
+    }
+
+    if (searchOptions.containsKey(MovieSearchOptions.CERTIFICATION)) {
+      result.and(get(certifications, (Certification) searchOptions.get(MovieSearchOptions.CERTIFICATION)));
+    }
+
+    if (searchOptions.containsKey(MovieSearchOptions.CAST)) {
+      result.and(cast.search((String) searchOptions.get(MovieSearchOptions.CAST)));
+    }
+
+    if (searchOptions.containsKey(MovieSearchOptions.TAG) && searchOptions.get(MovieSearchOptions.TAG) instanceof List) {
+      boolean tagged = false;
+      for (Object tag : (List<?>) searchOptions.get(MovieSearchOptions.TAG)) {
+        if (tag instanceof String && StringUtils.isNotBlank((String) tag)) {
+          result.and(get(tags, (String) tag));
+          tagged = true;
+        }
+      }
+      // special check for empty tags
+      if (!tagged) {
+        result.and(untagged);
+      }
+    }
+
+    if (searchOptions.containsKey(MovieSearchOptions.MOVIESET)) {
+      restrict(result, inMovieSet, (Boolean) searchOptions.get(MovieSearchOptions.MOVIESET));
+    }
+
+    if (searchOptions.containsKey(MovieSearchOptions.VIDEO_FORMAT)) {
+      String videoFormat = (String) searchOptions.get(MovieSearchOptions.VIDEO_FORMAT);
+      if (MediaFile.VIDEO_FORMAT_HD.equals(videoFormat) || MediaFile.VIDEO_FORMAT_SD.equals(videoFormat)) {
+        BitSet hd = new BitSet();
+        for (String format : HD_FORMATS) {
+          hd.or(get(videoFormats, format));
+        }
+        restrict(result, hd, MediaFile.VIDEO_FORMAT_HD.equals(videoFormat));
+      }
+      else {
+        result.and(get(videoFormats, videoFormat));
+      }
+    }
+
+    if (searchOptions.containsKey(MovieSearchOptions.VIDEO_CODEC)) {
+      result.and(get(videoCodecs, (String) searchOptions.get(MovieSearchOptions.VIDEO_CODEC)));
+    }
+
+    if (searchOptions.containsKey(MovieSearchOptions.OFFLINE)) {
+      restrict(result, offline, (Boolean) searchOptions.get(MovieSearchOptions.OFFLINE));
+    }
+
+    return result;
+  }
+
+  /**
+   * get all movies containing all (whitespace separated) words of the given text in their title or original title
+   * 
+   * @param text
+   *          the text to search for
+   * @return the slots of all matching movies
+   */
+  public synchronized BitSet filterTitle(String text) {
+    reindexDirtyMovies();
+    BitSet result = (BitSet) usedSlots.clone();
+    for (String word : StringUtils.split(StringUtils.defaultString(text))) {
+      result.and(titles.search(word));
+    }
+    return result;
+  }
+
+  private void reindexDirtyMovies() {
+    for (Movie movie : dirtyMovies) {
+      Integer slot = slots.get(movie);
+      if (slot != null) {
+        unindex(slot);
+        index(movie, slot);
+      }
+    }
+    dirtyMovies.clear();
+  }
+
+  private void index(Movie movie, int slot) {
+    IndexKeys keys = new IndexKeys(movie);
+    indexedKeys.set(slot, keys);
+
+    for (MediaGenres genre : keys.genres) {
+      add(genres, genre, slot);
+    }
+    add(certifications, keys.certification, slot);
+    for (String tag : keys.tags) {
+      add(tags, tag, slot);
+    }
+    if (keys.tags.isEmpty()) {
+      untagged.set(slot);
+    }
+    add(videoFormats, keys.videoFormat, slot);
+    add(videoCodecs, keys.videoCodec, slot);
+    watched.set(slot, movie.isWatched());
+    inMovieSet.set(slot, movie.getMovieSet() != null);
+    duplicates.set(slot, movie.isDuplicate());
+    offline.set(slot, movie.isOffline());
+
+    List<String> castNames = new ArrayList<>();
+    castNames.add(movie.getDirector());
+    castNames.add(movie.getWriter());
+    for (MovieActor actor : new ArrayList<>(movie.getActors())) {
+      castNames.add(actor.getName());
+    }
+    for (MovieProducer producer : new ArrayList<>(movie.getProducers())) {
+      castNames.add(producer.getName());
+    }
+    cast.set(slot, castNames);
+
+    List<String> movieTitles = new ArrayList<>(2);
+    movieTitles.add(movie.getTitle());
+    movieTitles.add(movie.getOriginalTitle());
+    titles.set(slot, movieTitles);
+  }
+
+  private void unindex(int slot) {
+    IndexKeys keys = indexedKeys.get(slot);
+    if (keys == null) {
+      return;
+    }
+    indexedKeys.set(slot, null);
+
+    for (MediaGenres genre : keys.genres) {
+      remove(genres, genre, slot);
+    }
+    remove(certifications, keys.certification, slot);
+    for (String tag : keys.tags) {
+      remove(tags, tag, slot);
+    }
+    remove(videoFormats, keys.videoFormat, slot);
+    remove(videoCodecs, keys.videoCodec, slot);
+    untagged.clear(slot);
+    watched.clear(slot);
+    inMovieSet.clear(slot);
+    duplicates.clear(slot);
+    offline.clear(slot);
+    cast.remove(slot);
+    titles.remove(slot);
+  }
+
+  private static void restrict(BitSet result, BitSet facet, boolean included) {
+    if (included) {
+      result.and(facet);
+    }
+    else {
+      result.andNot(facet);
+    }
+  }
+
+  private static <K> BitSet get(Map<K, BitSet> facet, K key) {
+    BitSet bitSet = key != null ? facet.get(key) : null;
+    return bitSet != null ? bitSet : new BitSet();
+  }
+
+  private static <K> void add(Map<K, BitSet> facet, K key, int slot) {
+    if (key == null) {
+      return;
+    }
+    BitSet bitSet = facet.get(key);
+    if (bitSet == null) {
+      bitSet = new BitSet();
+      facet.put(key, bitSet);
+    }
+    bitSet.set(slot);
+  }
+
+  private static <K> void remove(Map<K, BitSet> facet, K key, int slot) {
+    if (key == null) {
+      return;
+    }
+    BitSet bitSet = facet.get(key);
+    if (bitSet != null) {
+      bitSet.clear(slot);
+      if (bitSet.isEmpty()) {
+        facet.remove(key);
+      }
+    }
+  }
+
+  /**
+   * the values under which a movie has been indexed (needed to remove the movie from the index after its values have been changed)
+   */
+  private static class IndexKeys {
+    private final List<MediaGenres> genres;
+    private final Certification     certification;
+    private final List<String>      tags;
+    private final String            videoFormat;
+    private final String            videoCodec;
+
+    private IndexKeys(Movie movie) {
+      this.genres = new ArrayList<>(movie.getGenres());
+      this.certification = movie.getCertification();
+      this.tags = new ArrayList<>(movie.getTags());
+      this.videoFormat = movie.getMediaInfoVideoFormat();
+      this.videoCodec = movie.getMediaInfoVideoCodec();
+    }
+  }
+}
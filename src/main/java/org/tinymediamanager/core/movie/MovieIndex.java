@@ -0,0 +1,260 @@
+/*
+ * Copyright 2012 - 2018 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core.movie;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.commons.lang3.StringUtils;
+import org.tinymediamanager.core.movie.entities.Movie;
+import org.tinymediamanager.core.movie.entities.MovieSet;
+
+/**
+ * The class MovieIndex. A secondary index layer for the MovieList which offers O(1) lookups of movies (by db id, path, IMDB id and TMDB id) and
+ * movie sets (by db id, TMDB id and title). Readers do not need any lock; all modifications are synchronized
+ * 
+ * @author Manuel Laggner
+ */
+class MovieIndex {
+  private final ConcurrentMap<UUID, Movie>             moviesByDbId      = new ConcurrentHashMap<>();
+  private final ConcurrentMap<Path, List<Movie>>       moviesByPath      = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, List<Movie>>     moviesByImdbId    = new ConcurrentHashMap<>();
+  private final ConcurrentMap<Integer, List<Movie>>    moviesByTmdbId    = new ConcurrentHashMap<>();
+  private final Map<Movie, IndexKeys>                  indexedMovies     = new IdentityHashMap<>();
+
+  private final ConcurrentMap<UUID, MovieSet>          movieSetsByDbId   = new ConcurrentHashMap<>();
+  private final ConcurrentMap<Integer, List<MovieSet>> movieSetsByTmdbId = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, List<MovieSet>>  movieSetsByTitle  = new ConcurrentHashMap<>();
+  private final Map<MovieSet, IndexKeys>               indexedMovieSets  = new IdentityHashMap<>();
+
+  /**
+   * add the movie to the index (or update the index if the movie is already indexed)
+   * 
+   * @param movie
+   *          the movie to index
+   */
+  synchronized void addMovie(Movie movie) {
+    IndexKeys oldKeys = indexedMovies.get(movie);
+    IndexKeys newKeys = new IndexKeys(normalizePath(movie.getPathNIO()), movie.getImdbId(), movie.getTmdbId(), null);
+
+    if (oldKeys != null) {
+      removeFromIndex(moviesByPath, oldKeys.path, movie);
+      removeFromIndex(moviesByImdbId, oldKeys.imdbId, movie);
+      removeFromIndex(moviesByTmdbId, oldKeys.tmdbId, movie);
+    }
+
+    moviesByDbId.put(movie.getDbId(), movie);
+    addToIndex(moviesByPath, newKeys.path, movie);
+    addToIndex(moviesByImdbId, newKeys.imdbId, movie);
+    addToIndex(moviesByTmdbId, newKeys.tmdbId, movie);
+    indexedMovies.put(movie, newKeys);
+  }
+
+  /**
+   * re-index the movie after a change of an indexed property (path, IDs). Movies which are not in the index will be ignored
+   * 
+   * @param movie
+   *          the changed movie
+   */
+  synchronized void updateMovie(Movie movie) {
+    if (indexedMovies.containsKey(movie)) {
+      addMovie(movie);
+    }
+  }
+
+  /**
+   * remove the movie from the index
+   * 
+   * @param movie
+   *          the movie to remove
+   */
+  synchronized void removeMovie(Movie movie) {
+    IndexKeys oldKeys = indexedMovies.remove(movie);
+    if (oldKeys == null) {
+      return;
+    }
+
+    moviesByDbId.remove(movie.getDbId(), movie);
+    removeFromIndex(moviesByPath, oldKeys.path, movie);
+    removeFromIndex(moviesByImdbId, oldKeys.imdbId, movie);
+    removeFromIndex(moviesByTmdbId, oldKeys.tmdbId, movie);
+  }
+
+  /**
+   * add the movie set to the index (or update the index if the movie set is already indexed)
+   * 
+   * @param movieSet
+   *          the movie set to index
+   */
+  synchronized void addMovieSet(MovieSet movieSet) {
+    IndexKeys oldKeys = indexedMovieSets.get(movieSet);
+    IndexKeys newKeys = new IndexKeys(null, null, movieSet.getTmdbId(), movieSet.getTitle());
+
+    if (oldKeys != null) {
+      removeFromIndex(movieSetsByTmdbId, oldKeys.tmdbId, movieSet);
+      removeFromIndex(movieSetsByTitle, oldKeys.title, movieSet);
+    }
+
+    movieSetsByDbId.put(movieSet.getDbId(), movieSet);
+    addToIndex(movieSetsByTmdbId, newKeys.tmdbId, movieSet);
+    addToIndex(movieSetsByTitle, newKeys.title, movieSet);
+    indexedMovieSets.put(movieSet, newKeys);
+  }
+
+  /**
+   * re-index the movie set after a change of an indexed property (title, TMDB id). Movie sets which are not in the index will be ignored
+   * 
+   * @param movieSet
+   *          the changed movie set
+   */
+  synchronized void updateMovieSet(MovieSet movieSet) {
+    if (indexedMovieSets.containsKey(movieSet)) {
+      addMovieSet(movieSet);
+    }
+  }
+
+  /**
+   * remove the movie set from the index
+   * 
+   * @param movieSet
+   *          the movie set to remove
+   */
+  synchronized void removeMovieSet(MovieSet movieSet) {
+    IndexKeys oldKeys = indexedMovieSets.remove(movieSet);
+    if (oldKeys == null) {
+      return;
+    }
+
+    movieSetsByDbId.remove(movieSet.getDbId(), movieSet);
+    removeFromIndex(movieSetsByTmdbId, oldKeys.tmdbId, movieSet);
+    removeFromIndex(movieSetsByTitle, oldKeys.title, movieSet);
+  }
+
+  boolean containsMovie(Movie movie) {
+    return movie != null && moviesByDbId.get(movie.getDbId()) == movie;
+  }
+
+  Movie getMovie(UUID uuid) {
+    if (uuid == null) {
+      return null;
+    }
+    return moviesByDbId.get(uuid);
+  }
+
+  List<Movie> getMoviesByPath(Path path) {
+    return getFromIndex(moviesByPath, normalizePath(path));
+  }
+
+  List<Movie> getMoviesByImdbId(String imdbId) {
+    return getFromIndex(moviesByImdbId, StringUtils.isBlank(imdbId) ? null : imdbId);
+  }
+
+  List<Movie> getMoviesByTmdbId(int tmdbId) {
+    return getFromIndex(moviesByTmdbId, tmdbId > 0 ? tmdbId : null);
+  }
+
+  MovieSet getMovieSet(UUID uuid) {
+    if (uuid == null) {
+      return null;
+    }
+    return movieSetsByDbId.get(uuid);
+  }
+
+  List<MovieSet> getMovieSetsByTmdbId(int tmdbId) {
+    return getFromIndex(movieSetsByTmdbId, tmdbId > 0 ? tmdbId : null);
+  }
+
+  List<MovieSet> getMovieSetsByTitle(String title) {
+    return getFromIndex(movieSetsByTitle, title);
+  }
+
+  /**
+   * normalize the given path for the index
+   * 
+   * @param path
+   *          the path to normalize
+   * @return the absolute and normalized path or null
+   */
+  static Path normalizePath(Path path) {
+    if (path == null) {
+      return null;
+    }
+    return path.toAbsolutePath().normalize();
+  }
+
+  private static <K, V> void addToIndex(ConcurrentMap<K, List<V>> index, K key, V value) {
+    if (key == null) {
+      return;
+    }
+    List<V> values = index.get(key);
+    if (values == null) {
+      values = new CopyOnWriteArrayList<>();
+      index.put(key, values);
+    }
+    if (!values.contains(value)) {
+      values.add(value);
+    }
+  }
+
+  private static <K, V> void removeFromIndex(ConcurrentMap<K, List<V>> index, K key, V value) {
+    if (key == null) {
+      return;
+    }
+    List<V> values = index.get(key);
+    if (values != null) {
+      values.remove(value);
+      if (values.isEmpty()) {
+        index.remove(key, values);
+      }
+    }
+  }
+
+  private static <K, V> List<V> getFromIndex(ConcurrentMap<K, List<V>> index, K key) {
+    if (key == null) {
+      return Collections.emptyList();
+    }
+    List<V> values = index.get(key);
+    if (values == null) {
+      return Collections.emptyList();
+    }
+    return new ArrayList<>(values);
+  }
+
+  /**
+   * the keys an entity has been indexed with (needed to clean up the index after changes)
+   */
+  private static class IndexKeys {
+    private final Path    path;
+    private final String  imdbId;
+    private final Integer tmdbId;
+    private final String  title;
+
+    private IndexKeys(Path path, String imdbId, int tmdbId, String title) {
+      this.path = path;
+      this.imdbId = StringUtils.isBlank(imdbId) ? null : imdbId;
+      this.tmdbId = tmdbId > 0 ? tmdbId : null;
+      this.title = StringUtils.isBlank(title) ? null : title;
+    }
+  }
+}
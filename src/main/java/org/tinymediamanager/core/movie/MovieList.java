@@ -16,8 +16,14 @@
 package org.tinymediamanager.core.movie;
 
 import static org.tinymediamanager.core.Constants.CERTIFICATION;
+import static org.tinymediamanager.core.Constants.GENRE;
+import static org.tinymediamanager.core.Constants.IMDB;
 import static org.tinymediamanager.core.Constants.MEDIA_FILES;
 import static org.tinymediamanager.core.Constants.MEDIA_INFORMATION;
+import static org.tinymediamanager.core.Constants.PATH;
+import static org.tinymediamanager.core.Constants.TITLE;
+import static org.tinymediamanager.core.Constants.TITLE_SORTABLE;
+import static org.tinymediamanager.core.Constants.TMDB;
 
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
@@ -27,6 +33,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
@@ -36,7 +43,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.apache.commons.lang3.LocaleUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -46,6 +52,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tinymediamanager.core.AbstractModelObject;
 import org.tinymediamanager.core.Constants;
+import org.tinymediamanager.core.FacetRegistry;
+import org.tinymediamanager.core.MediaEntityDatabaseLoader;
 import org.tinymediamanager.core.MediaFileType;
 import org.tinymediamanager.core.MediaSource;
 import org.tinymediamanager.core.Message;
@@ -61,12 +69,12 @@ import org.tinymediamanager.scraper.MediaSearchOptions;
 import org.tinymediamanager.scraper.MediaSearchResult;
 import org.tinymediamanager.scraper.ScraperType;
 import org.tinymediamanager.scraper.entities.Certification;
+import org.tinymediamanager.scraper.entities.MediaGenres;
 import org.tinymediamanager.scraper.entities.MediaLanguages;
 import org.tinymediamanager.scraper.entities.MediaType;
 import org.tinymediamanager.scraper.mediaprovider.IMovieMetadataProvider;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.ObjectReader;
 
 import ca.odell.glazedlists.BasicEventList;
 import ca.odell.glazedlists.GlazedLists;
@@ -78,19 +86,25 @@ import ca.odell.glazedlists.ObservableElementList;
  * @author Manuel Laggner
  */
 public class MovieList extends AbstractModelObject {
-  private static final Logger          LOGGER             = LoggerFactory.getLogger(MovieList.class);
-  private static MovieList             instance;
-
-  private final MovieSettings          movieSettings;
-  private final List<Movie>            movieList;
-  private final List<MovieSet>         movieSetList;
-  private final List<String>           tagsObservable;
-  private final List<String>           videoCodecsObservable;
-  private final List<String>           audioCodecsObservable;
-  private final List<Certification>    certificationsObservable;
-
-  private final PropertyChangeListener tagListener;
-  private final Comparator<MovieSet>   movieSetComparator = new MovieSetComparator();
+  private static final Logger                LOGGER             = LoggerFactory.getLogger(MovieList.class);
+  private static MovieList                   instance;
+
+  private final MovieSettings                movieSettings;
+  private final List<Movie>                  movieList;
+  private final List<MovieSet>               movieSetList;
+  private final FacetRegistry<String>        tags;
+  private final FacetRegistry<String>        videoCodecs;
+  private final FacetRegistry<String>        audioCodecs;
+  private final FacetRegistry<String>        videoFormats;
+  private final FacetRegistry<Certification> certifications;
+  private final FacetRegistry<MediaGenres>   genres;
+  private final List<FacetRegistry<?>>       facets;
+  private final MovieIndex                   movieIndex;
+  private final MovieFilterIndex             filterIndex;
+
+  private final PropertyChangeListener       tagListener;
+  private final PropertyChangeListener       movieSetListener;
+  private final Comparator<MovieSet>         movieSetComparator = new MovieSetComparator();
 
   /**
    * Instantiates a new movie list.
@@ -99,15 +113,25 @@ public class MovieList extends AbstractModelObject {
     // create all lists
     movieList = new ObservableElementList<>(GlazedLists.threadSafeList(new BasicEventList<Movie>()), GlazedLists.beanConnector(Movie.class));
     movieSetList = ObservableCollections.observableList(Collections.synchronizedList(new ArrayList<MovieSet>()));
-    tagsObservable = ObservableCollections.observableList(new CopyOnWriteArrayList<String>());
-    videoCodecsObservable = ObservableCollections.observableList(new CopyOnWriteArrayList<String>());
-    audioCodecsObservable = ObservableCollections.observableList(new CopyOnWriteArrayList<String>());
-    certificationsObservable = ObservableCollections.observableList(new CopyOnWriteArrayList<Certification>());
+    movieIndex = new MovieIndex();
+    filterIndex = new MovieFilterIndex();
+
+    // the facets (all used values of tags, codecs, ...); the name of the facet is the name of the event which is fired on changes
+    tags = new FacetRegistry<>("tag");
+    videoCodecs = new FacetRegistry<>("videoCodec");
+    audioCodecs = new FacetRegistry<>("audioCodec");
+    videoFormats = new FacetRegistry<>("videoFormat");
+    certifications = new FacetRegistry<>("certification");
+    genres = new FacetRegistry<>("genre");
+    facets = Arrays.<FacetRegistry<?>> asList(tags, videoCodecs, audioCodecs, videoFormats, certifications, genres);
 
     // the tag listener: its used to always have a full list of all tags used in tmm
     tagListener = new PropertyChangeListener() {
       @Override
       public void propertyChange(PropertyChangeEvent evt) {
+        // the filters have to be re-evaluated for the changed movie
+        filterIndex.markDirty((Movie) evt.getSource(), evt.getPropertyName());
+
         // listen to changes of tags
         if ("tag".equals(evt.getPropertyName())) {
           Movie movie = (Movie) evt.getSource();
@@ -121,6 +145,26 @@ public class MovieList extends AbstractModelObject {
           Movie movie = (Movie) evt.getSource();
           updateCertifications(movie);
         }
+        if (GENRE.equals(evt.getPropertyName())) {
+          Movie movie = (Movie) evt.getSource();
+          updateGenres(movie);
+        }
+        // keep the index up to date
+        if (PATH.equals(evt.getPropertyName()) || IMDB.equals(evt.getPropertyName()) || TMDB.equals(evt.getPropertyName())) {
+          Movie movie = (Movie) evt.getSource();
+          movieIndex.updateMovie(movie);
+        }
+      }
+    };
+
+    // the movie set listener: keeps the index up to date
+    movieSetListener = new PropertyChangeListener() {
+      @Override
+      public void propertyChange(PropertyChangeEvent evt) {
+        if (TITLE.equals(evt.getPropertyName()) || TMDB.equals(evt.getPropertyName())) {
+          MovieSet movieSet = (MovieSet) evt.getSource();
+          movieIndex.updateMovieSet(movieSet);
+        }
       }
     };
 
@@ -146,12 +190,17 @@ public class MovieList extends AbstractModelObject {
    *          the movie
    */
   public void addMovie(Movie movie) {
-    if (!movieList.contains(movie)) {
+    if (!movieIndex.containsMovie(movie)) {
       int oldValue = movieList.size();
-      movieList.add(movie);
 
-      updateTags(movie);
+      // the filter index has to know the movie (and has to be informed about its changes) before the filters of the movie list see it
+      filterIndex.addMovie(movie);
       movie.addPropertyChangeListener(tagListener);
+
+      movieList.add(movie);
+      movieIndex.addMovie(movie);
+
+      updateFacets(movie);
       firePropertyChange("movies", null, movieList);
       firePropertyChange("movieCount", oldValue, movieList.size());
     }
@@ -221,11 +270,16 @@ public class MovieList extends AbstractModelObject {
     }
     Set<MovieSet> modifiedMovieSets = new HashSet<>();
     int oldValue = movieList.size();
+    beginFacetBulk();
 
     // remove in inverse order => performance
     for (int i = movies.size() - 1; i >= 0; i--) {
       Movie movie = movies.get(i);
       movieList.remove(movie);
+      movieIndex.removeMovie(movie);
+      filterIndex.removeMovie(movie);
+      removeFacets(movie);
+      movie.removePropertyChangeListener(tagListener);
       if (movie.getMovieSet() != null) {
         MovieSet movieSet = movie.getMovieSet();
 
@@ -241,6 +295,7 @@ public class MovieList extends AbstractModelObject {
       }
     }
 
+    endFacetBulk();
     firePropertyChange("movies", null, movieList);
     firePropertyChange("movieCount", oldValue, movieList.size());
   }
@@ -257,12 +312,17 @@ public class MovieList extends AbstractModelObject {
     }
     Set<MovieSet> modifiedMovieSets = new HashSet<>();
     int oldValue = movieList.size();
+    beginFacetBulk();
 
     // remove in inverse order => performance
     for (int i = movies.size() - 1; i >= 0; i--) {
       Movie movie = movies.get(i);
       movie.deleteFilesSafely();
       movieList.remove(movie);
+      movieIndex.removeMovie(movie);
+      filterIndex.removeMovie(movie);
+      removeFacets(movie);
+      movie.removePropertyChangeListener(tagListener);
       if (movie.getMovieSet() != null) {
         MovieSet movieSet = movie.getMovieSet();
         movieSet.removeMovie(movie, false);
@@ -277,6 +337,7 @@ public class MovieList extends AbstractModelObject {
       }
     }
 
+    endFacetBulk();
     firePropertyChange("movies", null, movieList);
     firePropertyChange("movieCount", oldValue, movieList.size());
   }
@@ -290,50 +351,50 @@ public class MovieList extends AbstractModelObject {
     return movieList;
   }
 
+  /**
+   * get the index for filtering the movies
+   * 
+   * @return the filter index
+   */
+  public MovieFilterIndex getFilterIndex() {
+    return filterIndex;
+  }
+
   /**
    * Load movies from database.
    */
-  void loadMoviesFromDatabase(MVMap<UUID, String> movieMap, ObjectMapper objectMapper) {
-    // load movies
-    ObjectReader movieObjectReader = objectMapper.readerFor(Movie.class);
+  void loadMoviesFromDatabase(MVMap<UUID, Object> movieMap, ObjectMapper objectMapper) {
+    // load movies (decoded in parallel)
+    MediaEntityDatabaseLoader<Movie> loader = new MediaEntityDatabaseLoader<>(movieMap, objectMapper.readerFor(Movie.class), "movie");
+    List<Movie> movies = loader.load();
+    MovieModuleManager.getInstance().addContentHashes(loader.getContentHashes());
+
+    // the filter index has to know the movies (and has to be informed about their changes) before the filters of the movie list see them
+    for (Movie movie : movies) {
+      filterIndex.addMovie(movie);
+      movie.addPropertyChangeListener(tagListener);
+    }
 
-    for (UUID uuid : new ArrayList<>(movieMap.keyList())) {
-      String json = "";
-      try {
-        json = movieMap.get(uuid);
-        Movie movie = movieObjectReader.readValue(json);
-        movie.setDbId(uuid);
-        // for performance reasons we add movies directly
-        movieList.add(movie);
-      }
-      catch (Exception e) {
-        LOGGER.warn("problem decoding movie json string: " + e.getMessage());
-        LOGGER.info("dropping corrupt movie");
-        movieMap.remove(uuid);
-      }
+    // for performance reasons we add movies directly (in one batch)
+    movieList.addAll(movies);
+    for (Movie movie : movies) {
+      movieIndex.addMovie(movie);
     }
-    LOGGER.info("found " + movieList.size() + " movies in database");
+    LOGGER.info("found " + movieList.size() + " movies in database (" + loader.getLoadingTime() + " ms)");
   }
 
-  void loadMovieSetsFromDatabase(MVMap<UUID, String> movieSetMap, ObjectMapper objectMapper) {
-    // load movie sets
-    ObjectReader movieSetObjectReader = objectMapper.readerFor(MovieSet.class);
+  void loadMovieSetsFromDatabase(MVMap<UUID, Object> movieSetMap, ObjectMapper objectMapper) {
+    // load movie sets (decoded in parallel)
+    MediaEntityDatabaseLoader<MovieSet> loader = new MediaEntityDatabaseLoader<>(movieSetMap, objectMapper.readerFor(MovieSet.class), "movie set");
+    List<MovieSet> movieSets = loader.load();
+    MovieModuleManager.getInstance().addContentHashes(loader.getContentHashes());
 
-    for (UUID uuid : new ArrayList<>(movieSetMap.keyList())) {
-      try {
-        MovieSet movieSet = movieSetObjectReader.readValue(movieSetMap.get(uuid));
-        movieSet.setDbId(uuid);
-        // for performance reasons we add movies sets directly
-        movieSetList.add(movieSet);
-      }
-      catch (Exception e) {
-        LOGGER.warn("problem decoding movie set json string: " + e.getMessage());
-        LOGGER.info("dropping corrupt movie set");
-        movieSetMap.remove(uuid);
-      }
+    // for performance reasons we add movies sets directly (in one batch)
+    movieSetList.addAll(movieSets);
+    for (MovieSet movieSet : movieSets) {
+      movieIndex.addMovieSet(movieSet);
     }
-
-    LOGGER.info("found " + movieSetList.size() + " movieSets in database");
+    LOGGER.info("found " + movieSetList.size() + " movieSets in database (" + loader.getLoadingTime() + " ms)");
   }
 
   void initDataAfterLoading() {
@@ -341,17 +402,20 @@ public class MovieList extends AbstractModelObject {
     checkAndCleanupMediaFiles();
 
     // 3. initialize movies/movie sets (e.g. link with each others)
+    beginFacetBulk();
     for (Movie movie : movieList) {
       movie.initializeAfterLoading();
-      updateTags(movie);
-      updateMediaInformationLists(movie);
-      updateCertifications(movie);
-      movie.addPropertyChangeListener(tagListener);
+      updateFacets(movie);
     }
+    endFacetBulk();
 
     for (MovieSet movieSet : movieSetList) {
       movieSet.initializeAfterLoading();
+      movieSet.addPropertyChangeListener(movieSetListener);
     }
+
+    // the movies have been indexed before their initialization
+    filterIndex.markAllDirty();
   }
 
   public void persistMovie(Movie movie) {
@@ -395,21 +459,11 @@ public class MovieList extends AbstractModelObject {
   }
 
   public MovieSet lookupMovieSet(UUID uuid) {
-    for (MovieSet movieSet : movieSetList) {
-      if (movieSet.getDbId().equals(uuid)) {
-        return movieSet;
-      }
-    }
-    return null;
+    return movieIndex.getMovieSet(uuid);
   }
 
   public Movie lookupMovie(UUID uuid) {
-    for (Movie movie : movieList) {
-      if (movie.getDbId().equals(uuid)) {
-        return movie;
-      }
-    }
-    return null;
+    return movieIndex.getMovie(uuid);
   }
 
   /**
@@ -421,7 +475,7 @@ public class MovieList extends AbstractModelObject {
    * @deprecated use Java7 getMovieByPath(Path path) instead.
    */
   @Deprecated
-  public synchronized Movie getMovieByPath(File path) {
+  public Movie getMovieByPath(File path) {
     return getMovieByPath(path.toPath());
   }
 
@@ -432,13 +486,12 @@ public class MovieList extends AbstractModelObject {
    *          the path
    * @return the movie by path
    */
-  public synchronized Movie getMovieByPath(Path path) {
-
-    for (Movie movie : movieList) {
-      if (movie.getPathNIO().compareTo(path.toAbsolutePath()) == 0) {
-        LOGGER.debug("Ok, found already existing movie '" + movie.getTitle() + "' in DB (path: " + path + ")");
-        return movie;
-      }
+  public Movie getMovieByPath(Path path) {
+    List<Movie> movies = movieIndex.getMoviesByPath(path);
+    if (!movies.isEmpty()) {
+      Movie movie = movies.get(0);
+      LOGGER.debug("Ok, found already existing movie '" + movie.getTitle() + "' in DB (path: " + path + ")");
+      return movie;
     }
 
     return null;
@@ -453,7 +506,7 @@ public class MovieList extends AbstractModelObject {
    * @deprecated use Java7 getMoviesByPath(Path path) instead.
    */
   @Deprecated
-  public synchronized List<Movie> getMoviesByPath(File path) {
+  public List<Movie> getMoviesByPath(File path) {
     return getMoviesByPath(path.toPath());
   }
 
@@ -464,14 +517,30 @@ public class MovieList extends AbstractModelObject {
    *          the path
    * @return the movie list
    */
-  public synchronized List<Movie> getMoviesByPath(Path path) {
-    ArrayList<Movie> movies = new ArrayList<>();
-    for (Movie movie : movieList) {
-      if (movie.getPathNIO().compareTo(path) == 0) {
-        movies.add(movie);
-      }
-    }
-    return movies;
+  public List<Movie> getMoviesByPath(Path path) {
+    return movieIndex.getMoviesByPath(path);
+  }
+
+  /**
+   * Gets a list of movies with the given IMDB id.
+   * 
+   * @param imdbId
+   *          the IMDB id
+   * @return the movie list
+   */
+  public List<Movie> getMoviesByImdbId(String imdbId) {
+    return movieIndex.getMoviesByImdbId(imdbId);
+  }
+
+  /**
+   * Gets a list of movies with the given TMDB id.
+   * 
+   * @param tmdbId
+   *          the TMDB id
+   * @return the movie list
+   */
+  public List<Movie> getMoviesByTmdbId(int tmdbId) {
+    return movieIndex.getMoviesByTmdbId(tmdbId);
   }
 
   /**
@@ -765,7 +834,20 @@ public class MovieList extends AbstractModelObject {
    * @return the tags in movies
    */
   public List<String> getTagsInMovies() {
-    return tagsObservable;
+    return tags.getValues();
+  }
+
+  /**
+   * Update all facets (tags, media information, certifications and genres) of the movie.
+   * 
+   * @param movie
+   *          the movie
+   */
+  private void updateFacets(Movie movie) {
+    updateTags(movie);
+    updateMediaInformationLists(movie);
+    updateCertifications(movie);
+    updateGenres(movie);
   }
 
   /**
@@ -775,19 +857,7 @@ public class MovieList extends AbstractModelObject {
    *          the movie
    */
   private void updateTags(Movie movie) {
-    List<String> availableTags = new ArrayList<>(tagsObservable);
-    for (String tagInMovie : new ArrayList<>(movie.getTags())) {
-      boolean tagFound = false;
-      for (String tag : availableTags) {
-        if (tagInMovie.equals(tag)) {
-          tagFound = true;
-          break;
-        }
-      }
-      if (!tagFound) {
-        addTag(tagInMovie);
-      }
-    }
+    fireFacetChange(tags, tags.set(movie, new ArrayList<>(movie.getTags())));
   }
 
   /**
@@ -797,126 +867,81 @@ public class MovieList extends AbstractModelObject {
    *          the movie
    */
   private void updateMediaInformationLists(Movie movie) {
-    // video codec
-    List<String> availableCodecs = new ArrayList<>(videoCodecsObservable);
-    for (MediaFile mf : movie.getMediaFiles(MediaFileType.VIDEO)) {
-      String codec = mf.getVideoCodec();
-      boolean codecFound = false;
-
-      for (String mfCodec : availableCodecs) {
-        if (mfCodec.equals(codec)) {
-          codecFound = true;
-          break;
-        }
-      }
-
-      if (!codecFound) {
-        addVideoCodec(codec);
-      }
-    }
-
-    // audio codec
-    availableCodecs = new ArrayList<>(audioCodecsObservable);
+    List<String> movieVideoCodecs = new ArrayList<>();
+    List<String> movieAudioCodecs = new ArrayList<>();
+    List<String> movieVideoFormats = new ArrayList<>();
     for (MediaFile mf : movie.getMediaFiles(MediaFileType.VIDEO)) {
+      movieVideoCodecs.add(mf.getVideoCodec());
+      movieVideoFormats.add(mf.getVideoFormat());
       for (MediaFileAudioStream audio : mf.getAudioStreams()) {
-        String codec = audio.getCodec();
-        boolean codecFound = false;
-        for (String mfCodec : availableCodecs) {
-          if (mfCodec.equals(codec)) {
-            codecFound = true;
-            break;
-          }
-        }
-
-        if (!codecFound) {
-          addAudioCodec(codec);
-        }
+        movieAudioCodecs.add(audio.getCodec());
       }
     }
-  }
-
-  private void updateCertifications(Movie movie) {
-    if (!certificationsObservable.contains(movie.getCertification())) {
-      addCertification(movie.getCertification());
-    }
-  }
 
-  public List<String> getVideoCodecsInMovies() {
-    return videoCodecsObservable;
+    fireFacetChange(videoCodecs, videoCodecs.set(movie, movieVideoCodecs));
+    fireFacetChange(audioCodecs, audioCodecs.set(movie, movieAudioCodecs));
+    fireFacetChange(videoFormats, videoFormats.set(movie, movieVideoFormats));
   }
 
-  public List<String> getAudioCodecsInMovies() {
-    return audioCodecsObservable;
+  private void updateCertifications(Movie movie) {
+    fireFacetChange(certifications, certifications.set(movie, movie.getCertification()));
   }
 
-  public List<Certification> getCertificationsInMovies() {
-    return certificationsObservable;
+  private void updateGenres(Movie movie) {
+    fireFacetChange(genres, genres.set(movie, new ArrayList<>(movie.getGenres())));
   }
 
   /**
-   * Adds the tag.
+   * release all facet values of the removed movie
    * 
-   * @param newTag
-   *          the new tag
+   * @param movie
+   *          the removed movie
    */
-  private void addTag(String newTag) {
-    if (StringUtils.isBlank(newTag)) {
-      return;
+  private void removeFacets(Movie movie) {
+    for (FacetRegistry<?> facet : facets) {
+      fireFacetChange(facet, facet.remove(movie));
     }
-
-    synchronized (tagsObservable) {
-      if (tagsObservable.contains(newTag)) {
-        return;
-      }
-      tagsObservable.add(newTag);
-    }
-
-    firePropertyChange("tag", null, tagsObservable);
   }
 
-  private void addVideoCodec(String newCodec) {
-    if (StringUtils.isBlank(newCodec)) {
-      return;
+  /**
+   * collect all changes of the facets until endFacetBulk() is called (to fire just one event per facet)
+   */
+  private void beginFacetBulk() {
+    for (FacetRegistry<?> facet : facets) {
+      facet.beginBulk();
     }
+  }
 
-    synchronized (videoCodecsObservable) {
-      if (videoCodecsObservable.contains(newCodec)) {
-        return;
-      }
-      videoCodecsObservable.add(newCodec);
+  private void endFacetBulk() {
+    for (FacetRegistry<?> facet : facets) {
+      fireFacetChange(facet, facet.endBulk());
     }
-
-    firePropertyChange("videoCodec", null, videoCodecsObservable);
   }
 
-  private void addAudioCodec(String newCodec) {
-    if (StringUtils.isBlank(newCodec)) {
-      return;
+  private void fireFacetChange(FacetRegistry<?> facet, boolean changed) {
+    if (changed) {
+      firePropertyChange(facet.getName(), null, facet.getValues());
     }
+  }
 
-    synchronized (audioCodecsObservable) {
-      if (audioCodecsObservable.contains(newCodec)) {
-        return;
-      }
-      audioCodecsObservable.add(newCodec);
-    }
+  public List<String> getVideoCodecsInMovies() {
+    return videoCodecs.getValues();
+  }
 
-    firePropertyChange("audioCodec", null, audioCodecsObservable);
+  public List<String> getAudioCodecsInMovies() {
+    return audioCodecs.getValues();
   }
 
-  private void addCertification(Certification newCert) {
-    if (newCert == null) {
-      return;
-    }
+  public List<String> getVideoFormatsInMovies() {
+    return videoFormats.getValues();
+  }
 
-    synchronized (certificationsObservable) {
-      if (certificationsObservable.contains(newCert)) {
-        return;
-      }
-      certificationsObservable.add(newCert);
-    }
+  public List<Certification> getCertificationsInMovies() {
+    return certifications.getValues();
+  }
 
-    firePropertyChange("certification", null, certificationsObservable);
+  public List<MediaGenres> getGenresInMovies() {
+    return genres.getValues();
   }
 
   /**
@@ -959,6 +984,9 @@ public class MovieList extends AbstractModelObject {
         }
       }
     }
+
+    // the duplicate flags do not fire any events
+    filterIndex.markAllDirty();
   }
 
   /**
@@ -990,6 +1018,8 @@ public class MovieList extends AbstractModelObject {
   public void addMovieSet(MovieSet movieSet) {
     int oldValue = movieSetList.size();
     this.movieSetList.add(movieSet);
+    movieIndex.addMovieSet(movieSet);
+    movieSet.addPropertyChangeListener(movieSetListener);
     firePropertyChange("addedMovieSet", null, movieSet);
     firePropertyChange("movieSetCount", oldValue, movieSetList.size());
   }
@@ -1006,6 +1036,8 @@ public class MovieList extends AbstractModelObject {
 
     try {
       movieSetList.remove(movieSet);
+      movieIndex.removeMovieSet(movieSet);
+      movieSet.removePropertyChangeListener(movieSetListener);
       MovieModuleManager.getInstance().removeMovieSetFromDb(movieSet);
     }
     catch (Exception e) {
@@ -1018,31 +1050,34 @@ public class MovieList extends AbstractModelObject {
 
   private MovieSet findMovieSet(String title, int tmdbId) {
     // first search by tmdbId
-    if (tmdbId > 0) {
-      for (MovieSet movieSet : movieSetList) {
-        if (movieSet.getTmdbId() == tmdbId) {
-          return movieSet;
-        }
-      }
+    List<MovieSet> movieSets = movieIndex.getMovieSetsByTmdbId(tmdbId);
+    if (!movieSets.isEmpty()) {
+      return movieSets.get(0);
     }
 
     // search for the movieset by name
-    for (MovieSet movieSet : movieSetList) {
-      if (movieSet.getTitle().equals(title)) {
-        return movieSet;
-      }
+    movieSets = movieIndex.getMovieSetsByTitle(title);
+    if (!movieSets.isEmpty()) {
+      return movieSets.get(0);
     }
 
     return null;
   }
 
-  public synchronized MovieSet getMovieSet(String title, int tmdbId) {
+  public MovieSet getMovieSet(String title, int tmdbId) {
     MovieSet movieSet = findMovieSet(title, tmdbId);
+    if (movieSet != null || StringUtils.isBlank(title)) {
+      return movieSet;
+    }
 
-    if (movieSet == null && StringUtils.isNotBlank(title)) {
-      movieSet = new MovieSet(title);
-      movieSet.saveToDb();
-      addMovieSet(movieSet);
+    // not found: create a new one (check again inside the lock to avoid creating duplicates)
+    synchronized (this) {
+      movieSet = findMovieSet(title, tmdbId);
+      if (movieSet == null) {
+        movieSet = new MovieSet(title);
+        movieSet.saveToDb();
+        addMovieSet(movieSet);
+      }
     }
 
     return movieSet;
@@ -1103,6 +1138,8 @@ public class MovieList extends AbstractModelObject {
     for (Movie movie : new ArrayList<>(movieList)) {
       movie.clearTitleSortable();
     }
+    // the sort order may have changed
+    firePropertyChange(TITLE_SORTABLE, false, true);
   }
 
   /**
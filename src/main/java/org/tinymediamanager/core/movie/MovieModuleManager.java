@@ -15,12 +15,13 @@
  */
 package org.tinymediamanager.core.movie;
 
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.TimeZone;
+import java.util.Map;
 import java.util.UUID;
 
-import org.apache.commons.lang3.StringUtils;
 import org.h2.mvstore.MVMap;
 import org.h2.mvstore.MVStore;
 import org.json.JSONObject;
@@ -28,17 +29,18 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tinymediamanager.Globals;
 import org.tinymediamanager.core.Constants;
-import org.tinymediamanager.core.CustomNullStringSerializerProvider;
+import org.tinymediamanager.core.DatabaseBackup;
+import org.tinymediamanager.core.DatabaseFormat;
+import org.tinymediamanager.core.DatasourceWatcher;
+import org.tinymediamanager.core.DirectorySnapshot;
 import org.tinymediamanager.core.ITmmModule;
-import org.tinymediamanager.core.NullKeySerializer;
+import org.tinymediamanager.core.PersistenceQueue;
 import org.tinymediamanager.core.Settings;
 import org.tinymediamanager.core.Utils;
 import org.tinymediamanager.core.movie.entities.Movie;
 import org.tinymediamanager.core.movie.entities.MovieSet;
 
-import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.MapperFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
 
@@ -48,24 +50,53 @@ import com.fasterxml.jackson.databind.ObjectWriter;
  * @author Manuel Laggner
  */
 public class MovieModuleManager implements ITmmModule {
-  public static final MovieSettings MOVIE_SETTINGS = Globals.settings.getMovieSettings();
+  public static final MovieSettings MOVIE_SETTINGS   = Globals.settings.getMovieSettings();
 
-  private static final String       MODULE_TITLE   = "Movie management";
-  private static final String       MOVIE_DB       = "movies.db";
-  private static final Logger       LOGGER         = LoggerFactory.getLogger(MovieModuleManager.class);
+  private static final String       MODULE_TITLE     = "Movie management";
+  private static final String       MOVIES           = "movies";
+  private static final String       MOVIE_SETS       = "movieSets";
+  private static final String       MOVIE_DB         = "movies.db";
+  private static final String       MOVIE_SNAPSHOT   = "movies.snapshot.db";
+  private static final Logger       LOGGER           = LoggerFactory.getLogger(MovieModuleManager.class);
   private static MovieModuleManager instance;
 
   private boolean                   enabled;
   private MVStore                   mvStore;
   private ObjectMapper              objectMapper;
+  private final ObjectMapper        jsonObjectMapper = DatabaseFormat.JSON.createObjectMapper();
   private ObjectWriter              movieObjectWriter;
   private ObjectWriter              movieSetObjectWriter;
 
-  private MVMap<UUID, String>       movieMap;
-  private MVMap<UUID, String>       movieSetMap;
+  private MVMap<UUID, Object>       movieMap;
+  private MVMap<UUID, Object>       movieSetMap;
+
+  private DatasourceWatcher         datasourceWatcher;
+  private DatabaseBackup            databaseBackup;
+  private PersistenceQueue          persistenceQueue;
 
   private MovieModuleManager() {
     enabled = false;
+
+    // the data source watcher has to know about data sources added/removed at runtime
+    MOVIE_SETTINGS.addPropertyChangeListener(new PropertyChangeListener() {
+      @Override
+      public void propertyChange(PropertyChangeEvent evt) {
+        if (!enabled) {
+          return;
+        }
+        if ("movieDataSource".equals(evt.getPropertyName())) {
+          restartDatasourceWatcher();
+        }
+        else if ("watchDatasources".equals(evt.getPropertyName())) {
+          if (MOVIE_SETTINGS.isWatchDatasources()) {
+            startDatasourceWatcher();
+          }
+          else {
+            stopDatasourceWatcher();
+          }
+        }
+      }
+    });
   }
 
   public static MovieModuleManager getInstance() {
@@ -82,13 +113,16 @@ public class MovieModuleManager implements ITmmModule {
 
   @Override
   public void startUp() throws Exception {
-    // do a DB backup, and keep last 15 copies
+    long start = System.currentTimeMillis();
+
     Path db = Paths.get(Settings.getInstance().getSettingsFolder(), MOVIE_DB);
-    Utils.createBackupFile(db);
-    Utils.deleteOldBackupFile(db, 15);
+
+    // do a DB backup, and keep last 15 copies; the backup is read from the opened store in the background
+    databaseBackup = new DatabaseBackup(db, 15);
 
     // configure database
-    mvStore = new MVStore.Builder().fileName(Paths.get(Settings.getInstance().getSettingsFolder(), MOVIE_DB).toString()).compressHigh()
+    DatabaseFormat format = Globals.settings.getDatabaseFormat();
+    mvStore = format.configure(new MVStore.Builder().fileName(db.toString()))
         .backgroundExceptionHandler(new Thread.UncaughtExceptionHandler() {
           @Override
           public void uncaughtException(Thread t, Throwable e) {
@@ -98,32 +132,50 @@ public class MovieModuleManager implements ITmmModule {
     mvStore.setAutoCommitDelay(2000); // 2 sec
     mvStore.setRetentionTime(0);
     mvStore.setReuseSpace(true);
+    databaseBackup.start(mvStore);
+
+    // convert the maps if the database format has been changed
+    DatabaseFormat.convert(mvStore, format, MOVIES, MOVIE_SETS);
+    long openTime = System.currentTimeMillis();
+
+    // changed entities are written in batches by a background thread
+    persistenceQueue = new PersistenceQueue(MOVIES, mvStore, format);
 
-    // configure JSON
-    objectMapper = new ObjectMapper();
-    objectMapper.configure(MapperFeature.AUTO_DETECT_GETTERS, false);
-    objectMapper.configure(MapperFeature.AUTO_DETECT_IS_GETTERS, false);
-    objectMapper.configure(MapperFeature.AUTO_DETECT_SETTERS, false);
-    objectMapper.configure(MapperFeature.AUTO_DETECT_FIELDS, false);
-    objectMapper.setTimeZone(TimeZone.getDefault());
-    objectMapper.setSerializationInclusion(Include.NON_DEFAULT);
-    objectMapper.setSerializerProvider(new CustomNullStringSerializerProvider());
-    objectMapper.getSerializerProvider().setNullKeySerializer(new NullKeySerializer());
+    // configure the (de)serialization for the database format
+    objectMapper = format.createObjectMapper();
 
     movieObjectWriter = objectMapper.writerFor(Movie.class);
     movieSetObjectWriter = objectMapper.writerFor(MovieSet.class);
 
-    movieMap = mvStore.openMap("movies");
-    movieSetMap = mvStore.openMap("movieSets");
+    movieMap = mvStore.openMap(format.getMapName(MOVIES));
+    movieSetMap = mvStore.openMap(format.getMapName(MOVIE_SETS));
 
     MovieList.getInstance().loadMoviesFromDatabase(movieMap, objectMapper);
+    long moviesLoadTime = System.currentTimeMillis();
     MovieList.getInstance().loadMovieSetsFromDatabase(movieSetMap, objectMapper);
+    long movieSetsLoadTime = System.currentTimeMillis();
     MovieList.getInstance().initDataAfterLoading();
+    long initTime = System.currentTimeMillis();
+
+    // startup report
+    LOGGER.info("movie module started in " + (initTime - start) + " ms (open database: " + (openTime - start) + " ms, load movies: "
+        + (moviesLoadTime - openTime) + " ms, load movie sets: " + (movieSetsLoadTime - moviesLoadTime) + " ms, initialize: "
+        + (initTime - movieSetsLoadTime) + " ms)");
+
     enabled = true;
   }
 
   @Override
   public void shutDown() throws Exception {
+    stopDatasourceWatcher();
+
+    if (databaseBackup != null) {
+      databaseBackup.cancel();
+      databaseBackup = null;
+    }
+
+    // write all pending changes before closing the database
+    persistenceQueue.shutdown();
     mvStore.compactMoveChunks();
     mvStore.close();
 
@@ -142,6 +194,36 @@ public class MovieModuleManager implements ITmmModule {
     return enabled;
   }
 
+  /**
+   * start watching the data sources for changes (if activated in the settings)
+   */
+  public synchronized void startDatasourceWatcher() {
+    if (!MOVIE_SETTINGS.isWatchDatasources() || (datasourceWatcher != null && datasourceWatcher.isRunning())) {
+      return;
+    }
+    datasourceWatcher = new MovieDatasourceWatcher();
+    datasourceWatcher.start();
+  }
+
+  /**
+   * re-register all data sources at the data source watcher (if it is running)
+   */
+  public synchronized void restartDatasourceWatcher() {
+    if (datasourceWatcher != null) {
+      datasourceWatcher.restart();
+    }
+  }
+
+  /**
+   * stop watching the data sources
+   */
+  public synchronized void stopDatasourceWatcher() {
+    if (datasourceWatcher != null) {
+      datasourceWatcher.stop();
+      datasourceWatcher = null;
+    }
+  }
+
   /**
    * dumps a whole movie to logfile
    * 
@@ -150,7 +232,7 @@ public class MovieModuleManager implements ITmmModule {
    */
   public void dump(Movie movie) {
     try {
-      JSONObject jsonObject = new JSONObject(movieObjectWriter.writeValueAsString(movie));
+      JSONObject jsonObject = new JSONObject(jsonObjectMapper.writerFor(Movie.class).writeValueAsString(movie));
       LOGGER.info("Dumping Movie:\n" + jsonObject.toString(4));
     }
     catch (JsonProcessingException e) {
@@ -166,7 +248,7 @@ public class MovieModuleManager implements ITmmModule {
    */
   public void dump(MovieSet movieSet) {
     try {
-      JSONObject jsonObject = new JSONObject(movieSetObjectWriter.writeValueAsString(movieSet));
+      JSONObject jsonObject = new JSONObject(jsonObjectMapper.writerFor(MovieSet.class).writeValueAsString(movieSet));
       LOGGER.info("Dumping MovieSet:\n" + jsonObject.toString(4));
     }
     catch (JsonProcessingException e) {
@@ -175,33 +257,43 @@ public class MovieModuleManager implements ITmmModule {
   }
 
   void persistMovie(Movie movie) throws Exception {
-    String newValue = movieObjectWriter.writeValueAsString(movie);
-    String oldValue = movieMap.get(movie.getDbId());
-
-    if (!StringUtils.equals(newValue, oldValue)) {
-      // write movie to DB
-      movieMap.put(movie.getDbId(), newValue);
-    }
+    persistenceQueue.persist(movieMap, movieObjectWriter, movie);
   }
 
   void removeMovieFromDb(Movie movie) throws Exception {
-    movieMap.remove(movie.getDbId());
+    persistenceQueue.remove(movieMap, movie.getDbId());
   }
 
   void persistMovieSet(MovieSet movieSet) throws Exception {
-    String newValue = movieSetObjectWriter.writeValueAsString(movieSet);
-    String oldValue = movieMap.get(movieSet.getDbId());
-    if (!StringUtils.equals(newValue, oldValue)) {
-      movieSetMap.put(movieSet.getDbId(), newValue);
-    }
+    persistenceQueue.persist(movieSetMap, movieSetObjectWriter, movieSet);
   }
 
   void removeMovieSetFromDb(MovieSet movieSet) throws Exception {
-    movieSetMap.remove(movieSet.getDbId());
+    persistenceQueue.remove(movieSetMap, movieSet.getDbId());
+  }
+
+  /**
+   * get the file where the directory snapshots of the movie data sources are stored
+   * 
+   * @return the path to the snapshot file
+   */
+  public Path getDirectorySnapshotFile() {
+    return Paths.get(Settings.getInstance().getSettingsFolder(), MOVIE_SNAPSHOT);
+  }
+
+  /**
+   * set the hashes of the stored entities to detect unchanged entities on persisting
+   * 
+   * @param contentHashes
+   *          the content hashes per dbId
+   */
+  void addContentHashes(Map<UUID, Long> contentHashes) {
+    persistenceQueue.addContentHashes(contentHashes);
   }
 
   @Override
   public void initializeDatabase() throws Exception {
     Utils.deleteFileSafely(Paths.get(Settings.getInstance().getSettingsFolder(), MOVIE_DB));
+    DirectorySnapshot.delete(getDirectorySnapshotFile());
   }
 }
@@ -33,7 +33,6 @@ import java.util.regex.Pattern;
 
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.lang3.SystemUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tinymediamanager.core.ImageCache;
@@ -43,6 +42,7 @@ import org.tinymediamanager.core.MediaSource;
 import org.tinymediamanager.core.Message;
 import org.tinymediamanager.core.Message.MessageLevel;
 import org.tinymediamanager.core.MessageManager;
+import org.tinymediamanager.core.RenamerTemplate;
 import org.tinymediamanager.core.Utils;
 import org.tinymediamanager.core.entities.MediaFile;
 import org.tinymediamanager.core.entities.MediaFileSubtitle;
@@ -60,8 +60,9 @@ import org.tinymediamanager.scraper.util.StrgUtils;
  * @author Manuel Laggner / Myron Boyle
  */
 public class MovieRenamer {
-  private static final Logger  LOGGER   = LoggerFactory.getLogger(MovieRenamer.class);
-  private static final Pattern ALPHANUM = Pattern.compile(".*?([a-zA-Z0-9]{1}).*$");  // to not use posix
+  private static final Logger  LOGGER             = LoggerFactory.getLogger(MovieRenamer.class);
+  private static final Pattern ALPHANUM           = Pattern.compile(".*?([a-zA-Z0-9]{1}).*$");  // to not use posix
+  private static final Pattern INVALID_CHARACTERS = Pattern.compile("([\"\\\\:<>|/?*])");
 
   private static void renameSubtitles(Movie m) {
     // build language lists
@@ -957,13 +958,8 @@ public class MovieRenamer {
    * @return the string
    */
   public static String createDestinationForFilename(String template, Movie movie) {
-    // replace optional group first
-    Pattern regex = Pattern.compile("\\{(.*?)\\}");
-    Matcher mat = regex.matcher(template);
-    while (mat.find()) {
-      template = template.replace(mat.group(0), replaceOptionalVariable(mat.group(1), movie, true));
-    }
-    return createDestination(template, movie, true);
+    // optional groups like "{ Year $Y }" are only used if the first token in it has a value
+    return RenamerTemplate.compile(template, true).evaluate(new MovieTokenResolver(movie, true));
   }
 
   /**
@@ -976,43 +972,8 @@ public class MovieRenamer {
    * @return the string
    */
   public static String createDestinationForFoldername(String template, Movie movie) {
-    // replace optional group first
-    Pattern regex = Pattern.compile("\\{(.*?)\\}");
-    Matcher mat = regex.matcher(template);
-    while (mat.find()) {
-      template = template.replace(mat.group(0), replaceOptionalVariable(mat.group(1), movie, false));
-    }
-    return createDestination(template, movie, false);
-  }
-
-  /**
-   * replaces an optional variable, eg "{ Year $Y }"<br>
-   * if we have a year, "Year 2013" will be returned<br>
-   * if $Y replacement was empty, the complete optional tag will be empty.
-   * 
-   * @param s
-   *          the string to replace the optional variable for
-   * @param movie
-   *          the movie holding all needed meta data
-   * @param forFilename
-   *          do the logic for file or for folder names?
-   * @return the resulting string
-   */
-  private static String replaceOptionalVariable(String s, Movie movie, boolean forFilename) {
-    Pattern regex = Pattern.compile("\\$.{1}");
-    Matcher mat = regex.matcher(s);
-    if (mat.find()) {
-      String rep = createDestination(mat.group(), movie, forFilename);
-      if (rep.isEmpty()) {
-        return "";
-      }
-      else {
-        return s.replace(mat.group(), rep);
-      }
-    }
-    else {
-      return "";
-    }
+    // optional groups like "{ Year $Y }" are only used if the first token in it has a value
+    return RenamerTemplate.compile(template, true).evaluate(new MovieTokenResolver(movie, false));
   }
 
   /**
@@ -1025,12 +986,11 @@ public class MovieRenamer {
    * @return value or empty string
    */
   public static String getTokenValue(Movie movie, String token) {
-    String ret = "";
-    MediaFile mf = new MediaFile();
-    if (movie.getMediaFiles(MediaFileType.VIDEO).size() > 0) {
-      mf = movie.getMediaFiles(MediaFileType.VIDEO).get(0);
-    }
+    return getTokenValue(movie, getFirstVideoFile(movie), token);
+  }
 
+  private static String getTokenValue(Movie movie, MediaFile mf, String token) {
+    String ret = "";
     switch (token.toUpperCase(Locale.ROOT)) {
       case "$T":
         ret = movie.getTitle();
@@ -1140,6 +1100,11 @@ public class MovieRenamer {
     return ret;
   }
 
+  private static MediaFile getFirstVideoFile(Movie movie) {
+    List<MediaFile> videoFiles = movie.getMediaFiles(MediaFileType.VIDEO);
+    return videoFiles.isEmpty() ? new MediaFile() : videoFiles.get(0);
+  }
+
   /**
    * gets the first alpha-numeric character
    * 
@@ -1169,50 +1134,32 @@ public class MovieRenamer {
    * @return the string
    */
   public static String createDestination(String template, Movie movie, boolean forFilename) {
-    String newDestination = template;
-
-    // replace all $x parameters
-    Pattern p = Pattern.compile("(\\$[\\w#])"); // # is for rating
-    Matcher m = p.matcher(template);
-    while (m.find()) {
-      String value = getTokenValue(movie, m.group(1));
-      newDestination = replaceToken(newDestination, m.group(1), value);
-    }
+    return RenamerTemplate.compile(template, false).evaluate(new MovieTokenResolver(movie, forFilename));
+  }
 
+  /**
+   * cleans the destination after all tokens have been replaced
+   * 
+   * @param destination
+   *          the destination
+   * @param forFilename
+   *          clean for a filename (=true) or for a foldername (=false)
+   * @return the cleaned destination
+   */
+  private static String cleanupDestination(String destination, boolean forFilename) {
     // replace empty brackets
-    newDestination = newDestination.replaceAll("\\([ ]?\\)", "");
-    newDestination = newDestination.replaceAll("\\[[ ]?\\]", "");
-    newDestination = newDestination.replaceAll("\\{[ ]?\\}", "");
-
-    // if there are multiple file separators in a row - strip them out
-    if (SystemUtils.IS_OS_WINDOWS) {
-      if (!forFilename) {
-        // trim whitespace around directory sep
-        newDestination = newDestination.replaceAll("\\s+\\\\", "\\\\");
-        newDestination = newDestination.replaceAll("\\\\\\s+", "\\\\");
-      }
-      // we need to mask it in windows
-      newDestination = newDestination.replaceAll("\\\\{2,}", "\\\\");
-      newDestination = newDestination.replaceAll("^\\\\", "");
-    }
-    else {
-      if (!forFilename) {
-        // trim whitespace around directory sep
-        newDestination = newDestination.replaceAll("\\s+/", "/");
-        newDestination = newDestination.replaceAll("/\\s+", "/");
-      }
-      newDestination = newDestination.replaceAll("/{2,}", "/");
-      newDestination = newDestination.replaceAll("^/", "");
-    }
+    String newDestination = RenamerTemplate.removeEmptyBrackets(destination);
+
+    // if there are multiple file separators in a row - strip them out (and trim whitespace around directory sep for folders)
+    newDestination = RenamerTemplate.cleanDirectorySeparators(newDestination, !forFilename);
 
     // replace ALL directory separators, if we generate this for filenames!
     if (forFilename) {
-      newDestination = newDestination.replaceAll("\\/", " ");
-      newDestination = newDestination.replaceAll("\\\\", " ");
+      newDestination = newDestination.replace('/', ' ').replace('\\', ' ');
     }
 
     // replace multiple spaces with a single one
-    newDestination = newDestination.replaceAll(" +", " ").trim();
+    newDestination = RenamerTemplate.collapseSpaces(newDestination);
 
     // replace spaces with underscores if needed
     if (MovieModuleManager.MOVIE_SETTINGS.isMovieRenamerSpaceSubstitution()) {
@@ -1222,7 +1169,12 @@ public class MovieRenamer {
       // also replace now multiple replacements with one to avoid strange looking results;
       // example:
       // Abraham Lincoln - Vapire Hunter -> Abraham-Lincoln---Vampire-Hunter
-      newDestination = newDestination.replaceAll(Pattern.quote(replacement) + "+", replacement);
+      if (!replacement.isEmpty()) {
+        String doubleReplacement = replacement + replacement;
+        while (newDestination.contains(doubleReplacement)) {
+          newDestination = newDestination.replace(doubleReplacement, replacement);
+        }
+      }
     }
 
     // ASCII replacement
@@ -1232,22 +1184,12 @@ public class MovieRenamer {
 
     // replace trailing dots and spaces (filename only!)
     if (forFilename) {
-      newDestination = newDestination.replaceAll("[ \\.]+$", "");
+      newDestination = RenamerTemplate.removeTrailingDots(newDestination);
     }
 
     return newDestination.trim();
   }
 
-  private static String replaceToken(String destination, String token, String replacement) {
-    String replacingCleaned = "";
-    if (StringUtils.isNotBlank(replacement)) {
-      // replace illegal characters
-      // http://msdn.microsoft.com/en-us/library/windows/desktop/aa365247%28v=vs.85%29.aspx
-      replacingCleaned = replaceInvalidCharacters(replacement);
-    }
-    return destination.replace(token, replacingCleaned);
-  }
-
   /**
    * replaces all invalid/illegal characters for filenames with ""<br>
    * except the colon, which will be changed to a dash
@@ -1257,9 +1199,9 @@ public class MovieRenamer {
    * @return cleaned string
    */
   public static String replaceInvalidCharacters(String source) {
-    source = source.replaceAll(": ", " - "); // nicer
-    source = source.replaceAll(":", "-"); // nicer
-    return source.replaceAll("([\"\\\\:<>|/?*])", "");
+    source = source.replace(": ", " - "); // nicer
+    source = source.replace(":", "-"); // nicer
+    return INVALID_CHARACTERS.matcher(source).replaceAll("");
   }
 
   /**
@@ -1358,4 +1300,37 @@ public class MovieRenamer {
     }
     return false;
   }
+
+  /**
+   * resolves the tokens of a movie; the video file is only looked up once
+   */
+  private static class MovieTokenResolver implements RenamerTemplate.TokenResolver {
+    private final Movie   movie;
+    private final boolean forFilename;
+    private MediaFile     videoFile;
+
+    private MovieTokenResolver(Movie movie, boolean forFilename) {
+      this.movie = movie;
+      this.forFilename = forFilename;
+    }
+
+    @Override
+    public String getValue(String token) {
+      if (videoFile == null) {
+        videoFile = getFirstVideoFile(movie);
+      }
+      String value = getTokenValue(movie, videoFile, token);
+      if (StringUtils.isNotBlank(value)) {
+        // replace illegal characters
+        // http://msdn.microsoft.com/en-us/library/windows/desktop/aa365247%28v=vs.85%29.aspx
+        return replaceInvalidCharacters(value);
+      }
+      return "";
+    }
+
+    @Override
+    public String cleanup(String destination) {
+      return cleanupDestination(destination, forFilename);
+    }
+  }
 }
@@ -15,10 +15,8 @@
  */
 package org.tinymediamanager.core.movie;
 
-import java.io.ByteArrayInputStream;
-import java.io.FileOutputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -32,10 +30,10 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.apache.commons.io.FilenameUtils;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.tinymediamanager.core.ArtworkBlobStore;
 import org.tinymediamanager.core.ImageCache;
 import org.tinymediamanager.core.MediaFileType;
 import org.tinymediamanager.core.Utils;
@@ -44,7 +42,6 @@ import org.tinymediamanager.core.movie.entities.Movie;
 import org.tinymediamanager.core.movie.entities.MovieSet;
 import org.tinymediamanager.core.threading.TmmTaskManager;
 import org.tinymediamanager.scraper.entities.MediaArtwork;
-import org.tinymediamanager.scraper.http.Url;
 
 /**
  * The class MovieSetArtworkHelper. A helper class for managing movie set artwork
@@ -425,28 +422,27 @@ public class MovieSetArtworkHelper {
     public void run() {
       // first, fetch image
       try {
-        Url url = new Url(urlToArtwork);
-        InputStream is = url.getInputStream();
-        if (url.isFault()) {
-          return;
-        }
-
-        byte[] bytes = IOUtils.toByteArray(is);
-        is.close();
+        // the url is downloaded only once; all files are created from the local copy
+        Path blob = ArtworkBlobStore.getInstance().fetch(urlToArtwork);
 
         String extension = FilenameUtils.getExtension(urlToArtwork);
 
         // and then write it to the desired files
-        movieSet.removeAllMediaFiles(type);
-        if (writeToArtworkFolder) {
-          writeImageToArtworkFolder(bytes, extension);
-        }
-        if (writeToMovieFolder) {
-          writeImageToMovieFolders(bytes, extension);
+        try {
+          movieSet.removeAllMediaFiles(type);
+          if (writeToArtworkFolder) {
+            writeImageToArtworkFolder(blob, extension);
+          }
+          if (writeToMovieFolder) {
+            writeImageToMovieFolders(blob, extension);
+          }
+          if (!writeToArtworkFolder && !writeToMovieFolder) {
+            // at least cache it
+            writeImageToCacheFolder(blob);
+          }
         }
-        if (!writeToArtworkFolder && !writeToMovieFolder) {
-          // at least cache it
-          writeImageToCacheFolder(bytes);
+        finally {
+          ArtworkBlobStore.getInstance().release(blob);
         }
 
         // add all written media files to the movie set
@@ -458,13 +454,17 @@ public class MovieSetArtworkHelper {
           // only warning
           LOGGER.warn("interrupted image download");
         }
+        else if (e instanceof FileNotFoundException) {
+          // only warning
+          LOGGER.warn(e.getMessage());
+        }
         else {
           LOGGER.error("fetch image", e);
         }
       }
     }
 
-    private void writeImageToArtworkFolder(byte[] bytes, String extension) {
+    private void writeImageToArtworkFolder(Path blob, String extension) {
       Path artworkFolder = Paths.get(this.artworkFolder);
 
       // check if folder exists
@@ -487,14 +487,14 @@ public class MovieSetArtworkHelper {
         else {
           filename += type.name().toLowerCase(Locale.ROOT) + "." + extension;
         }
-        writeImage(bytes, artworkFolder.resolve(filename));
+        writeImage(blob, artworkFolder.resolve(filename));
       }
       catch (Exception e) {
         LOGGER.warn("could not write file", e);
       }
     }
 
-    private void writeImageToMovieFolders(byte[] bytes, String extension) {
+    private void writeImageToMovieFolders(Path blob, String extension) {
       // check for empty strings or movies
       if (movies.isEmpty()) {
         return;
@@ -513,7 +513,7 @@ public class MovieSetArtworkHelper {
       for (Movie movie : movies) {
         try {
           if (!movie.isMultiMovieDir()) {
-            writeImage(bytes, movie.getPathNIO().resolve(filename));
+            writeImage(blob, movie.getPathNIO().resolve(filename));
           }
         }
         catch (Exception e) {
@@ -522,30 +522,19 @@ public class MovieSetArtworkHelper {
       }
     }
 
-    private void writeImageToCacheFolder(byte[] bytes) {
+    private void writeImageToCacheFolder(Path blob) {
       String filename = ImageCache.getMD5(urlToArtwork);
 
       try {
-        writeImage(bytes, ImageCache.getCacheDir().resolve(filename + ".jpg"));
+        writeImage(blob, ImageCache.getCacheDir().resolve(filename + ".jpg"));
       }
       catch (Exception e) {
         LOGGER.warn("error in image fetcher", e);
       }
     }
 
-    private void writeImage(byte[] bytes, Path pathAndFilename) throws IOException, InterruptedException {
-      FileOutputStream outputStream = new FileOutputStream(pathAndFilename.toFile());
-      InputStream is = new ByteArrayInputStream(bytes);
-      IOUtils.copy(is, outputStream);
-      outputStream.flush();
-      try {
-        outputStream.getFD().sync(); // wait until file has been completely written
-      }
-      catch (Exception e) {
-        // empty here -> just not let the thread crash
-      }
-      outputStream.close();
-      is.close();
+    private void writeImage(Path blob, Path pathAndFilename) throws IOException {
+      ArtworkBlobStore.materialize(blob, pathAndFilename);
 
       ImageCache.invalidateCachedImage(pathAndFilename);
 
@@ -84,6 +84,7 @@ public class MovieSettings extends AbstractModelObject {
   private final static String             SCRAPER_THRESHOLD                        = "scraperThreshold";
   private final static String             DETECT_MOVIE_MULTI_DIR                   = "detectMovieMultiDir";
   private final static String             BUILD_IMAGE_CACHE_ON_IMPORT              = "buildImageCacheOnImport";
+  private final static String             WATCH_DATASOURCES                        = "watchDatasources";
   private final static String             BAD_WORDS                                = "badWords";
   private final static String             ENTRY                                    = "entry";
   private final static String             RUNTIME_FROM_MI                          = "runtimeFromMediaInfo";
@@ -143,6 +144,7 @@ public class MovieSettings extends AbstractModelObject {
   // data sources / NFO settings
   private boolean                         detectMovieMultiDir                      = false;
   private boolean                         buildImageCacheOnImport                  = false;
+  private boolean                         watchDatasources                         = false;
   private MovieConnectors                 movieConnector                           = MovieConnectors.KODI;
   private CertificationStyle              movieCertificationStyle                  = CertificationStyle.LARGE;
 
@@ -693,6 +695,16 @@ public class MovieSettings extends AbstractModelObject {
     firePropertyChange(BUILD_IMAGE_CACHE_ON_IMPORT, oldValue, newValue);
   }
 
+  public boolean isWatchDatasources() {
+    return watchDatasources;
+  }
+
+  public void setWatchDatasources(boolean newValue) {
+    boolean oldValue = this.watchDatasources;
+    this.watchDatasources = newValue;
+    firePropertyChange(WATCH_DATASOURCES, oldValue, newValue);
+  }
+
   public boolean isMovieRenamerCreateMoviesetForSingleMovie() {
     return movieRenamerCreateMoviesetForSingleMovie;
   }
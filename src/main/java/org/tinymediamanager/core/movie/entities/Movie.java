@@ -51,6 +51,7 @@ import java.io.IOException;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.text.CollationKey;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
@@ -76,6 +77,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tinymediamanager.core.MediaFileType;
 import org.tinymediamanager.core.MediaSource;
+import org.tinymediamanager.core.SortKeys;
 import org.tinymediamanager.core.Utils;
 import org.tinymediamanager.core.entities.MediaEntity;
 import org.tinymediamanager.core.entities.MediaFile;
@@ -187,6 +189,8 @@ public class Movie extends MediaEntity {
 
   private MovieSet                              movieSet;
   private String                                titleSortable              = "";
+  private CollationKey                          titleSortableKey           = null;
+  private CollationKey                          sortTitleKey               = null;
   private Date                                  lastWatched                = null;
   private List<MediaGenres>                     genresForAccess            = new CopyOnWriteArrayList<>();
 
@@ -219,6 +223,8 @@ public class Movie extends MediaEntity {
     this.spokenLanguages = StringUtils.isEmpty(this.spokenLanguages) ? other.getSpokenLanguages() : this.spokenLanguages;
     this.country = StringUtils.isEmpty(this.country) ? other.getCountry() : this.country;
     this.titleSortable = StringUtils.isEmpty(this.titleSortable) ? other.getTitleSortable() : this.titleSortable;
+    this.titleSortableKey = null;
+    this.sortTitleKey = null;
 
     this.runtime = this.runtime == 0 ? other.getRuntime() : this.runtime;
     this.top250 = this.top250 == 0 ? other.getTop250() : this.top250;
@@ -299,6 +305,7 @@ public class Movie extends MediaEntity {
   public void setSortTitle(String newValue) {
     String oldValue = this.sortTitle;
     this.sortTitle = newValue;
+    this.sortTitleKey = null;
     firePropertyChange(SORT_TITLE, oldValue, newValue);
   }
 
@@ -315,8 +322,38 @@ public class Movie extends MediaEntity {
     return titleSortable;
   }
 
+  /**
+   * get the (cached) collation key of the sortable title
+   * 
+   * @return the collation key of the sortable title
+   */
+  public CollationKey getTitleSortableKey() {
+    CollationKey key = titleSortableKey;
+    if (key == null) {
+      key = SortKeys.create(getTitleSortable());
+      titleSortableKey = key;
+    }
+    return key;
+  }
+
+  /**
+   * get the (cached) collation key of the sort title (or the sortable title if there is no sort title)
+   * 
+   * @return the collation key of the sort title
+   */
+  public CollationKey getSortTitleKey() {
+    CollationKey key = sortTitleKey;
+    if (key == null) {
+      key = SortKeys.create(StringUtils.isNotBlank(sortTitle) ? sortTitle : getTitleSortable());
+      sortTitleKey = key;
+    }
+    return key;
+  }
+
   public void clearTitleSortable() {
     titleSortable = "";
+    titleSortableKey = null;
+    sortTitleKey = null;
   }
 
   /**
@@ -1253,6 +1290,8 @@ public class Movie extends MediaEntity {
 
     oldValue = this.titleSortable;
     titleSortable = "";
+    titleSortableKey = null;
+    sortTitleKey = null;
     firePropertyChange(TITLE_SORTABLE, oldValue, titleSortable);
   }
 
@@ -29,6 +29,7 @@ import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.tinymediamanager.core.DatasourceWatcher;
 import org.tinymediamanager.core.ImageCache;
 import org.tinymediamanager.core.MediaFileType;
 import org.tinymediamanager.core.Message;
@@ -246,6 +247,7 @@ public class MovieExtraImageFetcher implements Runnable {
         Path file = folder.resolve("fanart" + i + "." + providedFiletype);
         LOGGER.debug("writing extrafanart " + file.getFileName());
 
+        DatasourceWatcher.registerOwnWrite(file);
         outputStream = new FileOutputStream(file.toFile());
         is = url.getInputStream();
         if (is == null) {
@@ -324,6 +326,7 @@ public class MovieExtraImageFetcher implements Runnable {
           file = folder.resolve("thumb" + i + ".jpg");
           LOGGER.debug("writing extrathumb " + file.getFileName());
 
+          DatasourceWatcher.registerOwnWrite(file);
           outputStream = new FileOutputStream(file.toFile());
           try {
             is = ImageCache.scaleImage(url, MovieModuleManager.MOVIE_SETTINGS.getImageExtraThumbsSize());
@@ -337,6 +340,7 @@ public class MovieExtraImageFetcher implements Runnable {
           file = folder.resolve("thumb" + i + "." + providedFiletype);
           LOGGER.debug("writing extrathumb " + file.getFileName());
 
+          DatasourceWatcher.registerOwnWrite(file);
           outputStream = new FileOutputStream(file.toFile());
           Url url1 = new Url(url);
           is = url1.getInputStream();
@@ -61,7 +61,7 @@ public class MovieReloadMediaInformationTask extends TmmThreadPool {
           break;
         }
         for (MediaFile mf : m.getMediaFiles()) {
-          submitTask(new MediaFileInformationFetcherTask(mf, m, true));
+          submitTask(new MediaFileInformationFetcherTask(mf, m, true, true));
         }
       }
 
@@ -25,6 +25,7 @@ import java.util.zip.ZipInputStream;
 
 import org.apache.commons.io.FilenameUtils;
 import org.tinymediamanager.Globals;
+import org.tinymediamanager.core.DatasourceWatcher;
 import org.tinymediamanager.core.MediaFileType;
 import org.tinymediamanager.core.Utils;
 import org.tinymediamanager.core.entities.MediaFile;
@@ -79,6 +80,7 @@ public class MovieSubtitleDownloadTask extends DownloadTask {
           }
 
           File destination = new File(file.getParent().toFile(), basename + "." + extension);
+          DatasourceWatcher.registerOwnWrite(destination.toPath());
           FileOutputStream os = new FileOutputStream(destination);
 
           int len;
@@ -19,6 +19,7 @@ import static java.nio.file.FileVisitResult.CONTINUE;
 import static java.nio.file.FileVisitResult.SKIP_SUBTREE;
 import static java.nio.file.FileVisitResult.TERMINATE;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.file.DirectoryStream;
 import java.nio.file.FileVisitOption;
@@ -41,10 +42,12 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.text.WordUtils;
@@ -52,9 +55,11 @@ import org.apache.commons.lang3.time.StopWatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tinymediamanager.Globals;
+import org.tinymediamanager.core.DirectorySnapshot;
 import org.tinymediamanager.core.ImageCacheTask;
-import org.tinymediamanager.core.MediaFileInformationFetcherTask;
 import org.tinymediamanager.core.MediaFileType;
+import org.tinymediamanager.core.MediaInfoCache;
+import org.tinymediamanager.core.MediaInfoStage;
 import org.tinymediamanager.core.MediaSource;
 import org.tinymediamanager.core.Message;
 import org.tinymediamanager.core.Message.MessageLevel;
@@ -106,9 +111,20 @@ public class MovieUpdateDatasourceTask2 extends TmmThreadPool {
 
   private List<String>                dataSources;
   private List<Movie>                 movieFolders   = new ArrayList<>();
+  private Map<Path, String>           changedFolders = new HashMap<>();
   private MovieList                   movieList;
   private HashSet<Path>               filesFound     = new HashSet<>();
 
+  // incremental update: state of the last run and all sub trees which have not been changed since then
+  private DirectorySnapshot           snapshot       = null;
+  private HashSet<Path>               unchangedDirs  = new HashSet<>();
+  private int                         skippedDirs    = 0;
+  private long                        skippedBytes   = 0;
+  private int                         walkedDirs     = 0;
+  private int                         parsedDirs     = 0;
+
+  private MediaInfoStage              mediaInfoStage = null;
+
   public MovieUpdateDatasourceTask2() {
     super(BUNDLE.getString("update.datasource"));
     movieList = MovieList.getInstance();
@@ -129,11 +145,28 @@ public class MovieUpdateDatasourceTask2 extends TmmThreadPool {
     movieFolders.addAll(movies);
   }
 
+  /**
+   * update the given (changed) folders of a datasource - new movies inside these folders will be found too
+   * 
+   * @param datasource
+   *          the datasource containing the folders
+   * @param folders
+   *          the folders to update
+   */
+  public MovieUpdateDatasourceTask2(String datasource, List<Path> folders) {
+    super(BUNDLE.getString("update.datasource") + " (" + datasource + ")");
+    movieList = MovieList.getInstance();
+    dataSources = new ArrayList<>(0);
+    for (Path folder : folders) {
+      changedFolders.put(folder.toAbsolutePath(), datasource);
+    }
+  }
+
   @Override
   public void doInBackground() {
     // check if there is at least one DS to update
     Utils.removeEmptyStringsFromList(dataSources);
-    if (dataSources.isEmpty() && movieFolders.isEmpty()) {
+    if (dataSources.isEmpty() && movieFolders.isEmpty() && changedFolders.isEmpty()) {
       LOGGER.info("no datasource to update");
       MessageManager.instance.pushMessage(new Message(MessageLevel.ERROR, "update.datasource", "update.datasource.nonespecified"));
       return;
@@ -146,7 +179,7 @@ public class MovieUpdateDatasourceTask2 extends TmmThreadPool {
     visFileAll = 0;
 
     // get existing movie folders
-    List<Path> existing = new ArrayList<>();
+    Set<Path> existing = new HashSet<>();
     for (Movie movie : movieList.getMovies()) {
       existing.add(movie.getPathNIO());
     }
@@ -156,7 +189,7 @@ public class MovieUpdateDatasourceTask2 extends TmmThreadPool {
       stopWatch.start();
       List<Path> imageFiles = new ArrayList<>();
 
-      if (movieFolders.isEmpty()) {
+      if (movieFolders.isEmpty() && changedFolders.isEmpty()) {
         for (String ds : dataSources) {
           LOGGER.info("Start UDS on datasource: " + ds);
           initThreadPool(3, "update");
@@ -175,6 +208,19 @@ public class MovieUpdateDatasourceTask2 extends TmmThreadPool {
             continue;
           }
 
+          // load the directory snapshot of the last run to skip unchanged folders
+          snapshot = DirectorySnapshot.load(MovieModuleManager.getInstance().getDirectorySnapshotFile(), dsAsPath.toAbsolutePath().toString(),
+              getSnapshotConfiguration(), new DirectorySnapshot.MediaEntityLookup() {
+                @Override
+                public boolean containsMediaEntity(Path dir) {
+                  return !movieList.getMoviesByPath(dir).isEmpty();
+                }
+              });
+          skippedDirs = 0;
+          skippedBytes = 0;
+          walkedDirs = 0;
+          parsedDirs = 0;
+
           // just check datasource folder, parse NEW folders first
           List<Path> newMovieDirs = new ArrayList<>();
           List<Path> existingMovieDirs = new ArrayList<>();
@@ -227,6 +273,23 @@ public class MovieUpdateDatasourceTask2 extends TmmThreadPool {
           // cleanup
           cleanup(ds);
 
+          if (cancel) {
+            break;
+          }
+
+          // the datasource has been completely processed - store the actual state for the next run
+          snapshot.save();
+          if (snapshot.isEmpty()) {
+            LOGGER.info("full update of '" + ds + "': " + walkedDirs + " folders walked, " + parsedDirs + " folders parsed");
+            // all files have been seen - drop the cached MediaInfo results of vanished files
+            MediaInfoCache.getInstance().evictMissing(dsAsPath.toAbsolutePath(), filesFound);
+          }
+          else {
+            LOGGER.info("incremental update of '" + ds + "': " + skippedDirs + " unchanged folders skipped ("
+                + FileUtils.byteCountToDisplaySize(skippedBytes) + "), " + walkedDirs + " folders walked, " + parsedDirs + " folders re-parsed");
+          }
+          snapshot = null;
+
           // mediainfo
           gatherMediainfo(ds);
 
@@ -263,8 +326,34 @@ public class MovieUpdateDatasourceTask2 extends TmmThreadPool {
           String ds = entry.getValue();
           submitTask(new FindMovieTask(dir, Paths.get(ds)));
         }
+
+        // changed folders: walk through them to find new (and nested) movies too
+        for (Map.Entry<Path, String> entry : changedFolders.entrySet()) {
+          Path dir = entry.getKey();
+          Path ds = Paths.get(entry.getValue()).toAbsolutePath();
+          if (!Files.exists(dir)) {
+            // removed - will be handled in the cleanup
+            continue;
+          }
+          if (dir.equals(ds)) {
+            // only the files in the datasource root
+            submitTask(new parseMultiMovieDirTask(ds, ds, listFilesOnly(ds)));
+          }
+          else {
+            searchAndParse(ds, dir, Integer.MAX_VALUE);
+          }
+        }
         waitForCompletionOrCancel();
 
+        // all (new and old) movies inside the changed folders need a cleanup and mediainfo
+        if (!changedFolders.isEmpty()) {
+          for (Movie movie : movieList.getMovies()) {
+            if (isInChangedFolder(movie) && !movieFolders.contains(movie)) {
+              movieFolders.add(movie);
+            }
+          }
+        }
+
         // cleanup
         cleanup(movieFolders);
 
@@ -1006,6 +1095,12 @@ public class MovieUpdateDatasourceTask2 extends TmmThreadPool {
       }
 
       Path movieDir = movie.getPathNIO();
+
+      // nothing has been changed in the movie folder since the last run - no need for cleanup
+      if (isInUnchangedDir(movieDir)) {
+        continue;
+      }
+
       if (!filesFound.contains(movieDir)) {
         // dir is not in hashset - check with exists to be sure it is not here
         if (!Files.exists(movieDir)) {
@@ -1028,6 +1123,7 @@ public class MovieUpdateDatasourceTask2 extends TmmThreadPool {
             if (!mf.exists()) {
               LOGGER.debug("removing orphaned file from DB: " + mf.getFileAsPath());
               movie.removeFromMediaFiles(mf);
+              MediaInfoCache.getInstance().remove(mf.getFileAsPath());
             }
             else {
               // hmm...this should not happen
@@ -1047,9 +1143,79 @@ public class MovieUpdateDatasourceTask2 extends TmmThreadPool {
         LOGGER.info("Movie (" + movie.getTitle() + ") is new - no need for cleanup");
       }
     }
+    removeFromMediaInfoCache(moviesToRemove);
     movieList.removeMovies(moviesToRemove);
   }
 
+  /**
+   * remove the cached MediaInfo results of all files of the given (vanished) movies
+   *
+   * @param movies
+   *          the movies which will be removed
+   */
+  private void removeFromMediaInfoCache(List<Movie> movies) {
+    for (Movie movie : movies) {
+      for (MediaFile mf : movie.getMediaFiles()) {
+        if (!mf.exists()) {
+          MediaInfoCache.getInstance().remove(mf.getFileAsPath());
+        }
+      }
+    }
+  }
+
+  /**
+   * checks if the given movie is inside one of the changed folders
+   *
+   * @param movie
+   *          the movie to check
+   * @return true if the movie is inside a changed folder
+   */
+  private boolean isInChangedFolder(Movie movie) {
+    Path movieDir = movie.getPathNIO();
+    for (Map.Entry<Path, String> entry : changedFolders.entrySet()) {
+      if (entry.getKey().equals(Paths.get(entry.getValue()).toAbsolutePath())) {
+        // datasource root: only the movies directly in it
+        if (movieDir.equals(entry.getKey())) {
+          return true;
+        }
+      }
+      else if (movieDir.startsWith(entry.getKey())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * checks if the given folder is inside a sub tree which has been skipped by the incremental update
+   *
+   * @param dir
+   *          the folder to check
+   * @return true if the folder has not been changed since the last update
+   */
+  private boolean isInUnchangedDir(Path dir) {
+    if (unchangedDirs.isEmpty()) {
+      return false;
+    }
+    for (Path path = dir; path != null; path = path.getParent()) {
+      if (unchangedDirs.contains(path)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * build a string describing all settings which have an influence on the directory snapshot. If one of these changes, the snapshot is not
+   * valid any more
+   *
+   * @return the configuration string
+   */
+  private String getSnapshotConfiguration() {
+    return StringUtils.join(MovieModuleManager.MOVIE_SETTINGS.getMovieSkipFolders(), File.pathSeparator) + "|"
+        + StringUtils.join(Globals.settings.getVideoFileType(), ",");
+  }
+
   private void cleanup(List<Movie> movies) {
     setTaskName(BUNDLE.getString("update.cleanup"));
     setTaskDescription(null);
@@ -1089,6 +1255,7 @@ public class MovieUpdateDatasourceTask2 extends TmmThreadPool {
             if (!mf.exists()) {
               LOGGER.debug("removing orphaned file from DB: " + mf.getFileAsPath());
               movie.removeFromMediaFiles(mf);
+              MediaInfoCache.getInstance().remove(mf.getFileAsPath());
             }
             else {
               // hmm...this should not happen
@@ -1108,6 +1275,7 @@ public class MovieUpdateDatasourceTask2 extends TmmThreadPool {
         LOGGER.info("Movie (" + movie.getTitle() + ") is new - no need for cleanup");
       }
     }
+    removeFromMediaInfoCache(moviesToRemove);
     movieList.removeMovies(moviesToRemove);
   }
 
@@ -1119,9 +1287,8 @@ public class MovieUpdateDatasourceTask2 extends TmmThreadPool {
     setTaskName(BUNDLE.getString("update.mediainfo"));
     publishState();
 
-    initThreadPool(1, "mediainfo");
-
     LOGGER.info("getting Mediainfo...");
+    MediaInfoStage stage = new MediaInfoStage();
     for (int i = movieList.getMovies().size() - 1; i >= 0; i--) {
       if (cancel) {
         break;
@@ -1135,11 +1302,11 @@ public class MovieUpdateDatasourceTask2 extends TmmThreadPool {
 
       for (MediaFile mf : new ArrayList<>(movie.getMediaFiles())) {
         if (StringUtils.isBlank(mf.getContainerFormat())) {
-          submitTask(new MediaFileInformationFetcherTask(mf, movie, false));
+          stage.addMediaFile(mf, movie, movie.getDataSource());
         }
       }
     }
-    waitForCompletionOrCancel();
+    runMediaInfoStage(stage);
   }
 
   private void gatherMediainfo(List<Movie> movies) {
@@ -1147,20 +1314,40 @@ public class MovieUpdateDatasourceTask2 extends TmmThreadPool {
     setTaskName(BUNDLE.getString("update.mediainfo"));
     publishState();
 
-    initThreadPool(1, "mediainfo");
-
     LOGGER.info("getting Mediainfo...");
+    MediaInfoStage stage = new MediaInfoStage();
     for (Movie movie : movies) {
       if (cancel) {
         break;
       }
       for (MediaFile mf : new ArrayList<>(movie.getMediaFiles())) {
         if (StringUtils.isBlank(mf.getContainerFormat())) {
-          submitTask(new MediaFileInformationFetcherTask(mf, movie, false));
+          stage.addMediaFile(mf, movie, movie.getDataSource());
         }
       }
     }
+    runMediaInfoStage(stage);
+  }
+
+  /**
+   * run the MediaInfo extraction with the configured amount of workers
+   * 
+   * @param stage
+   *          the stage containing all files to process
+   */
+  private void runMediaInfoStage(MediaInfoStage stage) {
+    initThreadPool(stage.getWorkerCount(), "mediainfo");
+    mediaInfoStage = stage;
+    for (Callable<Object> task : stage.createTasks()) {
+      submitTask(task);
+    }
     waitForCompletionOrCancel();
+    // release the native MediaInfo handles of the workers
+    stage.close();
+    if (stage.getFileCount() > 0) {
+      LOGGER.info("got Mediainfo for " + stage.getProgressDescription(progressDone) + " with " + stage.getWorkerCount() + " worker(s)");
+    }
+    mediaInfoStage = null;
   }
 
   /**
@@ -1216,7 +1403,10 @@ public class MovieUpdateDatasourceTask2 extends TmmThreadPool {
   @Override
   public void callback(Object obj) {
     // do not publish task description here, because with different workers the
-    // text is never right
+    // text is never right - except the throughput of the MediaInfo workers
+    if (mediaInfoStage != null) {
+      setTaskDescription(mediaInfoStage.getProgressDescription(progressDone));
+    }
     publishState(progressDone);
   }
 
@@ -1381,8 +1571,14 @@ public class MovieUpdateDatasourceTask2 extends TmmThreadPool {
           MediaFile mf = new MediaFile(file);
           if (mf.getType() == MediaFileType.VIDEO) {
             videofolders.add(file.getParent());
+            if (snapshot != null) {
+              snapshot.recordVideoFolder(file.getParent());
+            }
           }
         }
+        if (snapshot != null) {
+          snapshot.recordFile(file, attr.size(), attr.lastModifiedTime().toMillis());
+        }
       }
       return CONTINUE;
     }
@@ -1390,13 +1586,32 @@ public class MovieUpdateDatasourceTask2 extends TmmThreadPool {
     @Override
     public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
       preDir++;
+      long lastModified = attrs.lastModifiedTime().toMillis();
+
+      // nothing changed in this sub tree since the last run - take over the old state
+      if (snapshot != null && snapshot.isSubtreeUnchanged(dir, lastModified)) {
+        LOGGER.trace("Skipping unchanged dir: " + dir);
+        unchangedDirs.add(dir);
+        skippedBytes += snapshot.getSubtreeSize(dir);
+        skippedDirs += snapshot.carryOverSubtree(dir, videofolders);
+        return SKIP_SUBTREE;
+      }
+
       String fn = dir.getFileName().toString().toUpperCase(Locale.ROOT);
       if (skipFolders.contains(fn) || fn.matches(skipRegex) || Files.exists(dir.resolve(".tmmignore")) || Files.exists(dir.resolve("tmmignore"))
           || Files.exists(dir.resolve(".nomedia"))
           || MovieModuleManager.MOVIE_SETTINGS.getMovieSkipFolders().contains(dir.toFile().getAbsolutePath())) {
         LOGGER.debug("Skipping dir: " + dir);
+        if (snapshot != null) {
+          snapshot.recordDirectory(dir, lastModified, true);
+        }
         return SKIP_SUBTREE;
       }
+
+      walkedDirs++;
+      if (snapshot != null) {
+        snapshot.recordDirectory(dir, lastModified, false);
+      }
       return CONTINUE;
     }
 
@@ -1436,10 +1651,12 @@ public class MovieUpdateDatasourceTask2 extends TmmThreadPool {
               // ka-ching! parse this now as MMD and return
               List<Path> rootFiles = listFilesOnly(dir); // get all files and dirs
               submitTask(new parseMultiMovieDirTask(datasource.toAbsolutePath(), dir, rootFiles));
+              parsedDirs++;
               return CONTINUE;
             }
           }
           submitTask(new FindMovieTask(dir, datasource));
+          parsedDirs++;
         }
       }
       return CONTINUE;
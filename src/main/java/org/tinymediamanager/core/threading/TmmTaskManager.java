@@ -15,6 +15,7 @@
  */
 package org.tinymediamanager.core.threading;
 
+import java.util.List;
 import java.util.Locale;
 import java.util.ResourceBundle;
 import java.util.Set;
@@ -26,6 +27,9 @@ import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.commons.io.FileUtils;
+import org.tinymediamanager.core.ArtworkBlobStore;
+import org.tinymediamanager.core.MediaEntityImageFetcherTask;
 import org.tinymediamanager.core.threading.TmmTaskHandle.TaskState;
 import org.tinymediamanager.core.threading.TmmThreadPool.TmmThreadFactory;
 import org.tinymediamanager.ui.UTF8Control;
@@ -36,11 +40,12 @@ import org.tinymediamanager.ui.UTF8Control;
  * @author Manuel Laggner
  */
 public class TmmTaskManager implements TmmTaskListener {
-  public final AtomicLong                GLOB_THRD_CNT    = new AtomicLong(1);
-  private static final ResourceBundle    BUNDLE           = ResourceBundle.getBundle("messages", new UTF8Control()); //$NON-NLS-1$
-  private final static TmmTaskManager    instance         = new TmmTaskManager();
-  private final Set<TmmTaskListener>     taskListener     = new CopyOnWriteArraySet<>();
-  private final Set<TmmTaskHandle>       runningTasks     = new CopyOnWriteArraySet<>();
+  public final AtomicLong                GLOB_THRD_CNT          = new AtomicLong(1);
+  private static final ResourceBundle    BUNDLE                 = ResourceBundle.getBundle("messages", new UTF8Control()); //$NON-NLS-1$
+  private static final int               IMAGE_DOWNLOAD_THREADS = 6;
+  private final static TmmTaskManager    instance               = new TmmTaskManager();
+  private final Set<TmmTaskListener>     taskListener           = new CopyOnWriteArraySet<>();
+  private final Set<TmmTaskHandle>       runningTasks           = new CopyOnWriteArraySet<>();
 
   // we have some "named" queues, holding different types of tasks
   // image download/subtitle download are rather small/fast tasks - we only queue them in a queue and provide to abort the complete queue
@@ -53,14 +58,16 @@ public class TmmTaskManager implements TmmTaskListener {
   private ThreadPoolExecutor             downloadExecutor;
 
   // main tasks (update datasource, scraping, renaming) are queueable tasks, but only one at a time can run; they can be cancelled individually
-  private final ThreadPoolExecutor       mainTaskExecutor = createMainTaskQueue();
+  private final ThreadPoolExecutor       mainTaskExecutor       = createMainTaskQueue();
 
   // fake task handles to manage queues
   private TmmTaskHandle                  imageQueueHandle;
+  private long                           imageQueueStartTime    = 0;
+  private long                           imageQueueStartBytes   = 0;
   // private TmmTaskHandle unnamedQueueHandle;
 
   // scheduled threads
-  private final ScheduledExecutorService scheduler        = Executors.newScheduledThreadPool(1);
+  private final ScheduledExecutorService scheduler              = Executors.newScheduledThreadPool(1);
 
   private TmmTaskManager() {
     imageQueueHandle = new ImageQueueTaskHandle();
@@ -79,8 +86,9 @@ public class TmmTaskManager implements TmmTaskListener {
   }
 
   private ThreadPoolExecutor createImageDownloadExecutor() {
-    ThreadPoolExecutor executor = new ThreadPoolExecutor(3, 3, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
-        new TmmThreadFactory("image-download-task")) {
+    // the parallel downloads per host are limited in the ArtworkBlobStore; more threads only help to fetch from different hosts at once
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(IMAGE_DOWNLOAD_THREADS, IMAGE_DOWNLOAD_THREADS, 1, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(), new TmmThreadFactory("image-download-task")) {
       @Override
       protected void beforeExecute(Thread d, Runnable r) {
         super.beforeExecute(d, r);
@@ -134,6 +142,13 @@ public class TmmTaskManager implements TmmTaskListener {
     if (imageDownloadExecutor == null || imageDownloadExecutor.isShutdown()) {
       imageDownloadExecutor = createImageDownloadExecutor();
     }
+    synchronized (this) {
+      // start measuring the throughput if the queue was idle
+      if (imageDownloadExecutor.getQueue().isEmpty() && imageDownloadExecutor.getActiveCount() == 0) {
+        imageQueueStartTime = System.currentTimeMillis();
+        imageQueueStartBytes = ArtworkBlobStore.getInstance().getDownloadedBytes();
+      }
+    }
     imageDownloadExecutor.execute(task);
   }
 
@@ -174,7 +189,21 @@ public class TmmTaskManager implements TmmTaskListener {
    */
   public void cancelImageDownloads() {
     if (imageDownloadExecutor != null) {
-      imageDownloadExecutor.shutdownNow();
+      releaseImageDownloads(imageDownloadExecutor.shutdownNow());
+    }
+  }
+
+  /**
+   * release the dropped image downloads; otherwise their artwork batches would never be finished
+   * 
+   * @param droppedTasks
+   *          the tasks which have been removed from the queue without being executed
+   */
+  private void releaseImageDownloads(List<Runnable> droppedTasks) {
+    for (Runnable task : droppedTasks) {
+      if (task instanceof MediaEntityImageFetcherTask) {
+        ((MediaEntityImageFetcherTask) task).cancel();
+      }
     }
   }
 
@@ -250,7 +279,7 @@ public class TmmTaskManager implements TmmTaskListener {
 
     // check if all finished
     if (imageDownloadExecutor != null && !imageDownloadExecutor.isTerminated()) {
-      imageDownloadExecutor.shutdownNow();
+      releaseImageDownloads(imageDownloadExecutor.shutdownNow());
     }
     if (unnamedTaskExecutor != null && !unnamedTaskExecutor.isTerminated()) {
       unnamedTaskExecutor.shutdownNow();
@@ -369,7 +398,39 @@ public class TmmTaskManager implements TmmTaskListener {
 
     @Override
     public String getTaskDescription() {
-      return getOpenTasks() + " " + BUNDLE.getString("task.remaining");
+      return getOpenTasks() + " " + BUNDLE.getString("task.remaining") + " "
+          + String.format(BUNDLE.getString("task.imagedownloads.queue"), getQueueDepth(), FileUtils.byteCountToDisplaySize(getBytesPerSecond()));
+    }
+
+    /**
+     * get the amount of tasks waiting for a free download thread
+     * 
+     * @return the queue depth
+     */
+    public int getQueueDepth() {
+      if (imageDownloadExecutor != null) {
+        return imageDownloadExecutor.getQueue().size();
+      }
+      return 0;
+    }
+
+    /**
+     * get the download rate since the queue has become active
+     * 
+     * @return the downloaded bytes per second
+     */
+    public long getBytesPerSecond() {
+      long startTime;
+      long startBytes;
+      synchronized (TmmTaskManager.this) {
+        startTime = imageQueueStartTime;
+        startBytes = imageQueueStartBytes;
+      }
+      long duration = System.currentTimeMillis() - startTime;
+      if (startTime == 0 || duration <= 0) {
+        return 0;
+      }
+      return (ArtworkBlobStore.getInstance().getDownloadedBytes() - startBytes) * 1000 / duration;
     }
 
     private int getOpenTasks() {
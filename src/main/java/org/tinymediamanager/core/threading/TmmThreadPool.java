@@ -137,12 +137,12 @@ public abstract class TmmThreadPool extends TmmTask {
   /**
    * a copy of the default thread factory, just to set the pool name.
    */
-  static class TmmThreadFactory implements ThreadFactory {
+  public static class TmmThreadFactory implements ThreadFactory {
     final ThreadGroup   group;
     final AtomicInteger threadNumber = new AtomicInteger(1);
     final String        namePrefix;
 
-    TmmThreadFactory(String poolname) {
+    public TmmThreadFactory(String poolname) {
       SecurityManager s = System.getSecurityManager();
       group = (s != null) ? s.getThreadGroup() : Thread.currentThread().getThreadGroup();
       namePrefix = "tmmpool-" + poolname + "-T";
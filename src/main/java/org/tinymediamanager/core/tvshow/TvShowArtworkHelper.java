@@ -16,19 +16,18 @@
 package org.tinymediamanager.core.tvshow;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 
 import org.apache.commons.io.FilenameUtils;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.tinymediamanager.core.ArtworkBlobStore;
 import org.tinymediamanager.core.ImageCache;
 import org.tinymediamanager.core.MediaEntityImageFetcherTask;
 import org.tinymediamanager.core.MediaFileType;
@@ -41,7 +40,6 @@ import org.tinymediamanager.core.tvshow.entities.TvShow;
 import org.tinymediamanager.core.tvshow.entities.TvShowEpisode;
 import org.tinymediamanager.core.tvshow.entities.TvShowSeason;
 import org.tinymediamanager.scraper.entities.MediaArtwork;
-import org.tinymediamanager.scraper.http.Url;
 
 /**
  * The class TvShowArtworkHelper . A helper class for managing TV show artwork
@@ -328,19 +326,13 @@ public class TvShowArtworkHelper {
         LOGGER.debug("writing season poster " + filename);
 
         // fetch and store images
-        Url url1 = new Url(url);
-        FileOutputStream outputStream = new FileOutputStream(filename);
-        InputStream is = url1.getInputStream();
-        IOUtils.copy(is, outputStream);
-        outputStream.close();
-        outputStream.flush();
+        Path blob = ArtworkBlobStore.getInstance().fetch(url);
         try {
-          outputStream.getFD().sync(); // wait until file has been completely written
+          ArtworkBlobStore.materialize(blob, Paths.get(filename));
         }
-        catch (Exception e) {
-          // empty here -> just not let the thread crash
+        finally {
+          ArtworkBlobStore.getInstance().release(blob);
         }
-        is.close();
 
         ImageCache.invalidateCachedImage(Paths.get(filename));
         if (tvShowSeason != null) {
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2012 - 2018 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core.tvshow;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import org.tinymediamanager.core.DatasourceWatcher;
+import org.tinymediamanager.core.threading.TmmTaskManager;
+import org.tinymediamanager.core.tvshow.tasks.TvShowUpdateDatasourceTask2;
+
+/**
+ * The class TvShowDatasourceWatcher. Watches the TV show data sources and updates changed TV show folders
+ * 
+ * @author Manuel Laggner
+ */
+public class TvShowDatasourceWatcher extends DatasourceWatcher {
+
+  public TvShowDatasourceWatcher() {
+    super("tvshow");
+  }
+
+  @Override
+  protected List<String> getDataSources() {
+    return TvShowModuleManager.SETTINGS.getTvShowDataSource();
+  }
+
+  @Override
+  protected Path resolveFolder(Path datasource, Path changedPath) {
+    // files in the datasource root do not belong to any TV show
+    if (changedPath.equals(datasource)) {
+      return null;
+    }
+
+    // TV shows are always in the first level of the datasource
+    return datasource.resolve(datasource.relativize(changedPath).getName(0));
+  }
+
+  @Override
+  protected void updateFolders(Path datasource, List<Path> folders) {
+    TmmTaskManager.getInstance().addMainTask(new TvShowUpdateDatasourceTask2(folders));
+  }
+}
@@ -0,0 +1,413 @@
+/*
+ * Copyright 2012 - 2018 Manuel Laggner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core.tvshow;
+
+import static org.tinymediamanager.core.Constants.ACTORS;
+import static org.tinymediamanager.core.Constants.ADDED_EPISODE;
+import static org.tinymediamanager.core.Constants.DIRECTOR;
+import static org.tinymediamanager.core.Constants.EPISODE_COUNT;
+import static org.tinymediamanager.core.Constants.GENRE;
+import static org.tinymediamanager.core.Constants.MEDIA_FILES;
+import static org.tinymediamanager.core.Constants.MEDIA_INFORMATION;
+import static org.tinymediamanager.core.Constants.REMOVED_EPISODE;
+import static org.tinymediamanager.core.Constants.TAG;
+import static org.tinymediamanager.core.Constants.WATCHED;
+import static org.tinymediamanager.core.Constants.WRITER;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang3.StringUtils;
+import org.tinymediamanager.core.MediaFileType;
+import org.tinymediamanager.core.NGramIndex;
+import org.tinymediamanager.core.entities.MediaFile;
+import org.tinymediamanager.core.tvshow.entities.TvShow;
+import org.tinymediamanager.core.tvshow.entities.TvShowActor;
+import org.tinymediamanager.core.tvshow.entities.TvShowEpisode;
+import org.tinymediamanager.scraper.entities.MediaGenres;
+
+/**
+ * The class TvShowFilterIndex. Keeps a bitset per filter facet (genre, tag, watched and video/audio codec) and an n-gram index of the cast of
+ * all TV shows, so that the filters of the TV show tree can be evaluated as bitset intersections.<br>
+ * Every TV show gets a stable slot (the bit in the bitsets); the values of its episodes are indexed in the slot of the TV show (a TV show
+ * matches if one of its episodes matches). Slots of removed TV shows are reused. Changed TV shows are only marked as dirty and re-indexed with
+ * the next filter request
+ * 
+ * @author Manuel Laggner
+ */
+public class TvShowFilterIndex {
+  // the properties of a TV show (or one of its episodes) which influence the index
+  private static final Set<String>       INDEXED     = new HashSet<>(Arrays.asList(GENRE, TAG, MEDIA_FILES, MEDIA_INFORMATION, WATCHED,
+      DIRECTOR, WRITER, ACTORS, ADDED_EPISODE, REMOVED_EPISODE, EPISODE_COUNT));
+
+  private final Map<TvShow, Integer>     slots       = new IdentityHashMap<>();
+  private final List<IndexKeys>          indexedKeys = new ArrayList<>();
+  private final BitSet                   usedSlots   = new BitSet();
+  private final Set<TvShow>              dirtyShows  = Collections.newSetFromMap(new IdentityHashMap<TvShow, Boolean>());
+  private volatile int                   version;
+
+  private final Map<MediaGenres, BitSet> genres      = new HashMap<>();
+  private final Map<String, BitSet>      tags        = new HashMap<>();
+  private final Map<String, BitSet>      episodeTags = new HashMap<>();
+  private final Map<String, BitSet>      videoCodecs = new HashMap<>();
+  private final Map<String, BitSet>      audioCodecs = new HashMap<>();
+  private final BitSet                   untagged    = new BitSet();
+  private final BitSet                   watched     = new BitSet();
+  private final BitSet                   unwatched   = new BitSet();
+  private final NGramIndex               cast        = new NGramIndex();
+
+  /**
+   * add the TV show to the index
+   * 
+   * @param tvShow
+   *          the TV show to add
+   */
+  synchronized void addTvShow(TvShow tvShow) {
+    if (slots.containsKey(tvShow)) {
+      return;
+    }
+    int slot = usedSlots.nextClearBit(0);
+    usedSlots.set(slot);
+    slots.put(tvShow, slot);
+    while (indexedKeys.size() <= slot) {
+      indexedKeys.add(null);
+    }
+    index(tvShow, slot);
+    version++;
+  }
+
+  /**
+   * remove the TV show from the index
+   * 
+   * @param tvShow
+   *          the TV show to remove
+   */
+  synchronized void removeTvShow(TvShow tvShow) {
+    Integer slot = slots.remove(tvShow);
+    if (slot == null) {
+      return;
+    }
+    dirtyShows.remove(tvShow);
+    unindex(slot);
+    usedSlots.clear(slot);
+    version++;
+  }
+
+  /**
+   * mark the TV show as changed if the given property (of the TV show or one of its episodes) is indexed; it will be re-indexed with the next
+   * filter request
+   * 
+   * @param tvShow
+   *          the changed TV show
+   * @param property
+   *          the name of the changed property
+   */
+  synchronized void markDirty(TvShow tvShow, String property) {
+    if (INDEXED.contains(property) && slots.containsKey(tvShow) && dirtyShows.add(tvShow)) {
+      version++;
+    }
+  }
+
+  /**
+   * mark all TV shows as changed (e.g. after the episodes have been loaded)
+   */
+  synchronized void markAllDirty() {
+    dirtyShows.addAll(slots.keySet());
+    version++;
+  }
+
+  /**
+   * get the version of the index; it is increased on every change, so results of the filters can be cached until the version changes
+   * 
+   * @return the version of the index
+   */
+  public int getVersion() {
+    return version;
+  }
+
+  /**
+   * get the slot of the given TV show (the bit in the results of the filters)
+   * 
+   * @param tvShow
+   *          the TV show
+   * @return the slot or -1 if the TV show is not indexed
+   */
+  public synchronized int getSlot(TvShow tvShow) {
+    Integer slot = slots.get(tvShow);
+    return slot != null ? slot : -1;
+  }
+
+  /**
+   * get all indexed TV shows (the starting point for an intersection of several filters)
+   * 
+   * @return the slots of all TV shows
+   */
+  public synchronized BitSet getAll() {
+    reindexDirtyShows();
+    return (BitSet) usedSlots.clone();
+  }
+
+  /**
+   * get all TV shows with the given genre
+   * 
+   * @param genre
+   *          the genre
+   * @return the slots of all matching TV shows
+   */
+  public synchronized BitSet filterGenre(MediaGenres genre) {
+    reindexDirtyShows();
+    return (BitSet) get(genres, genre).clone();
+  }
+
+  /**
+   * get all TV shows with at least one episode with the given watched state
+   * 
+   * @param watchedState
+   *          the watched state to search for
+   * @return the slots of all matching TV shows
+   */
+  public synchronized BitSet filterWatched(boolean watchedState) {
+    reindexDirtyShows();
+    return (BitSet) (watchedState ? watched : unwatched).clone();
+  }
+
+  /**
+   * get all TV shows which may have all given tags (either the TV show or one of its episodes). If no (non blank) tag is given, only the TV
+   * shows without tags match.<br>
+   * The tags of all episodes are indexed together: with more than one tag a TV show can be a hit even if no single episode has all of them -
+   * the caller has to verify these hits
+   * 
+   * @param tagList
+   *          the tags to search for
+   * @return the slots of all (possibly) matching TV shows
+   */
+  public synchronized BitSet filterTags(List<?> tagList) {
+    reindexDirtyShows();
+    BitSet showResult = (BitSet) usedSlots.clone();
+    BitSet episodeResult = (BitSet) usedSlots.clone();
+    boolean tagged = false;
+    for (Object tag : tagList) {
+      if (tag instanceof String && StringUtils.isNotBlank((String) tag)) {
+        showResult.and(get(tags, (String) tag));
+        episodeResult.and(get(episodeTags, (String) tag));
+        tagged = true;
+      }
+    }
+
+    // special check for empty tags
+    if (!tagged) {
+      return (BitSet) untagged.clone();
+    }
+    showResult.or(episodeResult);
+    return showResult;
+  }
+
+  /**
+   * get all TV shows with at least one episode with the given video codec (case insensitive)
+   * 
+   * @param codec
+   *          the video codec
+   * @return the slots of all matching TV shows
+   */
+  public synchronized BitSet filterVideoCodec(String codec) {
+    reindexDirtyShows();
+    if (StringUtils.isBlank(codec)) {
+      return (BitSet) usedSlots.clone();
+    }
+    return (BitSet) get(videoCodecs, codec.toLowerCase(Locale.ROOT)).clone();
+  }
+
+  /**
+   * get all TV shows with at least one episode with the given audio codec (case insensitive)
+   * 
+   * @param codec
+   *          the audio codec
+   * @return the slots of all matching TV shows
+   */
+  public synchronized BitSet filterAudioCodec(String codec) {
+    reindexDirtyShows();
+    if (StringUtils.isBlank(codec)) {
+      return (BitSet) usedSlots.clone();
+    }
+    return (BitSet) get(audioCodecs, codec.toLowerCase(Locale.ROOT)).clone();
+  }
+
+  /**
+   * get all TV shows containing the given text in the name of an actor or in the director/writer/guests of one of its episodes
+   * 
+   * @param text
+   *          the text to search for
+   * @return the slots of all matching TV shows
+   */
+  public synchronized BitSet filterCast(String text) {
+    reindexDirtyShows();
+    if (StringUtils.isBlank(text)) {
+      return (BitSet) usedSlots.clone();
+    }
+    BitSet result = cast.search(text);
+    result.and(usedSlots);
+    return result;
+  }
+
+  private void reindexDirtyShows() {
+    for (TvShow tvShow : dirtyShows) {
+      Integer slot = slots.get(tvShow);
+      if (slot != null) {
+        unindex(slot);
+        index(tvShow, slot);
+      }
+    }
+    dirtyShows.clear();
+  }
+
+  private void index(TvShow tvShow, int slot) {
+    IndexKeys keys = new IndexKeys(tvShow);
+    indexedKeys.set(slot, keys);
+
+    for (MediaGenres genre : keys.genres) {
+      add(genres, genre, slot);
+    }
+    for (String tag : keys.tags) {
+      add(tags, tag, slot);
+    }
+    if (keys.tags.isEmpty()) {
+      untagged.set(slot);
+    }
+    for (String tag : keys.episodeTags) {
+      add(episodeTags, tag, slot);
+    }
+    for (String codec : keys.videoCodecs) {
+      add(videoCodecs, codec, slot);
+    }
+    for (String codec : keys.audioCodecs) {
+      add(audioCodecs, codec, slot);
+    }
+
+    List<String> castNames = new ArrayList<>();
+    for (TvShowActor actor : new ArrayList<>(tvShow.getActors())) {
+      castNames.add(actor.getName());
+    }
+    for (TvShowEpisode episode : new ArrayList<>(tvShow.getEpisodes())) {
+      if (episode.isWatched()) {
+        watched.set(slot);
+      }
+      else {
+        unwatched.set(slot);
+      }
+      castNames.add(episode.getDirector());
+      castNames.add(episode.getWriter());
+      for (TvShowActor guest : new ArrayList<>(episode.getGuests())) {
+        castNames.add(guest.getName());
+      }
+    }
+    cast.set(slot, castNames);
+  }
+
+  private void unindex(int slot) {
+    IndexKeys keys = indexedKeys.get(slot);
+    if (keys == null) {
+      return;
+    }
+    indexedKeys.set(slot, null);
+
+    for (MediaGenres genre : keys.genres) {
+      remove(genres, genre, slot);
+    }
+    for (String tag : keys.tags) {
+      remove(tags, tag, slot);
+    }
+    for (String tag : keys.episodeTags) {
+      remove(episodeTags, tag, slot);
+    }
+    for (String codec : keys.videoCodecs) {
+      remove(videoCodecs, codec, slot);
+    }
+    for (String codec : keys.audioCodecs) {
+      remove(audioCodecs, codec, slot);
+    }
+    untagged.clear(slot);
+    watched.clear(slot);
+    unwatched.clear(slot);
+    cast.remove(slot);
+  }
+
+  private static <K> BitSet get(Map<K, BitSet> facet, K key) {
+    BitSet bitSet = key != null ? facet.get(key) : null;
+    return bitSet != null ? bitSet : new BitSet();
+  }
+
+  private static <K> void add(Map<K, BitSet> facet, K key, int slot) {
+    if (key == null) {
+      return;
+    }
+    BitSet bitSet = facet.get(key);
+    if (bitSet == null) {
+      bitSet = new BitSet();
+      facet.put(key, bitSet);
+    }
+    bitSet.set(slot);
+  }
+
+  private static <K> void remove(Map<K, BitSet> facet, K key, int slot) {
+    if (key == null) {
+      return;
+    }
+    BitSet bitSet = facet.get(key);
+    if (bitSet != null) {
+      bitSet.clear(slot);
+      if (bitSet.isEmpty()) {
+        facet.remove(key);
+      }
+    }
+  }
+
+  /**
+   * the values under which a TV show has been indexed (needed to remove the TV show from the index after its values have been changed)
+   */
+  private static class IndexKeys {
+    private final List<MediaGenres>   genres;
+    private final List<String>        tags;
+    private final Set<String>         episodeTags = new HashSet<>();
+    private final Set<String>         videoCodecs = new HashSet<>();
+    private final Set<String>         audioCodecs = new HashSet<>();
+
+    private IndexKeys(TvShow tvShow) {
+      this.genres = new ArrayList<>(tvShow.getGenres());
+      this.tags = new ArrayList<>(tvShow.getTags());
+
+      for (TvShowEpisode episode : new ArrayList<>(tvShow.getEpisodes())) {
+        episodeTags.addAll(episode.getTags());
+        for (MediaFile mf : episode.getMediaFiles(MediaFileType.VIDEO)) {
+          if (StringUtils.isNotBlank(mf.getVideoCodec())) {
+            videoCodecs.add(mf.getVideoCodec().toLowerCase(Locale.ROOT));
+          }
+          if (StringUtils.isNotBlank(mf.getAudioCodec())) {
+            audioCodecs.add(mf.getAudioCodec().toLowerCase(Locale.ROOT));
+          }
+        }
+      }
+    }
+  }
+}
@@ -15,11 +15,16 @@
  */
 package org.tinymediamanager.core.tvshow;
 
+import static org.tinymediamanager.core.Constants.ADDED_EPISODE;
 import static org.tinymediamanager.core.Constants.ADDED_TV_SHOW;
+import static org.tinymediamanager.core.Constants.CERTIFICATION;
 import static org.tinymediamanager.core.Constants.EPISODE_COUNT;
+import static org.tinymediamanager.core.Constants.GENRE;
 import static org.tinymediamanager.core.Constants.MEDIA_FILES;
 import static org.tinymediamanager.core.Constants.MEDIA_INFORMATION;
+import static org.tinymediamanager.core.Constants.REMOVED_EPISODE;
 import static org.tinymediamanager.core.Constants.REMOVED_TV_SHOW;
+import static org.tinymediamanager.core.Constants.TITLE_SORTABLE;
 import static org.tinymediamanager.core.Constants.TV_SHOWS;
 import static org.tinymediamanager.core.Constants.TV_SHOW_COUNT;
 
@@ -28,11 +33,15 @@ import java.beans.PropertyChangeListener;
 import java.io.File;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.UUID;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.lang3.LocaleUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -42,6 +51,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tinymediamanager.core.AbstractModelObject;
 import org.tinymediamanager.core.Constants;
+import org.tinymediamanager.core.FacetRegistry;
+import org.tinymediamanager.core.MediaEntityDatabaseLoader;
 import org.tinymediamanager.core.MediaFileType;
 import org.tinymediamanager.core.Message;
 import org.tinymediamanager.core.Message.MessageLevel;
@@ -56,12 +67,13 @@ import org.tinymediamanager.scraper.MediaScraper;
 import org.tinymediamanager.scraper.MediaSearchOptions;
 import org.tinymediamanager.scraper.MediaSearchResult;
 import org.tinymediamanager.scraper.ScraperType;
+import org.tinymediamanager.scraper.entities.Certification;
+import org.tinymediamanager.scraper.entities.MediaGenres;
 import org.tinymediamanager.scraper.entities.MediaLanguages;
 import org.tinymediamanager.scraper.entities.MediaType;
 import org.tinymediamanager.scraper.mediaprovider.ITvShowMetadataProvider;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.ObjectReader;
 
 /**
  * The Class TvShowList.
@@ -69,16 +81,22 @@ import com.fasterxml.jackson.databind.ObjectReader;
  * @author Manuel Laggner
  */
 public class TvShowList extends AbstractModelObject {
-  private static final Logger    LOGGER   = LoggerFactory.getLogger(TvShowList.class);
-  private static TvShowList      instance = null;
-
-  private final List<TvShow>     tvShowList;
-  private final List<String>     tvShowTagsObservable;
-  private final List<String>     episodeTagsObservable;
-  private final List<String>     videoCodecsObservable;
-  private final List<String>     audioCodecsObservable;
-
-  private PropertyChangeListener propertyChangeListener;
+  private static final Logger                LOGGER   = LoggerFactory.getLogger(TvShowList.class);
+  private static TvShowList                  instance = null;
+
+  private final List<TvShow>                 tvShowList;
+  private final Map<UUID, TvShow>            tvShowIndex;
+  private final FacetRegistry<String>        tvShowTags;
+  private final FacetRegistry<String>        episodeTags;
+  private final FacetRegistry<String>        videoCodecs;
+  private final FacetRegistry<String>        audioCodecs;
+  private final FacetRegistry<String>        videoFormats;
+  private final FacetRegistry<Certification> certifications;
+  private final FacetRegistry<MediaGenres>   genres;
+  private final List<FacetRegistry<?>>       facets;
+  private final TvShowFilterIndex            filterIndex;
+
+  private PropertyChangeListener             propertyChangeListener;
 
   /**
    * Instantiates a new TvShowList.
@@ -86,15 +104,31 @@ public class TvShowList extends AbstractModelObject {
   private TvShowList() {
     // create the lists
     tvShowList = ObservableCollections.observableList(Collections.synchronizedList(new ArrayList<TvShow>()));
-    tvShowTagsObservable = ObservableCollections.observableList(new CopyOnWriteArrayList<String>());
-    episodeTagsObservable = ObservableCollections.observableList(new CopyOnWriteArrayList<String>());
-    videoCodecsObservable = ObservableCollections.observableList(new CopyOnWriteArrayList<String>());
-    audioCodecsObservable = ObservableCollections.observableList(new CopyOnWriteArrayList<String>());
+    tvShowIndex = new ConcurrentHashMap<>();
+
+    // the facets (all used values of tags, codecs, ...); the name of the facet is the name of the event which is fired on changes
+    tvShowTags = new FacetRegistry<>("tag");
+    episodeTags = new FacetRegistry<>("tag");
+    videoCodecs = new FacetRegistry<>("videoCodec");
+    audioCodecs = new FacetRegistry<>("audioCodec");
+    videoFormats = new FacetRegistry<>("videoFormat");
+    certifications = new FacetRegistry<>("certification");
+    genres = new FacetRegistry<>("genre");
+    facets = Arrays.<FacetRegistry<?>> asList(tvShowTags, episodeTags, videoCodecs, audioCodecs, videoFormats, certifications, genres);
+    filterIndex = new TvShowFilterIndex();
 
     // the tag listener: its used to always have a full list of all tags used in tmm
     propertyChangeListener = new PropertyChangeListener() {
       @Override
       public void propertyChange(PropertyChangeEvent evt) {
+        // changes of the TV show and its episodes have to be re-indexed for the filters
+        if (evt.getSource() instanceof TvShow) {
+          filterIndex.markDirty((TvShow) evt.getSource(), evt.getPropertyName());
+        }
+        else if (evt.getSource() instanceof TvShowEpisode && ((TvShowEpisode) evt.getSource()).getTvShow() != null) {
+          filterIndex.markDirty(((TvShowEpisode) evt.getSource()).getTvShow(), evt.getPropertyName());
+        }
+
         // listen to changes of tags
         if ("tag".equals(evt.getPropertyName()) && evt.getSource() instanceof TvShow) {
           TvShow tvShow = (TvShow) evt.getSource();
@@ -109,6 +143,20 @@ public class TvShowList extends AbstractModelObject {
           TvShowEpisode episode = (TvShowEpisode) evt.getSource();
           updateMediaInformationLists(episode);
         }
+        if (CERTIFICATION.equals(evt.getPropertyName()) && evt.getSource() instanceof TvShow) {
+          TvShow tvShow = (TvShow) evt.getSource();
+          updateCertifications(tvShow);
+        }
+        if (GENRE.equals(evt.getPropertyName()) && evt.getSource() instanceof TvShow) {
+          TvShow tvShow = (TvShow) evt.getSource();
+          updateGenres(tvShow);
+        }
+        if (ADDED_EPISODE.equals(evt.getPropertyName()) && evt.getNewValue() instanceof TvShowEpisode) {
+          updateFacets((TvShowEpisode) evt.getNewValue());
+        }
+        if (REMOVED_EPISODE.equals(evt.getPropertyName()) && evt.getNewValue() instanceof TvShowEpisode) {
+          removeFacets(evt.getNewValue());
+        }
         if (EPISODE_COUNT.equals(evt.getPropertyName())) {
           firePropertyChange(EPISODE_COUNT, 0, 1);
         }
@@ -163,6 +211,16 @@ public class TvShowList extends AbstractModelObject {
     int oldValue = tvShowList.size();
 
     tvShowList.add(newValue);
+    tvShowIndex.put(newValue.getDbId(), newValue);
+    filterIndex.addTvShow(newValue);
+
+    beginFacetBulk();
+    updateFacets(newValue);
+    for (TvShowEpisode episode : newValue.getEpisodes()) {
+      updateFacets(episode);
+    }
+    endFacetBulk();
+
     newValue.addPropertyChangeListener(propertyChangeListener);
     firePropertyChange(TV_SHOWS, null, tvShowList);
     firePropertyChange(ADDED_TV_SHOW, null, newValue);
@@ -196,8 +254,12 @@ public class TvShowList extends AbstractModelObject {
    */
   public void removeTvShow(TvShow tvShow) {
     int oldValue = tvShowList.size();
+    removeAllFacets(tvShow);
     tvShow.removeAllEpisodes();
     tvShowList.remove(tvShow);
+    tvShowIndex.remove(tvShow.getDbId());
+    filterIndex.removeTvShow(tvShow);
+    tvShow.removePropertyChangeListener(propertyChangeListener);
 
     try {
       TvShowModuleManager.getInstance().removeTvShowFromDb(tvShow);
@@ -221,8 +283,12 @@ public class TvShowList extends AbstractModelObject {
     int oldValue = tvShowList.size();
 
     tvShow.deleteFilesSafely();
+    removeAllFacets(tvShow);
     tvShow.removeAllEpisodes();
     tvShowList.remove(tvShow);
+    tvShowIndex.remove(tvShow.getDbId());
+    filterIndex.removeTvShow(tvShow);
+    tvShow.removePropertyChangeListener(propertyChangeListener);
 
     try {
       TvShowModuleManager.getInstance().removeTvShowFromDb(tvShow);
@@ -260,77 +326,85 @@ public class TvShowList extends AbstractModelObject {
     return count;
   }
 
+  /**
+   * get the TV show for the given database id
+   * 
+   * @param uuid
+   *          the database id
+   * @return the TV show or null
+   */
   public TvShow lookupTvShow(UUID uuid) {
-    for (TvShow tvShow : tvShowList) {
-      if (tvShow.getDbId().equals(uuid)) {
-        return tvShow;
-      }
+    if (uuid == null) {
+      return null;
     }
-    return null;
+    return tvShowIndex.get(uuid);
   }
 
   /**
-   * Load tv shows from database.
+   * get the index for filtering the TV shows
+   * 
+   * @return the filter index
    */
-  void loadTvShowsFromDatabase(MVMap<UUID, String> tvShowMap, ObjectMapper objectMapper) {
-    // load all TV shows from the database
-    ObjectReader tvShowObjectReader = objectMapper.readerFor(TvShow.class);
-
-    for (UUID uuid : new ArrayList<>(tvShowMap.keyList())) {
-      try {
-        TvShow tvShow = tvShowObjectReader.readValue(tvShowMap.get(uuid));
-        tvShow.setDbId(uuid);
+  public TvShowFilterIndex getFilterIndex() {
+    return filterIndex;
+  }
 
-        // for performance reasons we add tv shows directly
-        tvShowList.add(tvShow);
-      }
-      catch (Exception e) {
-        LOGGER.warn("problem decoding TV show json string: " + e.getMessage());
-        LOGGER.info("dropping corrupt TV show");
-        tvShowMap.remove(uuid);
-      }
+  /**
+   * Load tv shows from database.
+   */
+  void loadTvShowsFromDatabase(MVMap<UUID, Object> tvShowMap, ObjectMapper objectMapper) {
+    // load all TV shows from the database (decoded in parallel)
+    MediaEntityDatabaseLoader<TvShow> loader = new MediaEntityDatabaseLoader<>(tvShowMap, objectMapper.readerFor(TvShow.class), "TV show");
+    List<TvShow> tvShows = loader.load();
+    TvShowModuleManager.getInstance().addContentHashes(loader.getContentHashes());
+
+    // for performance reasons we add tv shows directly (in one batch)
+    tvShowList.addAll(tvShows);
+    for (TvShow tvShow : tvShows) {
+      tvShowIndex.put(tvShow.getDbId(), tvShow);
+      filterIndex.addTvShow(tvShow);
     }
-    LOGGER.info("found " + tvShowList.size() + " TV shows in database");
+    LOGGER.info("found " + tvShowList.size() + " TV shows in database (" + loader.getLoadingTime() + " ms)");
   }
 
   /**
    * Load episodes from database.
    */
-  void loadEpisodesFromDatabase(MVMap<UUID, String> episodesMap, ObjectMapper objectMapper) {
+  void loadEpisodesFromDatabase(MVMap<UUID, Object> episodesMap, ObjectMapper objectMapper) {
     List<UUID> orphanedEpisodes = new ArrayList<>();
 
-    // load all episodes from the database
-    ObjectReader episodeObjectReader = objectMapper.readerFor(TvShowEpisode.class);
+    // load all episodes from the database (decoded in parallel)
+    MediaEntityDatabaseLoader<TvShowEpisode> loader = new MediaEntityDatabaseLoader<>(episodesMap, objectMapper.readerFor(TvShowEpisode.class),
+        "episode");
     int episodeCount = 0;
 
-    for (UUID uuid : new ArrayList<>(episodesMap.keyList())) {
-      try {
-        TvShowEpisode episode = episodeObjectReader.readValue(episodesMap.get(uuid));
-        episode.setDbId(uuid);
-
-        // check for orphaned episodes
-        boolean found = false;
-
-        // and assign it the the right TV show
-        for (TvShow tvShow : tvShowList) {
-          if (tvShow.getDbId().equals(episode.getTvShowDbId())) {
-            episodeCount++;
-            episode.setTvShow(tvShow);
-            tvShow.addEpisode(episode);
-            found = true;
-            break;
-          }
-        }
+    // assign the episodes to the right TV show (via the index)
+    Map<TvShow, List<TvShowEpisode>> episodesPerTvShow = new HashMap<>();
+    List<TvShowEpisode> episodes = loader.load();
+    TvShowModuleManager.getInstance().addContentHashes(loader.getContentHashes());
+    for (TvShowEpisode episode : episodes) {
+      TvShow tvShow = lookupTvShow(episode.getTvShowDbId());
 
-        if (!found) {
-          orphanedEpisodes.add(uuid);
-        }
+      // check for orphaned episodes
+      if (tvShow == null) {
+        orphanedEpisodes.add(episode.getDbId());
+        continue;
       }
-      catch (Exception e) {
-        LOGGER.warn("problem decoding episode json string: " + e.getMessage());
-        LOGGER.info("dropping corrupt episode");
-        episodesMap.remove(uuid);
+
+      episodeCount++;
+      episode.setTvShow(tvShow);
+
+      List<TvShowEpisode> showEpisodes = episodesPerTvShow.get(tvShow);
+      if (showEpisodes == null) {
+        showEpisodes = new ArrayList<>();
+        episodesPerTvShow.put(tvShow, showEpisodes);
       }
+      showEpisodes.add(episode);
+    }
+
+    // and add them in bulk
+    for (Entry<TvShow, List<TvShowEpisode>> entry : episodesPerTvShow.entrySet()) {
+      entry.getKey().addEpisodes(entry.getValue());
     }
 
     // remove orphaned episodes
@@ -338,7 +412,7 @@ public class TvShowList extends AbstractModelObject {
       episodesMap.remove(uuid);
     }
 
-    LOGGER.info("found " + episodeCount + " episodes in database");
+    LOGGER.info("found " + episodeCount + " episodes in database (" + loader.getLoadingTime() + " ms)");
   }
 
   void initDataAfterLoading() {
@@ -346,18 +420,22 @@ public class TvShowList extends AbstractModelObject {
     checkAndCleanupMediaFiles();
 
     // init everything after loading
+    beginFacetBulk();
     for (TvShow tvShow : tvShowList) {
       tvShow.initializeAfterLoading();
-      updateTvShowTags(tvShow);
+      updateFacets(tvShow);
 
       for (TvShowEpisode episode : tvShow.getEpisodes()) {
         episode.initializeAfterLoading();
-        updateEpisodeTags(episode);
-        updateMediaInformationLists(episode);
+        updateFacets(episode);
       }
 
       tvShow.addPropertyChangeListener(propertyChangeListener);
     }
+    endFacetBulk();
+
+    // the episodes have been added after the TV shows: index them all again
+    filterIndex.markAllDirty();
   }
 
   public void persistTvShow(TvShow tvShow) {
@@ -546,152 +624,136 @@ public class TvShowList extends AbstractModelObject {
     return searchResult;
   }
 
-  private void updateTvShowTags(TvShow tvShow) {
-    List<String> availableTags = new ArrayList<>(tvShowTagsObservable);
-
-    for (String tagInTvShow : new ArrayList<>(tvShow.getTags())) {
-      boolean tagFound = false;
-      for (String tag : availableTags) {
-        if (tagInTvShow.equals(tag)) {
-          tagFound = true;
-          break;
-        }
-      }
-      if (!tagFound) {
-        addTvShowTag(tagInTvShow);
-      }
-    }
+  /**
+   * Update all facets (tags, certifications and genres) of the TV show.
+   * 
+   * @param tvShow
+   *          the TV show
+   */
+  private void updateFacets(TvShow tvShow) {
+    updateTvShowTags(tvShow);
+    updateCertifications(tvShow);
+    updateGenres(tvShow);
   }
 
-  private void addTvShowTag(String newTag) {
-    if (StringUtils.isBlank(newTag)) {
-      return;
-    }
-
-    synchronized (tvShowTagsObservable) {
-      if (tvShowTagsObservable.contains(newTag)) {
-        return;
-      }
-      tvShowTagsObservable.add(newTag);
-    }
+  /**
+   * Update all facets (tags and media information) of the episode.
+   * 
+   * @param episode
+   *          the episode
+   */
+  private void updateFacets(TvShowEpisode episode) {
+    updateEpisodeTags(episode);
+    updateMediaInformationLists(episode);
+  }
 
-    firePropertyChange("tag", null, tvShowTagsObservable);
+  private void updateTvShowTags(TvShow tvShow) {
+    fireFacetChange(tvShowTags, tvShowTags.set(tvShow, new ArrayList<>(tvShow.getTags())));
   }
 
   public List<String> getTagsInTvShows() {
-    return tvShowTagsObservable;
+    return tvShowTags.getValues();
   }
 
   private void updateEpisodeTags(TvShowEpisode episode) {
-    List<String> availableTags = new ArrayList<>(episodeTagsObservable);
-    for (String tagEpisode : new ArrayList<>(episode.getTags())) {
-      boolean tagFound = false;
-      for (String tag : availableTags) {
-        if (tagEpisode.equals(tag)) {
-          tagFound = true;
-          break;
-        }
-      }
-      if (!tagFound) {
-        addEpisodeTag(tagEpisode);
-      }
-    }
-  }
-
-  private void addEpisodeTag(String newTag) {
-    if (StringUtils.isBlank(newTag)) {
-      return;
-    }
-
-    synchronized (episodeTagsObservable) {
-      if (episodeTagsObservable.contains(newTag)) {
-        return;
-      }
-      episodeTagsObservable.add(newTag);
-    }
-
-    firePropertyChange("tag", null, episodeTagsObservable);
+    fireFacetChange(episodeTags, episodeTags.set(episode, new ArrayList<>(episode.getTags())));
   }
 
   public List<String> getTagsInEpisodes() {
-    return episodeTagsObservable;
+    return episodeTags.getValues();
   }
 
   private void updateMediaInformationLists(TvShowEpisode episode) {
-    // video codec
-    List<String> availableCodecs = new ArrayList<>(videoCodecsObservable);
+    List<String> episodeVideoCodecs = new ArrayList<>();
+    List<String> episodeAudioCodecs = new ArrayList<>();
+    List<String> episodeVideoFormats = new ArrayList<>();
     for (MediaFile mf : episode.getMediaFiles(MediaFileType.VIDEO)) {
-      String codec = mf.getVideoCodec();
-      boolean codecFound = false;
-
-      for (String mfCodec : availableCodecs) {
-        if (mfCodec.equals(codec)) {
-          codecFound = true;
-          break;
-        }
-      }
-
-      if (!codecFound) {
-        addVideoCodec(codec);
+      episodeVideoCodecs.add(mf.getVideoCodec());
+      episodeVideoFormats.add(mf.getVideoFormat());
+      for (MediaFileAudioStream audio : mf.getAudioStreams()) {
+        episodeAudioCodecs.add(audio.getCodec());
       }
     }
 
-    // audio codec
-    availableCodecs = new ArrayList<>(audioCodecsObservable);
-    for (MediaFile mf : episode.getMediaFiles(MediaFileType.VIDEO)) {
-      for (MediaFileAudioStream audio : mf.getAudioStreams()) {
-        String codec = audio.getCodec();
-        boolean codecFound = false;
-        for (String mfCodec : availableCodecs) {
-          if (mfCodec.equals(codec)) {
-            codecFound = true;
-            break;
-          }
-        }
+    fireFacetChange(videoCodecs, videoCodecs.set(episode, episodeVideoCodecs));
+    fireFacetChange(audioCodecs, audioCodecs.set(episode, episodeAudioCodecs));
+    fireFacetChange(videoFormats, videoFormats.set(episode, episodeVideoFormats));
+  }
 
-        if (!codecFound) {
-          addAudioCodec(codec);
-        }
-      }
-    }
+  private void updateCertifications(TvShow tvShow) {
+    fireFacetChange(certifications, certifications.set(tvShow, tvShow.getCertification()));
   }
 
-  private void addVideoCodec(String newCodec) {
-    if (StringUtils.isBlank(newCodec)) {
-      return;
-    }
+  private void updateGenres(TvShow tvShow) {
+    fireFacetChange(genres, genres.set(tvShow, new ArrayList<>(tvShow.getGenres())));
+  }
 
-    synchronized (videoCodecsObservable) {
-      if (videoCodecsObservable.contains(newCodec)) {
-        return;
-      }
-      videoCodecsObservable.add(newCodec);
+  /**
+   * release all facet values of the removed TV show/episode
+   * 
+   * @param entity
+   *          the removed TV show/episode
+   */
+  private void removeFacets(Object entity) {
+    for (FacetRegistry<?> facet : facets) {
+      fireFacetChange(facet, facet.remove(entity));
     }
+  }
 
-    firePropertyChange("videoCodec", null, videoCodecsObservable);
+  /**
+   * release all facet values of the removed TV show and its episodes
+   * 
+   * @param tvShow
+   *          the removed TV show
+   */
+  private void removeAllFacets(TvShow tvShow) {
+    beginFacetBulk();
+    removeFacets(tvShow);
+    for (TvShowEpisode episode : tvShow.getEpisodes()) {
+      removeFacets(episode);
+    }
+    endFacetBulk();
   }
 
-  private void addAudioCodec(String newCodec) {
-    if (StringUtils.isBlank(newCodec)) {
-      return;
+  /**
+   * collect all changes of the facets until endFacetBulk() is called (to fire just one event per facet)
+   */
+  private void beginFacetBulk() {
+    for (FacetRegistry<?> facet : facets) {
+      facet.beginBulk();
     }
+  }
 
-    synchronized (audioCodecsObservable) {
-      if (audioCodecsObservable.contains(newCodec)) {
-        return;
-      }
-      audioCodecsObservable.add(newCodec);
+  private void endFacetBulk() {
+    for (FacetRegistry<?> facet : facets) {
+      fireFacetChange(facet, facet.endBulk());
     }
+  }
 
-    firePropertyChange("audioCodec", null, audioCodecsObservable);
+  private void fireFacetChange(FacetRegistry<?> facet, boolean changed) {
+    if (changed) {
+      firePropertyChange(facet.getName(), null, facet.getValues());
+    }
   }
 
   public List<String> getVideoCodecsInEpisodes() {
-    return videoCodecsObservable;
+    return videoCodecs.getValues();
   }
 
   public List<String> getAudioCodecsInEpisodes() {
-    return audioCodecsObservable;
+    return audioCodecs.getValues();
+  }
+
+  public List<String> getVideoFormatsInEpisodes() {
+    return videoFormats.getValues();
+  }
+
+  public List<Certification> getCertificationsInTvShows() {
+    return certifications.getValues();
+  }
+
+  public List<MediaGenres> getGenresInTvShows() {
+    return genres.getValues();
   }
 
   /**
@@ -767,6 +829,8 @@ public class TvShowList extends AbstractModelObject {
     for (TvShow tvShow : new ArrayList<>(tvShowList)) {
       tvShow.clearTitleSortable();
     }
+    // the sort order may have changed
+    firePropertyChange(TITLE_SORTABLE, false, true);
   }
 
   /**
@@ -15,12 +15,13 @@
  */
 package org.tinymediamanager.core.tvshow;
 
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.TimeZone;
+import java.util.Map;
 import java.util.UUID;
 
-import org.apache.commons.lang3.StringUtils;
 import org.h2.mvstore.MVMap;
 import org.h2.mvstore.MVStore;
 import org.json.JSONArray;
@@ -29,17 +30,17 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tinymediamanager.Globals;
 import org.tinymediamanager.core.Constants;
-import org.tinymediamanager.core.CustomNullStringSerializerProvider;
+import org.tinymediamanager.core.DatabaseBackup;
+import org.tinymediamanager.core.DatabaseFormat;
+import org.tinymediamanager.core.DatasourceWatcher;
 import org.tinymediamanager.core.ITmmModule;
-import org.tinymediamanager.core.NullKeySerializer;
+import org.tinymediamanager.core.PersistenceQueue;
 import org.tinymediamanager.core.Settings;
 import org.tinymediamanager.core.Utils;
 import org.tinymediamanager.core.tvshow.entities.TvShow;
 import org.tinymediamanager.core.tvshow.entities.TvShowEpisode;
 
-import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.MapperFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
 
@@ -49,24 +50,52 @@ import com.fasterxml.jackson.databind.ObjectWriter;
  * @author Manuel Laggner
  */
 public class TvShowModuleManager implements ITmmModule {
-  public static final TvShowSettings SETTINGS     = Globals.settings.getTvShowSettings();
+  public static final TvShowSettings SETTINGS         = Globals.settings.getTvShowSettings();
 
-  private static final String        MODULE_TITLE = "TV show management";
-  private static final String        TV_SHOW_DB   = "tvshows.db";
-  private static final Logger        LOGGER       = LoggerFactory.getLogger(TvShowModuleManager.class);
+  private static final String        MODULE_TITLE     = "TV show management";
+  private static final String        TV_SHOWS         = "tvshows";
+  private static final String        EPISODES         = "episodes";
+  private static final String        TV_SHOW_DB       = "tvshows.db";
+  private static final Logger        LOGGER           = LoggerFactory.getLogger(TvShowModuleManager.class);
   private static TvShowModuleManager instance;
 
   private boolean                    enabled;
   private MVStore                    mvStore;
   private ObjectMapper               objectMapper;
+  private final ObjectMapper         jsonObjectMapper = DatabaseFormat.JSON.createObjectMapper();
   private ObjectWriter               tvShowObjectWriter;
   private ObjectWriter               episodeObjectWriter;
 
-  private MVMap<UUID, String>        tvShowMap;
-  private MVMap<UUID, String>        episodeMap;
+  private MVMap<UUID, Object>        tvShowMap;
+  private MVMap<UUID, Object>        episodeMap;
+
+  private DatasourceWatcher          datasourceWatcher;
+  private DatabaseBackup             databaseBackup;
+  private PersistenceQueue           persistenceQueue;
 
   private TvShowModuleManager() {
     enabled = false;
+
+    // the data source watcher has to know about data sources added/removed at runtime
+    SETTINGS.addPropertyChangeListener(new PropertyChangeListener() {
+      @Override
+      public void propertyChange(PropertyChangeEvent evt) {
+        if (!enabled) {
+          return;
+        }
+        if ("tvShowDataSource".equals(evt.getPropertyName())) {
+          restartDatasourceWatcher();
+        }
+        else if ("watchDatasources".equals(evt.getPropertyName())) {
+          if (SETTINGS.isWatchDatasources()) {
+            startDatasourceWatcher();
+          }
+          else {
+            stopDatasourceWatcher();
+          }
+        }
+      }
+    });
   }
 
   public static TvShowModuleManager getInstance() {
@@ -83,13 +112,16 @@ public class TvShowModuleManager implements ITmmModule {
 
   @Override
   public void startUp() throws Exception {
-    // do a DB backup, and keep last 15 copies
+    long start = System.currentTimeMillis();
+
     Path db = Paths.get(Settings.getInstance().getSettingsFolder(), TV_SHOW_DB);
-    Utils.createBackupFile(db);
-    Utils.deleteOldBackupFile(db, 15);
+
+    // do a DB backup, and keep last 15 copies; the backup is read from the opened store in the background
+    databaseBackup = new DatabaseBackup(db, 15);
 
     // configure database
-    mvStore = new MVStore.Builder().fileName(Paths.get(Settings.getInstance().getSettingsFolder(), TV_SHOW_DB).toString()).compressHigh()
+    DatabaseFormat format = Globals.settings.getDatabaseFormat();
+    mvStore = format.configure(new MVStore.Builder().fileName(db.toString()))
         .backgroundExceptionHandler(new Thread.UncaughtExceptionHandler() {
           @Override
           public void uncaughtException(Thread t, Throwable e) {
@@ -99,32 +131,50 @@ public class TvShowModuleManager implements ITmmModule {
     mvStore.setAutoCommitDelay(2000); // 2 sec
     mvStore.setRetentionTime(0);
     mvStore.setReuseSpace(true);
+    databaseBackup.start(mvStore);
+
+    // convert the maps if the database format has been changed
+    DatabaseFormat.convert(mvStore, format, TV_SHOWS, EPISODES);
+    long openTime = System.currentTimeMillis();
 
-    // configure JSON
-    objectMapper = new ObjectMapper();
-    objectMapper.configure(MapperFeature.AUTO_DETECT_GETTERS, false);
-    objectMapper.configure(MapperFeature.AUTO_DETECT_IS_GETTERS, false);
-    objectMapper.configure(MapperFeature.AUTO_DETECT_SETTERS, false);
-    objectMapper.configure(MapperFeature.AUTO_DETECT_FIELDS, false);
-    objectMapper.setTimeZone(TimeZone.getDefault());
-    objectMapper.setSerializationInclusion(Include.NON_DEFAULT);
-    objectMapper.setSerializerProvider(new CustomNullStringSerializerProvider());
-    objectMapper.getSerializerProvider().setNullKeySerializer(new NullKeySerializer());
+    // changed entities are written in batches by a background thread
+    persistenceQueue = new PersistenceQueue(TV_SHOWS, mvStore, format);
+
+    // configure the (de)serialization for the database format
+    objectMapper = format.createObjectMapper();
 
     tvShowObjectWriter = objectMapper.writerFor(TvShow.class);
     episodeObjectWriter = objectMapper.writerFor(TvShowEpisode.class);
 
-    tvShowMap = mvStore.openMap("tvshows");
-    episodeMap = mvStore.openMap("episodes");
+    tvShowMap = mvStore.openMap(format.getMapName(TV_SHOWS));
+    episodeMap = mvStore.openMap(format.getMapName(EPISODES));
 
     TvShowList.getInstance().loadTvShowsFromDatabase(tvShowMap, objectMapper);
+    long tvShowsLoadTime = System.currentTimeMillis();
     TvShowList.getInstance().loadEpisodesFromDatabase(episodeMap, objectMapper);
+    long episodesLoadTime = System.currentTimeMillis();
     TvShowList.getInstance().initDataAfterLoading();
+    long initTime = System.currentTimeMillis();
+
+    // startup report
+    LOGGER.info("TV show module started in " + (initTime - start) + " ms (open database: " + (openTime - start) + " ms, load TV shows: "
+        + (tvShowsLoadTime - openTime) + " ms, load episodes: " + (episodesLoadTime - tvShowsLoadTime) + " ms, initialize: "
+        + (initTime - episodesLoadTime) + " ms)");
+
     enabled = true;
   }
 
   @Override
   public void shutDown() throws Exception {
+    stopDatasourceWatcher();
+
+    if (databaseBackup != null) {
+      databaseBackup.cancel();
+      databaseBackup = null;
+    }
+
+    // write all pending changes before closing the database
+    persistenceQueue.shutdown();
     mvStore.compactMoveChunks();
     mvStore.close();
 
@@ -143,6 +193,36 @@ public class TvShowModuleManager implements ITmmModule {
     return enabled;
   }
 
+  /**
+   * start watching the data sources for changes (if activated in the settings)
+   */
+  public synchronized void startDatasourceWatcher() {
+    if (!SETTINGS.isWatchDatasources() || (datasourceWatcher != null && datasourceWatcher.isRunning())) {
+      return;
+    }
+    datasourceWatcher = new TvShowDatasourceWatcher();
+    datasourceWatcher.start();
+  }
+
+  /**
+   * re-register all data sources at the data source watcher (if it is running)
+   */
+  public synchronized void restartDatasourceWatcher() {
+    if (datasourceWatcher != null) {
+      datasourceWatcher.restart();
+    }
+  }
+
+  /**
+   * stop watching the data sources
+   */
+  public synchronized void stopDatasourceWatcher() {
+    if (datasourceWatcher != null) {
+      datasourceWatcher.stop();
+      datasourceWatcher = null;
+    }
+  }
+
   /**
    * dumps a whole tvshow to logfile
    * 
@@ -151,10 +231,10 @@ public class TvShowModuleManager implements ITmmModule {
    */
   public void dump(TvShow tvshow) {
     try {
-      JSONObject show = new JSONObject(tvShowObjectWriter.writeValueAsString(tvshow));
+      JSONObject show = new JSONObject(jsonObjectMapper.writerFor(TvShow.class).writeValueAsString(tvshow));
       JSONArray episodes = new JSONArray();
       for (TvShowEpisode ep : tvshow.getEpisodes()) {
-        JSONObject epJson = new JSONObject(episodeObjectWriter.writeValueAsString(ep));
+        JSONObject epJson = new JSONObject(jsonObjectMapper.writerFor(TvShowEpisode.class).writeValueAsString(ep));
         episodes.put(epJson);
       }
       show.put("episodes", episodes);
@@ -166,30 +246,29 @@ public class TvShowModuleManager implements ITmmModule {
   }
 
   void persistTvShow(TvShow tvShow) throws Exception {
-    String newValue = tvShowObjectWriter.writeValueAsString(tvShow);
-    String oldValue = tvShowMap.get(tvShow.getDbId());
-
-    if (!StringUtils.equals(newValue, oldValue)) {
-      // write to DB
-      tvShowMap.put(tvShow.getDbId(), newValue);
-    }
+    persistenceQueue.persist(tvShowMap, tvShowObjectWriter, tvShow);
   }
 
   void removeTvShowFromDb(TvShow tvShow) throws Exception {
-    tvShowMap.remove(tvShow.getDbId());
+    persistenceQueue.remove(tvShowMap, tvShow.getDbId());
   }
 
   void persistEpisode(TvShowEpisode episode) throws Exception {
-    String newValue = episodeObjectWriter.writeValueAsString(episode);
-    String oldValue = episodeMap.get(episode.getDbId());
-
-    if (!StringUtils.equals(newValue, oldValue)) {
-      episodeMap.put(episode.getDbId(), newValue);
-    }
+    persistenceQueue.persist(episodeMap, episodeObjectWriter, episode);
   }
 
   void removeEpisodeFromDb(TvShowEpisode episode) throws Exception {
-    episodeMap.remove(episode.getDbId());
+    persistenceQueue.remove(episodeMap, episode.getDbId());
+  }
+
+  /**
+   * set the hashes of the stored entities to detect unchanged entities on persisting
+   * 
+   * @param contentHashes
+   *          the content hashes per dbId
+   */
+  void addContentHashes(Map<UUID, Long> contentHashes) {
+    persistenceQueue.addContentHashes(contentHashes);
   }
 
   @Override
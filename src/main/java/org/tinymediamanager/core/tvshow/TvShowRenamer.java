@@ -30,7 +30,6 @@ import java.util.regex.Pattern;
 
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.lang3.SystemUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tinymediamanager.core.LanguageStyle;
@@ -39,6 +38,7 @@ import org.tinymediamanager.core.MediaSource;
 import org.tinymediamanager.core.Message;
 import org.tinymediamanager.core.Message.MessageLevel;
 import org.tinymediamanager.core.MessageManager;
+import org.tinymediamanager.core.RenamerTemplate;
 import org.tinymediamanager.core.Utils;
 import org.tinymediamanager.core.entities.MediaFile;
 import org.tinymediamanager.core.entities.MediaFileSubtitle;
@@ -63,7 +63,10 @@ public class TvShowRenamer {
 
   private static final Pattern        epDelimiter    = Pattern.compile("(\\s?(folge|episode|[epx]+)\\s?)?\\$[ED]", Pattern.CASE_INSENSITIVE);
   private static final Pattern        seDelimiter    = Pattern.compile("((staffel|season|s)\\s?)?[\\$][1234]", Pattern.CASE_INSENSITIVE);
-  private static final Pattern        token          = Pattern.compile("(\\$[\\w#])");
+
+  private static final Pattern        INVALID_CHARS  = Pattern.compile("([\"\\\\:<>|/?*])");
+  // invalid characters in token values (the backslash is allowed)
+  private static final Pattern        INVALID_VALUE  = Pattern.compile("([\"\\:<>|/?*])");
 
   /**
    * add leadingZero if only 1 char
@@ -645,17 +648,17 @@ public class TvShowRenamer {
    * @return value or empty string
    */
   public static String getTokenValue(TvShow show, TvShowEpisode episode, String token) {
-    String ret = "";
     if (show == null) {
       show = new TvShow();
     }
     if (episode == null) {
       episode = new TvShowEpisode();
     }
-    MediaFile mf = new MediaFile();
-    if (episode.getMediaFiles(MediaFileType.VIDEO).size() > 0) {
-      mf = episode.getMediaFiles(MediaFileType.VIDEO).get(0);
-    }
+    return getTokenValue(show, episode, getFirstVideoFile(episode), token);
+  }
+
+  private static String getTokenValue(TvShow show, TvShowEpisode episode, MediaFile mf, String token) {
+    String ret = "";
     switch (token.toUpperCase(Locale.ROOT)) {
       // SHOW
       case "$N":
@@ -715,6 +718,14 @@ public class TvShowRenamer {
     return ret;
   }
 
+  private static MediaFile getFirstVideoFile(TvShowEpisode episode) {
+    if (episode == null) {
+      return new MediaFile();
+    }
+    List<MediaFile> videoFiles = episode.getMediaFiles(MediaFileType.VIDEO);
+    return videoFiles.isEmpty() ? new MediaFile() : videoFiles.get(0);
+  }
+
   /**
    * Creates the new file/folder name according to template string
    * 
@@ -727,37 +738,22 @@ public class TvShowRenamer {
    * @return the string
    */
   public static String createDestination(String template, TvShow show, List<TvShowEpisode> episodes) {
-    String newDestination = template;
-    TvShowEpisode firstEp = null;
-
     if (StringUtils.isBlank(template)) {
       return "";
     }
 
     if (episodes == null || episodes.isEmpty()) {
       // TV show root folder
-
-      // replace all $x parameters
-      Matcher m = token.matcher(template);
-      while (m.find()) {
-        String value = getTokenValue(show, null, m.group(1));
-        newDestination = replaceToken(newDestination, m.group(1), value);
-      }
+      return RenamerTemplate.compile(template, false).evaluate(new TvShowTokenResolver(show, null));
     }
     else if (episodes.size() == 1) {
       // single episode
-
-      firstEp = episodes.get(0);
-      // replace all $x parameters
-      Matcher m = token.matcher(template);
-      while (m.find()) {
-        String value = getTokenValue(show, firstEp, m.group(1));
-        newDestination = replaceToken(newDestination, m.group(1), value);
-      }
+      return RenamerTemplate.compile(template, false).evaluate(new TvShowTokenResolver(show, episodes.get(0)));
     }
     else {
       // multi episodes
-      firstEp = episodes.get(0);
+      String newDestination = template;
+      TvShowEpisode firstEp = episodes.get(0);
       String loopNumbers = "";
 
       // *******************
@@ -786,14 +782,10 @@ public class TvShowRenamer {
 
       // foreach episode, replace and append pattern:
       String episodeParts = "";
+      RenamerTemplate numbersTemplate = RenamerTemplate.compile(loopNumbers, false);
       for (TvShowEpisode episode : episodes) {
-        String episodePart = loopNumbers;
         // replace all $x parameters
-        Matcher m = token.matcher(episodePart);
-        while (m.find()) {
-          String value = getTokenValue(show, episode, m.group(1));
-          episodePart = replaceToken(episodePart, m.group(1), value);
-        }
+        String episodePart = numbersTemplate.replaceTokens(new TvShowTokenResolver(show, episode));
         episodeParts += " " + episodePart;
       }
       episodeParts = episodeParts.trim();
@@ -815,15 +807,10 @@ public class TvShowRenamer {
 
       // foreach episode, replace and append pattern:
       episodeParts = "";
+      RenamerTemplate titlesTemplate = RenamerTemplate.compile(loopTitles, false);
       for (TvShowEpisode episode : episodes) {
-        String episodePart = loopTitles;
-
         // replace all $x parameters
-        Matcher m = token.matcher(episodePart);
-        while (m.find()) {
-          String value = getTokenValue(show, episode, m.group(1));
-          episodePart = replaceToken(episodePart, m.group(1), value);
-        }
+        String episodePart = titlesTemplate.replaceTokens(new TvShowTokenResolver(show, episode));
 
         // separate multiple titles via -
         if (StringUtils.isNotBlank(episodeParts)) {
@@ -836,31 +823,24 @@ public class TvShowRenamer {
         newDestination = newDestination.replace(loopTitles, episodeParts);
       }
 
-      // replace all other $x parameters
-      Matcher m = token.matcher(newDestination);
-      while (m.find()) {
-        String value = getTokenValue(show, firstEp, m.group(1));
-        newDestination = replaceToken(newDestination, m.group(1), value);
-      }
-
+      // replace all other $x parameters (the destination differs for every call, so it is not cached)
+      return RenamerTemplate.parse(newDestination).evaluate(new TvShowTokenResolver(show, firstEp));
     } // end multi episodes
+  }
 
-    // DEFAULT CLEANUP
+  /**
+   * cleans the destination after all tokens have been replaced
+   * 
+   * @param destination
+   *          the destination
+   * @return the cleaned destination
+   */
+  private static String cleanupDestination(String destination) {
     // replace empty brackets
-    newDestination = newDestination.replaceAll("\\([ ]?\\)", "");
-    newDestination = newDestination.replaceAll("\\[[ ]?\\]", "");
-    newDestination = newDestination.replaceAll("\\{[ ]?\\}", "");
+    String newDestination = RenamerTemplate.removeEmptyBrackets(destination);
 
     // if there are multiple file separators in a row - strip them out
-    if (SystemUtils.IS_OS_WINDOWS) {
-      // we need to mask it in windows
-      newDestination = newDestination.replaceAll("\\\\{2,}", "\\\\");
-      newDestination = newDestination.replaceAll("^\\\\", "");
-    }
-    else {
-      newDestination = newDestination.replaceAll(File.separator + "{2,}", File.separator);
-      newDestination = newDestination.replaceAll("^" + File.separator, "");
-    }
+    newDestination = RenamerTemplate.cleanDirectorySeparators(newDestination, false);
 
     // ASCII replacement
     if (SETTINGS.isAsciiReplacement()) {
@@ -868,16 +848,15 @@ public class TvShowRenamer {
     }
 
     // trim out unnecessary whitespaces
-    newDestination = newDestination.trim();
-    newDestination = newDestination.replaceAll(" +", " ").trim();
+    newDestination = RenamerTemplate.collapseSpaces(newDestination);
 
     // any whitespace replacements?
     if (SETTINGS.isRenamerSpaceSubstitution()) {
-      newDestination = newDestination.replaceAll(" ", SETTINGS.getRenamerSpaceReplacement());
+      newDestination = newDestination.replace(" ", SETTINGS.getRenamerSpaceReplacement());
     }
 
     // replace trailing dots and spaces
-    newDestination = newDestination.replaceAll("[ \\.]+$", "");
+    newDestination = RenamerTemplate.removeTrailingDots(newDestination);
 
     return newDestination.trim();
   }
@@ -963,16 +942,6 @@ public class TvShowRenamer {
     return pos;
   }
 
-  private static String replaceToken(String destination, String token, String replacement) {
-    String replacingCleaned = "";
-    if (StringUtils.isNotBlank(replacement)) {
-      // replace illegal characters
-      // http://msdn.microsoft.com/en-us/library/windows/desktop/aa365247%28v=vs.85%29.aspx
-      replacingCleaned = replacement.replaceAll("([\"\\:<>|/?*])", "");
-    }
-    return destination.replace(token, replacingCleaned);
-  }
-
   /**
    * replaces all invalid/illegal characters for filenames with ""<br>
    * except the colon, which will be changed to a dash
@@ -982,9 +951,41 @@ public class TvShowRenamer {
    * @return cleaned string
    */
   public static String replaceInvalidCharacters(String source) {
-    source = source.replaceAll(": ", " - "); // nicer
-    source = source.replaceAll(":", "-"); // nicer
-    return source.replaceAll("([\"\\\\:<>|/?*])", "");
+    source = source.replace(": ", " - "); // nicer
+    source = source.replace(":", "-"); // nicer
+    return INVALID_CHARS.matcher(source).replaceAll("");
   }
 
+  /**
+   * resolves the tokens of a TV show/episode; the video file is only looked up once
+   */
+  private static class TvShowTokenResolver implements RenamerTemplate.TokenResolver {
+    private final TvShow        show;
+    private final TvShowEpisode episode;
+    private MediaFile           videoFile;
+
+    private TvShowTokenResolver(TvShow show, TvShowEpisode episode) {
+      this.show = show != null ? show : new TvShow();
+      this.episode = episode != null ? episode : new TvShowEpisode();
+    }
+
+    @Override
+    public String getValue(String token) {
+      if (videoFile == null) {
+        videoFile = getFirstVideoFile(episode);
+      }
+      String value = getTokenValue(show, episode, videoFile, token);
+      if (StringUtils.isNotBlank(value)) {
+        // replace illegal characters
+        // http://msdn.microsoft.com/en-us/library/windows/desktop/aa365247%28v=vs.85%29.aspx
+        return INVALID_VALUE.matcher(value).replaceAll("");
+      }
+      return "";
+    }
+
+    @Override
+    public String cleanup(String destination) {
+      return cleanupDestination(destination);
+    }
+  }
 }
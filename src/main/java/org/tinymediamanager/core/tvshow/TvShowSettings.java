@@ -49,6 +49,7 @@ public class TvShowSettings extends AbstractModelObject {
   private final static String      CERTIFICATION_COUNTRY       = "certificationCountry";
   private final static String      RENAMER_SEASON_FOLDER       = "renamerSeasonFoldername";
   private final static String      BUILD_IMAGE_CACHE_ON_IMPORT = "buildImageCacheOnImport";
+  private final static String      WATCH_DATASOURCES           = "watchDatasources";
   private final static String      ASCII_REPLACEMENT           = "asciiReplacement";
   private final static String      BAD_WORDS                   = "badWords";
   private final static String      ENTRY                       = "entry";
@@ -85,6 +86,7 @@ public class TvShowSettings extends AbstractModelObject {
   private String                   renamerFilename             = "$N - S$2E$E - $T";
   private TvShowEpisodeThumbNaming tvShowEpisodeThumbFilename  = TvShowEpisodeThumbNaming.FILENAME_THUMB_POSTFIX;
   private boolean                  buildImageCacheOnImport     = false;
+  private boolean                  watchDatasources            = false;
   private boolean                  asciiReplacement            = false;
   private boolean                  renamerSpaceSubstitution    = false;
   private String                   renamerSpaceReplacement     = "_";
@@ -224,6 +226,16 @@ public class TvShowSettings extends AbstractModelObject {
     firePropertyChange(BUILD_IMAGE_CACHE_ON_IMPORT, oldValue, newValue);
   }
 
+  public boolean isWatchDatasources() {
+    return watchDatasources;
+  }
+
+  public void setWatchDatasources(boolean newValue) {
+    boolean oldValue = this.watchDatasources;
+    this.watchDatasources = newValue;
+    firePropertyChange(WATCH_DATASOURCES, oldValue, newValue);
+  }
+
   public boolean isAsciiReplacement() {
     return asciiReplacement;
   }
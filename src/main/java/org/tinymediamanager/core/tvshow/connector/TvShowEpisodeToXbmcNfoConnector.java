@@ -46,6 +46,7 @@ import org.apache.commons.lang3.SystemUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tinymediamanager.Globals;
+import org.tinymediamanager.core.DatasourceWatcher;
 import org.tinymediamanager.core.MediaFileType;
 import org.tinymediamanager.core.MediaSource;
 import org.tinymediamanager.core.Message;
@@ -364,6 +365,7 @@ public class TvShowEpisodeToXbmcNfoConnector {
     }
 
     try {
+      DatasourceWatcher.registerOwnWrite(nfoFile.toPath());
       FileUtils.write(nfoFile, outputXml, "UTF-8");
       for (TvShowEpisode e : tvShowEpisodes) {
         e.removeAllMediaFiles(MediaFileType.NFO);
@@ -48,6 +48,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tinymediamanager.Globals;
 import org.tinymediamanager.core.Constants;
+import org.tinymediamanager.core.DatasourceWatcher;
 import org.tinymediamanager.core.MediaFileType;
 import org.tinymediamanager.core.Message;
 import org.tinymediamanager.core.Message.MessageLevel;
@@ -229,6 +230,7 @@ public class TvShowToXbmcNfoConnector {
         sb = new StringBuilder(sb.toString().replaceAll("(?<!\r)\n", "\r\n"));
       }
 
+      DatasourceWatcher.registerOwnWrite(nfoFile.toPath());
       FileUtils.write(nfoFile, sb, "UTF-8");
       tvShow.removeAllMediaFiles(MediaFileType.NFO);
       tvShow.addToMediaFiles(new MediaFile(nfoFile));
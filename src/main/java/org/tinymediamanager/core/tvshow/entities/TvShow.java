@@ -21,6 +21,8 @@ import static org.tinymediamanager.core.Constants.ADDED_SEASON;
 import static org.tinymediamanager.core.Constants.CERTIFICATION;
 import static org.tinymediamanager.core.Constants.DATA_SOURCE;
 import static org.tinymediamanager.core.Constants.DIRECTOR;
+import static org.tinymediamanager.core.Constants.DVD_ORDER;
+import static org.tinymediamanager.core.Constants.EPISODE;
 import static org.tinymediamanager.core.Constants.EPISODE_COUNT;
 import static org.tinymediamanager.core.Constants.FIRST_AIRED;
 import static org.tinymediamanager.core.Constants.FIRST_AIRED_AS_STRING;
@@ -28,8 +30,11 @@ import static org.tinymediamanager.core.Constants.GENRE;
 import static org.tinymediamanager.core.Constants.GENRES_AS_STRING;
 import static org.tinymediamanager.core.Constants.HAS_NFO_FILE;
 import static org.tinymediamanager.core.Constants.IMDB;
+import static org.tinymediamanager.core.Constants.MEDIA_FILES;
+import static org.tinymediamanager.core.Constants.MEDIA_INFORMATION;
 import static org.tinymediamanager.core.Constants.REMOVED_EPISODE;
 import static org.tinymediamanager.core.Constants.RUNTIME;
+import static org.tinymediamanager.core.Constants.SEASON;
 import static org.tinymediamanager.core.Constants.SEASON_COUNT;
 import static org.tinymediamanager.core.Constants.SORT_TITLE;
 import static org.tinymediamanager.core.Constants.STATUS;
@@ -48,16 +53,22 @@ import java.io.File;
 import java.io.FilenameFilter;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.text.CollationKey;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -69,6 +80,7 @@ import org.apache.commons.lang3.builder.ToStringStyle;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tinymediamanager.core.MediaFileType;
+import org.tinymediamanager.core.SortKeys;
 import org.tinymediamanager.core.Utils;
 import org.tinymediamanager.core.entities.MediaEntity;
 import org.tinymediamanager.core.entities.MediaFile;
@@ -98,6 +110,9 @@ import com.fasterxml.jackson.annotation.JsonSetter;
 public class TvShow extends MediaEntity {
   private static final Logger                LOGGER                = LoggerFactory.getLogger(TvShow.class);
   private static final Comparator<MediaFile> MEDIA_FILE_COMPARATOR = new TvShowMediaFileComparator();
+  // the events of the episodes which are given up to the listeners of the TV show (TvShowList)
+  private static final Set<String>           EPISODE_EVENTS        = new HashSet<>(Arrays.asList(TAG, MEDIA_FILES, MEDIA_INFORMATION, WATCHED,
+      DIRECTOR, WRITER, ACTORS));
 
   @JsonProperty
   private String                             dataSource            = "";
@@ -128,11 +143,17 @@ public class TvShow extends MediaEntity {
   @JsonProperty
   private List<TvShowActor>                  actors                = new CopyOnWriteArrayList<>();
 
-  private List<TvShowEpisode>                episodes              = new CopyOnWriteArrayList<>();
+  // replaced as a whole on bulk inserts; modifications are guarded by episodesLock
+  private volatile List<TvShowEpisode>       episodes              = new CopyOnWriteArrayList<>();
+  private final Object                       episodesLock          = new Object();
   private HashMap<Integer, MediaFile>        seasonPosters         = new HashMap<>(0);
   private List<TvShowSeason>                 seasons               = new CopyOnWriteArrayList<>();
+  private final TvShowEpisodeIndex           episodeIndex          = new TvShowEpisodeIndex();
+  private final Map<Integer, TvShowSeason>   seasonIndex           = new HashMap<>();
+  private volatile boolean                   episodesUnsorted      = false;
   private List<MediaGenres>                  genresForAccess       = new CopyOnWriteArrayList<>();
   private String                             titleSortable         = "";
+  private CollationKey                       titleSortableKey      = null;
   private Date                               lastWatched           = null;
 
   private PropertyChangeListener             propertyChangeListener;
@@ -144,13 +165,19 @@ public class TvShow extends MediaEntity {
     // register for dirty flag listener
     super();
 
-    // give tag events from episodes up to the TvShowList
+    // give tag, media information and filtered (watched, crew) events from episodes up to the TvShowList
     propertyChangeListener = new PropertyChangeListener() {
       @Override
       public void propertyChange(PropertyChangeEvent evt) {
-        if ("tag".equals(evt.getPropertyName()) && evt.getSource() instanceof TvShowEpisode) {
+        if (EPISODE_EVENTS.contains(evt.getPropertyName()) && evt.getSource() instanceof TvShowEpisode) {
           firePropertyChange(evt);
         }
+        else if ((SEASON.equals(evt.getPropertyName()) || EPISODE.equals(evt.getPropertyName()) || DVD_ORDER.equals(evt.getPropertyName()))
+            && evt.getSource() instanceof TvShowEpisode) {
+          // the episode has to be found under its new numbers; the episode list is sorted again with the next insert
+          episodeIndex.update((TvShowEpisode) evt.getSource());
+          episodesUnsorted = true;
+        }
       }
     };
   }
@@ -232,6 +259,7 @@ public class TvShow extends MediaEntity {
 
     oldValue = this.titleSortable;
     titleSortable = "";
+    titleSortableKey = null;
     firePropertyChange(TITLE_SORTABLE, oldValue, titleSortable);
   }
 
@@ -248,8 +276,23 @@ public class TvShow extends MediaEntity {
     return titleSortable;
   }
 
+  /**
+   * get the (cached) collation key of the sortable title
+   * 
+   * @return the collation key of the sortable title
+   */
+  public CollationKey getTitleSortableKey() {
+    CollationKey key = titleSortableKey;
+    if (key == null) {
+      key = SortKeys.create(getTitleSortable());
+      titleSortableKey = key;
+    }
+    return key;
+  }
+
   public void clearTitleSortable() {
     titleSortable = "";
+    titleSortableKey = null;
   }
 
   public String getSortTitle() {
@@ -278,17 +321,72 @@ public class TvShow extends MediaEntity {
    *          the episode
    */
   public void addEpisode(TvShowEpisode episode) {
-    int oldValue = episodes.size();
-    episodes.add(episode);
+    int oldValue;
+    synchronized (episodesLock) {
+      oldValue = episodes.size();
+      if (episodesUnsorted) {
+        // numbers of episodes have been changed since the last insert
+        episodes.add(episode);
+        Utils.sortList(episodes);
+        episodesUnsorted = false;
+      }
+      else {
+        TvShowEpisodeIndex.insertSorted(episodes, episode);
+      }
+    }
+    episodeIndex.add(episode);
     episode.addPropertyChangeListener(propertyChangeListener);
     addToSeason(episode);
 
-    Utils.sortList(episodes);
-
     firePropertyChange(ADDED_EPISODE, null, episode);
     firePropertyChange(EPISODE_COUNT, oldValue, episodes.size());
   }
 
+  /**
+   * Adds a bunch of episodes at once (e.g. on loading from the database). The episodes are sorted only once and just one EPISODE_COUNT event
+   * will be fired (instead of the ADDED_EPISODE events for every single episode)
+   * 
+   * @param newEpisodes
+   *          the episodes to add
+   */
+  public void addEpisodes(List<TvShowEpisode> newEpisodes) {
+    if (newEpisodes == null || newEpisodes.isEmpty()) {
+      return;
+    }
+
+    int oldValue = episodes.size();
+
+    // group the episodes per season
+    Map<Integer, List<TvShowEpisode>> episodesPerSeason = new HashMap<>();
+    for (TvShowEpisode episode : newEpisodes) {
+      episode.addPropertyChangeListener(propertyChangeListener);
+      episodeIndex.add(episode);
+      List<TvShowEpisode> seasonEpisodes = episodesPerSeason.get(episode.getSeason());
+      if (seasonEpisodes == null) {
+        seasonEpisodes = new ArrayList<>();
+        episodesPerSeason.put(episode.getSeason(), seasonEpisodes);
+      }
+      seasonEpisodes.add(episode);
+    }
+
+    // and add them in one step (to avoid copying the underlying array for every episode)
+    synchronized (episodesLock) {
+      List<TvShowEpisode> allEpisodes = new ArrayList<>(episodes);
+      allEpisodes.addAll(newEpisodes);
+      Collections.sort(allEpisodes);
+      // swap the list in one step; readers never see an incomplete list
+      episodes = new CopyOnWriteArrayList<>(allEpisodes);
+      episodesUnsorted = false;
+    }
+
+    for (Entry<Integer, List<TvShowEpisode>> entry : episodesPerSeason.entrySet()) {
+      TvShowSeason season = getSeasonForEpisode(entry.getValue().get(0));
+      season.addEpisodes(entry.getValue());
+    }
+
+    firePropertyChange(EPISODE_COUNT, oldValue, episodes.size());
+  }
+
   /**
    * Gets the episode count.
    * 
@@ -322,21 +420,15 @@ public class TvShow extends MediaEntity {
    * @return the season for episode
    */
   public synchronized TvShowSeason getSeasonForEpisode(TvShowEpisode episode) {
-    TvShowSeason season = null;
-
     // search for an existing season
-    for (TvShowSeason s : seasons) {
-      if (s.getSeason() == episode.getSeason()) {
-        season = s;
-        break;
-      }
-    }
+    TvShowSeason season = seasonIndex.get(episode.getSeason());
 
     // no one found - create one
     if (season == null) {
       int oldValue = seasons.size();
       season = new TvShowSeason(episode.getSeason(), this);
       seasons.add(season);
+      seasonIndex.put(season.getSeason(), season);
       firePropertyChange(ADDED_SEASON, null, season);
       firePropertyChange(SEASON_COUNT, oldValue, seasons.size());
     }
@@ -377,7 +469,10 @@ public class TvShow extends MediaEntity {
     if (episodes.size() > 0) {
       for (int i = episodes.size() - 1; i >= 0; i--) {
         TvShowEpisode episode = episodes.get(i);
-        episodes.remove(episode);
+        synchronized (episodesLock) {
+          episodes.remove(episode);
+        }
+        episodeIndex.remove(episode);
         episode.removePropertyChangeListener(propertyChangeListener);
         TvShowList.getInstance().removeEpisodeFromDb(episode);
       }
@@ -395,7 +490,10 @@ public class TvShow extends MediaEntity {
   public void removeEpisode(TvShowEpisode episode) {
     if (episodes.contains(episode)) {
       int oldValue = episodes.size();
-      episodes.remove(episode);
+      synchronized (episodesLock) {
+        episodes.remove(episode);
+      }
+      episodeIndex.remove(episode);
       episode.removePropertyChangeListener(propertyChangeListener);
       removeFromSeason(episode);
       TvShowList.getInstance().removeEpisodeFromDb(episode);
@@ -416,7 +514,10 @@ public class TvShow extends MediaEntity {
     if (episodes.contains(episode)) {
       int oldValue = episodes.size();
       episode.deleteFilesSafely();
-      episodes.remove(episode);
+      synchronized (episodesLock) {
+        episodes.remove(episode);
+      }
+      episodeIndex.remove(episode);
       episode.removePropertyChangeListener(propertyChangeListener);
       removeFromSeason(episode);
       TvShowList.getInstance().removeEpisodeFromDb(episode);
@@ -1440,15 +1541,7 @@ public class TvShow extends MediaEntity {
   }
 
   public TvShowEpisode getEpisode(int season, int episode) {
-    TvShowEpisode ep = null;
-
-    for (TvShowEpisode e : new ArrayList<>(this.episodes)) {
-      if (e.getSeason() == season && e.getEpisode() == episode) {
-        ep = e;
-        break;
-      }
-    }
-    return ep;
+    return episodeIndex.get(season, episode);
   }
 
   /**
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2012 - 2018 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core.tvshow.entities;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The class TvShowEpisodeIndex. Indexes the episodes of a TV show by their season and episode number. Since the numbers of an episode
+ * may change, the key under which an episode has been indexed is remembered
+ * 
+ * @author Manuel Laggner
+ */
+class TvShowEpisodeIndex {
+  private final Map<Long, List<TvShowEpisode>> episodes = new HashMap<>();
+  private final Map<TvShowEpisode, Long>       keys     = new IdentityHashMap<>();
+
+  /**
+   * add the episode to the index
+   * 
+   * @param episode
+   *          the episode to add
+   */
+  synchronized void add(TvShowEpisode episode) {
+    if (keys.containsKey(episode)) {
+      return;
+    }
+
+    long key = getKey(episode.getSeason(), episode.getEpisode());
+    List<TvShowEpisode> list = episodes.get(key);
+    if (list == null) {
+      // there is mostly only one episode per season/episode
+      list = new ArrayList<>(1);
+      episodes.put(key, list);
+    }
+    insertSorted(list, episode);
+    keys.put(episode, key);
+  }
+
+  /**
+   * remove the episode from the index
+   * 
+   * @param episode
+   *          the episode to remove
+   */
+  synchronized void remove(TvShowEpisode episode) {
+    Long key = keys.remove(episode);
+    if (key == null) {
+      return;
+    }
+
+    List<TvShowEpisode> list = episodes.get(key);
+    if (list != null) {
+      // remove by identity - equal episodes may exist in the same slot
+      for (int i = 0; i < list.size(); i++) {
+        if (list.get(i) == episode) {
+          list.remove(i);
+          break;
+        }
+      }
+      if (list.isEmpty()) {
+        episodes.remove(key);
+      }
+    }
+  }
+
+  /**
+   * re-index the episode after its season/episode number has been changed
+   * 
+   * @param episode
+   *          the changed episode
+   */
+  synchronized void update(TvShowEpisode episode) {
+    if (keys.containsKey(episode)) {
+      remove(episode);
+      add(episode);
+    }
+  }
+
+  /**
+   * get the first episode (in sort order) for the given season and episode number
+   * 
+   * @param season
+   *          the season number
+   * @param episode
+   *          the episode number
+   * @return the episode or null
+   */
+  synchronized TvShowEpisode get(int season, int episode) {
+    List<TvShowEpisode> list = episodes.get(getKey(season, episode));
+    if (list == null || list.isEmpty()) {
+      return null;
+    }
+    return list.get(0);
+  }
+
+  synchronized void clear() {
+    episodes.clear();
+    keys.clear();
+  }
+
+  private static long getKey(int season, int episode) {
+    return ((long) season << 32) | (episode & 0xffffffffL);
+  }
+
+  /**
+   * insert the element at its position in the sorted list (found by binary search)
+   * 
+   * @param list
+   *          the sorted list
+   * @param element
+   *          the element to insert
+   */
+  static <T extends Comparable<? super T>> void insertSorted(List<T> list, T element) {
+    int index = Collections.binarySearch(list, element);
+    if (index < 0) {
+      index = -index - 1;
+    }
+    list.add(index, element);
+  }
+}
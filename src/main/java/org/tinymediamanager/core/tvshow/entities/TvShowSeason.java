@@ -16,6 +16,8 @@
 package org.tinymediamanager.core.tvshow.entities;
 
 import static org.tinymediamanager.core.Constants.ADDED_EPISODE;
+import static org.tinymediamanager.core.Constants.DVD_ORDER;
+import static org.tinymediamanager.core.Constants.EPISODE;
 import static org.tinymediamanager.core.Constants.MEDIA_FILES;
 import static org.tinymediamanager.core.Constants.POSTER;
 import static org.tinymediamanager.core.Constants.POSTER_URL;
@@ -26,6 +28,7 @@ import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -43,11 +46,14 @@ import org.tinymediamanager.core.entities.MediaFile;
  * @author Manuel Laggner
  */
 public class TvShowSeason extends AbstractModelObject implements Comparable<TvShowSeason> {
-  private int                    season      = -1;
-  private TvShow                 tvShow;
-  private List<TvShowEpisode>    episodes    = new CopyOnWriteArrayList<>();
-  private Date                   lastWatched = null;
-  private PropertyChangeListener listener;
+  private int                          season           = -1;
+  private TvShow                       tvShow;
+  // replaced as a whole on bulk inserts; modifications are guarded by episodesLock
+  private volatile List<TvShowEpisode> episodes         = new CopyOnWriteArrayList<>();
+  private final Object                 episodesLock     = new Object();
+  private Date                         lastWatched      = null;
+  private PropertyChangeListener       listener;
+  private volatile boolean             episodesUnsorted = false;
 
   public TvShowSeason(int season, TvShow tvShow) {
     this.season = season;
@@ -58,6 +64,10 @@ public class TvShowSeason extends AbstractModelObject implements Comparable<TvSh
         if (evt.getSource() instanceof TvShowEpisode && MEDIA_FILES.equals(evt.getPropertyName())) {
           firePropertyChange(MEDIA_FILES, null, evt.getNewValue());
         }
+        else if (evt.getSource() instanceof TvShowEpisode && (EPISODE.equals(evt.getPropertyName()) || DVD_ORDER.equals(evt.getPropertyName()))) {
+          // the list is sorted again with the next insert
+          episodesUnsorted = true;
+        }
       }
     };
   }
@@ -71,14 +81,46 @@ public class TvShowSeason extends AbstractModelObject implements Comparable<TvSh
   }
 
   public void addEpisode(TvShowEpisode episode) {
-    episodes.add(episode);
-    Utils.sortList(episodes);
+    synchronized (episodesLock) {
+      if (episodesUnsorted) {
+        episodes.add(episode);
+        Utils.sortList(episodes);
+        episodesUnsorted = false;
+      }
+      else {
+        TvShowEpisodeIndex.insertSorted(episodes, episode);
+      }
+    }
     episode.addPropertyChangeListener(listener);
     firePropertyChange(ADDED_EPISODE, null, episodes);
   }
 
+  /**
+   * add a bunch of episodes at once; the list will be sorted only once
+   * 
+   * @param newEpisodes
+   *          the episodes to add
+   */
+  public void addEpisodes(List<TvShowEpisode> newEpisodes) {
+    synchronized (episodesLock) {
+      List<TvShowEpisode> allEpisodes = new ArrayList<>(episodes);
+      allEpisodes.addAll(newEpisodes);
+      Collections.sort(allEpisodes);
+      // swap the list in one step; readers never see an incomplete list
+      episodes = new CopyOnWriteArrayList<>(allEpisodes);
+      episodesUnsorted = false;
+    }
+
+    for (TvShowEpisode episode : newEpisodes) {
+      episode.addPropertyChangeListener(listener);
+    }
+    firePropertyChange(ADDED_EPISODE, null, episodes);
+  }
+
   public void removeEpisode(TvShowEpisode episode) {
-    episodes.remove(episode);
+    synchronized (episodesLock) {
+      episodes.remove(episode);
+    }
     episode.removePropertyChangeListener(listener);
     firePropertyChange(REMOVED_EPISODE, null, episodes);
   }
@@ -74,7 +74,7 @@ public class TvShowReloadMediaInformationTask extends TmmThreadPool {
           break;
         }
         for (MediaFile mf : show.getMediaFiles()) {
-          submitTask(new MediaFileInformationFetcherTask(mf, show, true));
+          submitTask(new MediaFileInformationFetcherTask(mf, show, true, true));
         }
       }
 
@@ -83,7 +83,7 @@ public class TvShowReloadMediaInformationTask extends TmmThreadPool {
           break;
         }
         for (MediaFile mf : episode.getMediaFiles()) {
-          submitTask(new MediaFileInformationFetcherTask(mf, episode, true));
+          submitTask(new MediaFileInformationFetcherTask(mf, episode, true, true));
         }
       }
 
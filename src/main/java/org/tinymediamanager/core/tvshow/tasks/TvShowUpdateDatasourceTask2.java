@@ -44,8 +44,9 @@ import org.apache.commons.lang3.time.StopWatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tinymediamanager.Globals;
-import org.tinymediamanager.core.MediaFileInformationFetcherTask;
 import org.tinymediamanager.core.MediaFileType;
+import org.tinymediamanager.core.MediaInfoCache;
+import org.tinymediamanager.core.MediaInfoStage;
 import org.tinymediamanager.core.MediaSource;
 import org.tinymediamanager.core.Message;
 import org.tinymediamanager.core.Message.MessageLevel;
@@ -74,26 +75,27 @@ import com.sun.jna.Platform;
  */
 
 public class TvShowUpdateDatasourceTask2 extends TmmThreadPool {
-  private static final Logger         LOGGER        = LoggerFactory.getLogger(TvShowUpdateDatasourceTask2.class);
-  private static final ResourceBundle BUNDLE        = ResourceBundle.getBundle("messages", new UTF8Control());                                  //$NON-NLS-1$
+  private static final Logger         LOGGER         = LoggerFactory.getLogger(TvShowUpdateDatasourceTask2.class);
+  private static final ResourceBundle BUNDLE         = ResourceBundle.getBundle("messages", new UTF8Control());                                  //$NON-NLS-1$
 
   // skip well-known, but unneeded folders (UPPERCASE)
-  private static final List<String>   skipFolders   = Arrays.asList(".", "..", "CERTIFICATE", "BACKUP", "PLAYLIST", "CLPINF", "SSIF", "AUXDATA",
+  private static final List<String>   skipFolders    = Arrays.asList(".", "..", "CERTIFICATE", "BACKUP", "PLAYLIST", "CLPINF", "SSIF", "AUXDATA",
       "AUDIO_TS", "$RECYCLE.BIN", "RECYCLER", "SYSTEM VOLUME INFORMATION", "@EADIR", "ADV_OBJ");
 
   // skip folders starting with a SINGLE "." or "._"
-  private static final String         skipRegex     = "^[.][\\w@]+.*";
+  private static final String         skipRegex      = "^[.][\\w@]+.*";
 
-  private static final Pattern        seasonPattern = Pattern.compile("(?i)season([0-9]{0,2}|-specials)-poster\\..{2,4}");
+  private static final Pattern        seasonPattern  = Pattern.compile("(?i)season([0-9]{0,2}|-specials)-poster\\..{2,4}");
 
-  private static long                 preDir        = 0;
-  private static long                 postDir       = 0;
-  private static long                 visFile       = 0;
+  private static long                 preDir         = 0;
+  private static long                 postDir        = 0;
+  private static long                 visFile        = 0;
 
   private List<String>                dataSources;
-  private List<Path>                  tvShowFolders = new ArrayList<>();
+  private List<Path>                  tvShowFolders  = new ArrayList<>();
   private TvShowList                  tvShowList;
-  private HashSet<Path>               filesFound    = new HashSet<>();
+  private HashSet<Path>               filesFound     = new HashSet<>();
+  private MediaInfoStage              mediaInfoStage = null;
 
   /**
    * Instantiates a new scrape task - to update all datasources
@@ -227,6 +229,9 @@ public class TvShowUpdateDatasourceTask2 extends TmmThreadPool {
           if (cancel) {
             break;
           }
+
+          // all files have been seen - drop the cached MediaInfo results of vanished files
+          MediaInfoCache.getInstance().evictMissing(dsAsPath.toAbsolutePath(), filesFound);
         } // end forech datasource
       }
       else {
@@ -238,6 +243,10 @@ public class TvShowUpdateDatasourceTask2 extends TmmThreadPool {
           // if the DS exists (and we have access to read it): Files.exist =
           // true
           if (!Files.exists(path)) {
+            if (tvShowList.getTvShowByPath(path) != null) {
+              // TV show folder has been removed - will be handled in the cleanup
+              continue;
+            }
             // error - continue with next datasource
             LOGGER.warn("Datasource not available/empty " + path.toAbsolutePath().toString());
             MessageManager.instance.pushMessage(new Message(MessageLevel.ERROR, "update.datasource", "update.datasource.unavailable",
@@ -255,12 +264,12 @@ public class TvShowUpdateDatasourceTask2 extends TmmThreadPool {
       }
 
       LOGGER.info("getting Mediainfo...");
-      initThreadPool(1, "mediainfo");
       setTaskName(BUNDLE.getString("update.mediainfo"));
       setTaskDescription(null);
       setProgressDone(0);
       // gather MediaInformation for ALL shows - TBD
       if (!cancel) {
+        MediaInfoStage stage = new MediaInfoStage();
         if (tvShowFolders.isEmpty()) {
           // get MI for selected DS
           for (int i = tvShowList.getTvShows().size() - 1; i >= 0; i--) {
@@ -269,7 +278,7 @@ public class TvShowUpdateDatasourceTask2 extends TmmThreadPool {
             }
             TvShow tvShow = tvShowList.getTvShows().get(i);
             if (dataSources.contains(tvShow.getDataSource())) {
-              gatherMediaInformationForUngatheredMediaFiles(tvShow);
+              gatherMediaInformationForUngatheredMediaFiles(tvShow, stage);
             }
           }
         }
@@ -281,11 +290,24 @@ public class TvShowUpdateDatasourceTask2 extends TmmThreadPool {
             }
             TvShow tvShow = tvShowList.getTvShows().get(i);
             if (tvShowFolders.contains(tvShow.getPathNIO())) {
-              gatherMediaInformationForUngatheredMediaFiles(tvShow);
+              gatherMediaInformationForUngatheredMediaFiles(tvShow, stage);
             }
           }
         }
+
+        // run the MediaInfo extraction with the configured amount of workers
+        initThreadPool(stage.getWorkerCount(), "mediainfo");
+        mediaInfoStage = stage;
+        for (Callable<Object> task : stage.createTasks()) {
+          submitTask(task);
+        }
         waitForCompletionOrCancel();
+        // release the native MediaInfo handles of the workers
+        stage.close();
+        if (stage.getFileCount() > 0) {
+          LOGGER.info("got Mediainfo for " + stage.getProgressDescription(progressDone) + " with " + stage.getWorkerCount() + " worker(s)");
+        }
+        mediaInfoStage = null;
       }
 
       stopWatch.stop();
@@ -327,6 +349,7 @@ public class TvShowUpdateDatasourceTask2 extends TmmThreadPool {
       }
 
       if (!Files.exists(tvShow.getPathNIO())) {
+        MediaInfoCache.getInstance().evictMissing(tvShow.getPathNIO().toAbsolutePath(), filesFound);
         tvShowList.removeTvShow(tvShow);
       }
       else {
@@ -373,6 +396,7 @@ public class TvShowUpdateDatasourceTask2 extends TmmThreadPool {
           if (!mf.exists()) {
             LOGGER.debug("removing orphaned file: " + mf.getFileAsPath());
             tvShow.removeFromMediaFiles(mf);
+            MediaInfoCache.getInstance().remove(mf.getFileAsPath());
             dirty = true;
           }
           else {
@@ -388,6 +412,7 @@ public class TvShowUpdateDatasourceTask2 extends TmmThreadPool {
             if (!mf.exists()) {
               LOGGER.debug("removing orphaned file: " + mf.getFileAsPath());
               episode.removeFromMediaFiles(mf);
+              MediaInfoCache.getInstance().remove(mf.getFileAsPath());
               dirty = true;
             }
             else {
@@ -410,13 +435,13 @@ public class TvShowUpdateDatasourceTask2 extends TmmThreadPool {
   }
 
   /*
-   * detect which mediafiles has to be parsed and start a thread to do that
+   * detect which mediafiles has to be parsed and add them to the MediaInfo stage
    */
-  private void gatherMediaInformationForUngatheredMediaFiles(TvShow tvShow) {
+  private void gatherMediaInformationForUngatheredMediaFiles(TvShow tvShow, MediaInfoStage stage) {
     // get mediainfo for tv show (fanart/poster..)
     for (MediaFile mf : tvShow.getMediaFiles()) {
       if (StringUtils.isBlank(mf.getContainerFormat())) {
-        submitTask(new MediaFileInformationFetcherTask(mf, tvShow, false));
+        stage.addMediaFile(mf, tvShow, tvShow.getDataSource());
       }
     }
 
@@ -424,7 +449,7 @@ public class TvShowUpdateDatasourceTask2 extends TmmThreadPool {
     for (TvShowEpisode episode : new ArrayList<>(tvShow.getEpisodes())) {
       for (MediaFile mf : episode.getMediaFiles()) {
         if (StringUtils.isBlank(mf.getContainerFormat())) {
-          submitTask(new MediaFileInformationFetcherTask(mf, episode, false));
+          stage.addMediaFile(mf, episode, tvShow.getDataSource());
         }
       }
     }
@@ -893,7 +918,10 @@ public class TvShowUpdateDatasourceTask2 extends TmmThreadPool {
   @Override
   public void callback(Object obj) {
     // do not publish task description here, because with different workers the
-    // text is never right
+    // text is never right - except the throughput of the MediaInfo workers
+    if (mediaInfoStage != null) {
+      setTaskDescription(mediaInfoStage.getProgressDescription(progressDone));
+    }
     publishState(progressDone);
   }
 
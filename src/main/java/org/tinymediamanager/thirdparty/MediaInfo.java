@@ -38,13 +38,24 @@ import com.sun.jna.WString;
  */
 public class MediaInfo implements Closeable {
 
-  private static final Logger LOGGER = LoggerFactory.getLogger(MediaInfo.class);
+  private static final Logger                 LOGGER          = LoggerFactory.getLogger(MediaInfo.class);
+
+  /**
+   * one instance per thread; the native handle is reused for all files parsed in this thread. The handle is NOT freed when the thread dies
+   * (only when the instance gets finalized) - worker pools have to dispose the instances of their threads after usage (see MediaInfoStage)
+   */
+  private static final ThreadLocal<MediaInfo> THREAD_INSTANCE = new ThreadLocal<MediaInfo>() {
+                                                                @Override
+                                                                protected MediaInfo initialValue() {
+                                                                  return new MediaInfo();
+                                                                }
+                                                              };
 
   /**
    * the internal pointer handle of mediainfo<br>
    * .
    */
-  private Pointer             handle;
+  private Pointer                             handle;
 
   /**
    * checks if the internal handle is null.
@@ -61,6 +72,16 @@ public class MediaInfo implements Closeable {
   public MediaInfo() {
   }
 
+  /**
+   * get the MediaInfo instance of the current thread. Just close it after usage - only the owner of the worker thread may dispose it (a new
+   * native handle is created on the next open)
+   * 
+   * @return the MediaInfo instance of the current thread
+   */
+  public static MediaInfo getThreadInstance() {
+    return THREAD_INSTANCE.get();
+  }
+
   /**
    * Open.
    * 
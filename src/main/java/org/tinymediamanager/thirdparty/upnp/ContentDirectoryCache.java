@@ -0,0 +1,366 @@
+/*
+ * Copyright 2012 - 2018 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.thirdparty.upnp;
+
+import static org.tinymediamanager.core.Constants.ADDED_EPISODE;
+import static org.tinymediamanager.core.Constants.ADDED_TV_SHOW;
+import static org.tinymediamanager.core.Constants.EPISODE;
+import static org.tinymediamanager.core.Constants.EPISODE_COUNT;
+import static org.tinymediamanager.core.Constants.REMOVED_EPISODE;
+import static org.tinymediamanager.core.Constants.REMOVED_TV_SHOW;
+import static org.tinymediamanager.core.Constants.SEASON;
+import static org.tinymediamanager.core.Constants.TITLE;
+import static org.tinymediamanager.core.Constants.TITLE_SORTABLE;
+import static org.tinymediamanager.core.Constants.TV_SHOWS;
+import static org.tinymediamanager.core.Constants.TV_SHOW_COUNT;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.text.CollationKey;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.fourthline.cling.support.contentdirectory.DIDLParser;
+import org.fourthline.cling.support.model.DIDLContent;
+import org.tinymediamanager.core.MediaFileType;
+import org.tinymediamanager.core.SortKeys;
+import org.tinymediamanager.core.entities.MediaEntity;
+import org.tinymediamanager.core.entities.MediaFile;
+import org.tinymediamanager.core.movie.MovieList;
+import org.tinymediamanager.core.movie.entities.Movie;
+import org.tinymediamanager.core.tvshow.TvShowList;
+import org.tinymediamanager.core.tvshow.entities.TvShow;
+import org.tinymediamanager.core.tvshow.entities.TvShowEpisode;
+
+/**
+ * The class ContentDirectoryCache. Holds sorted, immutable snapshots of the browsable containers (invalidated by the events of the
+ * MovieList/TvShowList and of the entities in the snapshots) and the generated DIDL fragments of the items, so paged browse responses can be
+ * assembled cheaply. Fragments of entities which are not in the lists any more are evicted when the snapshots are rebuilt
+ * 
+ * @author Manuel Laggner
+ */
+class ContentDirectoryCache implements PropertyChangeListener {
+  private static final String                  DIDL_END         = "</DIDL-Lite>";
+  private static final TitleComparator         TITLE_COMPARATOR = new TitleComparator();
+  private static ContentDirectoryCache         instance;
+
+  private volatile List<Movie>                 movies;
+  private volatile List<TvShow>                tvShows;
+  private final Map<UUID, List<TvShowEpisode>> episodes         = new ConcurrentHashMap<>();
+  private final Map<UUID, CachedFragment>      fragments        = new ConcurrentHashMap<>();
+  private final Map<UUID, MediaEntity>         observed         = new ConcurrentHashMap<>();
+  private final PropertyChangeListener         entityListener;
+  private volatile String                      didlStart;
+
+  private ContentDirectoryCache() {
+    entityListener = new PropertyChangeListener() {
+      @Override
+      public void propertyChange(PropertyChangeEvent evt) {
+        String property = evt.getPropertyName();
+        Object source = evt.getSource();
+        if (source instanceof Movie) {
+          if (TITLE.equals(property) || TITLE_SORTABLE.equals(property)) {
+            movies = null;
+          }
+        }
+        else if (source instanceof TvShow) {
+          if (TITLE.equals(property) || TITLE_SORTABLE.equals(property)) {
+            tvShows = null;
+          }
+          else if (ADDED_EPISODE.equals(property) || REMOVED_EPISODE.equals(property) || EPISODE_COUNT.equals(property)) {
+            episodes.remove(((TvShow) source).getDbId());
+          }
+        }
+        else if (source instanceof TvShowEpisode) {
+          // the episodes are sorted by season and episode
+          TvShow tvShow = ((TvShowEpisode) source).getTvShow();
+          if (tvShow != null && (SEASON.equals(property) || EPISODE.equals(property))) {
+            episodes.remove(tvShow.getDbId());
+          }
+        }
+      }
+    };
+
+    MovieList.getInstance().addPropertyChangeListener(this);
+    TvShowList.getInstance().addPropertyChangeListener(this);
+  }
+
+  static synchronized ContentDirectoryCache getInstance() {
+    if (instance == null) {
+      instance = new ContentDirectoryCache();
+    }
+    return instance;
+  }
+
+  @Override
+  public void propertyChange(PropertyChangeEvent evt) {
+    String property = evt.getPropertyName();
+    if (evt.getSource() instanceof MovieList) {
+      if ("movies".equals(property) || "movieCount".equals(property) || TITLE_SORTABLE.equals(property)) {
+        movies = null;
+      }
+    }
+    else if (TV_SHOWS.equals(property) || TV_SHOW_COUNT.equals(property) || ADDED_TV_SHOW.equals(property) || REMOVED_TV_SHOW.equals(property)
+        || TITLE_SORTABLE.equals(property)) {
+      tvShows = null;
+      episodes.clear();
+    }
+    else if (EPISODE_COUNT.equals(property)) {
+      episodes.clear();
+    }
+  }
+
+  /**
+   * get the sorted snapshot of all movies
+   * 
+   * @return an immutable list of all movies
+   */
+  List<Movie> getMovies() {
+    List<Movie> snapshot = movies;
+    if (snapshot == null) {
+      List<Movie> list = new ArrayList<>(MovieList.getInstance().getMovies());
+      Collections.sort(list, TITLE_COMPARATOR);
+      snapshot = Collections.unmodifiableList(list);
+      movies = snapshot;
+
+      Set<UUID> current = observe(list);
+      evict(Movie.class, current, null);
+    }
+    return snapshot;
+  }
+
+  /**
+   * get the sorted snapshot of all TV shows
+   * 
+   * @return an immutable list of all TV shows
+   */
+  List<TvShow> getTvShows() {
+    List<TvShow> snapshot = tvShows;
+    if (snapshot == null) {
+      List<TvShow> list = new ArrayList<>(TvShowList.getInstance().getTvShows());
+      Collections.sort(list, TITLE_COMPARATOR);
+      snapshot = Collections.unmodifiableList(list);
+      tvShows = snapshot;
+
+      Set<UUID> current = observe(list);
+      evict(TvShow.class, current, null);
+      // the episodes of removed TV shows
+      for (MediaEntity entity : new ArrayList<>(observed.values())) {
+        if (entity instanceof TvShowEpisode && !current.contains(getTvShowId(entity))) {
+          unobserve(entity);
+        }
+      }
+      for (CachedFragment fragment : new ArrayList<>(fragments.values())) {
+        if (fragment.entity instanceof TvShowEpisode && !current.contains(getTvShowId(fragment.entity))) {
+          fragments.remove(fragment.entity.getDbId());
+        }
+      }
+    }
+    return snapshot;
+  }
+
+  /**
+   * get the snapshot of all episodes of the given TV show (sorted by season and episode)
+   * 
+   * @param tvShow
+   *          the TV show
+   * @return an immutable list of all episodes
+   */
+  List<TvShowEpisode> getEpisodes(TvShow tvShow) {
+    List<TvShowEpisode> snapshot = episodes.get(tvShow.getDbId());
+    if (snapshot == null) {
+      List<TvShowEpisode> list = new ArrayList<>(tvShow.getEpisodes());
+      Collections.sort(list);
+      snapshot = Collections.unmodifiableList(list);
+      episodes.put(tvShow.getDbId(), snapshot);
+
+      if (observed.put(tvShow.getDbId(), tvShow) == null) {
+        tvShow.addPropertyChangeListener(entityListener);
+      }
+      Set<UUID> current = observe(list);
+      evict(TvShowEpisode.class, current, tvShow.getDbId());
+    }
+    return snapshot;
+  }
+
+  /**
+   * register the entity listener at all given entities (only once per entity)
+   * 
+   * @return the ids of the given entities
+   */
+  private Set<UUID> observe(List<? extends MediaEntity> entities) {
+    Set<UUID> ids = new HashSet<>();
+    for (MediaEntity entity : entities) {
+      ids.add(entity.getDbId());
+      if (observed.put(entity.getDbId(), entity) == null) {
+        entity.addPropertyChangeListener(entityListener);
+      }
+    }
+    return ids;
+  }
+
+  private void unobserve(MediaEntity entity) {
+    if (observed.remove(entity.getDbId()) != null) {
+      entity.removePropertyChangeListener(entityListener);
+    }
+    fragments.remove(entity.getDbId());
+  }
+
+  /**
+   * remove the listener and the fragments of all entities of the given type which are not in the given set (any more)
+   */
+  private void evict(Class<? extends MediaEntity> type, Set<UUID> current, UUID tvShowId) {
+    for (MediaEntity entity : new ArrayList<>(observed.values())) {
+      if (type.isInstance(entity) && !current.contains(entity.getDbId()) && (tvShowId == null || tvShowId.equals(getTvShowId(entity)))) {
+        unobserve(entity);
+      }
+    }
+    for (CachedFragment fragment : new ArrayList<>(fragments.values())) {
+      MediaEntity entity = fragment.entity;
+      if (type.isInstance(entity) && !current.contains(entity.getDbId()) && (tvShowId == null || tvShowId.equals(getTvShowId(entity)))) {
+        fragments.remove(entity.getDbId());
+      }
+    }
+  }
+
+  private UUID getTvShowId(MediaEntity entity) {
+    if (entity instanceof TvShowEpisode && ((TvShowEpisode) entity).getTvShow() != null) {
+      return ((TvShowEpisode) entity).getTvShow().getDbId();
+    }
+    return null;
+  }
+
+  /**
+   * get the DIDL fragment (for directory listings) of the given movie
+   * 
+   * @param movie
+   *          the movie
+   * @return the DIDL fragment
+   */
+  String getMovieFragment(Movie movie) throws Exception {
+    String signature = createSignature(movie.getTitle(), movie.getYear(), movie.getMediaFiles(MediaFileType.VIDEO));
+    CachedFragment fragment = fragments.get(movie.getDbId());
+    if (fragment == null || !fragment.signature.equals(signature)) {
+      DIDLContent didl = new DIDLContent();
+      didl.addItem(Metadata.getUpnpMovie(movie, false));
+      fragment = new CachedFragment(movie, signature, extractFragment(new DIDLParser().generate(didl)));
+      fragments.put(movie.getDbId(), fragment);
+    }
+    return fragment.xml;
+  }
+
+  /**
+   * get the DIDL fragment (for directory listings) of the given episode
+   * 
+   * @param tvShow
+   *          the TV show of the episode
+   * @param episode
+   *          the episode
+   * @return the DIDL fragment
+   */
+  String getEpisodeFragment(TvShow tvShow, TvShowEpisode episode) throws Exception {
+    String signature = createSignature(episode.getSeason() + "/" + episode.getEpisode() + "/" + episode.getTitle(), episode.getYear(),
+        episode.getMediaFiles(MediaFileType.VIDEO));
+    CachedFragment fragment = fragments.get(episode.getDbId());
+    if (fragment == null || !fragment.signature.equals(signature)) {
+      DIDLContent didl = new DIDLContent();
+      didl.addItem(Metadata.getUpnpTvShowEpisode(tvShow, episode, false));
+      fragment = new CachedFragment(episode, signature, extractFragment(new DIDLParser().generate(didl)));
+      fragments.put(episode.getDbId(), fragment);
+    }
+    return fragment.xml;
+  }
+
+  /**
+   * assemble a DIDL document out of the given fragments
+   * 
+   * @param xmlFragments
+   *          the fragments
+   * @return the DIDL document or null if no fragment has been generated yet
+   */
+  String assemble(List<String> xmlFragments) {
+    if (didlStart == null) {
+      return null;
+    }
+    StringBuilder sb = new StringBuilder(didlStart);
+    for (String xml : xmlFragments) {
+      sb.append(xml);
+    }
+    sb.append(DIDL_END);
+    return sb.toString();
+  }
+
+  /**
+   * strip the root element of the generated DIDL document; the start of the root element is remembered to assemble the pages
+   */
+  private String extractFragment(String didl) {
+    int rootStart = didl.indexOf("<DIDL-Lite");
+    int rootEnd = didl.indexOf('>', rootStart) + 1;
+    int end = didl.lastIndexOf(DIDL_END);
+    if (rootStart < 0 || rootEnd <= 0 || end < rootEnd) {
+      throw new IllegalStateException("unexpected DIDL document");
+    }
+    if (didlStart == null) {
+      didlStart = didl.substring(0, rootEnd);
+    }
+    return didl.substring(rootEnd, end);
+  }
+
+  private String createSignature(String title, String year, List<MediaFile> mediaFiles) {
+    StringBuilder sb = new StringBuilder(title).append('|').append(year);
+    for (MediaFile mf : mediaFiles) {
+      sb.append('|').append(mf.getFileAsPath()).append(':').append(mf.getFilesize());
+    }
+    return sb.toString();
+  }
+
+  private static class CachedFragment {
+    private final MediaEntity entity;
+    private final String      signature;
+    private final String      xml;
+
+    private CachedFragment(MediaEntity entity, String signature, String xml) {
+      this.entity = entity;
+      this.signature = signature;
+      this.xml = xml;
+    }
+  }
+
+  private static class TitleComparator implements Comparator<MediaEntity> {
+    @Override
+    public int compare(MediaEntity o1, MediaEntity o2) {
+      return getSortKey(o1).compareTo(getSortKey(o2));
+    }
+
+    private CollationKey getSortKey(MediaEntity entity) {
+      // movies and TV shows cache the keys of their sortable titles
+      if (entity instanceof Movie) {
+        return ((Movie) entity).getTitleSortableKey();
+      }
+      if (entity instanceof TvShow) {
+        return ((TvShow) entity).getTitleSortableKey();
+      }
+      return SortKeys.create(entity.getTitle());
+    }
+  }
+}
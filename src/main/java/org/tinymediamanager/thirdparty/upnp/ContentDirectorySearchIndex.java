@@ -0,0 +1,415 @@
+/*
+ * Copyright 2012 - 2018 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.thirdparty.upnp;
+
+import static org.tinymediamanager.core.Constants.ACTORS;
+import static org.tinymediamanager.core.Constants.EPISODE_COUNT;
+import static org.tinymediamanager.core.Constants.GENRE;
+import static org.tinymediamanager.core.Constants.TITLE;
+import static org.tinymediamanager.core.Constants.TV_SHOWS;
+import static org.tinymediamanager.core.Constants.TV_SHOW_COUNT;
+import static org.tinymediamanager.core.Constants.YEAR;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.text.CollationKey;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+
+import org.apache.commons.lang3.StringUtils;
+import org.tinymediamanager.core.SortKeys;
+import org.tinymediamanager.core.entities.MediaEntity;
+import org.tinymediamanager.core.movie.MovieList;
+import org.tinymediamanager.core.movie.entities.Movie;
+import org.tinymediamanager.core.movie.entities.MovieActor;
+import org.tinymediamanager.core.tvshow.TvShowList;
+import org.tinymediamanager.core.tvshow.entities.TvShow;
+import org.tinymediamanager.core.tvshow.entities.TvShowActor;
+import org.tinymediamanager.core.tvshow.entities.TvShowEpisode;
+import org.tinymediamanager.scraper.entities.MediaGenres;
+
+/**
+ * The class ContentDirectorySearchIndex. An in-memory inverted index of the titles, genres, actors and years of all movies and episodes to
+ * answer UPnP search requests. The index is updated incrementally: changes of the lists/entities are only recorded and applied with the next
+ * search
+ * 
+ * @author Manuel Laggner
+ */
+class ContentDirectorySearchIndex implements PropertyChangeListener {
+  private static ContentDirectorySearchIndex            instance;
+
+  private final Map<UUID, Entry>                        entries       = new HashMap<>();
+  private final Map<Field, TreeMap<String, Set<Entry>>> index         = new EnumMap<>(Field.class);
+  private final Set<MediaEntity>                        dirtyEntities = new HashSet<>();
+  private final PropertyChangeListener                  entityListener;
+  private volatile boolean                              moviesDirty   = true;
+  private volatile boolean                              episodesDirty = true;
+
+  enum Field {
+    TITLE,
+    GENRE,
+    ACTOR,
+    YEAR
+  }
+
+  private ContentDirectorySearchIndex() {
+    for (Field field : Field.values()) {
+      index.put(field, new TreeMap<String, Set<Entry>>());
+    }
+
+    entityListener = new PropertyChangeListener() {
+      @Override
+      public void propertyChange(PropertyChangeEvent evt) {
+        String property = evt.getPropertyName();
+        if (TITLE.equals(property) || YEAR.equals(property) || GENRE.equals(property) || ACTORS.equals(property)) {
+          synchronized (dirtyEntities) {
+            if (evt.getSource() instanceof TvShow) {
+              // genres and actors of the show are indexed for all episodes
+              dirtyEntities.addAll(((TvShow) evt.getSource()).getEpisodes());
+            }
+            else {
+              dirtyEntities.add((MediaEntity) evt.getSource());
+            }
+          }
+        }
+      }
+    };
+
+    MovieList.getInstance().addPropertyChangeListener(this);
+    TvShowList.getInstance().addPropertyChangeListener(this);
+  }
+
+  static synchronized ContentDirectorySearchIndex getInstance() {
+    if (instance == null) {
+      instance = new ContentDirectorySearchIndex();
+    }
+    return instance;
+  }
+
+  @Override
+  public void propertyChange(PropertyChangeEvent evt) {
+    String property = evt.getPropertyName();
+    if ("movies".equals(property) || "movieCount".equals(property)) {
+      moviesDirty = true;
+    }
+    else if (TV_SHOWS.equals(property) || TV_SHOW_COUNT.equals(property) || EPISODE_COUNT.equals(property)) {
+      episodesDirty = true;
+    }
+  }
+
+  /**
+   * search for all items matching the given UPnP search criteria
+   * 
+   * @param containerId
+   *          the container to search in
+   * @param searchCriteria
+   *          the UPnP search criteria
+   * @return all matching entries (sorted by title)
+   * @throws IllegalArgumentException
+   *           if the search criteria could not be parsed
+   */
+  synchronized List<Entry> search(String containerId, String searchCriteria) {
+    update();
+
+    Set<Entry> matches = new SearchCriteriaParser(this, searchCriteria).parse();
+
+    // restrict to the container
+    String[] path = StringUtils.split(StringUtils.defaultString(containerId), '/');
+    List<Entry> result = new ArrayList<>();
+    for (Entry entry : matches) {
+      if (path.length == 0 || path[0].equals(Upnp.ID_ROOT)) {
+        result.add(entry);
+      }
+      else if (path[0].equals(Upnp.ID_MOVIES) && entry.tvShow == null) {
+        result.add(entry);
+      }
+      else if (path[0].equals(Upnp.ID_TVSHOWS) && entry.tvShow != null
+          && (path.length == 1 || path[1].equals(entry.tvShow.getDbId().toString()))) {
+        result.add(entry);
+      }
+    }
+
+    Collections.sort(result, new Comparator<Entry>() {
+      @Override
+      public int compare(Entry o1, Entry o2) {
+        return o1.sortKey.compareTo(o2.sortKey);
+      }
+    });
+    return result;
+  }
+
+  /**
+   * apply all recorded changes to the index
+   */
+  private void update() {
+    if (moviesDirty) {
+      moviesDirty = false;
+      Set<UUID> current = new HashSet<>();
+      for (Movie movie : MovieList.getInstance().getMovies()) {
+        current.add(movie.getDbId());
+        if (!entries.containsKey(movie.getDbId())) {
+          movie.addPropertyChangeListener(entityListener);
+          add(new Entry(movie, null));
+        }
+      }
+      removeMissing(current, false);
+    }
+
+    if (episodesDirty) {
+      episodesDirty = false;
+      Set<UUID> current = new HashSet<>();
+      for (TvShow tvShow : TvShowList.getInstance().getTvShows()) {
+        // re-register to avoid duplicate listeners on already known shows
+        tvShow.removePropertyChangeListener(entityListener);
+        tvShow.addPropertyChangeListener(entityListener);
+        for (TvShowEpisode episode : new ArrayList<>(tvShow.getEpisodes())) {
+          current.add(episode.getDbId());
+          if (!entries.containsKey(episode.getDbId())) {
+            episode.addPropertyChangeListener(entityListener);
+            add(new Entry(episode, tvShow));
+          }
+        }
+      }
+      removeMissing(current, true);
+    }
+
+    List<MediaEntity> changed;
+    synchronized (dirtyEntities) {
+      changed = new ArrayList<>(dirtyEntities);
+      dirtyEntities.clear();
+    }
+    for (MediaEntity entity : changed) {
+      Entry entry = entries.get(entity.getDbId());
+      if (entry != null) {
+        remove(entry);
+        add(new Entry(entity, entry.tvShow));
+      }
+    }
+  }
+
+  private void removeMissing(Set<UUID> current, boolean episodes) {
+    List<Entry> removed = new ArrayList<>();
+    for (Entry entry : entries.values()) {
+      if ((entry.tvShow != null) == episodes && !current.contains(entry.entity.getDbId())) {
+        removed.add(entry);
+      }
+    }
+    for (Entry entry : removed) {
+      entry.entity.removePropertyChangeListener(entityListener);
+      remove(entry);
+    }
+  }
+
+  private void add(Entry entry) {
+    entries.put(entry.entity.getDbId(), entry);
+    for (Map.Entry<Field, List<String>> values : entry.values.entrySet()) {
+      TreeMap<String, Set<Entry>> fieldIndex = index.get(values.getKey());
+      for (String word : getWords(values.getValue())) {
+        Set<Entry> set = fieldIndex.get(word);
+        if (set == null) {
+          set = new HashSet<>();
+          fieldIndex.put(word, set);
+        }
+        set.add(entry);
+      }
+    }
+  }
+
+  private void remove(Entry entry) {
+    entries.remove(entry.entity.getDbId());
+    for (Map.Entry<Field, List<String>> values : entry.values.entrySet()) {
+      TreeMap<String, Set<Entry>> fieldIndex = index.get(values.getKey());
+      for (String word : getWords(values.getValue())) {
+        Set<Entry> set = fieldIndex.get(word);
+        if (set != null) {
+          set.remove(entry);
+          if (set.isEmpty()) {
+            fieldIndex.remove(word);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * get all indexed entries
+   */
+  Set<Entry> getAll() {
+    return new HashSet<>(entries.values());
+  }
+
+  /**
+   * find all entries where the field contains (or equals) the given value. The candidates are looked up by the word prefixes in the index
+   * and verified afterwards
+   * 
+   * @param field
+   *          the field to search in
+   * @param value
+   *          the value to search for
+   * @param exact
+   *          the field value must be equal to the given value
+   * @return all matching entries
+   */
+  Set<Entry> find(Field field, String value, boolean exact) {
+    String normalized = normalize(value);
+    List<String> words = getWords(Collections.singletonList(normalized));
+    if (words.isEmpty()) {
+      return exact ? new HashSet<Entry>() : getAll();
+    }
+
+    Set<Entry> candidates = null;
+    TreeMap<String, Set<Entry>> fieldIndex = index.get(field);
+    for (String word : words) {
+      Set<Entry> hits = new HashSet<>();
+      for (Set<Entry> set : fieldIndex.subMap(word, true, word + Character.MAX_VALUE, true).values()) {
+        hits.addAll(set);
+      }
+      if (candidates == null) {
+        candidates = hits;
+      }
+      else {
+        candidates.retainAll(hits);
+      }
+    }
+
+    Iterator<Entry> iterator = candidates.iterator();
+    while (iterator.hasNext()) {
+      boolean match = false;
+      for (String fieldValue : iterator.next().values.get(field)) {
+        if (exact ? fieldValue.equals(normalized) : fieldValue.contains(normalized)) {
+          match = true;
+          break;
+        }
+      }
+      if (!match) {
+        iterator.remove();
+      }
+    }
+    return candidates;
+  }
+
+  /**
+   * find all entries which have a value in the given field
+   */
+  Set<Entry> findExisting(Field field) {
+    Set<Entry> result = new HashSet<>();
+    for (Entry entry : entries.values()) {
+      if (!entry.values.get(field).isEmpty()) {
+        result.add(entry);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * find all entries with a year in the given range
+   */
+  Set<Entry> findYears(int from, int to) {
+    Set<Entry> result = new HashSet<>();
+    for (Map.Entry<String, Set<Entry>> year : index.get(Field.YEAR).entrySet()) {
+      try {
+        int value = Integer.parseInt(year.getKey());
+        if (value >= from && value <= to) {
+          result.addAll(year.getValue());
+        }
+      }
+      catch (NumberFormatException ignored) {
+        // not a year
+      }
+    }
+    return result;
+  }
+
+  static String normalize(String value) {
+    return StringUtils.stripAccents(StringUtils.defaultString(value)).toLowerCase(Locale.ROOT).trim();
+  }
+
+  private static List<String> getWords(List<String> values) {
+    List<String> words = new ArrayList<>();
+    for (String value : values) {
+      for (String word : value.split("[^\\p{L}\\p{N}]+")) {
+        if (!word.isEmpty() && !words.contains(word)) {
+          words.add(word);
+        }
+      }
+    }
+    return words;
+  }
+
+  /**
+   * one indexed movie or episode
+   */
+  static class Entry {
+    final MediaEntity                    entity;
+    final TvShow                         tvShow;
+    final String                         title;
+    final CollationKey                   sortKey;
+    final Map<Field, List<String>>       values = new EnumMap<>(Field.class);
+
+    private Entry(MediaEntity entity, TvShow tvShow) {
+      this.entity = entity;
+      this.tvShow = tvShow;
+      this.title = StringUtils.defaultString(entity.getTitle());
+      this.sortKey = SortKeys.create(title);
+
+      List<String> genres = new ArrayList<>();
+      List<String> actors = new ArrayList<>();
+      if (entity instanceof Movie) {
+        Movie movie = (Movie) entity;
+        addGenres(genres, movie.getGenres());
+        for (MovieActor actor : movie.getActors()) {
+          actors.add(normalize(actor.getName()));
+        }
+      }
+      else if (entity instanceof TvShowEpisode) {
+        TvShowEpisode episode = (TvShowEpisode) entity;
+        addGenres(genres, tvShow.getGenres());
+        for (TvShowActor actor : episode.getActors()) {
+          actors.add(normalize(actor.getName()));
+        }
+        for (TvShowActor actor : tvShow.getActors()) {
+          actors.add(normalize(actor.getName()));
+        }
+      }
+
+      values.put(Field.TITLE, Collections.singletonList(normalize(title)));
+      values.put(Field.GENRE, genres);
+      values.put(Field.ACTOR, actors);
+      values.put(Field.YEAR,
+          StringUtils.isBlank(entity.getYear()) ? Collections.<String> emptyList() : Collections.singletonList(normalize(entity.getYear())));
+    }
+
+    private static void addGenres(List<String> genres, List<MediaGenres> mediaGenres) {
+      for (MediaGenres genre : mediaGenres) {
+        genres.add(normalize(genre.getLocalizedName()));
+        if (!genre.getLocalizedName().equals(genre.toString())) {
+          genres.add(normalize(genre.toString()));
+        }
+      }
+    }
+  }
+}
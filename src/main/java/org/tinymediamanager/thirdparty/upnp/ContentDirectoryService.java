@@ -2,7 +2,8 @@ package org.tinymediamanager.thirdparty.upnp;
 
 import java.io.StringReader;
 import java.io.StringWriter;
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.ResourceBundle;
 import java.util.UUID;
@@ -29,7 +30,6 @@ import org.slf4j.LoggerFactory;
 import org.tinymediamanager.core.movie.MovieList;
 import org.tinymediamanager.core.tvshow.TvShowList;
 import org.tinymediamanager.core.tvshow.entities.TvShowEpisode;
-import org.tinymediamanager.scraper.DynaComparator;
 import org.tinymediamanager.ui.UTF8Control;
 
 public class ContentDirectoryService extends AbstractContentDirectoryService {
@@ -37,6 +37,11 @@ public class ContentDirectoryService extends AbstractContentDirectoryService {
   private static final Logger         LOGGER = LoggerFactory.getLogger(ContentDirectoryService.class);
   private static final ResourceBundle BUNDLE = ResourceBundle.getBundle("messages", new UTF8Control()); //$NON-NLS-1$
 
+  public ContentDirectoryService() {
+    // announce the properties we can search for
+    super(Arrays.asList("dc:title", "upnp:genre", "upnp:actor", "dc:creator", "dc:date", "upnp:class"), new ArrayList<String>());
+  }
+
   @Override
   public BrowseResult browse(String objectID, BrowseFlag browseFlag, String filter, long firstResult, long maxResults, SortCriterion[] orderby)
       throws ContentDirectoryException {
@@ -48,13 +53,7 @@ public class ContentDirectoryService extends AbstractContentDirectoryService {
       LOGGER.debug("MaxResults: " + maxResults);
       LOGGER.debug("OrderBy: " + SortCriterion.toString(orderby));
 
-      String orderMovie = "getTitle";
-      String orderShow = "getTitle";
-      // if (SortCriterion.toString(orderby).contains("dc:date")) {
-      // orderMovie = "getReleaseDateFormatted";
-      // orderShow = "getFirstAired";
-      // }
-
+      ContentDirectoryCache cache = ContentDirectoryCache.getInstance();
       DIDLContent didl = new DIDLContent();
 
       String[] path = StringUtils.split(objectID, '/');
@@ -121,21 +120,20 @@ public class ContentDirectoryService extends AbstractContentDirectoryService {
           return returnResult(didl);
         }
         else if (path[0].equals(Upnp.ID_MOVIES)) {
-          // create MOVIE folder structure -> items
-          List<org.tinymediamanager.core.movie.entities.Movie> tmmMovies = MovieList.getInstance().getMovies();
-          Collections.sort(tmmMovies, new DynaComparator(orderMovie));
-          for (org.tinymediamanager.core.movie.entities.Movie m : tmmMovies) {
-            didl.addItem(Metadata.getUpnpMovie(m, false));
+          // create MOVIE folder structure -> items (only the requested page out of the sorted snapshot)
+          List<org.tinymediamanager.core.movie.entities.Movie> tmmMovies = cache.getMovies();
+          List<String> fragments = new ArrayList<>();
+          for (org.tinymediamanager.core.movie.entities.Movie m : getPage(tmmMovies, firstResult, maxResults)) {
+            fragments.add(cache.getMovieFragment(m));
           }
-          return returnResult(didl);
+          return returnResult(cache, fragments, tmmMovies.size());
         }
         else if (path[0].equals(Upnp.ID_TVSHOWS)) {
           if (path.length == 1) {
             // create TVSHOW folder structure -> container
             StorageFolder cont;
-            List<org.tinymediamanager.core.tvshow.entities.TvShow> tmmShows = TvShowList.getInstance().getTvShows();
-            Collections.sort(tmmShows, new DynaComparator(orderShow));
-            for (org.tinymediamanager.core.tvshow.entities.TvShow t : tmmShows) {
+            List<org.tinymediamanager.core.tvshow.entities.TvShow> tmmShows = cache.getTvShows();
+            for (org.tinymediamanager.core.tvshow.entities.TvShow t : getPage(tmmShows, firstResult, maxResults)) {
               cont = new StorageFolder();
               cont.setId(Upnp.ID_TVSHOWS + "/" + t.getDbId());
               cont.setParentID(Upnp.ID_ROOT);
@@ -143,17 +141,19 @@ public class ContentDirectoryService extends AbstractContentDirectoryService {
               cont.setChildCount(t.getEpisodeCount());
               didl.addContainer(cont);
             }
-            return returnResult(didl);
+            return returnResult(didl, tmmShows.size());
           }
           else if (path.length == 2) {
             // create EPISODE items
             UUID uuid = UUID.fromString(path[1]);
             org.tinymediamanager.core.tvshow.entities.TvShow show = TvShowList.getInstance().lookupTvShow(uuid);
             if (show != null) {
-              for (TvShowEpisode ep : show.getEpisodes()) {
-                didl.addItem(Metadata.getUpnpTvShowEpisode(show, ep, false));
+              List<TvShowEpisode> episodes = cache.getEpisodes(show);
+              List<String> fragments = new ArrayList<>();
+              for (TvShowEpisode ep : getPage(episodes, firstResult, maxResults)) {
+                fragments.add(cache.getEpisodeFragment(show, ep));
               }
-              return returnResult(didl);
+              return returnResult(cache, fragments, episodes.size());
             }
             else {
               throw new ContentDirectoryException(ContentDirectoryErrorCode.NO_SUCH_OBJECT, "cannot get metadata for " + objectID);
@@ -173,11 +173,47 @@ public class ContentDirectoryService extends AbstractContentDirectoryService {
   }
 
   private BrowseResult returnResult(DIDLContent didl) throws Exception {
+    int count = didl.getItems().size() + didl.getContainers().size();
+    return returnResult(didl, count);
+  }
+
+  private BrowseResult returnResult(DIDLContent didl, long totalMatches) throws Exception {
     DIDLParser dip = new DIDLParser();
     int count = didl.getItems().size() + didl.getContainers().size();
     String ret = dip.generate(didl);
-    LOGGER.trace(prettyFormat(ret, 2));
-    return new BrowseResult(ret, count, count);
+    if (LOGGER.isTraceEnabled()) {
+      LOGGER.trace(prettyFormat(ret, 2));
+    }
+    return new BrowseResult(ret, count, totalMatches);
+  }
+
+  private BrowseResult returnResult(ContentDirectoryCache cache, List<String> fragments, long totalMatches) throws Exception {
+    String ret = cache.assemble(fragments);
+    if (ret == null) {
+      // nothing generated yet (empty page)
+      return returnResult(new DIDLContent(), totalMatches);
+    }
+    if (LOGGER.isTraceEnabled()) {
+      LOGGER.trace(prettyFormat(ret, 2));
+    }
+    return new BrowseResult(ret, fragments.size(), totalMatches);
+  }
+
+  /**
+   * get the requested page of the given list
+   * 
+   * @param list
+   *          the list to get the page for
+   * @param firstResult
+   *          the index of the first entry
+   * @param maxResults
+   *          the maximum amount of entries (0 = all)
+   * @return the page
+   */
+  private static <T> List<T> getPage(List<T> list, long firstResult, long maxResults) {
+    int from = (int) Math.min(Math.max(0, firstResult), list.size());
+    int to = maxResults > 0 ? (int) Math.min(list.size(), from + maxResults) : list.size();
+    return list.subList(from, to);
   }
 
   private int getInt(String s) {
@@ -194,8 +230,34 @@ public class ContentDirectoryService extends AbstractContentDirectoryService {
   @Override
   public BrowseResult search(String containerId, String searchCriteria, String filter, long firstResult, long maxResults, SortCriterion[] orderBy)
       throws ContentDirectoryException {
-    // You can override this method to implement searching!
-    return super.search(containerId, searchCriteria, filter, firstResult, maxResults, orderBy);
+    try {
+      LOGGER.debug("ContainerId: " + containerId);
+      LOGGER.debug("SearchCriteria: " + searchCriteria);
+      LOGGER.debug("FirstResult: " + firstResult);
+      LOGGER.debug("MaxResults: " + maxResults);
+
+      ContentDirectoryCache cache = ContentDirectoryCache.getInstance();
+      List<ContentDirectorySearchIndex.Entry> entries = ContentDirectorySearchIndex.getInstance().search(containerId, searchCriteria);
+
+      List<String> fragments = new ArrayList<>();
+      for (ContentDirectorySearchIndex.Entry entry : getPage(entries, firstResult, maxResults)) {
+        if (entry.tvShow != null) {
+          fragments.add(cache.getEpisodeFragment(entry.tvShow, (TvShowEpisode) entry.entity));
+        }
+        else {
+          fragments.add(cache.getMovieFragment((org.tinymediamanager.core.movie.entities.Movie) entry.entity));
+        }
+      }
+      return returnResult(cache, fragments, entries.size());
+    }
+    catch (IllegalArgumentException ex) {
+      LOGGER.warn("Search failed: " + ex.getMessage());
+      throw new ContentDirectoryException(ContentDirectoryErrorCode.CANNOT_PROCESS, ex.getMessage());
+    }
+    catch (Exception ex) {
+      LOGGER.error("Search failed", ex);
+      throw new ContentDirectoryException(ContentDirectoryErrorCode.CANNOT_PROCESS, ex.toString());
+    }
   }
 
   public static String prettyFormat(String input, int indent) {
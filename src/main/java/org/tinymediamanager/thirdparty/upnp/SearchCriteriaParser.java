@@ -0,0 +1,302 @@
+/*
+ * Copyright 2012 - 2018 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.thirdparty.upnp;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.apache.commons.lang3.StringUtils;
+import org.tinymediamanager.thirdparty.upnp.ContentDirectorySearchIndex.Entry;
+import org.tinymediamanager.thirdparty.upnp.ContentDirectorySearchIndex.Field;
+
+/**
+ * The class SearchCriteriaParser. Parses the UPnP search criteria (ContentDirectory:1, chapter 2.5.5) and evaluates it against the search
+ * index
+ * 
+ * <pre>
+ * searchCrit  ::= searchExp | '*'
+ * searchExp   ::= relExp | searchExp 'and' searchExp | searchExp 'or' searchExp | '(' searchExp ')'
+ * relExp      ::= property binOp quotedVal | property existsOp boolVal
+ * </pre>
+ * 
+ * @author Manuel Laggner
+ */
+class SearchCriteriaParser {
+  private final ContentDirectorySearchIndex index;
+  private final String                      criteria;
+  private final List<Token>                 tokens;
+  private int                               position;
+
+  SearchCriteriaParser(ContentDirectorySearchIndex index, String criteria) {
+    this.index = index;
+    this.criteria = StringUtils.defaultString(criteria).trim();
+    this.tokens = tokenize(this.criteria);
+    this.position = 0;
+  }
+
+  /**
+   * parse the search criteria and evaluate it
+   * 
+   * @return all entries matching the search criteria
+   * @throws IllegalArgumentException
+   *           if the search criteria is not valid
+   */
+  Set<Entry> parse() {
+    if (criteria.isEmpty() || "*".equals(criteria)) {
+      return index.getAll();
+    }
+
+    Set<Entry> result = parseOr();
+    if (position < tokens.size()) {
+      throw new IllegalArgumentException("unexpected token '" + tokens.get(position).text + "' in search criteria: " + criteria);
+    }
+    return result;
+  }
+
+  private Set<Entry> parseOr() {
+    Set<Entry> result = parseAnd();
+    while (nextIs("or")) {
+      position++;
+      result.addAll(parseAnd());
+    }
+    return result;
+  }
+
+  private Set<Entry> parseAnd() {
+    Set<Entry> result = parsePrimary();
+    while (nextIs("and")) {
+      position++;
+      Set<Entry> other = parsePrimary();
+      result.retainAll(other);
+    }
+    return result;
+  }
+
+  private Set<Entry> parsePrimary() {
+    if (nextIs("(")) {
+      position++;
+      Set<Entry> result = parseOr();
+      if (!nextIs(")")) {
+        throw new IllegalArgumentException("missing ')' in search criteria: " + criteria);
+      }
+      position++;
+      return result;
+    }
+
+    String property = next().text;
+    String operator = next().text.toLowerCase(Locale.ROOT);
+    Token value = next();
+    return evaluate(property, operator, value.text);
+  }
+
+  private boolean nextIs(String text) {
+    return position < tokens.size() && !tokens.get(position).quoted && tokens.get(position).text.equalsIgnoreCase(text);
+  }
+
+  private Token next() {
+    if (position >= tokens.size()) {
+      throw new IllegalArgumentException("unexpected end of search criteria: " + criteria);
+    }
+    return tokens.get(position++);
+  }
+
+  /**
+   * evaluate a single relational expression
+   */
+  private Set<Entry> evaluate(String property, String operator, String value) {
+    // the class of all our items is object.item.videoItem.*; no containers will be found
+    if ("upnp:class".equals(property)) {
+      boolean match;
+      if ("derivedfrom".equals(operator)) {
+        match = "object.item.videoItem".startsWith(value) || value.startsWith("object.item.videoItem");
+      }
+      else if ("=".equals(operator) || "!=".equals(operator)) {
+        match = value.startsWith("object.item.videoItem");
+        if ("!=".equals(operator)) {
+          match = !match;
+        }
+      }
+      else if ("exists".equals(operator)) {
+        match = Boolean.parseBoolean(value);
+      }
+      else {
+        match = false;
+      }
+      return match ? index.getAll() : new HashSet<Entry>();
+    }
+
+    Field field = getField(property);
+    if ("exists".equals(operator)) {
+      boolean exists = Boolean.parseBoolean(value);
+      if (field == null) {
+        return exists ? new HashSet<Entry>() : index.getAll();
+      }
+      return exists ? index.findExisting(field) : complement(index.findExisting(field));
+    }
+
+    if (field == null) {
+      // unknown property: none of our items has it
+      return "!=".equals(operator) || "doesnotcontain".equals(operator) ? index.getAll() : new HashSet<Entry>();
+    }
+
+    switch (operator) {
+      case "=":
+        return index.find(field, value, true);
+
+      case "!=":
+        return complement(index.find(field, value, true));
+
+      case "contains":
+        return index.find(field, value, false);
+
+      case "doesnotcontain":
+        return complement(index.find(field, value, false));
+
+      case "<":
+      case "<=":
+      case ">":
+      case ">=":
+        if (field != Field.YEAR) {
+          return new HashSet<>();
+        }
+        return findYears(operator, value);
+
+      case "derivedfrom":
+        return new HashSet<>();
+
+      default:
+        throw new IllegalArgumentException("unknown operator '" + operator + "' in search criteria: " + criteria);
+    }
+  }
+
+  private Set<Entry> findYears(String operator, String value) {
+    // dc:date may be a full date - only the year is relevant for us
+    int year;
+    try {
+      year = Integer.parseInt(StringUtils.substringBefore(value, "-"));
+    }
+    catch (NumberFormatException e) {
+      return new HashSet<>();
+    }
+
+    switch (operator) {
+      case "<":
+        return index.findYears(Integer.MIN_VALUE, year - 1);
+
+      case "<=":
+        return index.findYears(Integer.MIN_VALUE, year);
+
+      case ">":
+        return index.findYears(year + 1, Integer.MAX_VALUE);
+
+      default:
+        return index.findYears(year, Integer.MAX_VALUE);
+    }
+  }
+
+  private Set<Entry> complement(Set<Entry> entries) {
+    Set<Entry> result = index.getAll();
+    result.removeAll(entries);
+    return result;
+  }
+
+  private static Field getField(String property) {
+    switch (property) {
+      case "dc:title":
+        return Field.TITLE;
+
+      case "upnp:genre":
+        return Field.GENRE;
+
+      case "upnp:actor":
+      case "upnp:artist":
+      case "dc:creator":
+        return Field.ACTOR;
+
+      case "dc:date":
+        return Field.YEAR;
+
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * split the search criteria into tokens: brackets, operators, quoted strings and words
+   */
+  private static List<Token> tokenize(String criteria) {
+    List<Token> tokens = new ArrayList<>();
+    int i = 0;
+    while (i < criteria.length()) {
+      char c = criteria.charAt(i);
+      if (Character.isWhitespace(c)) {
+        i++;
+      }
+      else if (c == '(' || c == ')') {
+        tokens.add(new Token(String.valueOf(c), false));
+        i++;
+      }
+      else if (c == '"') {
+        // quoted value; \" and \\ are escaped
+        StringBuilder sb = new StringBuilder();
+        i++;
+        while (i < criteria.length() && criteria.charAt(i) != '"') {
+          if (criteria.charAt(i) == '\\' && i + 1 < criteria.length()) {
+            i++;
+          }
+          sb.append(criteria.charAt(i));
+          i++;
+        }
+        if (i >= criteria.length()) {
+          throw new IllegalArgumentException("unterminated string in search criteria: " + criteria);
+        }
+        tokens.add(new Token(sb.toString(), true));
+        i++;
+      }
+      else if (c == '=' || c == '!' || c == '<' || c == '>') {
+        if (i + 1 < criteria.length() && criteria.charAt(i + 1) == '=') {
+          tokens.add(new Token(criteria.substring(i, i + 2), false));
+          i += 2;
+        }
+        else {
+          tokens.add(new Token(String.valueOf(c), false));
+          i++;
+        }
+      }
+      else {
+        int start = i;
+        while (i < criteria.length() && !Character.isWhitespace(criteria.charAt(i)) && "()\"=!<>".indexOf(criteria.charAt(i)) < 0) {
+          i++;
+        }
+        tokens.add(new Token(criteria.substring(start, i), false));
+      }
+    }
+    return tokens;
+  }
+
+  private static class Token {
+    private final String  text;
+    private final boolean quoted;
+
+    private Token(String text, boolean quoted) {
+      this.text = text;
+      this.quoted = quoted;
+    }
+  }
+}
@@ -1,15 +1,41 @@
 package org.tinymediamanager.thirdparty.upnp;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.TimeZone;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.tinymediamanager.Globals;
 import org.tinymediamanager.core.entities.MediaEntity;
 import org.tinymediamanager.core.entities.MediaFile;
 import org.tinymediamanager.core.movie.MovieList;
@@ -19,14 +45,34 @@ import fi.iki.elonen.NanoHTTPD;
 import fi.iki.elonen.NanoHTTPD.Response.Status;
 
 public class WebServer extends NanoHTTPD {
-  private static final Logger LOGGER = LoggerFactory.getLogger(WebServer.class);
+  private static final Logger              LOGGER              = LoggerFactory.getLogger(WebServer.class);
+  private static final long                TRANSFER_CHUNK_SIZE = 8 * 1024 * 1024;
+  private static final int                 MAX_RANGES          = 16;
+  private static final ThreadLocal<Socket> CLIENT_SOCKET       = new ThreadLocal<>();
+
+  private final Semaphore                  streamPermits;
+  private final List<StreamStatistics>     activeStreams       = new CopyOnWriteArrayList<>();
 
   public WebServer() throws IOException {
     super(8008);
+    streamPermits = new Semaphore(Math.max(1, Globals.settings.getUpnpMaxStreams()));
+
+    // sockets accepted by a ServerSocketChannel offer their channel, which is needed for the zero-copy transfer
+    setServerSocketFactory(new ServerSocketFactory() {
+      @Override
+      public ServerSocket create() throws IOException {
+        return ServerSocketChannel.open().socket();
+      }
+    });
     start(NanoHTTPD.SOCKET_READ_TIMEOUT, false);
     LOGGER.info("Webserver running on port 8008");
   }
 
+  @Override
+  protected ClientHandler createClientHandler(Socket finalAccept, InputStream inputStream) {
+    return new StreamingClientHandler(inputStream, finalAccept);
+  }
+
   @Override
   public Response serve(IHTTPSession session) {
     String uri = session.getUri();
@@ -72,37 +118,19 @@ public class WebServer extends NanoHTTPD {
 
   // CLONE from nanohttp-webserver (supporting ranges)
   // reworked for NIO Path and MF access, and not sending content on HEAD requests
+  // the content is streamed by FileResponse with zero-copy FileChannel.transferTo
   private Response serveFile(IHTTPSession session, MediaFile file) {
     LOGGER.debug("Serving: " + file.getFileAsPath());
     Response res;
     Map<String, String> header = session.getHeaders();
     LOGGER.debug("Headers: " + header);
     try {
+      Path path = file.getFileAsPath();
       String mime = MimeTypes.getMimeTypeAsString(file.getExtension());
-      long fileLen = Files.size(file.getFileAsPath());
+      long fileLen = Files.size(path);
 
       // Calculate etag
-      String etag = Integer
-          .toHexString((file.getFileAsPath().toString() + Files.getLastModifiedTime(file.getFileAsPath()) + "" + fileLen).hashCode());
-
-      // Support (simple) skipping:
-      long startFrom = 0;
-      long endAt = -1;
-      String range = header.get("range");
-      if (range != null) {
-        if (range.startsWith("bytes=")) {
-          range = range.substring("bytes=".length());
-          int minus = range.indexOf('-');
-          try {
-            if (minus > 0) {
-              startFrom = Long.parseLong(range.substring(0, minus));
-              endAt = Long.parseLong(range.substring(minus + 1));
-            }
-          }
-          catch (NumberFormatException ignored) {
-          }
-        }
-      }
+      String etag = Integer.toHexString((path.toString() + Files.getLastModifiedTime(path) + "" + fileLen).hashCode());
 
       // get if-range header. If present, it must match etag or else we
       // should ignore the range request
@@ -112,82 +140,400 @@ public class WebServer extends NanoHTTPD {
       String ifNoneMatch = header.get("if-none-match");
       boolean headerIfNoneMatchPresentAndMatching = ifNoneMatch != null && ("*".equals(ifNoneMatch) || ifNoneMatch.equals(etag));
 
-      // Change return code and add Content-Range header when skipping is
-      // requested
-
-      if (headerIfRangeMissingOrMatching && range != null && startFrom >= 0 && startFrom < fileLen) {
-        // range request that matches current etag
-        // and the startFrom of the range is satisfiable
-        if (headerIfNoneMatchPresentAndMatching) {
-          // range request that matches current etag
-          // and the startFrom of the range is satisfiable
-          // would return range from file
-          // respond with not-modified
-          res = newFixedLengthResponse(Status.NOT_MODIFIED, mime, "");
-          res.addHeader("ETag", etag);
+      // null = no (valid) range requested; empty = no satisfiable range
+      List<long[]> ranges = null;
+      String range = header.get("range");
+      if (range != null && headerIfRangeMissingOrMatching) {
+        ranges = parseRanges(range, fileLen);
+      }
+
+      if (ranges != null && ranges.isEmpty()) {
+        // return the size of the file
+        // 4xx responses are not trumped by if-none-match
+        res = newFixedLengthResponse(Status.RANGE_NOT_SATISFIABLE, NanoHTTPD.MIME_PLAINTEXT, "");
+        res.addHeader("Content-Range", "bytes */" + fileLen);
+        res.addHeader("ETag", etag);
+      }
+      else if (headerIfNoneMatchPresentAndMatching) {
+        // would return the (partial) file which the client already has
+        // respond with not-modified
+        res = newFixedLengthResponse(Status.NOT_MODIFIED, mime, "");
+        res.addHeader("ETag", etag);
+      }
+      else {
+        boolean headOnly = session.getMethod() == Method.HEAD;
+        if (!headOnly && !streamPermits.tryAcquire()) {
+          LOGGER.info("Rejecting stream of " + path + " to " + session.getRemoteIpAddress() + " - too many concurrent streams");
+          res = newFixedLengthResponse(Status.SERVICE_UNAVAILABLE, NanoHTTPD.MIME_PLAINTEXT, "Too many concurrent streams");
+          res.addHeader("Retry-After", "10");
+          return res;
+        }
+
+        FileResponse fileResponse;
+        if (ranges == null) {
+          // supply the whole file
+          ranges = new ArrayList<>();
+          if (fileLen > 0) {
+            ranges.add(new long[] { 0, fileLen - 1 });
+          }
+          fileResponse = new FileResponse(Status.OK, mime, path, fileLen, ranges, null, headOnly, session.getRemoteIpAddress());
+        }
+        else if (ranges.size() == 1) {
+          long[] r = ranges.get(0);
+          fileResponse = new FileResponse(Status.PARTIAL_CONTENT, mime, path, fileLen, ranges, null, headOnly, session.getRemoteIpAddress());
+          fileResponse.addHeader("Content-Range", "bytes " + r[0] + "-" + r[1] + "/" + fileLen);
         }
         else {
-          if (endAt < 0) {
-            endAt = fileLen - 1;
+          // multiple ranges are sent as multipart/byteranges
+          String boundary = UUID.randomUUID().toString().replace("-", "");
+          fileResponse = new FileResponse(Status.PARTIAL_CONTENT, mime, path, fileLen, ranges, boundary, headOnly,
+              session.getRemoteIpAddress());
+        }
+        fileResponse.addHeader("Accept-Ranges", "bytes");
+        fileResponse.addHeader("ETag", etag);
+        res = fileResponse;
+      }
+    }
+    catch (IOException ioe) {
+      LOGGER.error("Error reading file", ioe);
+      res = newFixedLengthResponse(Status.FORBIDDEN, NanoHTTPD.MIME_PLAINTEXT, "FORBIDDEN: Reading file failed.");
+    }
+
+    return res;
+  }
+
+  /**
+   * parse the value of a range header (RFC 7233); supported are closed (bytes=a-b), open-ended (bytes=a-), suffix (bytes=-n) and multiple
+   * (comma separated) ranges.<br>
+   * Overlapping and adjacent ranges are coalesced and headers with more than MAX_RANGES ranges are ignored (RFC 7233, section 6.1)
+   * 
+   * @param range
+   *          the value of the range header
+   * @param fileLen
+   *          the length of the file
+   * @return a list of [start, end] (inclusive) pairs in ascending order, an empty list if none of the ranges is satisfiable or null if the
+   *         header could not be parsed or requests too many ranges (the header is ignored then and the whole file is served)
+   */
+  static List<long[]> parseRanges(String range, long fileLen) {
+    if (!range.startsWith("bytes=")) {
+      return null;
+    }
+
+    String[] specs = range.substring("bytes=".length()).split(",");
+    if (specs.length > MAX_RANGES) {
+      return null;
+    }
+
+    List<long[]> ranges = new ArrayList<>();
+    for (String spec : specs) {
+      spec = spec.trim();
+      int minus = spec.indexOf('-');
+      if (minus < 0) {
+        return null;
+      }
+      long start;
+      long end;
+      try {
+        if (minus == 0) {
+          // suffix range: the last n bytes
+          long suffix = Long.parseLong(spec.substring(1));
+          start = Math.max(0, fileLen - suffix);
+          end = fileLen - 1;
+          if (suffix == 0) {
+            continue;
           }
-          long newLen = endAt - startFrom + 1;
-          if (newLen < 0) {
-            newLen = 0;
+        }
+        else {
+          start = Long.parseLong(spec.substring(0, minus));
+          end = minus == spec.length() - 1 ? fileLen - 1 : Long.parseLong(spec.substring(minus + 1));
+          if (end < start) {
+            return null;
           }
+          end = Math.min(end, fileLen - 1);
+        }
+      }
+      catch (NumberFormatException e) {
+        return null;
+      }
 
-          InputStream fis = Files.newInputStream(file.getFileAsPath());
-          fis.skip(startFrom);
+      if (start < fileLen) {
+        ranges.add(new long[] { start, end });
+      }
+    }
+    return coalesceRanges(ranges);
+  }
 
-          res = newFixedLengthResponse(Status.PARTIAL_CONTENT, mime, fis, newLen);
-          res.addHeader("Accept-Ranges", "bytes");
-          res.addHeader("Content-Length", "" + newLen);
-          res.addHeader("Content-Range", "bytes " + startFrom + "-" + endAt + "/" + fileLen);
-          res.addHeader("ETag", etag);
-        }
+  /**
+   * sort the given ranges and merge overlapping or adjacent ones
+   * 
+   * @param ranges
+   *          a list of [start, end] (inclusive) pairs
+   * @return the coalesced ranges in ascending order
+   */
+  private static List<long[]> coalesceRanges(List<long[]> ranges) {
+    if (ranges.size() < 2) {
+      return ranges;
+    }
+
+    Collections.sort(ranges, new Comparator<long[]>() {
+      @Override
+      public int compare(long[] o1, long[] o2) {
+        return Long.compare(o1[0], o2[0]);
+      }
+    });
+
+    List<long[]> coalesced = new ArrayList<>();
+    long[] current = ranges.get(0);
+    for (int i = 1; i < ranges.size(); i++) {
+      long[] next = ranges.get(i);
+      if (next[0] <= current[1] + 1) {
+        current = new long[] { current[0], Math.max(current[1], next[1]) };
       }
       else {
+        coalesced.add(current);
+        current = next;
+      }
+    }
+    coalesced.add(current);
+    return coalesced;
+  }
+
+  /**
+   * get statistics of all currently running streams
+   * 
+   * @return a list of all active streams
+   */
+  public List<StreamStatistics> getActiveStreams() {
+    return new ArrayList<>(activeStreams);
+  }
+
+  /**
+   * a client handler which remembers the socket of the connection for the current thread
+   */
+  private class StreamingClientHandler extends ClientHandler {
+    private final Socket socket;
+
+    StreamingClientHandler(InputStream inputStream, Socket socket) {
+      super(inputStream, socket);
+      this.socket = socket;
+    }
+
+    @Override
+    public void run() {
+      CLIENT_SOCKET.set(socket);
+      try {
+        super.run();
+      }
+      finally {
+        CLIENT_SOCKET.remove();
+      }
+    }
+  }
+
+  /**
+   * The response for (parts of) a file. The content is sent with FileChannel.transferTo directly into the socket channel, so the kernel can
+   * use sendfile and the data is never copied into the heap
+   */
+  private class FileResponse extends Response {
+    private final Path                path;
+    private final String              partMimeType;
+    private final long                fileLen;
+    private final List<long[]>        ranges;
+    private final String              boundary;
+    private final boolean             headOnly;
+    private final StreamStatistics    statistics;
+    private final Map<String, String> headers  = new LinkedHashMap<>();
+    private final AtomicBoolean       released = new AtomicBoolean(false);
+    private boolean                   keepAlive;
+
+    FileResponse(IStatus status, String mimeType, Path path, long fileLen, List<long[]> ranges, String boundary, boolean headOnly,
+        String client) {
+      super(status, boundary == null ? mimeType : "multipart/byteranges; boundary=" + boundary, null, 0);
+      this.path = path;
+      this.partMimeType = mimeType;
+      this.fileLen = fileLen;
+      this.ranges = ranges;
+      this.boundary = boundary;
+      this.headOnly = headOnly;
+      this.keepAlive = true;
+      this.statistics = new StreamStatistics(path, client);
+      if (headOnly) {
+        // no stream permit has been acquired for HEAD requests
+        released.set(true);
+      }
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+      super.addHeader(name, value);
+      headers.put(name, value);
+    }
+
+    @Override
+    public void setKeepAlive(boolean useKeepAlive) {
+      super.setKeepAlive(useKeepAlive);
+      this.keepAlive = useKeepAlive;
+    }
+
+    @Override
+    protected void send(OutputStream outputStream) {
+      try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+        WritableByteChannel target = getTargetChannel(outputStream);
+        write(target, getResponseHeader());
+        if (headOnly) {
+          return;
+        }
 
-        if (headerIfRangeMissingOrMatching && range != null && startFrom >= fileLen) {
-          // return the size of the file
-          // 4xx responses are not trumped by if-none-match
-          res = newFixedLengthResponse(Status.RANGE_NOT_SATISFIABLE, NanoHTTPD.MIME_PLAINTEXT, "");
-          res.addHeader("Content-Range", "bytes */" + fileLen);
-          res.addHeader("ETag", etag);
+        activeStreams.add(statistics);
+        for (long[] range : ranges) {
+          if (boundary != null) {
+            write(target, getPartHeader(range));
+          }
+          transfer(channel, range[0], range[1] - range[0] + 1, target);
         }
-        else if (range == null && headerIfNoneMatchPresentAndMatching) {
-          // full-file-fetch request
-          // would return entire file
-          // respond with not-modified
-          res = newFixedLengthResponse(Status.NOT_MODIFIED, mime, "");
-          res.addHeader("ETag", etag);
+        if (boundary != null) {
+          write(target, getClosingBoundary());
         }
-        else if (!headerIfRangeMissingOrMatching && headerIfNoneMatchPresentAndMatching) {
-          // range request that doesn't match current etag
-          // would return entire (different) file
-          // respond with not-modified
+        outputStream.flush();
+      }
+      catch (IOException e) {
+        // most likely the client closed the connection (e.g. on seeking)
+        LOGGER.debug("Streaming of " + path + " to " + statistics.getClient() + " aborted: " + e.getMessage());
+        closeConnection(true);
+      }
+      finally {
+        if (activeStreams.remove(statistics)) {
+          LOGGER.info("Streamed " + statistics.getBytes() + " bytes of " + path + " to " + statistics.getClient() + " in "
+              + statistics.getDuration() + " ms (" + statistics.getBytesPerSecond() / 1024 + " KB/s)");
+        }
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      super.close();
+      if (released.compareAndSet(false, true)) {
+        streamPermits.release();
+      }
+    }
 
-          res = newFixedLengthResponse(Status.NOT_MODIFIED, mime, "");
-          res.addHeader("ETag", etag);
+    private WritableByteChannel getTargetChannel(OutputStream outputStream) {
+      // the channel of the socket is only available if the socket has been created by a ServerSocketChannel
+      Socket socket = CLIENT_SOCKET.get();
+      if (socket != null && socket.getChannel() != null) {
+        return socket.getChannel();
+      }
+      return Channels.newChannel(outputStream);
+    }
+
+    private void transfer(FileChannel channel, long position, long count, WritableByteChannel target) throws IOException {
+      long remaining = count;
+      while (remaining > 0) {
+        long transferred = channel.transferTo(position, Math.min(remaining, TRANSFER_CHUNK_SIZE), target);
+        if (transferred <= 0 && position >= channel.size()) {
+          throw new EOFException("file has been truncated");
         }
-        else {
-          if (session.getMethod() == Method.HEAD) {
-            res = newFixedLengthResponse(Response.Status.OK, mime, null, fileLen);
-          }
-          else {
-            // supply the file
-            res = newFixedLengthResponse(Response.Status.OK, mime, Files.newInputStream(file.getFileAsPath()), fileLen);
-          }
-          res.addHeader("Accept-Ranges", "bytes");
-          res.addHeader("Content-Length", "" + fileLen);
-          res.addHeader("ETag", etag);
+        position += transferred;
+        remaining -= transferred;
+        statistics.addBytes(transferred);
+      }
+    }
+
+    private void write(WritableByteChannel target, byte[] bytes) throws IOException {
+      ByteBuffer buffer = ByteBuffer.wrap(bytes);
+      while (buffer.hasRemaining()) {
+        target.write(buffer);
+      }
+    }
+
+    private long getContentLength() {
+      long length = 0;
+      for (long[] range : ranges) {
+        if (boundary != null) {
+          length += getPartHeader(range).length;
         }
+        length += range[1] - range[0] + 1;
+      }
+      if (boundary != null) {
+        length += getClosingBoundary().length;
       }
+      return length;
     }
-    catch (IOException ioe) {
-      LOGGER.error("Error reading file", ioe);
-      res = newFixedLengthResponse(Status.FORBIDDEN, NanoHTTPD.MIME_PLAINTEXT, "FORBIDDEN: Reading file failed.");
+
+    private byte[] getResponseHeader() {
+      SimpleDateFormat gmtFormat = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US);
+      gmtFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
+
+      StringBuilder sb = new StringBuilder();
+      sb.append("HTTP/1.1 ").append(getStatus().getDescription()).append(" \r\n");
+      sb.append("Content-Type: ").append(getMimeType()).append("\r\n");
+      sb.append("Date: ").append(gmtFormat.format(new Date())).append("\r\n");
+      for (Map.Entry<String, String> entry : headers.entrySet()) {
+        sb.append(entry.getKey()).append(": ").append(entry.getValue()).append("\r\n");
+      }
+      if (getHeader("connection") == null) {
+        sb.append("Connection: ").append(keepAlive ? "keep-alive" : "close").append("\r\n");
+      }
+      sb.append("Content-Length: ").append(getContentLength()).append("\r\n");
+      sb.append("\r\n");
+      return sb.toString().getBytes(StandardCharsets.ISO_8859_1);
     }
 
-    return res;
+    private byte[] getPartHeader(long[] range) {
+      return ("\r\n--" + boundary + "\r\nContent-Type: " + partMimeType + "\r\nContent-Range: bytes " + range[0] + "-" + range[1] + "/"
+          + fileLen + "\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private byte[] getClosingBoundary() {
+      return ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.ISO_8859_1);
+    }
+  }
+
+  /**
+   * The class StreamStatistics. Holds the throughput of a running stream
+   * 
+   * @author Manuel Laggner
+   */
+  public static class StreamStatistics {
+    private final Path       path;
+    private final String     client;
+    private final long       start;
+    private final AtomicLong bytes = new AtomicLong();
+
+    StreamStatistics(Path path, String client) {
+      this.path = path;
+      this.client = client;
+      this.start = System.currentTimeMillis();
+    }
+
+    void addBytes(long count) {
+      bytes.addAndGet(count);
+    }
+
+    public Path getPath() {
+      return path;
+    }
+
+    public String getClient() {
+      return client;
+    }
+
+    public long getBytes() {
+      return bytes.get();
+    }
+
+    /**
+     * the duration of the stream in ms
+     */
+    public long getDuration() {
+      return System.currentTimeMillis() - start;
+    }
+
+    /**
+     * the average throughput of the stream
+     */
+    public long getBytesPerSecond() {
+      return bytes.get() * 1000 / Math.max(1, getDuration());
+    }
   }
 }
@@ -25,6 +25,7 @@ import javax.swing.AbstractAction;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tinymediamanager.core.ImageCache;
+import org.tinymediamanager.core.ImageCacheIndex;
 import org.tinymediamanager.core.Utils;
 import org.tinymediamanager.ui.UTF8Control;
 
@@ -49,6 +50,7 @@ public class ClearImageCacheAction extends AbstractAction {
     if (Files.exists(cache)) {
       try {
         Utils.deleteDirectoryRecursive(cache);
+        ImageCacheIndex.getInstance().reset();
       }
       catch (Exception e) {
         LOGGER.warn(e.getMessage());
@@ -24,14 +24,17 @@ import java.util.ResourceBundle;
 import javax.swing.AbstractAction;
 import javax.swing.JOptionPane;
 
+import org.apache.commons.lang3.StringUtils;
 import org.tinymediamanager.Globals;
 import org.tinymediamanager.core.ImageCacheTask;
+import org.tinymediamanager.core.entities.Person;
 import org.tinymediamanager.core.movie.MovieList;
 import org.tinymediamanager.core.movie.entities.Movie;
 import org.tinymediamanager.core.movie.entities.MovieSet;
 import org.tinymediamanager.core.threading.TmmTaskManager;
 import org.tinymediamanager.core.tvshow.TvShowList;
 import org.tinymediamanager.core.tvshow.entities.TvShow;
+import org.tinymediamanager.core.tvshow.entities.TvShowEpisode;
 import org.tinymediamanager.ui.UTF8Control;
 
 /**
@@ -61,25 +64,54 @@ public class RebuildImageCacheAction extends AbstractAction {
     }
 
     List<Path> imageFiles = new ArrayList<>();
+    // artwork urls of all entities (cached artwork of movie sets without files) and actor thumbs (cached on demand) - everything else in
+    // the cache is an orphan
+    List<String> artworkUrls = new ArrayList<>();
     // movie list
     List<Movie> movies = new ArrayList<>(MovieList.getInstance().getMovies());
     for (Movie movie : movies) {
       imageFiles.addAll(movie.getImagesToCache());
+      artworkUrls.addAll(movie.getArtworkUrls().values());
+      addActorThumbs(movie.getActors(), artworkUrls);
     }
 
     // moviesets
     List<MovieSet> movieSets = new ArrayList<>(MovieList.getInstance().getMovieSetList());
     for (MovieSet movieSet : movieSets) {
       imageFiles.addAll(movieSet.getImagesToCache());
+      artworkUrls.addAll(movieSet.getArtworkUrls().values());
     }
 
     // tv dhows
     List<TvShow> tvShows = new ArrayList<>(TvShowList.getInstance().getTvShows());
     for (TvShow tvShow : tvShows) {
       imageFiles.addAll(tvShow.getImagesToCache());
+      artworkUrls.addAll(tvShow.getArtworkUrls().values());
+      addActorThumbs(tvShow.getActors(), artworkUrls);
+      for (TvShowEpisode episode : tvShow.getEpisodes()) {
+        artworkUrls.addAll(episode.getArtworkUrls().values());
+        addActorThumbs(episode.getActors(), artworkUrls);
+        addActorThumbs(episode.getGuests(), artworkUrls);
+      }
     }
 
-    ImageCacheTask task = new ImageCacheTask(imageFiles);
+    ImageCacheTask task = new ImageCacheTask(imageFiles, artworkUrls);
     TmmTaskManager.getInstance().addUnnamedTask(task);
   }
+
+  /**
+   * actor thumbs are cached by their url or by their local file (see ActorImageLabel)
+   */
+  @SuppressWarnings("deprecation")
+  private void addActorThumbs(List<? extends Person> actors, List<String> artworkUrls) {
+    for (Person actor : actors) {
+      if (StringUtils.isNotBlank(actor.getThumbUrl())) {
+        artworkUrls.add(actor.getThumbUrl());
+      }
+      Path storagePath = actor.getStoragePath();
+      if (storagePath != null) {
+        artworkUrls.add(storagePath.toAbsolutePath().toString());
+      }
+    }
+  }
 }
@@ -31,7 +31,10 @@ import java.awt.image.BufferedImage;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.ResourceBundle;
+import java.util.concurrent.Future;
 
 import javax.swing.JLabel;
 import javax.swing.SwingWorker;
@@ -74,6 +77,8 @@ public class ImageLabel extends JLabel {
   protected float                            desiredAspectRatio = 0f;
 
   protected SwingWorker<BufferedImage, Void> worker             = null;
+  protected Dimension                        workerSize         = null;
+  protected List<Future<?>>                  prefetches         = new ArrayList<>();
   protected MouseListener                    lightboxListener   = null;
 
   static {
@@ -120,20 +125,63 @@ public class ImageLabel extends JLabel {
     firePropertyChange("imagePath", oldValue, newValue);
 
     // stop previous worker
-    if (worker != null && !worker.isDone()) {
-      worker.cancel(true);
-    }
+    cancelWorker();
 
     scaledImage = null;
-    this.repaint();
 
     if (StringUtils.isBlank(newValue)) {
+      this.repaint();
       return;
     }
 
+    // already scaled for this size?
+    scaledImage = ScaledImageCache.getInstance().get(ScaledImageCache.createKey(imagePath, getSize(), useCache));
+    if (scaledImage != null) {
+      revalidate();
+      repaint();
+      return;
+    }
+    this.repaint();
+
     // load image in separate worker -> performance
-    worker = new ImageLoader(this.imagePath, this.getSize());
-    worker.execute();
+    startWorker(new ImageLoader(this.imagePath, this.getSize()), this.getSize());
+  }
+
+  /**
+   * load the given images in the background into the memory cache (e.g. the artwork of the neighbours of the selected entry). Prefetches of
+   * a previous call which are still pending will be cancelled
+   * 
+   * @param imagePaths
+   *          the paths of the images to prefetch
+   */
+  public void prefetch(List<String> imagePaths) {
+    for (Future<?> prefetch : prefetches) {
+      prefetch.cancel(false);
+    }
+    prefetches.clear();
+
+    final Dimension size = getSize();
+    if (size.width <= 0 || size.height <= 0) {
+      return;
+    }
+    for (final String path : imagePaths) {
+      if (StringUtils.isBlank(path)) {
+        continue;
+      }
+      final boolean cache = useCache;
+      final String key = ScaledImageCache.createKey(path, size, cache);
+      if (ScaledImageCache.getInstance().contains(key)) {
+        continue;
+      }
+      prefetches.add(ScaledImageCache.getInstance().prefetch(new Runnable() {
+        @Override
+        public void run() {
+          if (!ScaledImageCache.getInstance().contains(key)) {
+            ScaledImageCache.getInstance().put(key, loadScaledImage(path, size, cache));
+          }
+        }
+      }));
+    }
   }
 
   public void clearImage() {
@@ -153,22 +201,41 @@ public class ImageLabel extends JLabel {
     firePropertyChange("imageUrl", oldValue, newValue);
 
     // stop previous worker
-    if (worker != null && !worker.isDone()) {
-      worker.cancel(true);
-    }
+    cancelWorker();
 
     scaledImage = null;
-    this.repaint();
 
     if (StringUtils.isEmpty(newValue)) {
+      this.repaint();
+      return;
+    }
+
+    // already scaled for this size?
+    scaledImage = ScaledImageCache.getInstance().get(ScaledImageCache.createKey(imageUrl, getSize(), false));
+    if (scaledImage != null) {
+      repaint();
       return;
     }
+    this.repaint();
 
     // fetch image in separate worker -> performance
-    worker = new ImageFetcher(this.getSize());
+    startWorker(new ImageFetcher(this.getSize()), this.getSize());
+  }
+
+  private void startWorker(SwingWorker<BufferedImage, Void> newWorker, Dimension size) {
+    worker = newWorker;
+    workerSize = size;
     worker.execute();
   }
 
+  private void cancelWorker() {
+    if (worker != null && !worker.isDone()) {
+      worker.cancel(true);
+    }
+    worker = null;
+    workerSize = null;
+  }
+
   public void setDesiredAspectRatio(float desiredAspectRatio) {
     this.desiredAspectRatio = desiredAspectRatio;
   }
@@ -316,13 +383,31 @@ public class ImageLabel extends JLabel {
   private void recreateScaledImageIfNeeded(int originalWidth, int originalHeight, int newWidth, int newHeight) {
     if ((newWidth * 0.8f > originalWidth) || (originalWidth > newWidth * 1.2f) || (newHeight * 0.8f > originalHeight)
         || (originalHeight > newHeight * 1.2f) && newWidth > 10) {
+      Dimension newSize = new Dimension(newWidth, newHeight);
+      // there is already a worker running for this size
+      if (worker != null && !worker.isDone() && newSize.equals(workerSize)) {
+        return;
+      }
+
       if (StringUtils.isNotBlank(imagePath)) {
-        worker = new ImageLoader(imagePath, new Dimension(newWidth, newHeight));
-        worker.execute();
+        BufferedImage cachedImage = ScaledImageCache.getInstance().get(ScaledImageCache.createKey(imagePath, newSize, useCache));
+        if (cachedImage != null) {
+          scaledImage = cachedImage;
+          repaint();
+          return;
+        }
+        cancelWorker();
+        startWorker(new ImageLoader(imagePath, newSize), newSize);
       }
       else if (StringUtils.isNoneBlank(imageUrl)) {
-        worker = new ImageFetcher(new Dimension(newWidth, newHeight));
-        worker.execute();
+        BufferedImage cachedImage = ScaledImageCache.getInstance().get(ScaledImageCache.createKey(imageUrl, newSize, false));
+        if (cachedImage != null) {
+          scaledImage = cachedImage;
+          repaint();
+          return;
+        }
+        cancelWorker();
+        startWorker(new ImageFetcher(newSize), newSize);
       }
     }
   }
@@ -355,13 +440,49 @@ public class ImageLabel extends JLabel {
     this.useCache = useCache;
   }
 
+  /**
+   * load the image from the given path (or from the image cache) and scale it to the given size
+   * 
+   * @param imagePath
+   *          the path to the image
+   * @param newSize
+   *          the size to scale the image to
+   * @param useCache
+   *          load the image from the image cache
+   * @return the scaled image or null
+   */
+  protected static BufferedImage loadScaledImage(String imagePath, Dimension newSize, boolean useCache) {
+    Path file = null;
+
+    if (useCache) {
+      file = ImageCache.getCachedFile(Paths.get(imagePath));
+    }
+
+    if (file == null) {
+      file = Paths.get(imagePath);
+    }
+
+    if (Files.exists(file)) {
+      try {
+        return Scalr.resize(ImageCache.createImage(file), Scalr.Method.QUALITY, Scalr.Mode.AUTOMATIC, newSize.width, newSize.height,
+            Scalr.OP_ANTIALIAS);
+      }
+      catch (Exception e) {
+        return null;
+      }
+    }
+    return null;
+  }
+
   /*
    * inner class for downloading online images
    */
   protected class ImageFetcher extends SwingWorker<BufferedImage, Void> {
+    private String    imageUrl;
     private Dimension newSize;
 
     public ImageFetcher(Dimension newSize) {
+      this.imageUrl = ImageLabel.this.imageUrl;
       this.newSize = newSize;
     }
 
@@ -369,18 +490,24 @@ public class ImageLabel extends JLabel {
     protected BufferedImage doInBackground() throws Exception {
       try {
         Url url = new Url(imageUrl);
-        return Scalr.resize(ImageCache.createImage(url.getBytes()), Scalr.Method.QUALITY, Scalr.Mode.AUTOMATIC, newSize.width, newSize.height,
-            Scalr.OP_ANTIALIAS);
+        BufferedImage image = Scalr.resize(ImageCache.createImage(url.getBytes()), Scalr.Method.QUALITY, Scalr.Mode.AUTOMATIC, newSize.width,
+            newSize.height, Scalr.OP_ANTIALIAS);
+        ScaledImageCache.getInstance().put(ScaledImageCache.createKey(imageUrl, newSize, false), image);
+        return image;
       }
       catch (Exception e) {
-        imageUrl = "";
+        // do not try to fetch this url again
+        if (StringUtils.equals(imageUrl, ImageLabel.this.imageUrl)) {
+          ImageLabel.this.imageUrl = "";
+        }
         return null;
       }
     }
 
     @Override
     protected void done() {
-      if (isCancelled()) {
+      // the label shows something else in the meantime
+      if (isCancelled() || worker != this) {
         return;
       }
 
@@ -409,33 +536,15 @@ public class ImageLabel extends JLabel {
 
     @Override
     protected BufferedImage doInBackground() throws Exception {
-      Path file = null;
-
-      if (useCache) {
-        file = ImageCache.getCachedFile(Paths.get(imagePath));
-      }
-
-      if (file == null) {
-        file = Paths.get(imagePath);
-      }
-
-      if (file != null && Files.exists(file)) {
-        try {
-          return Scalr.resize(ImageCache.createImage(file), Scalr.Method.QUALITY, Scalr.Mode.AUTOMATIC, newSize.width, newSize.height,
-              Scalr.OP_ANTIALIAS);
-        }
-        catch (Exception e) {
-          return null;
-        }
-      }
-      else {
-        return null;
-      }
+      BufferedImage image = loadScaledImage(imagePath, newSize, useCache);
+      ScaledImageCache.getInstance().put(ScaledImageCache.createKey(imagePath, newSize, useCache), image);
+      return image;
     }
 
     @Override
     protected void done() {
-      if (isCancelled()) {
+      // the label shows something else in the meantime
+      if (isCancelled() || worker != this) {
         return;
       }
 
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2012 - 2018 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.ui.components;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The class ScaledImageCache. A shared in memory cache for the scaled images of the image labels (keyed by the source and the target size).
+ * The cache is bounded by the memory the images occupy; the least recently used images are removed first. Additionally images can be
+ * prefetched in the background
+ * 
+ * @author Manuel Laggner
+ */
+public class ScaledImageCache {
+  private static final ScaledImageCache    INSTANCE = new ScaledImageCache();
+
+  private final long                       maxBytes;
+  private final Map<String, BufferedImage> images;
+  private final ExecutorService            prefetchExecutor;
+  private long                             bytes    = 0;
+
+  private ScaledImageCache() {
+    // 1/16 of the heap, but not more than 128 MB
+    maxBytes = Math.min(Runtime.getRuntime().maxMemory() / 16, 128L * 1024 * 1024);
+    images = new LinkedHashMap<>(64, 0.75f, true);
+
+    prefetchExecutor = new ThreadPoolExecutor(2, 2, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+      private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "image-prefetch-" + threadNumber.getAndIncrement());
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+      }
+    });
+    ((ThreadPoolExecutor) prefetchExecutor).allowCoreThreadTimeOut(true);
+  }
+
+  public static ScaledImageCache getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * create the key for the given source and size
+   * 
+   * @param source
+   *          the source (path or url) of the image
+   * @param size
+   *          the target size
+   * @param useCache
+   *          has the image been loaded from the image cache
+   * @return the key
+   */
+  public static String createKey(String source, Dimension size, boolean useCache) {
+    return (useCache ? "c|" : "o|") + size.width + "x" + size.height + "|" + source;
+  }
+
+  /**
+   * get the scaled image for the given key
+   * 
+   * @param key
+   *          the key
+   * @return the image or null
+   */
+  public synchronized BufferedImage get(String key) {
+    return images.get(key);
+  }
+
+  /**
+   * is there already an image for the given key?
+   * 
+   * @param key
+   *          the key
+   * @return true if the image is in the cache
+   */
+  public synchronized boolean contains(String key) {
+    return images.containsKey(key);
+  }
+
+  /**
+   * put the scaled image into the cache
+   * 
+   * @param key
+   *          the key
+   * @param image
+   *          the scaled image
+   */
+  public synchronized void put(String key, BufferedImage image) {
+    if (image == null) {
+      return;
+    }
+    long size = getSize(image);
+    if (size > maxBytes / 4) {
+      // do not let a single image push out the whole cache
+      return;
+    }
+
+    BufferedImage old = images.put(key, image);
+    if (old != null) {
+      bytes -= getSize(old);
+    }
+    bytes += size;
+
+    // remove the least recently used images
+    Iterator<BufferedImage> iterator = images.values().iterator();
+    while (bytes > maxBytes && iterator.hasNext()) {
+      bytes -= getSize(iterator.next());
+      iterator.remove();
+    }
+  }
+
+  /**
+   * run the given prefetch job in the background
+   * 
+   * @param job
+   *          the job
+   * @return the future to cancel the job
+   */
+  public Future<?> prefetch(Runnable job) {
+    return prefetchExecutor.submit(job);
+  }
+
+  private static long getSize(BufferedImage image) {
+    return (long) image.getWidth() * image.getHeight() * 4;
+  }
+}
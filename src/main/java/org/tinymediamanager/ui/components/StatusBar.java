@@ -49,6 +49,9 @@ import javax.swing.KeyStroke;
 import javax.swing.SwingUtilities;
 import javax.swing.Timer;
 
+import org.apache.commons.io.FileUtils;
+import org.tinymediamanager.Globals;
+import org.tinymediamanager.core.ImageCacheIndex;
 import org.tinymediamanager.core.threading.TmmTask;
 import org.tinymediamanager.core.threading.TmmTaskHandle;
 import org.tinymediamanager.core.threading.TmmTaskHandle.TaskState;
@@ -87,6 +90,7 @@ public class StatusBar extends JPanel implements TmmTaskListener {
   private JButton                               btnNotifications;
   private Component                             verticalStrut;
   private JLabel                                memory;
+  private JLabel                                imageCache;
 
   public StatusBar() {
     initComponents();
@@ -95,9 +99,10 @@ public class StatusBar extends JPanel implements TmmTaskListener {
   private void initComponents() {
     taskMap = new HashMap<>();
     setLayout(new FormLayout(
-        new ColumnSpec[] { FormSpecs.RELATED_GAP_COLSPEC, FormSpecs.DEFAULT_COLSPEC, FormSpecs.RELATED_GAP_COLSPEC, ColumnSpec.decode("default:grow"),
-            FormSpecs.DEFAULT_COLSPEC, FormSpecs.LABEL_COMPONENT_GAP_COLSPEC, FormSpecs.DEFAULT_COLSPEC, FormSpecs.LABEL_COMPONENT_GAP_COLSPEC,
-            FormSpecs.DEFAULT_COLSPEC, ColumnSpec.decode("15dlu"), FormSpecs.DEFAULT_COLSPEC, FormSpecs.LABEL_COMPONENT_GAP_COLSPEC, },
+        new ColumnSpec[] { FormSpecs.RELATED_GAP_COLSPEC, FormSpecs.DEFAULT_COLSPEC, FormSpecs.UNRELATED_GAP_COLSPEC, FormSpecs.DEFAULT_COLSPEC,
+            FormSpecs.RELATED_GAP_COLSPEC, ColumnSpec.decode("default:grow"), FormSpecs.DEFAULT_COLSPEC, FormSpecs.LABEL_COMPONENT_GAP_COLSPEC,
+            FormSpecs.DEFAULT_COLSPEC, FormSpecs.LABEL_COMPONENT_GAP_COLSPEC, FormSpecs.DEFAULT_COLSPEC, ColumnSpec.decode("15dlu"),
+            FormSpecs.DEFAULT_COLSPEC, FormSpecs.LABEL_COMPONENT_GAP_COLSPEC, },
         new RowSpec[] { FormSpecs.LABEL_COMPONENT_GAP_ROWSPEC, FormSpecs.DEFAULT_ROWSPEC, FormSpecs.LABEL_COMPONENT_GAP_ROWSPEC, }));
 
     label = new JLabel();
@@ -135,10 +140,14 @@ public class StatusBar extends JPanel implements TmmTaskListener {
     memory = new JLabel(printMemory());
     add(memory, "2, 2");
 
-    add(verticalStrut, "4, 2");
-    add(label, "5, 2");
-    add(bar, "7, 2");
-    add(closeButton, "9, 2");
+    imageCache = new JLabel();
+    updateImageCache();
+    add(imageCache, "4, 2");
+
+    add(verticalStrut, "6, 2");
+    add(label, "7, 2");
+    add(bar, "9, 2");
+    add(closeButton, "11, 2");
 
     label.setVisible(false);
     bar.setVisible(false);
@@ -177,7 +186,7 @@ public class StatusBar extends JPanel implements TmmTaskListener {
         dialog.setVisible(true);
       }
     });
-    add(btnNotifications, "11, 2");
+    add(btnNotifications, "13, 2");
 
     PropertyChangeListener propertyChangeListener = new PropertyChangeListener() {
       @Override
@@ -203,6 +212,7 @@ public class StatusBar extends JPanel implements TmmTaskListener {
       @Override
       public void actionPerformed(ActionEvent e) {
         memory.setText(printMemory());
+        updateImageCache();
       }
     };
     m.addActionListener(listener);
@@ -373,6 +383,16 @@ public class StatusBar extends JPanel implements TmmTaskListener {
     }
   }
 
+  private void updateImageCache() {
+    ImageCacheIndex index = ImageCacheIndex.getInstance();
+    long size = index.getSize();
+    int maxSize = Globals.settings.getImageCacheSize();
+    imageCache.setText(String.format(BUNDLE.getString("imagecache.status"), size >= 0 ? FileUtils.byteCountToDisplaySize(size) : "-", //$NON-NLS-1$
+        maxSize > 0 ? FileUtils.byteCountToDisplaySize(maxSize * 1024L * 1024L) : "-", index.getHitRate()));
+    imageCache.setToolTipText(String.format(BUNDLE.getString("imagecache.statistics"), index.getHits(), //$NON-NLS-1$
+        FileUtils.byteCountToDisplaySize(index.getBytesServed()), index.getMisses(), FileUtils.byteCountToDisplaySize(index.getBytesWritten())));
+  }
+
   private String printMemory() {
     Runtime rt = Runtime.getRuntime();
     long totalMem = rt.totalMemory();
@@ -15,11 +15,7 @@
  */
 package org.tinymediamanager.ui.movies;
 
-import java.text.Collator;
-import java.text.Normalizer;
-import java.text.RuleBasedCollator;
 import java.util.Comparator;
-import java.util.Locale;
 
 import org.tinymediamanager.core.movie.entities.Movie;
 
@@ -29,27 +25,9 @@ import org.tinymediamanager.core.movie.entities.Movie;
  * @author Manuel Laggner
  */
 public class MovieComparator implements Comparator<Movie> {
-  private Collator stringCollator;
-
-  public MovieComparator() {
-    RuleBasedCollator defaultCollator = (RuleBasedCollator) RuleBasedCollator.getInstance();
-    try {
-      // default collator ignores whitespaces
-      // using hack from http://stackoverflow.com/questions/16567287/java-collation-ignores-space
-      stringCollator = new RuleBasedCollator(defaultCollator.getRules().replace("<'\u005f'", "<' '<'\u005f'"));
-    }
-    catch (Exception e) {
-      stringCollator = defaultCollator;
-    }
-  }
 
   @Override
   public int compare(Movie movie1, Movie movie2) {
-    if (stringCollator != null) {
-      String titleMovie1 = Normalizer.normalize(movie1.getTitleSortable().toLowerCase(Locale.ROOT), Normalizer.Form.NFD);
-      String titleMovie2 = Normalizer.normalize(movie2.getTitleSortable().toLowerCase(Locale.ROOT), Normalizer.Form.NFD);
-      return stringCollator.compare(titleMovie1, titleMovie2);
-    }
-    return movie1.getTitleSortable().toLowerCase(Locale.ROOT).compareTo(movie2.getTitleSortable().toLowerCase(Locale.ROOT));
+    return movie1.getTitleSortableKey().compareTo(movie2.getTitleSortableKey());
   }
 }
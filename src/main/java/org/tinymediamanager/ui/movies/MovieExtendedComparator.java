@@ -15,12 +15,9 @@
  */
 package org.tinymediamanager.ui.movies;
 
-import java.text.RuleBasedCollator;
 import java.util.Comparator;
-import java.util.Locale;
 import java.util.ResourceBundle;
 
-import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tinymediamanager.core.movie.entities.Movie;
@@ -32,12 +29,11 @@ import org.tinymediamanager.ui.UTF8Control;
  * @author Manuel Laggner
  */
 public class MovieExtendedComparator implements Comparator<Movie> {
-  private static final ResourceBundle BUNDLE         = ResourceBundle.getBundle("messages", new UTF8Control()); //$NON-NLS-1$
-  private static final Logger         LOGGER         = LoggerFactory.getLogger(MovieExtendedComparator.class);
+  private static final ResourceBundle BUNDLE = ResourceBundle.getBundle("messages", new UTF8Control()); //$NON-NLS-1$
+  private static final Logger         LOGGER = LoggerFactory.getLogger(MovieExtendedComparator.class);
 
   private SortColumn                  sortColumn;
   private boolean                     sortAscending;
-  private RuleBasedCollator           stringCollator = (RuleBasedCollator) RuleBasedCollator.getInstance();
 
   public enum SortColumn {
     TITLE(BUNDLE.getString("metatag.title")), //$NON-NLS-1$ ,
@@ -139,19 +135,18 @@ public class MovieExtendedComparator implements Comparator<Movie> {
       // try to sort the chosen column
       switch (sortColumn) {
         case TITLE:
-          sortOrder = stringCollator.compare(movie1.getTitleSortable().toLowerCase(Locale.ROOT), movie2.getTitleSortable().toLowerCase(Locale.ROOT));
+          sortOrder = movie1.getTitleSortableKey().compareTo(movie2.getTitleSortableKey());
           break;
 
         case SORT_TITLE:
-          String title1 = StringUtils.isNotBlank(movie1.getSortTitle()) ? movie1.getSortTitle() : movie1.getTitleSortable();
-          String title2 = StringUtils.isNotBlank(movie2.getSortTitle()) ? movie2.getSortTitle() : movie2.getTitleSortable();
-          sortOrder = stringCollator.compare(title1.toLowerCase(Locale.ROOT), title2.toLowerCase(Locale.ROOT));
+          sortOrder = movie1.getSortTitleKey().compareTo(movie2.getSortTitleKey());
           break;
 
         case YEAR:
           sortOrder = compareNullFirst(movie1.getYear(), movie2.getYear());
           if (sortOrder == 0) {
-            sortOrder = stringCollator.compare(movie1.getYear(), movie2.getYear());
+            // years only consist of digits; no need for a collator here
+            sortOrder = movie1.getYear().compareTo(movie2.getYear());
           }
           break;
 
@@ -15,22 +15,18 @@
  */
 package org.tinymediamanager.ui.movies;
 
-import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Pattern;
 
-import org.apache.commons.lang3.StringUtils;
 import org.tinymediamanager.core.MediaFileType;
 import org.tinymediamanager.core.MediaSource;
 import org.tinymediamanager.core.entities.MediaFile;
 import org.tinymediamanager.core.entities.MediaFileAudioStream;
+import org.tinymediamanager.core.movie.MovieFilterIndex;
+import org.tinymediamanager.core.movie.MovieList;
 import org.tinymediamanager.core.movie.MovieSearchOptions;
 import org.tinymediamanager.core.movie.entities.Movie;
-import org.tinymediamanager.core.movie.entities.MovieActor;
-import org.tinymediamanager.core.movie.entities.MovieProducer;
-import org.tinymediamanager.scraper.entities.Certification;
-import org.tinymediamanager.scraper.entities.MediaGenres;
 
 import ca.odell.glazedlists.matchers.Matcher;
 
@@ -40,7 +36,10 @@ import ca.odell.glazedlists.matchers.Matcher;
  * @author Manuel Laggner
  */
 public class MovieExtendedMatcher implements Matcher<Movie> {
-  private Map<MovieSearchOptions, Object> searchOptions;
+  private final Map<MovieSearchOptions, Object> searchOptions;
+  private final MovieFilterIndex                filterIndex;
+  private BitSet                                indexResult  = null;
+  private int                                   indexVersion = -1;
 
   /**
    * Instantiates a new movies extended matcher.
@@ -50,6 +49,7 @@ public class MovieExtendedMatcher implements Matcher<Movie> {
    */
   public MovieExtendedMatcher(final Map<MovieSearchOptions, Object> searchOptions) {
     this.searchOptions = searchOptions;
+    this.filterIndex = MovieList.getInstance().getFilterIndex();
   }
 
   @Override
@@ -59,86 +59,9 @@ public class MovieExtendedMatcher implements Matcher<Movie> {
       return false;
     }
 
-    // check duplicates
-    if (searchOptions.containsKey(MovieSearchOptions.DUPLICATES)) {
-      if (!movie.isDuplicate()) {
-        return false;
-      }
-    }
-
-    // check against watched flag
-    if (searchOptions.containsKey(MovieSearchOptions.WATCHED)) {
-      boolean watched = (Boolean) searchOptions.get(MovieSearchOptions.WATCHED);
-      boolean result = !(movie.isWatched() ^ watched);
-      if (result == false) {
-        return false;
-      }
-    }
-
-    // check against genre
-    if (searchOptions.containsKey(MovieSearchOptions.GENRE)) {
-      MediaGenres genre = (MediaGenres) searchOptions.get(MovieSearchOptions.GENRE);
-      if (!movie.getGenres().contains(genre)) {
-        return false;
-      }
-    }
-
-    // check against certification
-    if (searchOptions.containsKey(MovieSearchOptions.CERTIFICATION)) {
-      Certification cert = (Certification) searchOptions.get(MovieSearchOptions.CERTIFICATION);
-      if (cert != movie.getCertification()) {
-        return false;
-      }
-    }
-
-    // check against cast member
-    if (searchOptions.containsKey(MovieSearchOptions.CAST)) {
-      String castSearch = (String) searchOptions.get(MovieSearchOptions.CAST);
-      if (!containsCast(movie, castSearch)) {
-        return false;
-      }
-    }
-
-    // check against tag
-    if (searchOptions.containsKey(MovieSearchOptions.TAG) && searchOptions.get(MovieSearchOptions.TAG) instanceof List) {
-      List<Object> tags = (List) searchOptions.get(MovieSearchOptions.TAG);
-      if (!containsTag(movie, tags)) {
-        return false;
-      }
-    }
-
-    // check against MOVIESET
-    if (searchOptions.containsKey(MovieSearchOptions.MOVIESET)) {
-      Boolean isInSet = (Boolean) searchOptions.get(MovieSearchOptions.MOVIESET);
-      if ((movie.getMovieSet() != null) != isInSet) {
-        return false;
-      }
-    }
-
-    // check against video format
-    if (searchOptions.containsKey(MovieSearchOptions.VIDEO_FORMAT)) {
-      String videoFormat = (String) searchOptions.get(MovieSearchOptions.VIDEO_FORMAT);
-      if (videoFormat == MediaFile.VIDEO_FORMAT_HD || videoFormat == MediaFile.VIDEO_FORMAT_SD) {
-        if (videoFormat == MediaFile.VIDEO_FORMAT_HD && !isVideoHD(movie.getMediaInfoVideoFormat())) {
-          return false;
-        }
-        if (videoFormat == MediaFile.VIDEO_FORMAT_SD && isVideoHD(movie.getMediaInfoVideoFormat())) {
-          return false;
-        }
-      }
-      else {
-        if (videoFormat != movie.getMediaInfoVideoFormat()) {
-          return false;
-        }
-      }
-    }
-
-    // check against video codec
-    if (searchOptions.containsKey(MovieSearchOptions.VIDEO_CODEC)) {
-      String videoCodec = (String) searchOptions.get(MovieSearchOptions.VIDEO_CODEC);
-      if (!videoCodec.equals(movie.getMediaInfoVideoCodec())) {
-        return false;
-      }
+    // check against all indexed filters (duplicates, watched, genre, certification, cast, tag, movie set, video format/codec, offline)
+    if (!matchesIndex(movie)) {
+      return false;
     }
 
     // check against audio codec
@@ -208,31 +131,28 @@ public class MovieExtendedMatcher implements Matcher<Movie> {
       }
     }
 
-    // check offline
-    if (searchOptions.containsKey(MovieSearchOptions.OFFLINE)) {
-      Boolean offline = (Boolean) searchOptions.get(MovieSearchOptions.OFFLINE);
-      if (movie.isOffline() != offline) {
-        return false;
-      }
-    }
-
     return true;
   }
 
-  private boolean isVideoHD(final String videoFormat) {
-    if (MediaFile.VIDEO_FORMAT_720P.equals(videoFormat)) {
-      return true;
-    }
-    if (MediaFile.VIDEO_FORMAT_1080P.equals(videoFormat)) {
-      return true;
-    }
-    if (MediaFile.VIDEO_FORMAT_4K.equals(videoFormat)) {
-      return true;
+  /**
+   * check the movie against the result of the filter index; the result is calculated once per index version rather than once per movie
+   * 
+   * @param movie
+   *          the movie to check
+   * @return true if the movie matches all indexed filters
+   */
+  private synchronized boolean matchesIndex(final Movie movie) {
+    int slot = filterIndex.getSlot(movie);
+    if (slot < 0) {
+      return false;
     }
-    if (MediaFile.VIDEO_FORMAT_8K.equals(videoFormat)) {
-      return true;
+
+    int version = filterIndex.getVersion();
+    if (indexResult == null || version != indexVersion) {
+      indexResult = filterIndex.filter(searchOptions);
+      indexVersion = version;
     }
-    return false;
+    return indexResult.get(slot);
   }
 
   private boolean containsAudioCodec(final Movie movie, final String codec) {
@@ -251,67 +171,4 @@ public class MovieExtendedMatcher implements Matcher<Movie> {
 
     return false;
   }
-
-  private boolean containsTag(final Movie movie, final List<?> tags) {
-    List<String> cleanedTags = new ArrayList<>();
-
-    // cleanup the tags list
-    for (Object obj : tags) {
-      if (obj instanceof String && StringUtils.isNotBlank((String) obj)) {
-        cleanedTags.add((String) obj);
-      }
-    }
-
-    // special check for empty tags
-    if (cleanedTags.isEmpty()) {
-      return movie.getTags().isEmpty();
-    }
-
-    // check against the movie
-    return movie.getTags().containsAll(cleanedTags);
-  }
-
-  private boolean containsCast(final Movie movie, final String name) {
-    if (StringUtils.isNotEmpty(name)) {
-      Pattern pattern = Pattern.compile("(?i)" + Pattern.quote(name));
-      java.util.regex.Matcher matcher = null;
-
-      // director
-      if (StringUtils.isNotEmpty(movie.getDirector())) {
-        matcher = pattern.matcher(movie.getDirector());
-        if (matcher.find()) {
-          return true;
-        }
-      }
-
-      // writer
-      if (StringUtils.isNotEmpty(movie.getWriter())) {
-        matcher = pattern.matcher(movie.getWriter());
-        if (matcher.find()) {
-          return true;
-        }
-      }
-
-      // actors
-      for (MovieActor cast : movie.getActors()) {
-        if (StringUtils.isNotEmpty(cast.getName())) {
-          matcher = pattern.matcher(cast.getName());
-          if (matcher.find()) {
-            return true;
-          }
-        }
-      }
-
-      // producers
-      for (MovieProducer producer : movie.getProducers()) {
-        if (StringUtils.isNotEmpty(producer.getName())) {
-          matcher = pattern.matcher(producer.getName());
-          if (matcher.find()) {
-            return true;
-          }
-        }
-      }
-    }
-    return false;
-  }
 }
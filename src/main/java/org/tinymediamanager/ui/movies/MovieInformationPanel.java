@@ -73,10 +73,13 @@ public class MovieInformationPanel extends JPanel {
   /**
    * @wbp.nls.resourceBundle messages
    */
-  private static final ResourceBundle BUNDLE           = ResourceBundle.getBundle("messages", new UTF8Control()); //$NON-NLS-1$
+  private static final ResourceBundle BUNDLE            = ResourceBundle.getBundle("messages", new UTF8Control()); //$NON-NLS-1$
 
   /** The Constant serialVersionUID. */
-  private static final long           serialVersionUID = -8527284262749511617L;
+  private static final long           serialVersionUID  = -8527284262749511617L;
+
+  /** The amount of movies above/below the selected one whose artwork is loaded in advance. */
+  private static final int            PREFETCH_DISTANCE = 2;
 
   /** The split pane vertical. */
   private JSplitPane                  splitPaneVertical;
@@ -353,6 +356,9 @@ public class MovieInformationPanel extends JPanel {
             }
             lblMovieBackground.setImagePath(movie.getArtworkFilename(MediaFileType.FANART));
             lblMoviePoster.setImagePath(movie.getArtworkFilename(MediaFileType.POSTER));
+            if (source instanceof MovieSelectionModel) {
+              prefetchArtwork(((MovieSelectionModel) source).getNeighbourMovies(PREFETCH_DISTANCE));
+            }
 
             synchronized (mediaFiles) {
               mediaFiles.clear();
@@ -390,6 +396,23 @@ public class MovieInformationPanel extends JPanel {
     movieSelectionModel.addPropertyChangeListener(propertyChangeListener);
   }
 
+  /**
+   * load the artwork of the given movies in the background to have it available when the selection moves on
+   * 
+   * @param movies
+   *          the movies to load the artwork for
+   */
+  private void prefetchArtwork(List<Movie> movies) {
+    List<String> fanarts = new ArrayList<>();
+    List<String> posters = new ArrayList<>();
+    for (Movie movie : movies) {
+      fanarts.add(movie.getArtworkFilename(MediaFileType.FANART));
+      posters.add(movie.getArtworkFilename(MediaFileType.POSTER));
+    }
+    lblMovieBackground.prefetch(fanarts);
+    lblMoviePoster.prefetch(posters);
+  }
+
   /**
    * Gets the split pane vertical.
    * 
@@ -116,7 +116,6 @@ import ca.odell.glazedlists.matchers.MatcherEditor;
 import ca.odell.glazedlists.swing.DefaultEventTableModel;
 import ca.odell.glazedlists.swing.GlazedListsSwing;
 import ca.odell.glazedlists.swing.TableComparatorChooser;
-import ca.odell.glazedlists.swing.TextComponentMatcherEditor;
 
 /**
  * The Class MoviePanel.
@@ -307,7 +306,7 @@ public class MoviePanel extends JPanel {
     // table = new JTable();
     // build JTable
 
-    MatcherEditor<Movie> textMatcherEditor = new TextComponentMatcherEditor<>(textField, new MovieFilterator());
+    MatcherEditor<Movie> textMatcherEditor = new MovieTitleMatcherEditor(textField);
     MovieMatcherEditor movieMatcherEditor = new MovieMatcherEditor();
     FilterList<Movie> extendedFilteredMovies = new FilterList<>(sortedMovies, movieMatcherEditor);
     textFilteredMovies = new FilterList<>(extendedFilteredMovies, textMatcherEditor);
@@ -17,6 +17,7 @@ package org.tinymediamanager.ui.movies;
 
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
@@ -55,6 +56,9 @@ public class MovieSelectionModel extends AbstractModelObject implements ListSele
   /** The selection model. */
   private DefaultEventSelectionModel<Movie> selectionModel;
 
+  /** The movies in the order of the table. */
+  private EventList<Movie>                  movies;
+
   /** The matcher editor. */
   private MovieMatcherEditor                matcherEditor;
 
@@ -79,6 +83,7 @@ public class MovieSelectionModel extends AbstractModelObject implements ListSele
    */
   public MovieSelectionModel(SortedList<Movie> sortedList, EventList<Movie> source, MovieMatcherEditor matcher) {
     this.sortedList = sortedList;
+    this.movies = source;
     this.selectionModel = new DefaultEventSelectionModel<>(source);
     this.selectionModel.addListSelectionListener(this);
     this.matcherEditor = matcher;
@@ -201,6 +206,41 @@ public class MovieSelectionModel extends AbstractModelObject implements ListSele
     return selectedMovie;
   }
 
+  /**
+   * Gets the movies next to the selected movie (in the order of the table); nearest first
+   * 
+   * @param distance
+   *          how many movies above and below the selected one
+   * @return the neighbours of the selected movie
+   */
+  public List<Movie> getNeighbourMovies(int distance) {
+    List<Movie> neighbours = new ArrayList<>();
+    if (selectionModel == null || movies == null) {
+      return neighbours;
+    }
+
+    int index = selectionModel.getLeadSelectionIndex();
+    if (index < 0) {
+      return neighbours;
+    }
+
+    movies.getReadWriteLock().readLock().lock();
+    try {
+      for (int i = 1; i <= distance; i++) {
+        if (index + i < movies.size()) {
+          neighbours.add(movies.get(index + i));
+        }
+        if (index - i >= 0 && index - i < movies.size()) {
+          neighbours.add(movies.get(index - i));
+        }
+      }
+    }
+    finally {
+      movies.getReadWriteLock().readLock().unlock();
+    }
+    return neighbours;
+  }
+
   /**
    * Gets the selected movies.
    * 
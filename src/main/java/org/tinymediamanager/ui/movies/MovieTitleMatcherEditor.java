@@ -0,0 +1,101 @@
+/*
+ * Copyright 2012 - 2018 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.ui.movies;
+
+import java.util.BitSet;
+
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.JTextComponent;
+
+import org.apache.commons.lang3.StringUtils;
+import org.tinymediamanager.core.movie.MovieFilterIndex;
+import org.tinymediamanager.core.movie.MovieList;
+import org.tinymediamanager.core.movie.entities.Movie;
+
+import ca.odell.glazedlists.matchers.AbstractMatcherEditor;
+import ca.odell.glazedlists.matchers.Matcher;
+
+/**
+ * The class MovieTitleMatcherEditor is used to search movies by their title/original title. The search is done via the title index of the
+ * MovieFilterIndex
+ * 
+ * @author Manuel Laggner
+ */
+public class MovieTitleMatcherEditor extends AbstractMatcherEditor<Movie> implements DocumentListener {
+  private final JTextComponent   textComponent;
+  private final MovieFilterIndex filterIndex;
+
+  public MovieTitleMatcherEditor(JTextComponent textComponent) {
+    this.textComponent = textComponent;
+    this.filterIndex = MovieList.getInstance().getFilterIndex();
+    this.textComponent.getDocument().addDocumentListener(this);
+    refilter();
+  }
+
+  @Override
+  public void insertUpdate(DocumentEvent e) {
+    refilter();
+  }
+
+  @Override
+  public void removeUpdate(DocumentEvent e) {
+    refilter();
+  }
+
+  @Override
+  public void changedUpdate(DocumentEvent e) {
+    refilter();
+  }
+
+  private void refilter() {
+    String text = textComponent.getText();
+    if (StringUtils.isBlank(text)) {
+      fireMatchAll();
+    }
+    else {
+      fireChanged(new TitleMatcher(text));
+    }
+  }
+
+  /**
+   * the matcher for one search text; the result of the index is calculated once per index version
+   */
+  private class TitleMatcher implements Matcher<Movie> {
+    private final String text;
+    private BitSet       result  = null;
+    private int          version = -1;
+
+    private TitleMatcher(String text) {
+      this.text = text;
+    }
+
+    @Override
+    public synchronized boolean matches(Movie movie) {
+      int slot = filterIndex.getSlot(movie);
+      if (slot < 0) {
+        return false;
+      }
+
+      int currentVersion = filterIndex.getVersion();
+      if (result == null || currentVersion != version) {
+        result = filterIndex.filterTitle(text);
+        version = currentVersion;
+      }
+      return result.get(slot);
+    }
+  }
+}
@@ -132,15 +132,13 @@ public class MovieSetChooserModel extends AbstractModelObject {
    * Match with existing movies.
    */
   public void matchWithExistingMovies() {
-    List<Movie> moviesFromMovieList = MovieList.getInstance().getMovies();
+    MovieList movieList = MovieList.getInstance();
     for (MovieInSet mis : movies) {
       // try to match via tmdbid
       if (mis.tmdbId > 0) {
-        for (Movie movie : moviesFromMovieList) {
-          if (movie.getTmdbId() == mis.tmdbId) {
-            mis.setMovie(movie);
-            break;
-          }
+        List<Movie> moviesWithTmdbId = movieList.getMoviesByTmdbId(mis.tmdbId);
+        if (!moviesWithTmdbId.isEmpty()) {
+          mis.setMovie(moviesWithTmdbId.get(0));
         }
       }
 
@@ -166,11 +164,9 @@ public class MovieSetChooserModel extends AbstractModelObject {
         }
 
         if (StringUtils.isNotEmpty(mis.imdbId)) {
-          for (Movie movie : moviesFromMovieList) {
-            if (mis.imdbId.equals(movie.getImdbId())) {
-              mis.setMovie(movie);
-              break;
-            }
+          List<Movie> moviesWithImdbId = movieList.getMoviesByImdbId(mis.imdbId);
+          if (!moviesWithImdbId.isEmpty()) {
+            mis.setMovie(moviesWithImdbId.get(0));
           }
         }
       }
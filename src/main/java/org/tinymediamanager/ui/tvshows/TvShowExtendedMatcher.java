@@ -17,6 +17,7 @@ package org.tinymediamanager.ui.tvshows;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -28,6 +29,8 @@ import org.apache.commons.lang3.StringUtils;
 import org.tinymediamanager.core.MediaFileType;
 import org.tinymediamanager.core.MediaSource;
 import org.tinymediamanager.core.entities.MediaFile;
+import org.tinymediamanager.core.tvshow.TvShowFilterIndex;
+import org.tinymediamanager.core.tvshow.TvShowList;
 import org.tinymediamanager.core.tvshow.entities.TvShow;
 import org.tinymediamanager.core.tvshow.entities.TvShowActor;
 import org.tinymediamanager.core.tvshow.entities.TvShowEpisode;
@@ -60,12 +63,50 @@ public class TvShowExtendedMatcher {
 
   Map<SearchOptions, Object> searchOptions = Collections.synchronizedMap(new HashMap<SearchOptions, Object>());
 
+  // the patterns of the text filters are compiled once per filter text rather than once per node
+  private final Map<String, Pattern> patterns     = new HashMap<>();
+
+  private final TvShowFilterIndex    filterIndex  = TvShowList.getInstance().getFilterIndex();
+  private BitSet                     indexResult  = null;
+  private int                        indexVersion = -1;
+
+  /**
+   * set the filter for the given option (and invalidate the cached result of the filter index)
+   * 
+   * @param option
+   *          the search option
+   * @param filterArg
+   *          the value of the filter
+   */
+  synchronized void setFilter(SearchOptions option, Object filterArg) {
+    searchOptions.put(option, filterArg);
+    indexResult = null;
+  }
+
+  /**
+   * remove the filter for the given option (and invalidate the cached result of the filter index)
+   * 
+   * @param option
+   *          the search option
+   */
+  synchronized void removeFilter(SearchOptions option) {
+    searchOptions.remove(option);
+    indexResult = null;
+  }
+
   public boolean matches(final Object bean) {
     // do nothing if there's nothing to filter
     if (searchOptions.isEmpty()) {
       return true;
     }
 
+    // a season or an episode can only match if its TV show matches the indexed filters
+    if (bean instanceof TvShow || bean instanceof TvShowSeason || bean instanceof TvShowEpisode) {
+      if (!matchesIndex(bean)) {
+        return false;
+      }
+    }
+
     // if the node is a TvShowNode, we have to check the TvShow and all episodes within it
     if (bean instanceof TvShow) {
       TvShow show = (TvShow) bean;
@@ -89,6 +130,7 @@ public class TvShowExtendedMatcher {
   }
 
   private boolean tvShowFilterMatch(TvShow tvShow) {
+    // genre, watched, cast and codecs have already been checked by the filter index
     if (searchOptions.containsKey(SearchOptions.TEXT)) {
       if (!filterText(tvShow, (String) searchOptions.get(SearchOptions.TEXT))) {
         return false;
@@ -107,12 +149,6 @@ public class TvShowExtendedMatcher {
       }
     }
 
-    if (searchOptions.containsKey(SearchOptions.CAST)) {
-      if (!filterCrew(tvShow, (String) searchOptions.get(SearchOptions.CAST))) {
-        return false;
-      }
-    }
-
     if (searchOptions.containsKey(SearchOptions.MISSING_METADATA)) {
       if (!filterMissingMetadata(tvShow)) {
         return false;
@@ -137,36 +173,13 @@ public class TvShowExtendedMatcher {
       }
     }
 
-    if (searchOptions.containsKey(SearchOptions.WATCHED)) {
-      if (!filterWatched(tvShow, (Boolean) searchOptions.get(SearchOptions.WATCHED))) {
-        return false;
-      }
-    }
-
-    if (searchOptions.containsKey(SearchOptions.GENRE)) {
-      if (!filterGenre(tvShow, (MediaGenres) searchOptions.get(SearchOptions.GENRE))) {
-        return false;
-      }
-    }
-
+    // the index cannot tell whether all tags are on the same episode
     if (searchOptions.containsKey(SearchOptions.TAG) && searchOptions.get(SearchOptions.TAG) instanceof List) {
       if (!filterTag(tvShow, (List) searchOptions.get(SearchOptions.TAG))) {
         return false;
       }
     }
 
-    if (searchOptions.containsKey(SearchOptions.VIDEO_CODEC)) {
-      if (!filterVideoCodec(tvShow, (String) searchOptions.get(SearchOptions.VIDEO_CODEC))) {
-        return false;
-      }
-    }
-
-    if (searchOptions.containsKey(SearchOptions.AUDIO_CODEC)) {
-      if (!filterAudioCodec(tvShow, (String) searchOptions.get(SearchOptions.AUDIO_CODEC))) {
-        return false;
-      }
-    }
-
     if (searchOptions.containsKey(SearchOptions.VIDEO_FORMAT)) {
       if (!filterVideoFormat(tvShow, (String) searchOptions.get(SearchOptions.VIDEO_FORMAT))) {
         return false;
@@ -374,10 +387,6 @@ public class TvShowExtendedMatcher {
     return matchesMediaSource(episode.getTvShow(), Arrays.asList(episode), mediaSource);
   }
 
-  private boolean filterCrew(TvShow tvShow, String filterText) {
-    return matchesCrew(tvShow, new ArrayList<>(tvShow.getEpisodes()), filterText);
-  }
-
   private boolean filterCrew(TvShowSeason season, String filterText) {
     return matchesCrew(season.getTvShow(), new ArrayList<>(season.getEpisodes()), filterText);
   }
@@ -434,10 +443,6 @@ public class TvShowExtendedMatcher {
     return episode.isNewlyAdded();
   }
 
-  private boolean filterWatched(TvShow tvShow, Boolean watched) {
-    return matchesWatched(new ArrayList<>(tvShow.getEpisodes()), watched);
-  }
-
   private boolean filterWatched(TvShowSeason season, Boolean watched) {
     return matchesWatched(new ArrayList<>(season.getEpisodes()), watched);
   }
@@ -446,10 +451,6 @@ public class TvShowExtendedMatcher {
     return matchesWatched(Arrays.asList(episode), watched);
   }
 
-  private boolean filterGenre(TvShow tvShow, MediaGenres genre) {
-    return matchesGenre(tvShow, genre);
-  }
-
   private boolean filterGenre(TvShowSeason season, MediaGenres genre) {
     return matchesGenre(season.getTvShow(), genre);
   }
@@ -470,10 +471,6 @@ public class TvShowExtendedMatcher {
     return matchesTag(episode.getTvShow(), Arrays.asList(episode), tags);
   }
 
-  private boolean filterVideoCodec(TvShow tvShow, String codec) {
-    return matchesVideoCodec(tvShow, new ArrayList<>(tvShow.getEpisodes()), codec);
-  }
-
   private boolean filterVideoCodec(TvShowSeason season, String codec) {
     return matchesVideoCodec(season.getTvShow(), new ArrayList<>(season.getEpisodes()), codec);
   }
@@ -482,10 +479,6 @@ public class TvShowExtendedMatcher {
     return matchesVideoCodec(episode.getTvShow(), Arrays.asList(episode), codec);
   }
 
-  private boolean filterAudioCodec(TvShow tvShow, String codec) {
-    return matchesAudioCodec(tvShow, new ArrayList<>(tvShow.getEpisodes()), codec);
-  }
-
   private boolean filterAudioCodec(TvShowSeason season, String codec) {
     return matchesAudioCodec(season.getTvShow(), new ArrayList<>(season.getEpisodes()), codec);
   }
@@ -511,7 +504,7 @@ public class TvShowExtendedMatcher {
       return true;
     }
 
-    Pattern pattern = Pattern.compile("(?i)" + Pattern.quote(filterText));
+    Pattern pattern = getPattern(filterText);
 
     // first: filter on the TV show title
     Matcher matcher = pattern.matcher(tvShow.getTitle());
@@ -536,7 +529,7 @@ public class TvShowExtendedMatcher {
       return true;
     }
 
-    Pattern pattern = Pattern.compile("(?i)" + Pattern.quote(filterText));
+    Pattern pattern = getPattern(filterText);
 
     // first: filter on the base cast of the TV show
     for (TvShowActor actor : tvShow.getActors()) {
@@ -736,4 +729,80 @@ public class TvShowExtendedMatcher {
     }
     return false;
   }
+
+  /**
+   * check the TV show of the given node against the result of the filter index; the result is calculated once per index version and filter
+   * rather than once per node
+   * 
+   * @param bean
+   *          the TV show, season or episode to check
+   * @return true if the TV show matches all indexed filters
+   */
+  private synchronized boolean matchesIndex(final Object bean) {
+    TvShow tvShow;
+    if (bean instanceof TvShowSeason) {
+      tvShow = ((TvShowSeason) bean).getTvShow();
+    }
+    else if (bean instanceof TvShowEpisode) {
+      tvShow = ((TvShowEpisode) bean).getTvShow();
+    }
+    else {
+      tvShow = (TvShow) bean;
+    }
+
+    int slot = tvShow != null ? filterIndex.getSlot(tvShow) : -1;
+    if (slot < 0) {
+      return false;
+    }
+
+    int version = filterIndex.getVersion();
+    if (indexResult == null || version != indexVersion) {
+      indexResult = filterByIndex();
+      indexVersion = version;
+    }
+    return indexResult.get(slot);
+  }
+
+  private BitSet filterByIndex() {
+    BitSet result = filterIndex.getAll();
+
+    if (searchOptions.containsKey(SearchOptions.WATCHED)) {
+      result.and(filterIndex.filterWatched((Boolean) searchOptions.get(SearchOptions.WATCHED)));
+    }
+
+    if (searchOptions.containsKey(SearchOptions.GENRE)) {
+      result.and(filterIndex.filterGenre((MediaGenres) searchOptions.get(SearchOptions.GENRE)));
+    }
+
+    if (searchOptions.containsKey(SearchOptions.CAST)) {
+      result.and(filterIndex.filterCast((String) searchOptions.get(SearchOptions.CAST)));
+    }
+
+    if (searchOptions.containsKey(SearchOptions.TAG) && searchOptions.get(SearchOptions.TAG) instanceof List) {
+      result.and(filterIndex.filterTags((List<?>) searchOptions.get(SearchOptions.TAG)));
+    }
+
+    if (searchOptions.containsKey(SearchOptions.VIDEO_CODEC)) {
+      result.and(filterIndex.filterVideoCodec((String) searchOptions.get(SearchOptions.VIDEO_CODEC)));
+    }
+
+    if (searchOptions.containsKey(SearchOptions.AUDIO_CODEC)) {
+      result.and(filterIndex.filterAudioCodec((String) searchOptions.get(SearchOptions.AUDIO_CODEC)));
+    }
+
+    return result;
+  }
+
+  private synchronized Pattern getPattern(String filterText) {
+    Pattern pattern = patterns.get(filterText);
+    if (pattern == null) {
+      // only the patterns of the current filters are needed
+      if (patterns.size() > 16) {
+        patterns.clear();
+      }
+      pattern = Pattern.compile("(?i)" + Pattern.quote(filterText));
+      patterns.put(filterText, pattern);
+    }
+    return pattern;
+  }
 }
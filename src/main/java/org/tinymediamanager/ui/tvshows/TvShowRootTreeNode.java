@@ -16,10 +16,8 @@
 
 package org.tinymediamanager.ui.tvshows;
 
-import java.text.RuleBasedCollator;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.Locale;
 
 import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.MutableTreeNode;
@@ -35,7 +33,6 @@ import org.tinymediamanager.core.tvshow.entities.TvShow;
 public class TvShowRootTreeNode extends DefaultMutableTreeNode {
   private static final long    serialVersionUID = 6510900885675830369L;
 
-  private RuleBasedCollator    stringCollator   = (RuleBasedCollator) RuleBasedCollator.getInstance();
   private Comparator<TreeNode> nodeComparator;
 
   /**
@@ -53,10 +50,7 @@ public class TvShowRootTreeNode extends DefaultMutableTreeNode {
           TvShow tvShow1 = (TvShow) node1.getUserObject();
           TvShowTreeNode node2 = (TvShowTreeNode) o2;
           TvShow tvShow2 = (TvShow) node2.getUserObject();
-          if (stringCollator != null) {
-            return stringCollator.compare(tvShow1.getTitleSortable().toLowerCase(Locale.ROOT), tvShow2.getTitleSortable().toLowerCase(Locale.ROOT));
-          }
-          return tvShow1.getTitleSortable().compareToIgnoreCase(tvShow2.getTitleSortable());
+          return tvShow1.getTitleSortableKey().compareTo(tvShow2.getTitleSortableKey());
         }
         return o1.toString().compareToIgnoreCase(o2.toString());
       }
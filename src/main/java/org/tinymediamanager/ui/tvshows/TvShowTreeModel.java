@@ -542,16 +542,11 @@ public class TvShowTreeModel implements TreeModel {
   }
 
   public void setFilter(SearchOptions option, Object filterArg) {
-    if (matcher.searchOptions.containsKey(option)) {
-      matcher.searchOptions.remove(option);
-    }
-    matcher.searchOptions.put(option, filterArg);
+    matcher.setFilter(option, filterArg);
   }
 
   public void removeFilter(SearchOptions option) {
-    if (matcher.searchOptions.containsKey(option)) {
-      matcher.searchOptions.remove(option);
-    }
+    matcher.removeFilter(option);
   }
 
   public void filter(JTree tree) {
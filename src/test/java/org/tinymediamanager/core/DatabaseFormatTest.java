@@ -0,0 +1,75 @@
+/*
+ * Copyright 2012 - 2018 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.UUID;
+
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+import org.junit.Test;
+import org.tinymediamanager.BasicTest;
+import org.tinymediamanager.core.movie.entities.Movie;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * @author Manuel Laggner
+ */
+public class DatabaseFormatTest extends BasicTest {
+
+  @Test
+  public void testConversion() throws Exception {
+    Path folder = Paths.get(getSettingsFolder());
+    Files.createDirectories(folder);
+    Path db = folder.resolve("movies.db");
+    Files.deleteIfExists(db);
+
+    Movie movie = new Movie();
+    movie.setTitle("Alien");
+    movie.setYear("1979");
+    movie.setImdbId("tt0078748");
+
+    // write a JSON database
+    MVStore mvStore = DatabaseFormat.JSON.configure(new MVStore.Builder().fileName(db.toString())).open();
+    MVMap<UUID, Object> map = mvStore.openMap(DatabaseFormat.JSON.getMapName("movies"));
+    ObjectWriter writer = DatabaseFormat.JSON.createObjectMapper().writerFor(Movie.class);
+    map.put(movie.getDbId(), DatabaseFormat.JSON.encode(writer, movie));
+    mvStore.close();
+
+    // convert it to SMILE (like the module managers at startup) and load it again
+    mvStore = DatabaseFormat.SMILE.configure(new MVStore.Builder().fileName(db.toString())).open();
+    assertThat(DatabaseFormat.convert(mvStore, DatabaseFormat.SMILE, "movies")).isTrue();
+    assertThat(mvStore.getMapNames()).contains("movies.smile").doesNotContain("movies");
+    map = mvStore.openMap(DatabaseFormat.SMILE.getMapName("movies"));
+    assertThat(map.get(movie.getDbId())).isInstanceOf(byte[].class);
+
+    List<Movie> movies = new MediaEntityDatabaseLoader<Movie>(map, DatabaseFormat.SMILE.createObjectMapper().readerFor(Movie.class), "movie")
+        .load();
+    mvStore.close();
+
+    assertThat(movies).hasSize(1);
+    assertThat(movies.get(0).getDbId()).isEqualTo(movie.getDbId());
+    assertThat(movies.get(0).getTitle()).isEqualTo("Alien");
+    assertThat(movies.get(0).getYear()).isEqualTo("1979");
+    assertThat(movies.get(0).getImdbId()).isEqualTo("tt0078748");
+  }
+}
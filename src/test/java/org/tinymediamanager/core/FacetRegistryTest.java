@@ -0,0 +1,54 @@
+package org.tinymediamanager.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.tinymediamanager.BasicTest;
+
+public class FacetRegistryTest extends BasicTest {
+
+  @Test
+  public void testReferenceCounting() {
+    FacetRegistry<String> registry = new FacetRegistry<>("tag");
+    Object owner1 = new Object();
+    Object owner2 = new Object();
+
+    assertThat(registry.set(owner1, Arrays.asList("a", "b", "", null))).isTrue();
+    assertThat(registry.set(owner2, Arrays.asList("b", "c"))).isTrue();
+    assertThat(registry.getValues()).containsOnly("a", "b", "c");
+    assertThat(registry.getCount("b")).isEqualTo(2);
+
+    // no new values -> no change
+    assertThat(registry.set(owner2, Arrays.asList("c", "b", "b"))).isFalse();
+    assertThat(registry.getCount("b")).isEqualTo(2);
+
+    // "a" is not used any more
+    assertThat(registry.set(owner1, Arrays.asList("b"))).isTrue();
+    assertThat(registry.getValues()).containsOnly("b", "c");
+
+    // "b" is still used by owner2
+    assertThat(registry.remove(owner1)).isFalse();
+    assertThat(registry.getValues()).containsOnly("b", "c");
+    assertThat(registry.remove(owner2)).isTrue();
+    assertThat(registry.getValues()).isEmpty();
+  }
+
+  @Test
+  public void testBulk() {
+    FacetRegistry<String> registry = new FacetRegistry<>("tag");
+    Object owner1 = new Object();
+    Object owner2 = new Object();
+
+    registry.beginBulk();
+    assertThat(registry.set(owner1, Arrays.asList("a", "b"))).isFalse();
+    assertThat(registry.set(owner2, "c")).isFalse();
+    assertThat(registry.remove(owner1)).isFalse();
+    assertThat(registry.getValues()).isEmpty();
+
+    // only the remaining changes are applied at the end
+    assertThat(registry.endBulk()).isTrue();
+    assertThat(registry.getValues()).containsExactly("c");
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2012 - 2018 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.commons.io.FileUtils;
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+import org.junit.Test;
+import org.tinymediamanager.BasicTest;
+import org.tinymediamanager.core.entities.MediaFile;
+import org.tinymediamanager.core.movie.entities.Movie;
+import org.tinymediamanager.core.movie.entities.MovieActor;
+import org.tinymediamanager.scraper.entities.MediaGenres;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * Benchmark of the database formats: write and load a synthetic library of 50k movies in every format
+ * 
+ * @author Manuel Laggner
+ */
+public class ITDatabaseFormatBenchmark extends BasicTest {
+  private static final int MOVIES = 50000;
+
+  @Test
+  public void benchmark() throws Exception {
+    Path folder = Paths.get(getSettingsFolder());
+    Files.createDirectories(folder);
+
+    for (DatabaseFormat format : DatabaseFormat.values()) {
+      Path db = folder.resolve("movies." + format.name().toLowerCase() + ".db");
+      Files.deleteIfExists(db);
+
+      // write the library
+      long start = System.currentTimeMillis();
+      MVStore mvStore = format.configure(new MVStore.Builder().fileName(db.toString())).open();
+      MVMap<UUID, Object> map = mvStore.openMap(format.getMapName("movies"));
+      ObjectWriter writer = format.createObjectMapper().writerFor(Movie.class);
+      for (int i = 0; i < MOVIES; i++) {
+        Movie movie = createMovie(i);
+        map.put(movie.getDbId(), format.encode(writer, movie));
+      }
+      mvStore.compactMoveChunks();
+      mvStore.close();
+      long writeTime = System.currentTimeMillis() - start;
+
+      // load the library (like at startup)
+      start = System.currentTimeMillis();
+      mvStore = format.configure(new MVStore.Builder().fileName(db.toString())).open();
+      map = mvStore.openMap(format.getMapName("movies"));
+      List<Movie> movies = new MediaEntityDatabaseLoader<Movie>(map, format.createObjectMapper().readerFor(Movie.class), "movie").load();
+      mvStore.close();
+      long loadTime = System.currentTimeMillis() - start;
+
+      System.out.println(format + ": " + movies.size() + " movies - write: " + writeTime + " ms, load: " + loadTime + " ms, size: "
+          + FileUtils.byteCountToDisplaySize(Files.size(db)));
+    }
+  }
+
+  private Movie createMovie(int i) {
+    Movie movie = new Movie();
+    movie.setTitle("Movie " + i);
+    movie.setOriginalTitle("Original Movie " + i);
+    movie.setPath("/media/movies/Movie " + i);
+    movie.setYear(Integer.toString(1950 + i % 70));
+    movie.setImdbId(String.format("tt%07d", i));
+    movie.setTmdbId(i);
+    movie.setRating(5 + (i % 50) / 10f);
+    movie.setVotes(i * 3);
+    movie.setRuntime(80 + i % 60);
+    movie.setPlot("Plot of movie " + i + ". Lorem ipsum dolor sit amet, consectetur adipiscing elit. Praesent vel lacus libero. "
+        + "Ut vel lacus erat. Maecenas maximus vestibulum ante at efficitur. Sed id ex eget purus commodo feugiat.");
+    movie.setTagline("Tagline " + i);
+    movie.addGenre(MediaGenres.values()[i % MediaGenres.values().length]);
+    for (int j = 0; j < 10; j++) {
+      movie.addActor(new MovieActor("Actor " + (i + j) % 5000, "Character " + j));
+    }
+    movie.addToMediaFiles(new MediaFile(Paths.get("/media/movies/Movie " + i, "Movie " + i + ".mkv")));
+    return movie;
+  }
+}
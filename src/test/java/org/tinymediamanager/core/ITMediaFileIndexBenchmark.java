@@ -0,0 +1,151 @@
+/*
+ * Copyright 2012 - 2018 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.junit.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.tinymediamanager.BasicTest;
+import org.tinymediamanager.core.entities.MediaFile;
+import org.tinymediamanager.core.movie.entities.Movie;
+
+/**
+ * JMH benchmark of the typed media file lookups on a library of 50000 movies: the per-type index of the media entity vs. scanning all
+ * media files (as it has been done before the index)
+ * 
+ * @author Manuel Laggner
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ITMediaFileIndexBenchmark extends BasicTest {
+  private static final int             MOVIES = 50000;
+  private static final MediaFileType[] TYPES  = { MediaFileType.VIDEO, MediaFileType.NFO, MediaFileType.POSTER, MediaFileType.FANART,
+      MediaFileType.SUBTITLE, MediaFileType.TRAILER };
+
+  private List<Movie>                  movies;
+  private List<List<MediaFile>>        mediaFiles;
+  private ReadWriteLock                readWriteLock;
+
+  @Setup
+  public void setup() {
+    movies = new ArrayList<>(MOVIES);
+    mediaFiles = new ArrayList<>(MOVIES);
+    readWriteLock = new ReentrantReadWriteLock();
+
+    for (int i = 0; i < MOVIES; i++) {
+      Movie movie = new Movie();
+      movie.setTitle("Benchmark Movie " + i);
+      movie.setPath("/movies/movie" + i);
+
+      for (MediaFileType type : TYPES) {
+        MediaFile mf = new MediaFile();
+        mf.setType(type);
+        mf.setPath("/movies/movie" + i);
+        mf.setFilename("movie" + i + "-" + type.name().toLowerCase() + ".ext");
+        movie.addToMediaFiles(mf);
+      }
+
+      movies.add(movie);
+      mediaFiles.add(movie.getMediaFiles());
+    }
+  }
+
+  @Benchmark
+  public void indexLookup(Blackhole blackhole) {
+    for (Movie movie : movies) {
+      blackhole.consume(movie.getMediaFiles(MediaFileType.VIDEO));
+      blackhole.consume(movie.getMediaFiles(MediaFileType.SUBTITLE));
+      blackhole.consume(movie.getBiggestMediaFile(MediaFileType.VIDEO));
+    }
+  }
+
+  @Benchmark
+  public void linearScan(Blackhole blackhole) {
+    for (List<MediaFile> mfs : mediaFiles) {
+      blackhole.consume(scan(mfs, MediaFileType.VIDEO));
+      blackhole.consume(scan(mfs, MediaFileType.SUBTITLE));
+      blackhole.consume(biggest(mfs, MediaFileType.VIDEO));
+    }
+  }
+
+  /**
+   * the lookup as it has been implemented in MediaEntity.getMediaFiles(MediaFileType...) before the index
+   */
+  private List<MediaFile> scan(List<MediaFile> mfs, MediaFileType... types) {
+    List<MediaFile> mf = new ArrayList<>();
+    readWriteLock.readLock().lock();
+    for (MediaFile mediaFile : mfs) {
+      boolean match = false;
+      for (MediaFileType type : types) {
+        if (mediaFile.getType().equals(type)) {
+          match = true;
+        }
+      }
+      if (match) {
+        mf.add(mediaFile);
+      }
+    }
+    readWriteLock.readLock().unlock();
+    return mf;
+  }
+
+  /**
+   * the lookup as it has been implemented in MediaEntity.getBiggestMediaFile(MediaFileType...) before the index
+   */
+  private MediaFile biggest(List<MediaFile> mfs, MediaFileType... types) {
+    MediaFile mf = null;
+    readWriteLock.readLock().lock();
+    for (MediaFile mediaFile : mfs) {
+      for (MediaFileType type : types) {
+        if (mediaFile.getType().equals(type)) {
+          if (mf == null || mediaFile.getFilesize() >= mf.getFilesize()) {
+            mf = mediaFile;
+          }
+        }
+      }
+    }
+    readWriteLock.readLock().unlock();
+    return mf;
+  }
+
+  @Test
+  public void benchmark() throws Exception {
+    Options options = new OptionsBuilder().include(ITMediaFileIndexBenchmark.class.getSimpleName()).build();
+    new Runner(options).run();
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2012 - 2018 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.tinymediamanager.BasicTest;
+import org.tinymediamanager.core.entities.MediaFile;
+import org.tinymediamanager.core.movie.MovieRenamer;
+import org.tinymediamanager.core.movie.entities.Movie;
+import org.tinymediamanager.core.tvshow.TvShowRenamer;
+import org.tinymediamanager.core.tvshow.entities.TvShow;
+import org.tinymediamanager.core.tvshow.entities.TvShowEpisode;
+
+/**
+ * JMH benchmark of the renamer templates: create the folder and file names for a library of 1000 movies/episodes
+ * 
+ * @author Manuel Laggner
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ITRenamerTemplateBenchmark extends BasicTest {
+  private static final int    ENTITIES        = 1000;
+  private static final String FOLDER_PATTERN  = "$1/$T { ($Y)}";
+  private static final String FILE_PATTERN    = "$T { ($Y)} $V $A{ - $U}";
+  private static final String EPISODE_PATTERN = "$N - S$2E$E - $T";
+
+  private List<Movie>         movies;
+  private TvShow              tvShow;
+
+  @Setup
+  public void setup() {
+    movies = new ArrayList<>();
+    tvShow = new TvShow();
+    tvShow.setTitle("Benchmark Show");
+
+    for (int i = 0; i < ENTITIES; i++) {
+      MediaFile mf = new MediaFile();
+      mf.setType(MediaFileType.VIDEO);
+      mf.setFilename("movie" + i + ".mkv");
+      mf.setVideoCodec("h264");
+      mf.setVideoHeight(1080);
+      mf.setVideoWidth(1920);
+
+      Movie movie = new Movie();
+      movie.setTitle("Benchmark Movie: Part " + i);
+      movie.setYear(String.valueOf(1950 + i % 70));
+      movie.addToMediaFiles(mf);
+      movies.add(movie);
+
+      TvShowEpisode episode = new TvShowEpisode();
+      episode.setTvShow(tvShow);
+      episode.setTitle("Episode " + i);
+      episode.setSeason(1 + i / 100);
+      episode.setEpisode(1 + i % 100);
+      episode.addToMediaFiles(mf);
+      tvShow.addEpisode(episode);
+    }
+  }
+
+  @Benchmark
+  public void renameMovies(Blackhole blackhole) {
+    for (Movie movie : movies) {
+      blackhole.consume(MovieRenamer.createDestinationForFoldername(FOLDER_PATTERN, movie));
+      blackhole.consume(MovieRenamer.createDestinationForFilename(FILE_PATTERN, movie));
+    }
+  }
+
+  @Benchmark
+  public void renameEpisodes(Blackhole blackhole) {
+    for (TvShowEpisode episode : tvShow.getEpisodes()) {
+      List<TvShowEpisode> episodes = new ArrayList<>();
+      episodes.add(episode);
+      blackhole.consume(TvShowRenamer.createDestination(EPISODE_PATTERN, tvShow, episodes));
+    }
+  }
+
+  @Test
+  public void benchmark() throws Exception {
+    Options options = new OptionsBuilder().include(ITRenamerTemplateBenchmark.class.getSimpleName()).build();
+    new Runner(options).run();
+  }
+}
@@ -0,0 +1,44 @@
+package org.tinymediamanager.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.junit.Test;
+import org.tinymediamanager.BasicTest;
+
+public class NGramIndexTest extends BasicTest {
+
+  @Test
+  public void testSearch() {
+    NGramIndex index = new NGramIndex();
+    index.set(0, Arrays.asList("Keanu Reeves", "Lana Wachowski"));
+    index.set(1, Arrays.asList("Carrie-Anne Moss"));
+    index.set(3, Arrays.asList("Laurence Fishburne", null));
+
+    assertThat(toArray(index.search("reeves"))).containsExactly(0);
+    assertThat(toArray(index.search("ANNE"))).containsExactly(1);
+    // short terms and terms spanning two values
+    assertThat(toArray(index.search("an"))).containsExactly(0, 1);
+    assertThat(toArray(index.search("es lana"))).isEmpty();
+    assertThat(toArray(index.search("xyz"))).isEmpty();
+
+    // changed and removed entries must not be found any more
+    index.set(0, Arrays.asList("Hugo Weaving"));
+    index.remove(1);
+    assertThat(toArray(index.search("reeves"))).isEmpty();
+    assertThat(toArray(index.search("moss"))).isEmpty();
+    assertThat(toArray(index.search("weaving"))).containsExactly(0);
+    assertThat(toArray(index.search("fish"))).containsExactly(3);
+  }
+
+  private int[] toArray(BitSet bitSet) {
+    int[] result = new int[bitSet.cardinality()];
+    int i = 0;
+    for (int bit = bitSet.nextSetBit(0); bit >= 0; bit = bitSet.nextSetBit(bit + 1)) {
+      result[i++] = bit;
+    }
+    return result;
+  }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2012 - 2018 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core.movie;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.tinymediamanager.BasicTest;
+import org.tinymediamanager.core.Constants;
+import org.tinymediamanager.core.MediaFileType;
+import org.tinymediamanager.core.entities.MediaFile;
+import org.tinymediamanager.core.movie.entities.Movie;
+import org.tinymediamanager.core.movie.entities.MovieSet;
+import org.tinymediamanager.scraper.entities.MediaGenres;
+
+/**
+ * @author Manuel Laggner
+ */
+public class MovieFilterIndexTest extends BasicTest {
+  private MovieFilterIndex index;
+  private List<Movie>      movies;
+  private Movie            hdMovie;
+  private Movie            sdMovie;
+  private Movie            noVideo;
+
+  @Before
+  public void setUpIndex() {
+    index = new MovieFilterIndex();
+    movies = new ArrayList<>();
+
+    hdMovie = createMovie("Alien", 1920, 1080);
+    hdMovie.addGenre(MediaGenres.ACTION);
+    hdMovie.addToTags("space");
+    hdMovie.addToTags("classic");
+    hdMovie.setWatched(true);
+    MovieSet movieSet = new MovieSet();
+    movieSet.setTitle("Alien Collection");
+    hdMovie.setMovieSet(movieSet);
+
+    sdMovie = createMovie("Casablanca", 720, 576);
+    sdMovie.addGenre(MediaGenres.DRAMA);
+    sdMovie.addToTags("classic");
+
+    noVideo = createMovie("Metropolis", 0, 0);
+    noVideo.setOffline(true);
+
+    for (Movie movie : Arrays.asList(hdMovie, sdMovie, noVideo)) {
+      index.addMovie(movie);
+      movies.add(movie);
+    }
+  }
+
+  @Test
+  public void testVideoFormat() {
+    // HD = 720p, 1080p, 4k, 8k; SD = everything else (also movies without a video file)
+    assertThat(filter(MovieSearchOptions.VIDEO_FORMAT, MediaFile.VIDEO_FORMAT_HD)).containsExactly(hdMovie);
+    assertThat(filter(MovieSearchOptions.VIDEO_FORMAT, MediaFile.VIDEO_FORMAT_SD)).containsExactly(sdMovie, noVideo);
+    assertThat(filter(MovieSearchOptions.VIDEO_FORMAT, MediaFile.VIDEO_FORMAT_1080P)).containsExactly(hdMovie);
+    assertThat(filter(MovieSearchOptions.VIDEO_FORMAT, MediaFile.VIDEO_FORMAT_720P)).isEmpty();
+  }
+
+  @Test
+  public void testTags() {
+    assertThat(filter(MovieSearchOptions.TAG, Arrays.asList("classic"))).containsExactly(hdMovie, sdMovie);
+    assertThat(filter(MovieSearchOptions.TAG, Arrays.asList("classic", "space"))).containsExactly(hdMovie);
+    assertThat(filter(MovieSearchOptions.TAG, Arrays.asList("unknown"))).isEmpty();
+
+    // no (non blank) tag selected: only movies without tags match
+    assertThat(filter(MovieSearchOptions.TAG, Collections.emptyList())).containsExactly(noVideo);
+    assertThat(filter(MovieSearchOptions.TAG, Arrays.asList("", " "))).containsExactly(noVideo);
+  }
+
+  @Test
+  public void testNegation() {
+    assertThat(filter(MovieSearchOptions.WATCHED, true)).containsExactly(hdMovie);
+    assertThat(filter(MovieSearchOptions.WATCHED, false)).containsExactly(sdMovie, noVideo);
+
+    assertThat(filter(MovieSearchOptions.MOVIESET, true)).containsExactly(hdMovie);
+    assertThat(filter(MovieSearchOptions.MOVIESET, false)).containsExactly(sdMovie, noVideo);
+
+    assertThat(filter(MovieSearchOptions.OFFLINE, true)).containsExactly(noVideo);
+    assertThat(filter(MovieSearchOptions.OFFLINE, false)).containsExactly(hdMovie, sdMovie);
+  }
+
+  @Test
+  public void testSlotReuse() {
+    int slot = index.getSlot(sdMovie);
+    index.removeMovie(sdMovie);
+    movies.remove(sdMovie);
+    assertThat(index.getSlot(sdMovie)).isEqualTo(-1);
+    assertThat(filter(MovieSearchOptions.TAG, Arrays.asList("classic"))).containsExactly(hdMovie);
+
+    // the free slot is reused and holds none of the values of the removed movie
+    Movie movie = createMovie("Nosferatu", 0, 0);
+    index.addMovie(movie);
+    movies.add(movie);
+    assertThat(index.getSlot(movie)).isEqualTo(slot);
+    assertThat(filter(MovieSearchOptions.TAG, Arrays.asList("classic"))).containsExactly(hdMovie);
+    assertThat(filter(MovieSearchOptions.GENRE, MediaGenres.DRAMA)).isEmpty();
+    assertThat(filter(MovieSearchOptions.TAG, Collections.emptyList())).containsOnly(noVideo, movie);
+  }
+
+  @Test
+  public void testDirtyMovies() {
+    int version = index.getVersion();
+
+    // properties which are not indexed do not change the index
+    sdMovie.setPlot("Rick Blaine runs a nightclub");
+    index.markDirty(sdMovie, Constants.PLOT);
+    assertThat(index.getVersion()).isEqualTo(version);
+
+    // indexed properties are re-indexed with the next filter request
+    sdMovie.addGenre(MediaGenres.ADVENTURE);
+    sdMovie.setWatched(true);
+    index.markDirty(sdMovie, Constants.GENRE);
+    assertThat(index.getVersion()).isGreaterThan(version);
+    assertThat(filter(MovieSearchOptions.GENRE, MediaGenres.ADVENTURE)).containsExactly(sdMovie);
+    assertThat(filter(MovieSearchOptions.GENRE, MediaGenres.DRAMA)).containsExactly(sdMovie);
+    assertThat(filter(MovieSearchOptions.WATCHED, true)).containsExactly(hdMovie, sdMovie);
+
+    // removed values must not be found any more
+    sdMovie.removeGenre(MediaGenres.DRAMA);
+    index.markDirty(sdMovie, Constants.GENRE);
+    assertThat(filter(MovieSearchOptions.GENRE, MediaGenres.DRAMA)).isEmpty();
+  }
+
+  private Movie createMovie(String title, int width, int height) {
+    Movie movie = new Movie();
+    movie.setTitle(title);
+    if (width > 0 && height > 0) {
+      MediaFile mf = new MediaFile(Paths.get("/media/movies", title, title + ".mkv"), MediaFileType.VIDEO);
+      mf.setVideoWidth(width);
+      mf.setVideoHeight(height);
+      movie.addToMediaFiles(mf);
+    }
+    return movie;
+  }
+
+  private List<Movie> filter(MovieSearchOptions option, Object value) {
+    Map<MovieSearchOptions, Object> searchOptions = new HashMap<>();
+    searchOptions.put(option, value);
+    BitSet result = index.filter(searchOptions);
+
+    List<Movie> matching = new ArrayList<>();
+    for (Movie movie : movies) {
+      if (result.get(index.getSlot(movie))) {
+        matching.add(movie);
+      }
+    }
+    return matching;
+  }
+}
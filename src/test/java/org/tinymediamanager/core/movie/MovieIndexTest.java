@@ -0,0 +1,80 @@
+/*
+ * Copyright 2012 - 2018 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core.movie;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Paths;
+
+import org.junit.Test;
+import org.tinymediamanager.BasicTest;
+import org.tinymediamanager.core.movie.entities.Movie;
+import org.tinymediamanager.core.movie.entities.MovieSet;
+
+/**
+ * @author Manuel Laggner
+ */
+public class MovieIndexTest extends BasicTest {
+
+  @Test
+  public void testMovieIndex() {
+    MovieIndex index = new MovieIndex();
+
+    Movie movie = new Movie();
+    movie.setPath("/media/movies/Alien (1979)");
+    movie.setImdbId("tt0078748");
+    movie.setTmdbId(348);
+    index.addMovie(movie);
+
+    assertThat(index.containsMovie(movie)).isTrue();
+    assertThat(index.getMovie(movie.getDbId())).isSameAs(movie);
+    assertThat(index.getMoviesByPath(Paths.get("/media/movies/./Alien (1979)"))).containsExactly(movie);
+    assertThat(index.getMoviesByImdbId("tt0078748")).containsExactly(movie);
+    assertThat(index.getMoviesByTmdbId(348)).containsExactly(movie);
+
+    // change the indexed values
+    movie.setPath("/media/movies/Alien");
+    movie.setTmdbId(0);
+    index.updateMovie(movie);
+
+    assertThat(index.getMoviesByPath(Paths.get("/media/movies/Alien (1979)"))).isEmpty();
+    assertThat(index.getMoviesByPath(Paths.get("/media/movies/Alien"))).containsExactly(movie);
+    assertThat(index.getMoviesByTmdbId(348)).isEmpty();
+
+    // and remove it
+    index.removeMovie(movie);
+    assertThat(index.containsMovie(movie)).isFalse();
+    assertThat(index.getMovie(movie.getDbId())).isNull();
+    assertThat(index.getMoviesByImdbId("tt0078748")).isEmpty();
+  }
+
+  @Test
+  public void testMovieSetIndex() {
+    MovieIndex index = new MovieIndex();
+
+    MovieSet movieSet = new MovieSet("Alien Collection");
+    movieSet.setTmdbId(8091);
+    index.addMovieSet(movieSet);
+
+    assertThat(index.getMovieSet(movieSet.getDbId())).isSameAs(movieSet);
+    assertThat(index.getMovieSetsByTmdbId(8091)).containsExactly(movieSet);
+    assertThat(index.getMovieSetsByTitle("Alien Collection")).containsExactly(movieSet);
+
+    index.removeMovieSet(movieSet);
+    assertThat(index.getMovieSet(movieSet.getDbId())).isNull();
+    assertThat(index.getMovieSetsByTitle("Alien Collection")).isEmpty();
+  }
+}
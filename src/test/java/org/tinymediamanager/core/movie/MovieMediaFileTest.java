@@ -90,6 +90,38 @@ public class MovieMediaFileTest extends BasicTest {
     System.out.println("File Path:  " + movie.getMediaFiles().get(0).getFileAsPath());
   }
 
+  @Test
+  public void testMediaFilesByType() {
+    Movie movie = new Movie();
+    movie.setPath("/private/Test_Filme/Alien 1");
+    MediaFile video = new MediaFile(Paths.get("/private/Test_Filme/Alien 1/Alien 1.mkv"));
+    MediaFile poster = new MediaFile(Paths.get("/private/Test_Filme/Alien 1/poster.jpg"));
+    MediaFile nfo = new MediaFile(Paths.get("/private/Test_Filme/Alien 1/Alien 1.nfo"));
+    movie.addToMediaFiles(video);
+    movie.addToMediaFiles(poster);
+    movie.addToMediaFiles(nfo);
+
+    assertEqual(1, movie.getMediaFiles(MediaFileType.VIDEO).size());
+    assertEqual(video, movie.getMediaFiles(MediaFileType.VIDEO).get(0));
+    assertEqual(2, movie.getMediaFiles(MediaFileType.VIDEO, MediaFileType.POSTER).size());
+    assertEqual(0, movie.getMediaFiles(MediaFileType.TRAILER).size());
+    assertEqual(2, movie.getMediaFilesExceptType(MediaFileType.NFO).size());
+
+    // the index has to follow all changes
+    movie.removeFromMediaFiles(video);
+    assertEqual(0, movie.getMediaFiles(MediaFileType.VIDEO).size());
+    movie.removeAllMediaFiles(MediaFileType.POSTER);
+    assertEqual(0, movie.getMediaFiles(MediaFileType.POSTER).size());
+    assertEqual(1, movie.getMediaFiles(MediaFileType.NFO).size());
+
+    // changing the type of an existing media file re-indexes it
+    MediaFile changed = new MediaFile(nfo);
+    changed.setType(MediaFileType.TEXT);
+    movie.addToMediaFiles(changed);
+    assertEqual(0, movie.getMediaFiles(MediaFileType.NFO).size());
+    assertEqual(1, movie.getMediaFiles(MediaFileType.TEXT).size());
+  }
+
   @Test
   public void filenameWithoutStacking() {
     MediaFile mf = new MediaFile(Paths.get(".", "hp7 - part 1"));
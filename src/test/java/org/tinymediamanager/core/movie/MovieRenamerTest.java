@@ -82,6 +82,10 @@ public class MovieRenamerTest extends BasicTest {
 
     assertEqual("The Dish (2000) MPEG-480p AC3-6ch", MovieRenamer.createDestinationForFilename("$T ($Y) $V $A", m));
     assertEqual("The Dish (2000)", MovieRenamer.createDestinationForFoldername("$T ($Y)", m));
+
+    // optional groups are dropped if the first token is empty
+    assertEqual("The Dish - Year 2000", MovieRenamer.createDestinationForFilename("$T{ - Year $Y}{ - Set $N}", m));
+    assertEqual("The Dish", MovieRenamer.createDestinationForFilename("$T {[$C]}", m));
   }
 
   @Test
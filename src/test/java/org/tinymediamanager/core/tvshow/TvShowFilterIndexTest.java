@@ -0,0 +1,142 @@
+/*
+ * Copyright 2012 - 2018 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core.tvshow;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.tinymediamanager.BasicTest;
+import org.tinymediamanager.core.Constants;
+import org.tinymediamanager.core.MediaFileType;
+import org.tinymediamanager.core.entities.MediaFile;
+import org.tinymediamanager.core.tvshow.entities.TvShow;
+import org.tinymediamanager.core.tvshow.entities.TvShowActor;
+import org.tinymediamanager.core.tvshow.entities.TvShowEpisode;
+import org.tinymediamanager.scraper.entities.MediaGenres;
+
+/**
+ * @author Manuel Laggner
+ */
+public class TvShowFilterIndexTest extends BasicTest {
+  private TvShowFilterIndex index;
+  private List<TvShow>      tvShows;
+  private TvShow            alf;
+  private TvShow            dallas;
+  private TvShowEpisode     pilot;
+
+  @Before
+  public void setUpIndex() {
+    index = new TvShowFilterIndex();
+    tvShows = new ArrayList<>();
+
+    alf = new TvShow();
+    alf.setTitle("ALF");
+    alf.addGenre(MediaGenres.ACTION);
+    alf.addActor(new TvShowActor("Paul Fusco"));
+    pilot = createEpisode(alf, 1, "h264", true);
+    pilot.addToTags("pilot");
+    createEpisode(alf, 2, "xvid", false).addToTags("classic");
+
+    dallas = new TvShow();
+    dallas.setTitle("Dallas");
+    dallas.addGenre(MediaGenres.DRAMA);
+    dallas.addToTags("classic");
+    createEpisode(dallas, 1, "h264", true).setDirector("Irving J. Moore");
+
+    for (TvShow tvShow : Arrays.asList(alf, dallas)) {
+      index.addTvShow(tvShow);
+      tvShows.add(tvShow);
+    }
+  }
+
+  @Test
+  public void testEpisodeValues() {
+    // a TV show matches if one of its episodes matches
+    assertThat(filter(index.filterWatched(true))).containsExactly(alf, dallas);
+    assertThat(filter(index.filterWatched(false))).containsExactly(alf);
+    assertThat(filter(index.filterVideoCodec("H264"))).containsExactly(alf, dallas);
+    assertThat(filter(index.filterVideoCodec("xvid"))).containsExactly(alf);
+    assertThat(filter(index.filterCast("fusco"))).containsExactly(alf);
+    assertThat(filter(index.filterCast("moore"))).containsExactly(dallas);
+    assertThat(filter(index.filterGenre(MediaGenres.DRAMA))).containsExactly(dallas);
+  }
+
+  @Test
+  public void testTags() {
+    assertThat(filter(index.filterTags(Arrays.asList("classic")))).containsExactly(alf, dallas);
+    assertThat(filter(index.filterTags(Arrays.asList("pilot")))).containsExactly(alf);
+    assertThat(filter(index.filterTags(Arrays.asList("unknown")))).isEmpty();
+
+    // no (non blank) tag selected: only TV shows without tags match
+    assertThat(filter(index.filterTags(Collections.emptyList()))).containsExactly(alf);
+    assertThat(filter(index.filterTags(Arrays.asList("", " ")))).containsExactly(alf);
+  }
+
+  @Test
+  public void testDirtyTvShows() {
+    int version = index.getVersion();
+
+    // properties which are not indexed do not change the index
+    alf.setPlot("Gordon Shumway crashes into the garage of the Tanner family");
+    index.markDirty(alf, Constants.PLOT);
+    assertThat(index.getVersion()).isEqualTo(version);
+
+    // changed episodes are re-indexed with the next filter request
+    pilot.setWatched(false);
+    index.markDirty(alf, Constants.WATCHED);
+    assertThat(index.getVersion()).isGreaterThan(version);
+    assertThat(filter(index.filterWatched(true))).containsExactly(dallas);
+
+    // removed TV shows must not be found any more
+    index.removeTvShow(dallas);
+    assertThat(index.getSlot(dallas)).isEqualTo(-1);
+    assertThat(filter(index.filterVideoCodec("h264"))).containsExactly(alf);
+  }
+
+  private TvShowEpisode createEpisode(TvShow tvShow, int episodeNumber, String videoCodec, boolean watched) {
+    TvShowEpisode episode = new TvShowEpisode();
+    episode.setTvShow(tvShow);
+    episode.setSeason(1);
+    episode.setEpisode(episodeNumber);
+    episode.setWatched(watched);
+
+    MediaFile mf = new MediaFile(Paths.get("/media/tvshows", tvShow.getTitle(), "S01E0" + episodeNumber + ".mkv"), MediaFileType.VIDEO);
+    mf.setVideoCodec(videoCodec);
+    episode.addToMediaFiles(mf);
+
+    tvShow.addEpisode(episode);
+    return episode;
+  }
+
+  private List<TvShow> filter(BitSet result) {
+    List<TvShow> matching = new ArrayList<>();
+    for (TvShow tvShow : tvShows) {
+      int slot = index.getSlot(tvShow);
+      if (slot >= 0 && result.get(slot)) {
+        matching.add(tvShow);
+      }
+    }
+    return matching;
+  }
+}
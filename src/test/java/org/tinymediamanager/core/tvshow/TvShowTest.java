@@ -69,6 +69,36 @@ public class TvShowTest extends BasicTest {
     }
   }
 
+  @Test
+  public void testEpisodeIndex() {
+    TvShow show = new TvShow();
+    show.setTitle("Index");
+
+    // add in reverse order
+    for (int i = 10; i > 0; i--) {
+      TvShowEpisode episode = new TvShowEpisode();
+      episode.setTvShow(show);
+      episode.setSeason(1 + i % 2);
+      episode.setEpisode(i);
+      show.addEpisode(episode);
+    }
+
+    assertEqual(10, show.getEpisodes().size());
+    assertEqual(2, show.getSeasons().size());
+    assertEqual(1, show.getEpisodes().get(0).getSeason());
+    assertEqual(2, show.getEpisodes().get(0).getEpisode());
+    assertEqual(2, show.getEpisodes().get(9).getSeason());
+    assertEqual(9, show.getEpisodes().get(9).getEpisode());
+    assertEqual(3, show.getEpisode(2, 3).getEpisode());
+    assertEqual(null, show.getEpisode(1, 3));
+
+    // renumbered episodes must be found with their new numbers
+    TvShowEpisode episode = show.getEpisode(2, 3);
+    episode.setEpisode(11);
+    assertEqual(null, show.getEpisode(2, 3));
+    assertEqual(episode, show.getEpisode(2, 11));
+  }
+
   /**
    * Test TV renamer
    * 
@@ -14,8 +14,11 @@
  */
 package org.tinymediamanager.thirdparty;
 
+import static org.assertj.core.api.Assertions.assertThat;
+
 import org.fourthline.cling.support.contentdirectory.ContentDirectoryException;
 import org.fourthline.cling.support.model.BrowseFlag;
+import org.fourthline.cling.support.model.BrowseResult;
 import org.fourthline.cling.support.model.SortCriterion;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -111,6 +114,34 @@ public class ContentDirectoryBrowseTest extends BasicTest {
     browse("2/" + getValidShowID() + "/10/20", BrowseFlag.METADATA);
   }
 
+  // =====================================================
+  // search
+  // =====================================================
+  @Test
+  public void searchTitle() throws ContentDirectoryException {
+    assertThat(search("0", "dc:title contains \"upnpmovie\"").getTotalMatches().getValue()).isEqualTo(3L);
+    assertThat(search("1", "dc:title = \"UPNPMovie2\"").getTotalMatches().getValue()).isEqualTo(1L);
+    assertThat(search("2", "dc:title contains \"UPNPMovie\"").getTotalMatches().getValue()).isEqualTo(0L);
+  }
+
+  @Test
+  public void searchCombined() throws ContentDirectoryException {
+    assertThat(search("0", "upnp:class derivedfrom \"object.item.videoItem\" and dc:title contains \"Teacher\"").getTotalMatches().getValue())
+        .isEqualTo(4L);
+    assertThat(search("0", "(upnp:actor = \"Robin Williams\" or upnp:genre contains \"drama\") and dc:date >= \"1990-01-01\"")
+        .getTotalMatches().getValue()).isEqualTo(4L);
+    assertThat(search("2/" + getValidShowID(), "*").getTotalMatches().getValue()).isEqualTo(1L);
+  }
+
+  @Test(expected = ContentDirectoryException.class)
+  public void invalidSearchCriteria() throws ContentDirectoryException {
+    search("0", "(dc:title contains \"UPNP\"");
+  }
+
+  private BrowseResult search(String containerId, String criteria) throws ContentDirectoryException {
+    return CDS.search(containerId, criteria, "", 0, 200, SortCriterion.valueOf("+dc:title"));
+  }
+
   private void browse(String s, BrowseFlag b) throws ContentDirectoryException {
     CDS.browse(s, b, "", 0, 200, SortCriterion.valueOf("+dc:date,+dc:title"));
   }
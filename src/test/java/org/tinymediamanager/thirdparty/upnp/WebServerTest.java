@@ -0,0 +1,63 @@
+package org.tinymediamanager.thirdparty.upnp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.tinymediamanager.BasicTest;
+
+public class WebServerTest extends BasicTest {
+
+  @Test
+  public void parseRanges() {
+    // closed range
+    List<long[]> ranges = WebServer.parseRanges("bytes=0-499", 1000);
+    assertThat(ranges).hasSize(1);
+    assertThat(ranges.get(0)).containsExactly(0, 499);
+
+    // open-ended range
+    ranges = WebServer.parseRanges("bytes=500-", 1000);
+    assertThat(ranges.get(0)).containsExactly(500, 999);
+
+    // suffix range
+    ranges = WebServer.parseRanges("bytes=-100", 1000);
+    assertThat(ranges.get(0)).containsExactly(900, 999);
+    ranges = WebServer.parseRanges("bytes=-2000", 1000);
+    assertThat(ranges.get(0)).containsExactly(0, 999);
+
+    // end behind the file end
+    ranges = WebServer.parseRanges("bytes=900-5000", 1000);
+    assertThat(ranges.get(0)).containsExactly(900, 999);
+
+    // multiple ranges
+    ranges = WebServer.parseRanges("bytes=0-99, 200-299,-50", 1000);
+    assertThat(ranges).hasSize(3);
+    assertThat(ranges.get(1)).containsExactly(200, 299);
+    assertThat(ranges.get(2)).containsExactly(950, 999);
+
+    // overlapping, adjacent and unordered ranges are coalesced
+    ranges = WebServer.parseRanges("bytes=500-599,0-99,50-199,200-299,550-", 1000);
+    assertThat(ranges).hasSize(2);
+    assertThat(ranges.get(0)).containsExactly(0, 299);
+    assertThat(ranges.get(1)).containsExactly(500, 999);
+    ranges = WebServer.parseRanges("bytes=0-0,0-0,0-0,0-0", 1000);
+    assertThat(ranges).hasSize(1);
+    assertThat(ranges.get(0)).containsExactly(0, 0);
+
+    // too many ranges are ignored (the whole file is served)
+    StringBuilder sb = new StringBuilder("bytes=0-0");
+    for (int i = 1; i <= 16; i++) {
+      sb.append(',').append(i * 10).append('-').append(i * 10);
+    }
+    assertThat(WebServer.parseRanges(sb.toString(), 1000)).isNull();
+
+    // not satisfiable
+    assertThat(WebServer.parseRanges("bytes=1000-", 1000)).isEmpty();
+
+    // invalid headers are ignored
+    assertThat(WebServer.parseRanges("items=0-1", 1000)).isNull();
+    assertThat(WebServer.parseRanges("bytes=500-100", 1000)).isNull();
+    assertThat(WebServer.parseRanges("bytes=abc", 1000)).isNull();
+  }
+}